@@ -0,0 +1,59 @@
+package org.motechproject.admin.web.controller;
+
+import org.motechproject.admin.security.SecurityConstants;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * Exposes the metrics of the event pipeline in the Admin UI.
+ * Uses {@link org.motechproject.event.metrics.EventMetricsService} for retrieving the metrics.
+ */
+@Controller
+public class EventMetricsController {
+
+    @Autowired
+    private EventMetricsService eventMetricsService;
+
+    /**
+     * Returns the metrics of event subjects.
+     * @return a list of {@link org.motechproject.event.metrics.SubjectMetrics}, one for each subject
+     */
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @RequestMapping(value = "/events/metrics/subjects", method = RequestMethod.GET)
+    @ResponseBody
+    public List<SubjectMetrics> subjectMetrics() {
+        return eventMetricsService.getSubjectMetrics();
+    }
+
+    /**
+     * Returns the metrics of event listeners.
+     * @return a list of {@link org.motechproject.event.metrics.ListenerMetrics}, one for each listener
+     */
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @RequestMapping(value = "/events/metrics/listeners", method = RequestMethod.GET)
+    @ResponseBody
+    public List<ListenerMetrics> listenerMetrics() {
+        return eventMetricsService.getListenerMetrics();
+    }
+
+    /**
+     * Clears all event metrics.
+     */
+    @PreAuthorize(SecurityConstants.MANAGE_ACTIVEMQ)
+    @RequestMapping(value = "/events/metrics/reset", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetMetrics() {
+        eventMetricsService.reset();
+    }
+}
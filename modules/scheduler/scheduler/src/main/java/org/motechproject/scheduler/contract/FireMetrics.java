@@ -0,0 +1,40 @@
+package org.motechproject.scheduler.contract;
+
+import org.motechproject.event.metrics.LatencySnapshot;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Timing of the jobs firing events with a single subject.
+ */
+public class FireMetrics {
+
+    private final String subject;
+    private final long fired;
+    private final LatencySnapshot fireLag;
+
+    @ConstructorProperties({"subject", "fired", "fireLag"})
+    public FireMetrics(String subject, long fired, LatencySnapshot fireLag) {
+        this.subject = subject;
+        this.fired = fired;
+        this.fireLag = fireLag;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the number of times jobs with this subject were fired since the metrics were reset
+     */
+    public long getFired() {
+        return fired;
+    }
+
+    /**
+     * @return the time between the scheduled and the actual fire times of the jobs, within the rolling window
+     */
+    public LatencySnapshot getFireLag() {
+        return fireLag;
+    }
+}
@@ -17,6 +17,7 @@ public class JobsSearchSettings {
     private String status;
     private String timeFrom;
     private String timeTo;
+    private String afterName;
 
     public String getName() {
         return name;
@@ -89,4 +90,18 @@ public class JobsSearchSettings {
     public void setTimeTo(String timeTo) {
         this.timeTo = timeTo;
     }
+
+    public String getAfterName() {
+        return afterName;
+    }
+
+    /**
+     * Sets the name of the last job of the previous page. If set, the jobs are ordered by name and the page starts
+     * right after the job with the given name, instead of being skipped using the page number.
+     *
+     * @param afterName  the name of the last job of the previous page
+     */
+    public void setAfterName(String afterName) {
+        this.afterName = afterName;
+    }
 }
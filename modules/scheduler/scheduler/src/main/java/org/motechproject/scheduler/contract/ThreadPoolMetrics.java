@@ -0,0 +1,72 @@
+package org.motechproject.scheduler.contract;
+
+import org.motechproject.event.metrics.LatencySnapshot;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Usage of the scheduler thread pool and the time spent acquiring triggers from the job store.
+ */
+public class ThreadPoolMetrics {
+
+    private final int poolSize;
+    private final int busyThreads;
+    private final int peakBusyThreads;
+    private final long fired;
+    private final long saturatedFires;
+    private final LatencySnapshot acquisitionLatency;
+
+    @ConstructorProperties({"poolSize", "busyThreads", "peakBusyThreads", "fired", "saturatedFires",
+            "acquisitionLatency"})
+    public ThreadPoolMetrics(int poolSize, int busyThreads, int peakBusyThreads, long fired, long saturatedFires,
+                             LatencySnapshot acquisitionLatency) {
+        this.poolSize = poolSize;
+        this.busyThreads = busyThreads;
+        this.peakBusyThreads = peakBusyThreads;
+        this.fired = fired;
+        this.saturatedFires = saturatedFires;
+        this.acquisitionLatency = acquisitionLatency;
+    }
+
+    /**
+     * @return the number of threads in the scheduler thread pool
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return the number of threads executing jobs right now
+     */
+    public int getBusyThreads() {
+        return busyThreads;
+    }
+
+    /**
+     * @return the highest number of threads executing jobs at once since the metrics were reset
+     */
+    public int getPeakBusyThreads() {
+        return peakBusyThreads;
+    }
+
+    /**
+     * @return the number of fired triggers since the metrics were reset
+     */
+    public long getFired() {
+        return fired;
+    }
+
+    /**
+     * @return the number of fired triggers which occupied the last free thread of the pool
+     */
+    public long getSaturatedFires() {
+        return saturatedFires;
+    }
+
+    /**
+     * @return the time the scheduler spent acquiring the next triggers from the job store, within the rolling window
+     */
+    public LatencySnapshot getAcquisitionLatency() {
+        return acquisitionLatency;
+    }
+}
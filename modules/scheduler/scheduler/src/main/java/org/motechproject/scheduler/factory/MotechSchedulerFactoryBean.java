@@ -1,9 +1,13 @@
 package org.motechproject.scheduler.factory;
 
+import org.apache.commons.lang.math.NumberUtils;
 import org.motechproject.scheduler.exception.SchedulerInstantiationException;
 import org.motechproject.scheduler.exception.SchedulerShutdownException;
+import org.motechproject.scheduler.service.impl.ScheduledEventPublisher;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
@@ -12,6 +16,8 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import static java.lang.Boolean.getBoolean;
@@ -22,8 +28,17 @@ import static java.lang.Boolean.getBoolean;
 @Component("motechSchedulerFactoryBean")
 public class MotechSchedulerFactoryBean {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerFactoryBean.class);
+
+    private static final String THREAD_COUNT = "org.quartz.threadPool.threadCount";
+    private static final String AUTO_THREAD_COUNT = "auto";
+    private static final String BATCH_ACQUISITION_COUNT = "org.quartz.scheduler.batchTriggerAcquisitionMaxCount";
+    private static final String ACQUIRE_WITHIN_LOCK = "org.quartz.jobStore.acquireTriggersWithinLock";
+
     private ApplicationContext applicationContext;
 
+    private ScheduledEventPublisher scheduledEventPublisher;
+
     private SchedulerFactoryBean schedulerFactoryBean;
 
     private Properties schedulerProperties;
@@ -46,10 +61,15 @@ public class MotechSchedulerFactoryBean {
     @PostConstruct
     public void init() {
         schedulerFactoryBean = new SchedulerFactoryBean();
-        schedulerFactoryBean.setQuartzProperties(schedulerProperties);
+        schedulerFactoryBean.setQuartzProperties(adaptThreadPool(schedulerProperties));
         schedulerFactoryBean.setWaitForJobsToCompleteOnShutdown(getBooleanWithDefault(schedulerProperties.getProperty("scheduler.waitForJobsToCompleteOnShutdown"), true));
         schedulerFactoryBean.setApplicationContextSchedulerContextKey("applicationContext");
         schedulerFactoryBean.setApplicationContext(applicationContext);
+        if (scheduledEventPublisher != null) {
+            Map<String, Object> schedulerContext = new HashMap<>();
+            schedulerContext.put(ScheduledEventPublisher.CONTEXT_KEY, scheduledEventPublisher);
+            schedulerFactoryBean.setSchedulerContextAsMap(schedulerContext);
+        }
         try {
             schedulerFactoryBean.afterPropertiesSet();
             schedulerFactoryBean.getScheduler().start();
@@ -83,6 +103,40 @@ public class MotechSchedulerFactoryBean {
         return getQuartzSchedulerFactoryBean().getScheduler();
     }
 
+    @Autowired(required = false)
+    public void setScheduledEventPublisher(ScheduledEventPublisher scheduledEventPublisher) {
+        this.scheduledEventPublisher = scheduledEventPublisher;
+    }
+
+    /**
+     * Sizes the Quartz thread pool. The thread count can be set to <code>auto</code>, in which case two threads per
+     * available processor are used. When triggers are acquired in batches, the pool is enlarged to at least the batch
+     * size, since Quartz never acquires more triggers than it has free threads, and the triggers are acquired within
+     * the lock, as Quartz requires for batch acquisition with a clustered job store.
+     */
+    private Properties adaptThreadPool(Properties properties) {
+        Properties adapted = new Properties();
+        adapted.putAll(properties);
+
+        String threadCountValue = adapted.getProperty(THREAD_COUNT);
+        int threadCount = AUTO_THREAD_COUNT.equalsIgnoreCase(threadCountValue) ?
+                Runtime.getRuntime().availableProcessors() * 2 :
+                NumberUtils.toInt(threadCountValue, 1);
+
+        int batchCount = NumberUtils.toInt(adapted.getProperty(BATCH_ACQUISITION_COUNT), 1);
+        if (batchCount > 1) {
+            threadCount = Math.max(threadCount, batchCount);
+            if (adapted.getProperty(ACQUIRE_WITHIN_LOCK) == null) {
+                adapted.setProperty(ACQUIRE_WITHIN_LOCK, "true");
+            }
+        }
+
+        adapted.setProperty(THREAD_COUNT, String.valueOf(threadCount));
+        LOGGER.info("Starting the scheduler with {} threads, acquiring up to {} triggers at once", threadCount, batchCount);
+
+        return adapted;
+    }
+
     private boolean getBooleanWithDefault(String s, boolean defaultValue) {
         return s != null ? getBoolean(s) : defaultValue;
     }
@@ -0,0 +1,55 @@
+package org.motechproject.scheduler.service;
+
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Service forecasting the times at which the scheduled jobs will fire. The jobs are found by the prefix of their IDs,
+ * using an index of trigger names kept in memory, so the cost of a forecast depends on the number of matching jobs
+ * and not on the total number of jobs in the scheduler.
+ */
+public interface MotechSchedulerForecastService {
+
+    /**
+     * Returns the times at which the jobs with the given subject and external ID prefix will fire within the given
+     * window, ordered from the earliest.
+     *
+     * @param subject  the subject of the jobs, not null
+     * @param externalJobIdPrefix  the prefix of the external IDs of the jobs, not null
+     * @param startDate  the beginning of the window, inclusive, not null
+     * @param endDate  the end of the window, inclusive, not null
+     * @return the sorted list of fire times
+     */
+    List<DateTime> getFireTimes(String subject, String externalJobIdPrefix, DateTime startDate, DateTime endDate);
+
+    /**
+     * Returns the times at which the jobs with the given subject and external ID prefix will fire within the given
+     * window, grouped by the IDs of the jobs.
+     *
+     * @param subject  the subject of the jobs, not null
+     * @param externalJobIdPrefix  the prefix of the external IDs of the jobs, not null
+     * @param startDate  the beginning of the window, inclusive, not null
+     * @param endDate  the end of the window, inclusive, not null
+     * @return the fire times of every matching job, ordered by the job IDs
+     */
+    Map<String, List<DateTime>> getFireTimesByJob(String subject, String externalJobIdPrefix, DateTime startDate,
+                                                  DateTime endDate);
+
+    /**
+     * Counts the fires of the jobs with the given subject and external ID prefix in consecutive buckets of the given
+     * size, starting at the beginning of the window. Buckets without any fires are included with a count of zero.
+     *
+     * @param subject  the subject of the jobs, not null
+     * @param externalJobIdPrefix  the prefix of the external IDs of the jobs, not null
+     * @param startDate  the beginning of the window, inclusive, not null
+     * @param endDate  the end of the window, inclusive, not null
+     * @param bucketSize  the size of a single bucket, must be positive
+     * @return the number of fires in every bucket, keyed by the start of the bucket
+     */
+    SortedMap<DateTime, Integer> getFireTimeHistogram(String subject, String externalJobIdPrefix, DateTime startDate,
+                                                      DateTime endDate, Duration bucketSize);
+}
@@ -10,6 +10,7 @@ import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
 import org.motechproject.scheduler.contract.SchedulableJob;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -57,6 +58,15 @@ public interface MotechSchedulerService {
      */
     void scheduleJob(CronSchedulableJob cronSchedulableJob);
 
+    /**
+     * Schedules all the given jobs. The jobs are validated before any of them is stored, and then stored in batches,
+     * each in a single transaction. The size of the batches is set by the <code>scheduler.batch.size</code> property.
+     * Jobs with the same Job ID as the given ones are replaced.
+     *
+     * @param jobs  the jobs to schedule, not null
+     */
+    void scheduleJobs(Collection<? extends SchedulableJob> jobs);
+
     /**
      * Same as scheduleJob, except that it would update existing job if one exists instead of creating a new one
      *
@@ -174,14 +184,15 @@ public interface MotechSchedulerService {
     void safeUnscheduleJob(String subject, String externalId);
 
     /**
-     * Unschedules all jobs with given prefix.
+     * Unschedules all jobs whose Job IDs start with the given prefix. The jobs are unscheduled in batches, each in a
+     * single transaction.
      *
      * @param jobIdPrefix the jobs prefix
      */
     void unscheduleAllJobs(String jobIdPrefix);
 
     /**
-     * Unschedules all jobs with given prefix. Logs all exceptions instead of throwing them.
+     * Unschedules all jobs whose Job IDs start with the given prefix. Logs all exceptions instead of throwing them.
      *
      * @param jobIdPrefix the jobs prefix
      */
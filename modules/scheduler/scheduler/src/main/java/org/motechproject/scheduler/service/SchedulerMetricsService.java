@@ -0,0 +1,47 @@
+package org.motechproject.scheduler.service;
+
+import org.motechproject.scheduler.contract.FireMetrics;
+import org.motechproject.scheduler.contract.ThreadPoolMetrics;
+
+import javax.management.MXBean;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives access to the timing metrics of the scheduler: the lag between the scheduled and the actual fire times per
+ * job subject, the misfire counts per misfire policy, the usage of the thread pool and the latency of acquiring
+ * triggers from the job store. Latencies are reported as percentiles over a rolling window. The service is also
+ * registered in the platform MBean server under the {@link #OBJECT_NAME} name.
+ */
+@MXBean
+public interface SchedulerMetricsService {
+
+    String OBJECT_NAME = "org.motechproject.scheduler:type=SchedulerMetrics";
+
+    /**
+     * Returns the fire metrics of every subject for which jobs were fired.
+     *
+     * @return the fire metrics, sorted by subject
+     */
+    List<FireMetrics> getFireMetrics();
+
+    /**
+     * Returns the number of misfired triggers per misfire policy. The policies are named after the type of the
+     * trigger and its misfire instruction, for example <code>cron:fire_once_now</code>.
+     *
+     * @return the misfire counts, sorted by policy
+     */
+    Map<String, Long> getMisfireCounts();
+
+    /**
+     * Returns the usage of the scheduler thread pool and the trigger acquisition latency.
+     *
+     * @return the thread pool metrics
+     */
+    ThreadPoolMetrics getThreadPoolMetrics();
+
+    /**
+     * Clears all recorded metrics.
+     */
+    void reset();
+}
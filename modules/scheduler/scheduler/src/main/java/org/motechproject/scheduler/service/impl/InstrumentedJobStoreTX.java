@@ -0,0 +1,35 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.quartz.JobPersistenceException;
+import org.quartz.impl.jdbcjobstore.JobStoreTX;
+import org.quartz.spi.OperableTrigger;
+
+import java.util.List;
+
+/**
+ * The Quartz {@link JobStoreTX} which reports the time spent acquiring the next triggers to the
+ * {@link SchedulerMetricsRecorder}. Quartz instantiates the job store from its class name, so the recorder is passed
+ * through a static field, set by the recorder itself when the module starts.
+ */
+public class InstrumentedJobStoreTX extends JobStoreTX {
+
+    private static volatile SchedulerMetricsRecorder metricsRecorder;
+
+    @Override
+    public List<OperableTrigger> acquireNextTriggers(long noLaterThan, int maxCount, long timeWindow)
+            throws JobPersistenceException {
+        long start = System.nanoTime();
+        try {
+            return super.acquireNextTriggers(noLaterThan, maxCount, timeWindow);
+        } finally {
+            SchedulerMetricsRecorder recorder = metricsRecorder;
+            if (recorder != null) {
+                recorder.recordAcquisition(System.nanoTime() - start);
+            }
+        }
+    }
+
+    static void setMetricsRecorder(SchedulerMetricsRecorder recorder) {
+        metricsRecorder = recorder;
+    }
+}
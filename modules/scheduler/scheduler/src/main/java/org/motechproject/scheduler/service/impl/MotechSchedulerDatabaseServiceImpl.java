@@ -15,18 +15,18 @@ import org.motechproject.scheduler.contract.RunOnceJobId;
 import org.motechproject.scheduler.exception.MotechSchedulerJobRetrievalException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
-import org.quartz.CalendarIntervalTrigger;
-import org.quartz.CronScheduleBuilder;
-import org.quartz.CronTrigger;
+import org.quartz.DateBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
-import org.quartz.SimpleTrigger;
 import org.quartz.Trigger;
 import org.quartz.TriggerKey;
 import org.quartz.TriggerUtils;
 import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.triggers.AbstractTrigger;
+import org.quartz.impl.triggers.CalendarIntervalTriggerImpl;
+import org.quartz.impl.triggers.SimpleTriggerImpl;
 import org.quartz.spi.OperableTrigger;
 import org.quartz.utils.DBConnectionManager;
 import org.slf4j.Logger;
@@ -44,11 +44,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TimeZone;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
@@ -72,9 +74,30 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
     private static final String TRIGGER_STATE = "TRIGGER_STATE";
     private static final String TRIGGER_TYPE = "TRIGGER_TYPE";
+    private static final String NEXT_FIRE_TIME = "NEXT_FIRE_TIME";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final String JOB_NAME = "JOB_NAME";
+    private static final String JOB_GROUP = "JOB_GROUP";
+    private static final String UI_DEFINED_COLUMN = "UI_DEFINED";
+    private static final String REPEAT_COUNT = "REPEAT_COUNT";
+    private static final String REPEAT_INTERVAL = "REPEAT_INTERVAL";
+    private static final String TIMES_TRIGGERED = "TIMES_TRIGGERED";
+    private static final String CRON_EXPRESSION = "CRON_EXPRESSION";
+    private static final String STR_PROP_1 = "STR_PROP_1";
+    private static final String STR_PROP_2 = "STR_PROP_2";
+    private static final String INT_PROP_1 = "INT_PROP_1";
+    private static final String INT_PROP_2 = "INT_PROP_2";
+    private static final String BOOL_PROP_1 = "BOOL_PROP_1";
+    private static final String BOOL_PROP_2 = "BOOL_PROP_2";
+    private static final String SIMPLE = "SIMPLE";
+    private static final String CAL_INT = "CAL_INT";
+    private static final String PAUSED_BLOCKED = "PAUSED_BLOCKED";
     private static final String WAITING = "WAITING";
     private static final String TRIGGERS = "TRIGGERS";
     private static final String JOB_DETAILS = "JOB_DETAILS";
+    private static final String SIMPLE_TRIGGERS = "SIMPLE_TRIGGERS";
+    private static final String CRON_TRIGGERS = "CRON_TRIGGERS";
+    private static final String SIMPROP_TRIGGERS = "SIMPROP_TRIGGERS";
     private static final String JOB_DATA = "JOB_DATA";
     private static final String OR = " OR ";
     private static final String AND = " AND ";
@@ -87,6 +110,9 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     @Autowired
     private MotechSchedulerFactoryBean motechSchedulerFactoryBean;
 
+    @Autowired
+    private UiDefinedFlagWriter uiDefinedFlagWriter;
+
     @PostConstruct
     public void init() {
         scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
@@ -94,77 +120,63 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
 
     @Override
     public int countJobs(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
-        String query = buildJobsCountSqlQuery(jobsSearchSettings);
-        int rowCount;
         try {
-            rowCount = executeCountQuery(query);
+            String query = buildJobsCountSqlQuery(jobsSearchSettings);
             LOGGER.debug("Executing {}", query);
-            return rowCount;
-        } catch (SQLException e) {
+            return executeCountQuery(query);
+        } catch (SQLException | SchedulerException e) {
             throw new MotechSchedulerJobRetrievalException("Jobs counting failed.", e);
         }
     }
 
-    private String getQuery(JobsSearchSettings jobsSearchSettings){
+    private String getQuery(JobsSearchSettings jobsSearchSettings) throws SchedulerException {
         String query;
         if (isBlank(jobsSearchSettings.getName()) &&  isBlank(jobsSearchSettings.getActivity()) && isBlank(jobsSearchSettings.getStatus()) && isBlank(jobsSearchSettings.getTimeFrom()) && isBlank(jobsSearchSettings.getTimeTo())) { //NO CHECKSTYLE BooleanExpressionComplexity
-            query = buildJobsAllSqlQuery();
+            query = buildJobsBasicInfoSqlQuery(jobsSearchSettings, false);
         } else if (isBlank(jobsSearchSettings.getActivity()) || isBlank(jobsSearchSettings.getStatus())) {
             query = null;
         } else {
-            query = buildJobsBasicInfoSqlQuery(jobsSearchSettings);
+            query = buildJobsBasicInfoSqlQuery(jobsSearchSettings, true);
         }
         return query;
     }
-    
+
     @Override
     public List<JobBasicInfo> getScheduledJobsBasicInfo(JobsSearchSettings jobsSearchSettings) throws MotechSchedulerJobRetrievalException {
         List<JobBasicInfo> jobBasicInfos = new LinkedList<>();
-        String query = getQuery(jobsSearchSettings);
-        if(query == null) {
-            return jobBasicInfos;
-        }
 
-        LOGGER.debug("Executing {}", query);
+        try {
+            String query = getQuery(jobsSearchSettings);
+            if (query == null) {
+                return jobBasicInfos;
+            }
 
-        List<String> columnNames = new LinkedList<>();
-        columnNames.add(TRIGGER_NAME);
-        columnNames.add(TRIGGER_GROUP);
-        columnNames.add(JOB_DATA);
-        List<List<Object>> objects;
+            LOGGER.debug("Executing {}", query);
 
-        try {
-            objects = executeQuery(query, columnNames);
-
-            for (List<Object> row : objects) {
-                JobKey jobKey = new JobKey(row.get(0).toString(), row.get(1).toString());
-                Trigger trigger = scheduler.getTriggersOfJob(jobKey).get(0);
-                String jobName = jobKey.getName();
-                String jobGroup = jobKey.getGroup();
-                String jobType = getJobType(jobKey);
-                String activity = getJobActivity(trigger);
-                String info = getJobInfo(trigger, jobType);
-                String status = getJobStatus(trigger.getKey());
-                String startDate = getStartDate(trigger);
-                String nextFireDate = "";
-                if (trigger.getNextFireTime() != null) {
-                    nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getNextFireTime().getTime());
+            Map<JobKey, Boolean> resolvedUiDefined = new HashMap<>();
+
+            try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    TriggerRow row = new TriggerRow(rs);
+                    JobKey jobKey = new JobKey(row.name, row.group);
+
+                    boolean uiDefined;
+                    if (row.uiDefined != null) {
+                        uiDefined = row.uiDefined;
+                    } else {
+                        // jobs whose flag was not written when they were stored, resolved only once
+                        uiDefined = row.jobData != null && getUiDefined(row.jobData);
+                        resolvedUiDefined.put(jobKey, uiDefined);
+                    }
+
+                    jobBasicInfos.add(toJobBasicInfo(jobKey, row, uiDefined));
                 }
-                String endDate = getEndDate(trigger, jobType);
-                boolean uiDefined = getUiDefined((byte[]) row.get(2));
-
-                jobBasicInfos.add(new JobBasicInfo(
-                        activity,
-                        status,
-                        jobName,
-                        jobGroup,
-                        startDate,
-                        nextFireDate,
-                        endDate,
-                        jobType,
-                        info,
-                        uiDefined
-                ));
+            }
+
+            if (!resolvedUiDefined.isEmpty()) {
+                storeUiDefined(resolvedUiDefined);
             }
 
             return jobBasicInfos;
@@ -173,6 +185,27 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
+    private JobBasicInfo toJobBasicInfo(JobKey jobKey, TriggerRow row, boolean uiDefined) throws SchedulerException {
+        String jobType = getJobType(jobKey);
+        String nextFireDate = "";
+        if (row.nextFireTime != null) {
+            nextFireDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(row.nextFireTime.getTime());
+        }
+
+        return new JobBasicInfo(
+                getJobActivity(row),
+                getJobStatus(row.state),
+                jobKey.getName(),
+                jobKey.getGroup(),
+                getStartDate(row),
+                nextFireDate,
+                getEndDate(row, jobType),
+                jobType,
+                getJobInfo(jobKey, row, jobType),
+                uiDefined
+        );
+    }
+
     @Override
     public JobDetailedInfo getScheduledJobDetailedInfo(JobBasicInfo jobBasicInfo) throws MotechSchedulerJobRetrievalException {
         JobDetailedInfo jobDetailedInfo = new JobDetailedInfo();
@@ -212,26 +245,6 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private List<List<Object>> executeQuery(String query, List<String> columns) throws SQLException {
-        List<List<Object>> rows = new LinkedList<>();
-
-        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
-                Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(query);
-
-            while (rs.next()) {
-                List<Object> row = new LinkedList<>();
-                if (columns != null) {
-                    for (String name : columns) {
-                        row.add(rs.getObject(name));
-                    }
-                }
-                rows.add(row);
-            }
-        }
-        return rows;
-    }
-
     private int executeCountQuery(String query) throws SQLException {
         int rowConut = 0;
         try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
@@ -243,6 +256,15 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return rowConut;
     }
 
+    private void storeUiDefined(Map<JobKey, Boolean> uiDefined) {
+        try {
+            uiDefinedFlagWriter.writeUnresolved(scheduler.getSchedulerName(), uiDefined);
+        } catch (SchedulerException e) {
+            // the flags will be resolved again next time
+            LOGGER.warn("Unable to store the UI defined flags of {} jobs", uiDefined.size(), e);
+        }
+    }
+
     private void checkAndAddElement(StringBuilder sb, String element, boolean condition) {
         if (condition) {
             sb.append(element);
@@ -257,7 +279,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         if (StringUtils.isNotBlank(jobsSearchSettings.getTimeFrom())) {
             dateFrom = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeFrom());
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" >= ").append(dateFrom.getMillis());
+            dateRangeSb.append(triggerColumn(START_TIME)).append(" >= ").append(dateFrom.getMillis());
             addAnd = true;
         }
 
@@ -265,7 +287,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             dateTo = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN)
                     .parseDateTime(jobsSearchSettings.getTimeTo());
             checkAndAddElement(dateRangeSb, AND, addAnd);
-            dateRangeSb.append(getCorrectNameRepresentation(START_TIME)).append(" <= ").append(dateTo.getMillis());
+            dateRangeSb.append(triggerColumn(START_TIME)).append(" <= ").append(dateTo.getMillis());
         }
         return dateRangeSb.toString();
     }
@@ -279,16 +301,16 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
                 for (String element : activityElements) {
                     checkAndAddElement(activitySb, OR, addOr);
                     if (JobBasicInfo.ACTIVITY_NOTSTARTED.equals(element)) {
-                        activitySb.append(getCorrectNameRepresentation(START_TIME)).append(" > ").append(DateTime.now().getMillis());
+                        activitySb.append(triggerColumn(START_TIME)).append(" > ").append(DateTime.now().getMillis());
                     } else if (JobBasicInfo.ACTIVITY_FINISHED.equals(element)) {
-                        activitySb.append(getCorrectNameRepresentation(END_TIME)).append(" < ").append(DateTime.now().getMillis())
-                                .append(AND).append(getCorrectNameRepresentation(END_TIME)).append(" != 0");
+                        activitySb.append(triggerColumn(END_TIME)).append(" < ").append(DateTime.now().getMillis())
+                                .append(AND).append(triggerColumn(END_TIME)).append(" != 0");
                     } else {
-                        activitySb.append(" (").append(getCorrectNameRepresentation(START_TIME)).append(" <= ")
+                        activitySb.append(" (").append(triggerColumn(START_TIME)).append(" <= ")
                                 .append(DateTime.now().getMillis()).append(" AND (")
-                                .append(getCorrectNameRepresentation(END_TIME)).append(" >= ")
+                                .append(triggerColumn(END_TIME)).append(" >= ")
                                 .append(DateTime.now().getMillis()).append(OR)
-                                .append(getCorrectNameRepresentation(END_TIME)).append(" = 0))");
+                                .append(triggerColumn(END_TIME)).append(" = 0))");
                     }
                     addOr = true;
                 }
@@ -305,7 +327,7 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
             if (statusElements.length < 4) {
                 for (String element : statusElements) {
                     checkAndAddElement(statusSb, OR, addOr);
-                    statusSb.append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ");
+                    statusSb.append(triggerColumn(TRIGGER_STATE)).append(" = ");
                     if (Trigger.TriggerState.ERROR.toString().equals(element)) {
                         statusSb.append("\'").append(Trigger.TriggerState.ERROR.toString()).append("\'");
                     } else if (Trigger.TriggerState.BLOCKED.toString().equals(element)) {
@@ -314,9 +336,9 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
                         statusSb.append("\'").append(Trigger.TriggerState.PAUSED.toString()).append("\'");
                     } else {
                         statusSb.append("\'").append(Trigger.TriggerState.NORMAL.toString()).append("\'")
-                            .append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ")
+                            .append(OR).append(triggerColumn(TRIGGER_STATE)).append(" = ")
                             .append("\'").append(Trigger.TriggerState.COMPLETE.toString()).append("\'")
-                            .append(OR).append(getCorrectNameRepresentation(TRIGGER_STATE)).append(" = ")
+                            .append(OR).append(triggerColumn(TRIGGER_STATE)).append(" = ")
                             .append("\'").append(WAITING).append("\'");
                     }
                     addOr = true;
@@ -342,8 +364,8 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
         StringBuilder nameSb = new StringBuilder();
         if (isNotBlank(jobsSearchSettings.getName())) {
-            nameSb.append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ").append("\'%")
-                    .append(jobsSearchSettings.getName()).append("%\'");
+            nameSb.append(triggerColumn(TRIGGER_NAME)).append(" LIKE ").append("\'%")
+                    .append(escapeSql(jobsSearchSettings.getName())).append("%\'");
             filters.add(nameSb.toString());
         }
 
@@ -354,60 +376,108 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return sqlProperties.get("org.quartz.dataSource.motechDS.driver").equals(Drivers.MYSQL_DRIVER) ? name : "\"" + name.toLowerCase() + "\"";
     }
 
-    private String buildWhereCondition(JobsSearchSettings jobsSearchSettings) {
-        List<String> filters = buildFilters(jobsSearchSettings);
+    private String triggerColumn(String name) {
+        return "A." + getCorrectNameRepresentation(name);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        boolean addAnd = false;
-        if (filters.size() > 0) {
-            sb.append(" WHERE ");
-        }
+    private String table(String name) {
+        return getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + name);
+    }
+
+    private String escapeSql(String value) {
+        return StringUtils.replace(value, "\'", "\'\'");
+    }
+
+    private String buildWhereCondition(JobsSearchSettings jobsSearchSettings, boolean filtered) throws SchedulerException {
+        List<String> filters = filtered ? buildFilters(jobsSearchSettings) : new ArrayList<String>();
+
+        StringBuilder sb = new StringBuilder(" WHERE ")
+                .append(triggerColumn(SCHED_NAME)).append(" = \'").append(escapeSql(scheduler.getSchedulerName())).append("\'");
         for (String filter : filters) {
             if (filter.length() > 0) {
-                checkAndAddElement(sb, AND, addAnd);
-                sb.append("(").append(filter).append(")");
-                addAnd = true;
+                sb.append(AND).append("(").append(filter).append(")");
             }
         }
         return sb.toString();
     }
 
-    private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings) {
-
-        StringBuilder sb = new StringBuilder("SELECT A.TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA FROM ")
-                .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
-                .append(" AS A JOIN ")
-                .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + JOB_DETAILS))
-                .append(" AS B")
-                .append(" ON A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP")
-                .append(buildWhereCondition(jobsSearchSettings));
-
-        if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
-            sb.append(" ORDER BY ")
-                    .append("A.")
-                    .append(getCorrectNameRepresentation(getSortColumn(jobsSearchSettings.getSortColumn())))
-                    .append(" ")
-                    .append(jobsSearchSettings.getSortDirection().toUpperCase());
-        }
-        if (jobsSearchSettings.getRows() != null && jobsSearchSettings.getPage() != null) {
-            int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
-            sb.append(" LIMIT ").append(jobsSearchSettings.getRows()).append(" OFFSET ").append(offset);
+    private String buildJoin(String table, String alias) {
+        StringBuilder sb = new StringBuilder(" LEFT JOIN ").append(table(table)).append(" AS ").append(alias).append(" ON ");
+        boolean addAnd = false;
+        for (String column : new String[] {SCHED_NAME, TRIGGER_NAME, TRIGGER_GROUP}) {
+            checkAndAddElement(sb, AND, addAnd);
+            sb.append(alias).append('.').append(getCorrectNameRepresentation(column)).append(" = ").append(triggerColumn(column));
+            addAnd = true;
         }
-
         return sb.toString();
     }
 
-    private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings) {
-        StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM ")
-            .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
-            .append(buildWhereCondition(jobsSearchSettings));
+    private String buildJobsBasicInfoSqlQuery(JobsSearchSettings jobsSearchSettings, boolean filtered) throws SchedulerException {
+        String uiDefined = "B." + getCorrectNameRepresentation(UI_DEFINED_COLUMN);
+
+        // everything needed to describe a job is read in a single query, the job data is only read for jobs
+        // which do not have the UI defined flag set yet
+        StringBuilder sb = new StringBuilder("SELECT ")
+                .append(triggerColumn(TRIGGER_NAME)).append(", ")
+                .append(triggerColumn(TRIGGER_GROUP)).append(", ")
+                .append(triggerColumn(TRIGGER_STATE)).append(", ")
+                .append(triggerColumn(TRIGGER_TYPE)).append(", ")
+                .append(triggerColumn(START_TIME)).append(", ")
+                .append(triggerColumn(END_TIME)).append(", ")
+                .append(triggerColumn(NEXT_FIRE_TIME)).append(", ")
+                .append("S.").append(getCorrectNameRepresentation(REPEAT_COUNT)).append(", ")
+                .append("S.").append(getCorrectNameRepresentation(REPEAT_INTERVAL)).append(", ")
+                .append("S.").append(getCorrectNameRepresentation(TIMES_TRIGGERED)).append(", ")
+                .append("C.").append(getCorrectNameRepresentation(CRON_EXPRESSION)).append(", ")
+                .append("P.").append(getCorrectNameRepresentation(STR_PROP_1)).append(", ")
+                .append("P.").append(getCorrectNameRepresentation(STR_PROP_2)).append(", ")
+                .append("P.").append(getCorrectNameRepresentation(INT_PROP_1)).append(", ")
+                .append("P.").append(getCorrectNameRepresentation(INT_PROP_2)).append(", ")
+                .append("P.").append(getCorrectNameRepresentation(BOOL_PROP_1)).append(", ")
+                .append("P.").append(getCorrectNameRepresentation(BOOL_PROP_2)).append(", ")
+                .append(uiDefined).append(", ")
+                .append("CASE WHEN ").append(uiDefined).append(" IS NULL THEN B.")
+                .append(getCorrectNameRepresentation(JOB_DATA)).append(" END")
+                .append(" FROM ").append(table(TRIGGERS)).append(" AS A JOIN ").append(table(JOB_DETAILS)).append(" AS B")
+                .append(" ON B.").append(getCorrectNameRepresentation(SCHED_NAME)).append(" = ").append(triggerColumn(SCHED_NAME))
+                .append(AND).append("B.").append(getCorrectNameRepresentation(JOB_NAME)).append(" = ").append(triggerColumn(JOB_NAME))
+                .append(AND).append("B.").append(getCorrectNameRepresentation(JOB_GROUP)).append(" = ").append(triggerColumn(JOB_GROUP))
+                .append(buildJoin(SIMPLE_TRIGGERS, "S"))
+                .append(buildJoin(CRON_TRIGGERS, "C"))
+                .append(buildJoin(SIMPROP_TRIGGERS, "P"))
+                .append(buildWhereCondition(jobsSearchSettings, filtered));
+
+        String direction = "desc".equalsIgnoreCase(jobsSearchSettings.getSortDirection()) ? "DESC" : "ASC";
+
+        if (isNotBlank(jobsSearchSettings.getAfterName())) {
+            // keyset pagination, the index on the trigger names is used instead of skipping the previous pages
+            sb.append(AND).append(triggerColumn(TRIGGER_NAME)).append("DESC".equals(direction) ? " < " : " > ")
+                    .append("\'").append(escapeSql(jobsSearchSettings.getAfterName())).append("\'")
+                    .append(" ORDER BY ").append(triggerColumn(TRIGGER_NAME)).append(" ").append(direction);
+        } else if (isNotBlank(jobsSearchSettings.getSortColumn()) && isNotBlank(jobsSearchSettings.getSortDirection())) {
+            String sortColumn = getSortColumn(jobsSearchSettings.getSortColumn());
+            sb.append(" ORDER BY ").append(triggerColumn(sortColumn)).append(" ").append(direction);
+            if (!TRIGGER_NAME.equals(sortColumn)) {
+                // keeps the order of the pages stable
+                sb.append(", ").append(triggerColumn(TRIGGER_NAME));
+            }
+        }
+
+        if (jobsSearchSettings.getRows() != null) {
+            sb.append(" LIMIT ").append(jobsSearchSettings.getRows());
+            if (isBlank(jobsSearchSettings.getAfterName()) && jobsSearchSettings.getPage() != null) {
+                int offset = (jobsSearchSettings.getPage() == 0) ? 0 : (jobsSearchSettings.getPage() - 1) * jobsSearchSettings.getRows();
+                sb.append(" OFFSET ").append(offset);
+            }
+        }
+
         return sb.toString();
     }
 
-    private String buildJobsAllSqlQuery() {
-        StringBuilder sb = new StringBuilder("SELECT A. TRIGGER_NAME, A.TRIGGER_GROUP, B.JOB_DATA FROM ")
-            .append(getCorrectNameRepresentation(sqlProperties.get(TABLE_PREFIX).toString() + TRIGGERS))
-            .append(" AS A JOIN QRTZ_JOB_DETAILS AS B ON A.TRIGGER_NAME = B.JOB_NAME AND A.TRIGGER_GROUP = B.JOB_GROUP");
+    private String buildJobsCountSqlQuery(JobsSearchSettings jobsSearchSettings) throws SchedulerException {
+        StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM ")
+            .append(table(TRIGGERS)).append(" AS A")
+            .append(buildWhereCondition(jobsSearchSettings, true));
         return sb.toString();
     }
 
@@ -429,40 +499,36 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         return sortColumn;
     }
 
-    private String getJobInfo(Trigger trigger, String jobType) throws SchedulerException {
+    private String getJobInfo(JobKey jobKey, TriggerRow row, String jobType) throws SchedulerException {
         if (jobType.equals(JobBasicInfo.JOBTYPE_REPEATING)) {
             Integer timesTriggered = 0;
             String repeatMaxCount = "-";
 
-            if (trigger instanceof CalendarIntervalTrigger) {
-                CalendarIntervalTrigger calendarIntervalTrigger = (CalendarIntervalTrigger) trigger;
-
-                timesTriggered = calendarIntervalTrigger.getTimesTriggered();
-            } else if (trigger instanceof SimpleTrigger) {
-                SimpleTrigger simpleTrigger = (SimpleTrigger) trigger;
-
-                timesTriggered = simpleTrigger.getTimesTriggered();
+            if (CAL_INT.equals(row.type)) {
+                timesTriggered = row.intProp2;
+            } else if (SIMPLE.equals(row.type)) {
+                timesTriggered = (int) row.timesTriggered;
             }
 
-            if (trigger.getEndTime() != null) {
+            if (row.endTime != null) {
+                OperableTrigger trigger = row.toTrigger();
+                if (trigger == null) {
+                    trigger = (OperableTrigger) scheduler.getTriggersOfJob(jobKey).get(0);
+                }
                 repeatMaxCount = Integer.toString(TriggerUtils.computeFireTimesBetween(
-                        (OperableTrigger) trigger, null, trigger.getStartTime(), trigger.getEndTime()
+                        trigger, null, row.startTime, row.endTime
                 ).size() + timesTriggered);
             }
 
             return String.format("%d/%s", timesTriggered, repeatMaxCount);
         } else if (jobType.equals(JobBasicInfo.JOBTYPE_CRON)) {
-            CronScheduleBuilder cronScheduleBuilder = (CronScheduleBuilder) trigger.getScheduleBuilder();
-
-            CronTrigger cronTrigger = (CronTrigger) cronScheduleBuilder.build();
-
-            return cronTrigger.getCronExpression();
+            return row.cronExpression;
         } else {
             return "-";
         }
     }
 
-    private String getJobType(JobKey jobKey) throws SchedulerException {
+    private String getJobType(JobKey jobKey) {
         if (jobKey.getName().endsWith(RunOnceJobId.SUFFIX_RUNONCEJOBID)) {
             return JobBasicInfo.JOBTYPE_RUNONCE;
         } else if (jobKey.getName().endsWith(RepeatingJobId.SUFFIX_REPEATJOBID)) {
@@ -474,48 +540,42 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
         }
     }
 
-    private String getStartDate(Trigger trigger) throws SchedulerException {
-        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(trigger.getStartTime().getTime());
+    private String getStartDate(TriggerRow row) {
+        return DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(row.startTime.getTime());
     }
 
-    private String getEndDate(Trigger trigger, String jobType) throws SchedulerException {
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
-        String startDate = getStartDate(trigger);
+    private String getEndDate(TriggerRow row, String jobType) {
         String endDate;
 
-        if (!endDateTime.isAfterNow()) {
+        if (row.endTime == null || !new DateTime(row.endTime).isAfterNow()) {
             if (jobType.equals(JobBasicInfo.JOBTYPE_RUNONCE)) {
-                endDate = startDate;
+                endDate = getStartDate(row);
             } else {
                 endDate = "-";
             }
         } else {
-            endDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(endDateTime);
+            endDate = DateTimeFormat.forPattern(DATE_FORMAT_PATTERN).print(row.endTime.getTime());
         }
 
         return endDate;
     }
 
-    private String getJobActivity(Trigger trigger) throws SchedulerException {
-        DateTime startDateTime = new DateTime(trigger.getStartTime());
-        DateTime endDateTime = new DateTime(trigger.getEndTime());
-
-        if (startDateTime.isAfterNow()) {
+    private String getJobActivity(TriggerRow row) {
+        if (new DateTime(row.startTime).isAfterNow()) {
             return JobBasicInfo.ACTIVITY_NOTSTARTED;
-        } else if (endDateTime.isBeforeNow()) {
+        } else if (row.endTime != null && new DateTime(row.endTime).isBeforeNow()) {
             return  JobBasicInfo.ACTIVITY_FINISHED;
         } else {
             return JobBasicInfo.ACTIVITY_ACTIVE;
         }
     }
 
-    private String getJobStatus(TriggerKey triggerKey) throws SchedulerException {
-        Trigger.TriggerState currentTriggerState = scheduler.getTriggerState(triggerKey);
-        if (currentTriggerState == Trigger.TriggerState.ERROR) {
+    private String getJobStatus(String triggerState) {
+        if (Trigger.TriggerState.ERROR.toString().equals(triggerState)) {
             return JobBasicInfo.STATUS_ERROR;
-        } else if (currentTriggerState == Trigger.TriggerState.BLOCKED) {
+        } else if (Trigger.TriggerState.BLOCKED.toString().equals(triggerState)) {
             return JobBasicInfo.STATUS_BLOCKED;
-        } else if (currentTriggerState == Trigger.TriggerState.PAUSED) {
+        } else if (Trigger.TriggerState.PAUSED.toString().equals(triggerState) || PAUSED_BLOCKED.equals(triggerState)) {
             return JobBasicInfo.STATUS_PAUSED;
         } else {
             return JobBasicInfo.STATUS_OK;
@@ -533,4 +593,93 @@ public class MotechSchedulerDatabaseServiceImpl implements MotechSchedulerDataba
     private boolean isUiDefined(JobDataMap jobDataMap) {
         return jobDataMap.get(SchedulerConstants.EVENT_METADATA) != null &&  (Boolean) ((Map<String, Object>) jobDataMap.get(SchedulerConstants.EVENT_METADATA)).get(UI_DEFINED);
     }
-}
\ No newline at end of file
+
+    /**
+     * A row of the jobs listing query.
+     */
+    private static final class TriggerRow {
+
+        private final String name;
+        private final String group;
+        private final String state;
+        private final String type;
+        private final Date startTime;
+        private final Date endTime;
+        private final Date nextFireTime;
+        private final long repeatCount;
+        private final long repeatInterval;
+        private final long timesTriggered;
+        private final String cronExpression;
+        private final String strProp1;
+        private final String strProp2;
+        private final int intProp1;
+        private final int intProp2;
+        private final boolean boolProp1;
+        private final boolean boolProp2;
+        private final Boolean uiDefined;
+        private final byte[] jobData;
+
+        private TriggerRow(ResultSet rs) throws SQLException {
+            int column = 0;
+            name = rs.getString(++column);
+            group = rs.getString(++column);
+            state = rs.getString(++column);
+            type = rs.getString(++column);
+            startTime = new Date(rs.getLong(++column));
+            long end = rs.getLong(++column);
+            endTime = end > 0 ? new Date(end) : null;
+            long next = rs.getLong(++column);
+            nextFireTime = next > 0 ? new Date(next) : null;
+            repeatCount = rs.getLong(++column);
+            repeatInterval = rs.getLong(++column);
+            timesTriggered = rs.getLong(++column);
+            cronExpression = rs.getString(++column);
+            strProp1 = rs.getString(++column);
+            strProp2 = rs.getString(++column);
+            intProp1 = rs.getInt(++column);
+            intProp2 = rs.getInt(++column);
+            boolProp1 = rs.getBoolean(++column);
+            boolProp2 = rs.getBoolean(++column);
+            boolean flag = rs.getBoolean(++column);
+            uiDefined = rs.wasNull() ? null : flag;
+            jobData = rs.getBytes(++column);
+        }
+
+        /**
+         * Builds the trigger from the stored properties, so that its fire times can be computed without loading it
+         * from the job store.
+         *
+         * @return the trigger, or null if it is not a simple or a calendar interval trigger
+         */
+        private OperableTrigger toTrigger() {
+            if (SIMPLE.equals(type)) {
+                SimpleTriggerImpl trigger = new SimpleTriggerImpl();
+                setCommonProperties(trigger);
+                trigger.setRepeatCount((int) repeatCount);
+                trigger.setRepeatInterval(repeatInterval);
+                trigger.setTimesTriggered((int) timesTriggered);
+                return trigger;
+            } else if (CAL_INT.equals(type)) {
+                CalendarIntervalTriggerImpl trigger = new CalendarIntervalTriggerImpl();
+                setCommonProperties(trigger);
+                trigger.setRepeatIntervalUnit(DateBuilder.IntervalUnit.valueOf(strProp1));
+                trigger.setRepeatInterval(intProp1);
+                trigger.setTimesTriggered(intProp2);
+                if (strProp2 != null) {
+                    trigger.setTimeZone(TimeZone.getTimeZone(strProp2));
+                }
+                trigger.setPreserveHourOfDayAcrossDaylightSavings(boolProp1);
+                trigger.setSkipDayIfHourDoesNotExist(boolProp2);
+                return trigger;
+            }
+            return null;
+        }
+
+        private void setCommonProperties(AbstractTrigger<?> trigger) {
+            trigger.setKey(new TriggerKey(name, group));
+            trigger.setStartTime(startTime);
+            trigger.setEndTime(endTime);
+            trigger.setNextFireTime(nextFireTime);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.scheduler.contract.CronJobId;
+import org.motechproject.scheduler.exception.MotechSchedulerException;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.MotechSchedulerForecastService;
+import org.motechproject.scheduler.trigger.PeriodIntervalTrigger;
+import org.quartz.CronTrigger;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.TriggerUtils;
+import org.quartz.impl.calendar.BaseCalendar;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.spi.OperableTrigger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl.JOB_GROUP_NAME;
+
+/**
+ * Forecasts the fire times of the scheduled jobs. The triggers are found through the {@link TriggerNameIndex} or, if
+ * the index is disabled because the job store is clustered, by the {@link TriggerKeyFinder} in the job store, and
+ * the fire times of simple, cron and period interval triggers are computed directly from their schedules, without
+ * cloning and firing a copy of every trigger, as {@link TriggerUtils#computeFireTimesBetween} does.
+ */
+@Service("schedulerForecastService")
+public class MotechSchedulerForecastServiceImpl implements MotechSchedulerForecastService {
+
+    private Scheduler scheduler;
+
+    private TriggerNameIndex triggerNameIndex;
+
+    private TriggerKeyFinder triggerKeyFinder;
+
+    @Autowired
+    public MotechSchedulerForecastServiceImpl(MotechSchedulerFactoryBean motechSchedulerFactoryBean,
+                                              TriggerNameIndex triggerNameIndex) {
+        this.scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+        this.triggerNameIndex = triggerNameIndex;
+    }
+
+    @Autowired(required = false)
+    public void setTriggerKeyFinder(TriggerKeyFinder triggerKeyFinder) {
+        this.triggerKeyFinder = triggerKeyFinder;
+    }
+
+    @Override
+    public List<DateTime> getFireTimes(String subject, String externalJobIdPrefix, DateTime startDate, DateTime endDate) {
+        final List<Date> fireTimes = new ArrayList<>();
+
+        forEachFireTime(subject, externalJobIdPrefix, startDate, endDate, new FireTimeCollector() {
+            @Override
+            public void collect(String jobId, long fireTime) {
+                fireTimes.add(new Date(fireTime));
+            }
+        });
+
+        Collections.sort(fireTimes);
+        return DateUtil.datesToDateTimes(fireTimes);
+    }
+
+    @Override
+    public Map<String, List<DateTime>> getFireTimesByJob(String subject, String externalJobIdPrefix,
+                                                         DateTime startDate, DateTime endDate) {
+        final Map<String, List<DateTime>> fireTimes = new LinkedHashMap<>();
+
+        forEachFireTime(subject, externalJobIdPrefix, startDate, endDate, new FireTimeCollector() {
+            @Override
+            public void collect(String jobId, long fireTime) {
+                List<DateTime> jobFireTimes = fireTimes.get(jobId);
+                if (jobFireTimes == null) {
+                    jobFireTimes = new ArrayList<>();
+                    fireTimes.put(jobId, jobFireTimes);
+                }
+                jobFireTimes.add(DateUtil.newDateTime(new Date(fireTime)));
+            }
+        });
+
+        return fireTimes;
+    }
+
+    @Override
+    public SortedMap<DateTime, Integer> getFireTimeHistogram(String subject, String externalJobIdPrefix,
+                                                             DateTime startDate, DateTime endDate,
+                                                             Duration bucketSize) {
+        if (bucketSize == null || bucketSize.getMillis() <= 0) {
+            throw new IllegalArgumentException("Bucket size must be positive");
+        }
+
+        final long start = startDate.getMillis();
+        final long bucketMillis = bucketSize.getMillis();
+        final int[] counts = new int[(int) ((endDate.getMillis() - start) / bucketMillis) + 1];
+
+        forEachFireTime(subject, externalJobIdPrefix, startDate, endDate, new FireTimeCollector() {
+            @Override
+            public void collect(String jobId, long fireTime) {
+                counts[(int) ((fireTime - start) / bucketMillis)]++;
+            }
+        });
+
+        SortedMap<DateTime, Integer> histogram = new TreeMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            histogram.put(startDate.plus(i * bucketMillis), counts[i]);
+        }
+        return histogram;
+    }
+
+    private void forEachFireTime(String subject, String externalJobIdPrefix, DateTime startDate, DateTime endDate,
+                                 FireTimeCollector collector) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("End date cannot be before start date");
+        }
+
+        String prefix = new CronJobId(subject, externalJobIdPrefix).value();
+        long from = startDate.getMillis();
+        long to = endDate.getMillis();
+
+        try {
+            for (TriggerKey triggerKey : findTriggerKeys(prefix)) {
+                Trigger trigger = scheduler.getTrigger(triggerKey);
+                if (trigger == null) {
+                    triggerNameIndex.remove(triggerKey);
+                } else {
+                    computeFireTimes(trigger, from, to, collector);
+                }
+            }
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(String.format(
+                    "Can not forecast job fire times given subject and externalJobIdPrefix for dates : %s %s %s %s %s",
+                    subject, externalJobIdPrefix, startDate, endDate, e.getMessage()), e);
+        }
+    }
+
+    private List<TriggerKey> findTriggerKeys(String prefix) throws SchedulerException {
+        if (triggerNameIndex.isEnabled()) {
+            return triggerNameIndex.findByNamePrefix(prefix);
+        }
+        if (triggerKeyFinder != null) {
+            return triggerKeyFinder.findByNamePrefix(scheduler.getSchedulerName(), JOB_GROUP_NAME, prefix);
+        }
+
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        for (TriggerKey triggerKey : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(JOB_GROUP_NAME))) {
+            if (triggerKey.getName().startsWith(prefix)) {
+                triggerKeys.add(triggerKey);
+            }
+        }
+        return triggerKeys;
+    }
+
+    private void computeFireTimes(Trigger trigger, long from, long to, FireTimeCollector collector) {
+        Date nextFireTime = trigger.getNextFireTime();
+        if (nextFireTime == null || nextFireTime.getTime() > to) {
+            return;
+        }
+
+        String jobId = trigger.getKey().getName();
+
+        if (trigger instanceof SimpleTrigger) {
+            computeSimpleFireTimes((SimpleTrigger) trigger, from, to, collector);
+        } else if (trigger instanceof CronTrigger || trigger instanceof PeriodIntervalTrigger) {
+            Date fireTime = nextFireTime;
+            if (fireTime.getTime() < from && trigger instanceof CronTrigger) {
+                // cron schedules do not depend on the previous fire, so we can skip straight to the window
+                fireTime = trigger.getFireTimeAfter(new Date(from - 1));
+            }
+            while (fireTime != null && fireTime.getTime() <= to) {
+                if (fireTime.getTime() >= from) {
+                    collector.collect(jobId, fireTime.getTime());
+                }
+                fireTime = trigger.getFireTimeAfter(fireTime);
+            }
+        } else {
+            for (Date fireTime : TriggerUtils.computeFireTimesBetween((OperableTrigger) trigger, new BaseCalendar(),
+                    new Date(from), new Date(to))) {
+                collector.collect(jobId, fireTime.getTime());
+            }
+        }
+    }
+
+    /**
+     * Simple triggers fire at their start time and then every repeat interval, so the fire times within the window
+     * can be computed without stepping through the earlier fires.
+     */
+    private void computeSimpleFireTimes(SimpleTrigger trigger, long from, long to, FireTimeCollector collector) {
+        String jobId = trigger.getKey().getName();
+        long nextFireTime = trigger.getNextFireTime().getTime();
+        long endTime = trigger.getEndTime() == null ? Long.MAX_VALUE : trigger.getEndTime().getTime();
+
+        // the next fire time may lie off the schedule, e.g. after a misfire
+        if (nextFireTime >= from) {
+            collector.collect(jobId, nextFireTime);
+        }
+
+        long interval = trigger.getRepeatInterval();
+        int repeatCount = trigger.getRepeatCount();
+        if (interval <= 0 || repeatCount == 0) {
+            return;
+        }
+
+        long startTime = trigger.getStartTime().getTime();
+        long first = Math.max(from, nextFireTime + 1);
+        long fire = first <= startTime ? 0 : (first - startTime + interval - 1) / interval;
+
+        for (long time = startTime + fire * interval; time <= to && time < endTime; time += interval, fire++) {
+            if (repeatCount != SimpleTrigger.REPEAT_INDEFINITELY && fire > repeatCount) {
+                break;
+            }
+            collector.collect(jobId, time);
+        }
+    }
+
+    private interface FireTimeCollector {
+
+        void collect(String jobId, long fireTime);
+    }
+}
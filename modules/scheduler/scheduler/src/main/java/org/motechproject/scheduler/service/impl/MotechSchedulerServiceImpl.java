@@ -1,6 +1,7 @@
 package org.motechproject.scheduler.service.impl;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.joda.time.DateTime;
 import org.motechproject.commons.date.model.Time;
 import org.motechproject.commons.date.util.DateUtil;
@@ -23,6 +24,7 @@ import org.motechproject.scheduler.contract.SchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
 import org.motechproject.scheduler.service.MotechScheduledJob;
+import org.motechproject.scheduler.service.MotechSchedulerForecastService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.motechproject.scheduler.trigger.PeriodIntervalScheduleBuilder;
 import org.quartz.CalendarIntervalScheduleBuilder;
@@ -50,9 +52,12 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -90,6 +95,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     private static final int MAX_REPEAT_COUNT = 999999;
     private static final int MILLISECOND = 1000;
     private static final String LOG_SUBJECT_EXTERNAL_ID = "subject: %s, externalId: %s";
+    private static final String BATCH_SIZE = "scheduler.batch.size";
+    private static final int DEFAULT_BATCH_SIZE = 500;
 
     private SettingsFacade schedulerSettings;
 
@@ -98,6 +105,12 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     private Map<String, Integer> cronTriggerMisfirePolicies;
     private Map<String, Integer> simpleTriggerMisfirePolicies;
 
+    private TriggerKeyFinder triggerKeyFinder;
+
+    private UiDefinedFlagWriter uiDefinedFlagWriter;
+
+    private MotechSchedulerForecastService schedulerForecastService;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(MotechSchedulerServiceImpl.class);
 
     @Autowired
@@ -107,6 +120,21 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         constructMisfirePoliciesMaps();
     }
 
+    @Autowired(required = false)
+    public void setTriggerKeyFinder(TriggerKeyFinder triggerKeyFinder) {
+        this.triggerKeyFinder = triggerKeyFinder;
+    }
+
+    @Autowired(required = false)
+    public void setUiDefinedFlagWriter(UiDefinedFlagWriter uiDefinedFlagWriter) {
+        this.uiDefinedFlagWriter = uiDefinedFlagWriter;
+    }
+
+    @Autowired(required = false)
+    public void setSchedulerForecastService(MotechSchedulerForecastService schedulerForecastService) {
+        this.schedulerForecastService = schedulerForecastService;
+    }
+
     @Override
     public void scheduleJob(CronSchedulableJob cronSchedulableJob) {
         scheduleCronJob(cronSchedulableJob, false, false);
@@ -137,6 +165,34 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         scheduleJob(job, false);
     }
 
+    @Override
+    public void scheduleJobs(Collection<? extends SchedulableJob> jobs) {
+        assertArgumentNotNull("Jobs", jobs);
+
+        // all the jobs are validated before any of them is stored
+        Map<JobKey, PreparedJob> preparedJobs = new LinkedHashMap<>();
+        for (SchedulableJob job : jobs) {
+            PreparedJob preparedJob = prepareJob(job);
+            JobKey key = preparedJob.getJobDetail().getKey();
+            // the last job with the given ID wins, as if the jobs were scheduled one by one
+            preparedJobs.remove(key);
+            preparedJobs.put(key, preparedJob);
+        }
+
+        int batchSize = getBatchSize();
+        Map<JobDetail, Set<? extends Trigger>> batch = new LinkedHashMap<>();
+        for (PreparedJob preparedJob : preparedJobs.values()) {
+            batch.put(preparedJob.getJobDetail(), Collections.singleton(preparedJob.getTrigger()));
+            if (batch.size() >= batchSize) {
+                scheduleJobs(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            scheduleJobs(batch);
+        }
+    }
+
     @Override
     public void safeScheduleJob(CronSchedulableJob cronSchedulableJob) {
         logObjectIfNotNull(cronSchedulableJob);
@@ -294,14 +350,12 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     public void unscheduleAllJobs(String jobIdPrefix) {
         try {
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Unscheduling jobs with prefix: ", jobIdPrefix);
+                LOGGER.debug("Unscheduling jobs with prefix: {}", jobIdPrefix);
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    unscheduleJob(triggerName);
-                }
+            List<TriggerKey> triggerKeys = findTriggerKeys(jobIdPrefix);
+            int batchSize = getBatchSize();
+            for (int i = 0; i < triggerKeys.size(); i += batchSize) {
+                scheduler.unscheduleJobs(triggerKeys.subList(i, Math.min(i + batchSize, triggerKeys.size())));
             }
         } catch (SchedulerException e) {
             throw new MotechSchedulerException(String.format("Can not unschedule jobs given jobIdPrefix: %s %s",
@@ -353,11 +407,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(format("Safe unscheduling the Jobs given jobIdPrefix: %s", jobIdPrefix));
             }
-            List<TriggerKey> triggerKeys = new ArrayList<>(scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
-            List<String> triggerNames = extractTriggerNames(triggerKeys);
-            for (String triggerName : triggerNames) {
-                if (StringUtils.isNotEmpty(jobIdPrefix) && triggerName.contains(jobIdPrefix)) {
-                    safeUnscheduleJob(triggerName);
+            List<TriggerKey> triggerKeys = findTriggerKeys(jobIdPrefix);
+            int batchSize = getBatchSize();
+            for (int i = 0; i < triggerKeys.size(); i += batchSize) {
+                List<TriggerKey> batch = triggerKeys.subList(i, Math.min(i + batchSize, triggerKeys.size()));
+                try {
+                    scheduler.unscheduleJobs(batch);
+                } catch (SchedulerException e) {
+                    LOGGER.error("Unable to unschedule {} jobs with jobIdPrefix {}", batch.size(), jobIdPrefix, e);
                 }
             }
         } catch (SchedulerException e) {
@@ -469,20 +526,29 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     /*
-     * Loads all triggers and then loops over them to find the applicable trigger using string comparison. This
-     * will work regardless of the jobId being cron or repeating.
+     * Uses the forecast service, which finds the triggers with the given prefix in its index of trigger names. Without
+     * it, loads all triggers and then loops over them to find the applicable ones using string comparison. This will
+     * work regardless of the jobId being cron or repeating.
      */
     @Override
     public List<DateTime> getScheduledJobTimingsWithPrefix(
             String subject, String externalJobIdPrefix, DateTime startDate, DateTime endDate) {
 
+        if (StringUtils.isEmpty(externalJobIdPrefix)) {
+            return new ArrayList<>();
+        }
+
+        if (schedulerForecastService != null) {
+            return schedulerForecastService.getFireTimes(subject, externalJobIdPrefix, startDate, endDate);
+        }
+
         JobId jobId = new CronJobId(subject, externalJobIdPrefix);
         List<Date> messageTimings = new ArrayList<>();
         try {
             List<TriggerKey> triggerKeys = new ArrayList<TriggerKey>(
                     scheduler.getTriggerKeys(GroupMatcher.triggerGroupContains(JOB_GROUP_NAME)));
             for (TriggerKey triggerKey : triggerKeys) {
-                if (StringUtils.isNotEmpty(externalJobIdPrefix) && triggerKey.getName().contains(jobId.value())) {
+                if (triggerKey.getName().startsWith(jobId.value())) {
                     Trigger trigger = scheduler.getTrigger(triggerKey);
                     messageTimings.addAll(TriggerUtils.computeFireTimesBetween(
                             (OperableTrigger) trigger, new BaseCalendar(), DateUtil.toDate(startDate), DateUtil.toDate(endDate)));
@@ -523,6 +589,24 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     private void scheduleCronJob(CronSchedulableJob job, boolean isDayOfWeek, boolean update) {
+        PreparedJob preparedJob = prepareCronJob(job, isDayOfWeek);
+        TriggerKey triggerKey = preparedJob.getTrigger().getKey();
+
+        Trigger existingTrigger;
+        try {
+            existingTrigger = scheduler.getTrigger(triggerKey);
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", triggerKey.getName(), e.getMessage()),
+                    "scheduler.error.cantRescheduleJob", Arrays.asList(triggerKey.getName(), e.getMessage()), e);
+        }
+        if (existingTrigger != null) {
+            unscheduleJob(triggerKey.getName());
+        }
+
+        scheduleJob(preparedJob.getJobDetail(), preparedJob.getTrigger(), update);
+    }
+
+    private PreparedJob prepareCronJob(CronSchedulableJob job, boolean isDayOfWeek) {
         logObjectIfNotNull(job);
 
         validateCronSchedulableJob(job);
@@ -556,17 +640,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .endAt(DateUtil.toDate(job.getEndDate()))
                 .build();
 
-        Trigger existingTrigger;
-        try {
-            existingTrigger = scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME));
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
-                    "scheduler.error.cantRescheduleJob", Arrays.asList(jobId.value(), e.getMessage()), e);
-        }
-        if (existingTrigger != null) {
-            unscheduleJob(jobId.value());
-        }
-
         DateTime now = now();
 
         if (job.isIgnorePastFiresAtStart() && (job.getStartDate() == null || job.getStartDate().isBefore(now))) {
@@ -585,10 +658,26 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                     .build();
         }
 
-        scheduleJob(jobDetail, trigger, update);
+        return new PreparedJob(jobDetail, trigger);
     }
 
     private void scheduleRepeatingJob(RepeatingSchedulableJob job, boolean update) {
+        PreparedJob preparedJob = prepareRepeatingJob(job);
+        TriggerKey triggerKey = preparedJob.getTrigger().getKey();
+
+        try {
+            if (scheduler.getTrigger(triggerKey) != null) {
+                unscheduleJob(triggerKey.getName());
+            }
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", triggerKey.getName(), e.getMessage()),
+                    "scheduler.error.cantRescheduleJob", Arrays.asList(triggerKey.getName(), e.getMessage()), e);
+        }
+
+        scheduleJob(preparedJob.getJobDetail(), preparedJob.getTrigger(), update);
+    }
+
+    private PreparedJob prepareRepeatingJob(RepeatingSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateRepeatingSchedulableJob(job);
@@ -614,15 +703,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         jobDetail.getJobDataMap().put(EVENT_METADATA, createMetadataForMisfireSchedulableJob(job, motechEvent));
 
-        try {
-            if (scheduler.getTrigger(triggerKey(jobId.value(), JOB_GROUP_NAME)) != null) {
-                unscheduleJob(jobId);
-            }
-        } catch (SchedulerException e) {
-            throw new MotechSchedulerException(format("Schedule or reschedule the job: %s.\n%s", jobId, e.getMessage()),
-                    "scheduler.error.cantRescheduleJob", Arrays.asList(jobId.value(), e.getMessage()), e);
-        }
-
         ScheduleBuilder scheduleBuilder;
         if (!job.isUseOriginalFireTimeAfterMisfire()) {
             SimpleScheduleBuilder simpleSchedule = simpleSchedule()
@@ -644,7 +724,7 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(jobStartTime),
                 DateUtil.toDate(jobEndTime), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        return new PreparedJob(jobDetail, trigger);
     }
 
     private Map<String, Object> createMetadataForMisfireSchedulableJob(MisfireSchedulableJob job, MotechEvent event) {
@@ -659,6 +739,11 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
     }
 
     private void scheduleRepeatingPeriodJob(RepeatingPeriodSchedulableJob job, boolean update) {
+        PreparedJob preparedJob = prepareRepeatingPeriodJob(job);
+        scheduleJob(preparedJob.getJobDetail(), preparedJob.getTrigger(), update);
+    }
+
+    private PreparedJob prepareRepeatingPeriodJob(RepeatingPeriodSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateRepeatingPeriodSchedulableJob(job);
@@ -680,10 +765,15 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
 
         Trigger trigger = buildJobDetail(job, DateUtil.toDate(job.getStartDate()),
                 DateUtil.toDate(job.getEndDate()), jobId, jobDetail, scheduleBuilder);
-        scheduleJob(jobDetail, trigger, update);
+        return new PreparedJob(jobDetail, trigger);
     }
 
     private void scheduleRunOnceJob(RunOnceSchedulableJob job, boolean update) {
+        PreparedJob preparedJob = prepareRunOnceJob(job);
+        scheduleJob(preparedJob.getJobDetail(), preparedJob.getTrigger(), update);
+    }
+
+    private PreparedJob prepareRunOnceJob(RunOnceSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateRunOnceSchedulableJob(job);
@@ -713,10 +803,14 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                 .startAt(DateUtil.toDate(job.getStartDate()))
                 .build();
 
-        scheduleJob(jobDetail, trigger, update);
+        return new PreparedJob(jobDetail, trigger);
     }
 
     private void scheduleDayOfWeekJob(DayOfWeekSchedulableJob job, boolean update) {
+        scheduleCronJob(toCronSchedulableJob(job), true, update);
+    }
+
+    private CronSchedulableJob toCronSchedulableJob(DayOfWeekSchedulableJob job) {
         logObjectIfNotNull(job);
 
         validateDayOfWeekSchedulableJob(job);
@@ -729,10 +823,8 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                         .toArray(new Integer[job.getCronDays().size()]));
 
         CronTriggerImpl cronTrigger = (CronTriggerImpl) cronScheduleBuilder.build();
-        CronSchedulableJob cronSchedulableJob = new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
+        return new CronSchedulableJob(motechEvent, cronTrigger.getCronExpression(),
                 job.getStartDate(), job.getEndDate(), job.isIgnorePastFiresAtStart(), job.isUiDefined());
-
-        scheduleCronJob(cronSchedulableJob, true, update);
     }
 
     private void scheduleJob(SchedulableJob job, boolean update) {
@@ -749,6 +841,22 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         }
     }
 
+    private PreparedJob prepareJob(SchedulableJob job) {
+        if (job instanceof CronSchedulableJob) {
+            return prepareCronJob((CronSchedulableJob) job, false);
+        } else if (job instanceof DayOfWeekSchedulableJob) {
+            return prepareCronJob(toCronSchedulableJob((DayOfWeekSchedulableJob) job), true);
+        } else if (job instanceof RepeatingSchedulableJob) {
+            return prepareRepeatingJob((RepeatingSchedulableJob) job);
+        } else if (job instanceof RepeatingPeriodSchedulableJob) {
+            return prepareRepeatingPeriodJob((RepeatingPeriodSchedulableJob) job);
+        } else if (job instanceof RunOnceSchedulableJob) {
+            return prepareRunOnceJob((RunOnceSchedulableJob) job);
+        }
+        throw new IllegalArgumentException(String.format("Unsupported type of SchedulableJob: %s",
+                job == null ? null : job.getClass().getName()));
+    }
+
     private void scheduleJob(JobDetail jobDetail, Trigger trigger) {
         scheduleJob(jobDetail, trigger, false);
     }
@@ -766,6 +874,68 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
                     jobDetail.toString(), trigger.toString(), e.getMessage()),
                     "scheduler.error.schedulerError", Arrays.asList(e.getMessage()), e);
         }
+
+        if (update) {
+            writeUiDefinedFlags(Collections.singleton(jobDetail));
+        }
+    }
+
+    private void scheduleJobs(Map<JobDetail, Set<? extends Trigger>> batch) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Scheduling {} jobs", batch.size());
+        }
+        try {
+            // the job store saves the whole batch in a single transaction
+            scheduler.scheduleJobs(batch, true);
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(String.format("Can not schedule %d jobs:\n%s", batch.size(), e.getMessage()),
+                    "scheduler.error.schedulerError", Arrays.asList(e.getMessage()), e);
+        }
+
+        writeUiDefinedFlags(batch.keySet());
+    }
+
+    /**
+     * Writes the UI defined flags of stored jobs, which the job store keeps unchanged when it replaces the jobs.
+     */
+    private void writeUiDefinedFlags(Collection<JobDetail> jobDetails) {
+        if (uiDefinedFlagWriter == null) {
+            return;
+        }
+
+        Map<JobKey, Boolean> uiDefined = new HashMap<>();
+        for (JobDetail jobDetail : jobDetails) {
+            uiDefined.put(jobDetail.getKey(), isJobUIDefined(jobDetail.getJobDataMap()));
+        }
+
+        try {
+            uiDefinedFlagWriter.write(scheduler.getSchedulerName(), uiDefined);
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException(String.format("Can not store the UI defined flags of %d jobs:\n%s",
+                    uiDefined.size(), e.getMessage()), "scheduler.error.schedulerError", Arrays.asList(e.getMessage()), e);
+        }
+    }
+
+    private List<TriggerKey> findTriggerKeys(String jobIdPrefix) throws SchedulerException {
+        if (StringUtils.isEmpty(jobIdPrefix)) {
+            return new ArrayList<>();
+        }
+        if (triggerKeyFinder != null) {
+            return triggerKeyFinder.findByNamePrefix(scheduler.getSchedulerName(), JOB_GROUP_NAME, jobIdPrefix);
+        }
+
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        for (TriggerKey triggerKey : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(JOB_GROUP_NAME))) {
+            if (triggerKey.getName().startsWith(jobIdPrefix)) {
+                triggerKeys.add(triggerKey);
+            }
+        }
+        return triggerKeys;
+    }
+
+    private int getBatchSize() {
+        int batchSize = NumberUtils.toInt(schedulerSettings.getProperty(BATCH_SIZE), DEFAULT_BATCH_SIZE);
+        return batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
     }
 
     private void unscheduleJob(String jobId) {
@@ -919,14 +1089,6 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         jobDataMap.put(EVENT_TYPE_KEY_NAME, motechEvent.getSubject());
     }
 
-    private List<String> extractTriggerNames(List<TriggerKey> triggerKeys) {
-        List<String> names = new ArrayList<>();
-        for (TriggerKey key : triggerKeys) {
-            names.add(key.getName());
-        }
-        return names;
-    }
-
     private void constructMisfirePoliciesMaps() {
         cronTriggerMisfirePolicies = new HashMap<>();
         cronTriggerMisfirePolicies.put("do_nothing", CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING);
@@ -941,4 +1103,26 @@ public class MotechSchedulerServiceImpl implements MotechSchedulerService {
         simpleTriggerMisfirePolicies.put("reschedule_now_with_existing_count", SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_EXISTING_REPEAT_COUNT);
         simpleTriggerMisfirePolicies.put("reschedule_now_with_remaining_count", SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_REMAINING_REPEAT_COUNT);
     }
+
+    /**
+     * A Quartz job with its trigger, built from a {@link SchedulableJob}, but not stored yet.
+     */
+    private static final class PreparedJob {
+
+        private final JobDetail jobDetail;
+        private final Trigger trigger;
+
+        private PreparedJob(JobDetail jobDetail, Trigger trigger) {
+            this.jobDetail = jobDetail;
+            this.trigger = trigger;
+        }
+
+        public JobDetail getJobDetail() {
+            return jobDetail;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+    }
 }
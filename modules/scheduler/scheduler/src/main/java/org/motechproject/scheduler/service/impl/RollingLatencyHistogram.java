@@ -0,0 +1,177 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.event.metrics.LatencySnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram covering a rolling time window. The window is split into slices, each holding buckets
+ * whose upper bounds are powers of two microseconds, and a slice is cleared when it is reused for a later period.
+ * Snapshots merge the slices still within the window, so the percentiles reflect only the recent values. Values
+ * recorded while a slice is being cleared may be lost, which is acceptable for monitoring.
+ */
+class RollingLatencyHistogram {
+
+    static final int BUCKET_COUNT = 40;
+
+    private static final long NANOS_PER_MICRO = 1000L;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private static final double P50 = 0.5;
+    private static final double P90 = 0.9;
+    private static final double P99 = 0.99;
+
+    private final long sliceMillis;
+    private final Slice[] slices;
+
+    /**
+     * Constructor.
+     *
+     * @param windowMillis  the length of the window, in milliseconds
+     * @param sliceCount  the number of slices the window is split into
+     */
+    RollingLatencyHistogram(long windowMillis, int sliceCount) {
+        this.sliceMillis = Math.max(1, windowMillis / sliceCount);
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; ++i) {
+            slices[i] = new Slice();
+        }
+    }
+
+    /**
+     * Records a single value at the current time.
+     *
+     * @param nanos the value, in nanoseconds
+     */
+    void record(long nanos) {
+        record(nanos, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a single value at the given time.
+     *
+     * @param nanos the value, in nanoseconds
+     * @param now the time of recording, in milliseconds
+     */
+    void record(long nanos, long now) {
+        long value = Math.max(0, nanos);
+        long period = now / sliceMillis;
+
+        Slice slice = slices[(int) (period % slices.length)];
+        slice.rollTo(period);
+        slice.buckets.incrementAndGet(bucketOf(value));
+        slice.sum.add(value);
+        slice.updateMax(value);
+    }
+
+    /**
+     * Returns a snapshot of the values recorded within the window ending now.
+     *
+     * @return the snapshot
+     */
+    LatencySnapshot snapshot() {
+        return snapshot(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns a snapshot of the values recorded within the window ending at the given time.
+     *
+     * @param now the end of the window, in milliseconds
+     * @return the snapshot
+     */
+    LatencySnapshot snapshot(long now) {
+        long period = now / sliceMillis;
+
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        long sum = 0;
+        long max = 0;
+        for (Slice slice : slices) {
+            long slicePeriod = slice.period.get();
+            if (slicePeriod <= period - slices.length || slicePeriod > period) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                long count = slice.buckets.get(i);
+                counts[i] += count;
+                total += count;
+            }
+            sum += slice.sum.sum();
+            max = Math.max(max, slice.max.get());
+        }
+
+        double mean = (total == 0) ? 0 : sum / NANOS_PER_MILLI / total;
+
+        return new LatencySnapshot(total, mean, max / NANOS_PER_MILLI, percentile(counts, total, P50),
+                percentile(counts, total, P90), percentile(counts, total, P99), counts);
+    }
+
+    /**
+     * Clears all slices.
+     */
+    void reset() {
+        for (Slice slice : slices) {
+            slice.clear();
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        long micros = nanos / NANOS_PER_MICRO;
+        int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private double percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << i) / MICROS_PER_MILLI;
+            }
+        }
+
+        return (1L << (counts.length - 1)) / MICROS_PER_MILLI;
+    }
+
+    private static class Slice {
+        private final AtomicLong period = new AtomicLong(-1);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private void rollTo(long newPeriod) {
+            long current = period.get();
+            if (current < newPeriod && period.compareAndSet(current, newPeriod)) {
+                clearValues();
+            }
+        }
+
+        private void clear() {
+            period.set(-1);
+            clearValues();
+        }
+
+        private void clearValues() {
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                buckets.set(i, 0);
+            }
+            sum.reset();
+            max.set(0);
+        }
+
+        private void updateMax(long value) {
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventBatchResult;
+import org.motechproject.event.listener.EventRelay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Publishes the events of the jobs fired by the scheduler. The {@link org.motechproject.scheduler.service.MotechScheduledJob}
+ * retrieves this publisher from the scheduler context, so that the {@link EventRelay} does not have to be looked up
+ * from the application context on every execution.
+ * <p/>
+ * In the default <code>direct</code> firing mode every event is sent by the Quartz thread which executed the job. In
+ * the <code>batch</code> mode, set by the <code>scheduler.firing.mode</code> property, the Quartz threads only queue
+ * the events, and a single publisher thread sends them in batches ordered by their scheduled fire times, which lets
+ * the Quartz threads return to the pool immediately. Queued events which were not sent yet are lost if the server
+ * stops abruptly. When the publisher is stopped, the events still queued are sent, and events published afterwards
+ * are sent directly. Queueing an event and stopping the publisher exclude each other, so no event can be queued
+ * after the queue was drained for the last time.
+ */
+@Component
+public class ScheduledEventPublisher {
+
+    /**
+     * The key under which the publisher is stored in the Quartz scheduler context.
+     */
+    public static final String CONTEXT_KEY = "scheduledEventPublisher";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScheduledEventPublisher.class);
+
+    private static final String FIRING_MODE = "scheduler.firing.mode";
+    private static final String BATCH_MODE = "batch";
+    private static final String BATCH_SIZE = "scheduler.firing.batch.size";
+    private static final String BATCH_LINGER = "scheduler.firing.batch.linger";
+    private static final String QUEUE_CAPACITY = "scheduler.firing.queue.capacity";
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_BATCH_LINGER = 50;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final long POLL_TIMEOUT = 1000;
+
+    private EventRelay eventRelay;
+    private SettingsFacade schedulerSettings;
+    private SchedulerMetricsRecorder schedulerMetrics = new SchedulerMetricsRecorder();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long batchLinger = DEFAULT_BATCH_LINGER;
+
+    private BlockingQueue<FiredEvent> queue;
+    private Thread publisherThread;
+    private volatile boolean running;
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    /**
+     * Reads the firing mode and, in the batch mode, starts the publisher thread.
+     */
+    @PostConstruct
+    public void init() {
+        if (schedulerSettings == null || !BATCH_MODE.equalsIgnoreCase(schedulerSettings.getProperty(FIRING_MODE))) {
+            return;
+        }
+
+        batchSize = Math.max(NumberUtils.toInt(schedulerSettings.getProperty(BATCH_SIZE), DEFAULT_BATCH_SIZE), 1);
+        batchLinger = NumberUtils.toLong(schedulerSettings.getProperty(BATCH_LINGER), DEFAULT_BATCH_LINGER);
+        int queueCapacity = NumberUtils.toInt(schedulerSettings.getProperty(QUEUE_CAPACITY), DEFAULT_QUEUE_CAPACITY);
+
+        queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, batchSize));
+        running = true;
+
+        publisherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                publishBatches();
+            }
+        }, "scheduler-event-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+
+        LOGGER.info("Publishing fired events in batches of up to {} events", batchSize);
+    }
+
+    /**
+     * Stops the publisher thread and sends the events which are still queued.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (publisherThread == null) {
+            return;
+        }
+
+        // waits for the events being queued, no further events are queued once this completes
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+
+        publisherThread.interrupt();
+        try {
+            publisherThread.join(POLL_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        publisherThread = null;
+
+        List<FiredEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            send(remaining);
+        }
+    }
+
+    /**
+     * Publishes the event of a fired job. In the batch mode the event is queued, and the calling thread blocks while
+     * the queue is full.
+     *
+     * @param event  the event to publish
+     * @param scheduledFireTime  the time the job was scheduled to fire at
+     * @param fireTime  the time the job was actually fired at
+     */
+    public void publish(MotechEvent event, Date scheduledFireTime, Date fireTime) {
+        schedulerMetrics.recordFire(event.getSubject(), scheduledFireTime, fireTime);
+
+        boolean queued = false;
+        runningLock.readLock().lock();
+        try {
+            if (running) {
+                queue.put(new FiredEvent(event, scheduledFireTime));
+                queued = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            runningLock.readLock().unlock();
+        }
+
+        if (!queued) {
+            eventRelay.sendEventMessage(event);
+        }
+    }
+
+    private void publishBatches() {
+        while (running) {
+            List<FiredEvent> batch = new ArrayList<>(batchSize);
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                if (running) {
+                    LOGGER.warn("Publisher thread interrupted while running");
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    send(batch);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error while publishing fired events", e);
+                }
+            }
+        }
+    }
+
+    private void collectBatch(List<FiredEvent> batch) throws InterruptedException {
+        FiredEvent first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+
+        // give the other jobs fired at the same time a moment to join the batch
+        long deadline = System.currentTimeMillis() + batchLinger;
+        while (batch.size() < batchSize && System.currentTimeMillis() < deadline) {
+            FiredEvent next = queue.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            if (next != null) {
+                batch.add(next);
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+        }
+    }
+
+    private void send(List<FiredEvent> batch) {
+        Collections.sort(batch, new Comparator<FiredEvent>() {
+            @Override
+            public int compare(FiredEvent first, FiredEvent second) {
+                return Long.compare(first.scheduledFireTime, second.scheduledFireTime);
+            }
+        });
+
+        List<MotechEvent> events = new ArrayList<>(batch.size());
+        for (FiredEvent firedEvent : batch) {
+            events.add(firedEvent.event);
+        }
+
+        EventBatchResult result = eventRelay.sendEventMessages(events);
+
+        for (EventBatchResult.FailedEvent failedEvent : result.getFailedEvents()) {
+            try {
+                eventRelay.sendEventMessage(failedEvent.getEvent());
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to publish the event of a fired job: {}", failedEvent.getEvent(), e);
+            }
+        }
+    }
+
+    @Autowired
+    public void setEventRelay(EventRelay eventRelay) {
+        this.eventRelay = eventRelay;
+    }
+
+    @Autowired
+    public void setSchedulerSettings(SettingsFacade schedulerSettings) {
+        this.schedulerSettings = schedulerSettings;
+    }
+
+    @Autowired(required = false)
+    public void setSchedulerMetrics(SchedulerMetricsRecorder schedulerMetrics) {
+        this.schedulerMetrics = schedulerMetrics;
+    }
+
+    private static final class FiredEvent {
+
+        private final MotechEvent event;
+        private final long scheduledFireTime;
+
+        private FiredEvent(MotechEvent event, Date scheduledFireTime) {
+            this.event = event;
+            this.scheduledFireTime = scheduledFireTime == null ? 0 : scheduledFireTime.getTime();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.trigger.PeriodIntervalTrigger;
+import org.quartz.CalendarIntervalTrigger;
+import org.quartz.CronTrigger;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.listeners.TriggerListenerSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Listens to all the triggers of the scheduler and reports their misfires and the usage of the thread pool to the
+ * {@link SchedulerMetricsRecorder}.
+ */
+@Component
+public class SchedulerMetricsListener extends TriggerListenerSupport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerMetricsListener.class);
+
+    private static final String NAME = "schedulerMetricsListener";
+
+    private Scheduler scheduler;
+
+    private SchedulerMetricsRecorder schedulerMetrics;
+
+    @Autowired
+    public SchedulerMetricsListener(MotechSchedulerFactoryBean motechSchedulerFactoryBean,
+                                    SchedulerMetricsRecorder schedulerMetrics) {
+        this.scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+        this.schedulerMetrics = schedulerMetrics;
+    }
+
+    /**
+     * Registers the listener for all the triggers of the scheduler.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            schedulerMetrics.setThreadPoolSize(scheduler.getMetaData().getThreadPoolSize());
+            scheduler.getListenerManager().addTriggerListener(this);
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to register the scheduler metrics listener", e);
+        }
+    }
+
+    /**
+     * Stops listening to the triggers.
+     */
+    @PreDestroy
+    public void destroy() {
+        try {
+            scheduler.getListenerManager().removeTriggerListener(NAME);
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to remove the scheduler metrics listener", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void triggerFired(Trigger trigger, JobExecutionContext context) {
+        schedulerMetrics.threadAcquired();
+    }
+
+    @Override
+    public void triggerComplete(Trigger trigger, JobExecutionContext context,
+                                Trigger.CompletedExecutionInstruction triggerInstructionCode) {
+        schedulerMetrics.threadReleased();
+    }
+
+    @Override
+    public void triggerMisfired(Trigger trigger) {
+        schedulerMetrics.recordMisfire(getMisfirePolicy(trigger));
+    }
+
+    /**
+     * Names the misfire policy of the trigger after its type and misfire instruction, using the names of the misfire
+     * policies accepted by the {@link org.motechproject.scheduler.service.MotechSchedulerService}.
+     */
+    static String getMisfirePolicy(Trigger trigger) {
+        int instruction = trigger.getMisfireInstruction();
+
+        if (instruction == Trigger.MISFIRE_INSTRUCTION_IGNORE_MISFIRE_POLICY) {
+            return getTriggerType(trigger) + ":ignore";
+        } else if (instruction == Trigger.MISFIRE_INSTRUCTION_SMART_POLICY) {
+            return getTriggerType(trigger) + ":smart";
+        }
+
+        String policy;
+        if (trigger instanceof SimpleTrigger) {
+            policy = getSimpleTriggerPolicy(instruction);
+        } else if (instruction == CronTrigger.MISFIRE_INSTRUCTION_FIRE_ONCE_NOW) {
+            // the same value is used by the cron, calendar interval and period interval triggers
+            policy = "fire_once_now";
+        } else if (instruction == CronTrigger.MISFIRE_INSTRUCTION_DO_NOTHING) {
+            policy = "do_nothing";
+        } else {
+            policy = String.valueOf(instruction);
+        }
+
+        return getTriggerType(trigger) + ":" + policy;
+    }
+
+    private static String getSimpleTriggerPolicy(int instruction) {
+        switch (instruction) {
+            case SimpleTrigger.MISFIRE_INSTRUCTION_FIRE_NOW:
+                return "fire_now";
+            case SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_EXISTING_REPEAT_COUNT:
+                return "reschedule_now_with_existing_count";
+            case SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NOW_WITH_REMAINING_REPEAT_COUNT:
+                return "reschedule_now_with_remaining_count";
+            case SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_REMAINING_COUNT:
+                return "reschedule_next_with_remaining_count";
+            case SimpleTrigger.MISFIRE_INSTRUCTION_RESCHEDULE_NEXT_WITH_EXISTING_COUNT:
+                return "reschedule_next_with_existing_count";
+            default:
+                return String.valueOf(instruction);
+        }
+    }
+
+    private static String getTriggerType(Trigger trigger) {
+        if (trigger instanceof SimpleTrigger) {
+            return "simple";
+        } else if (trigger instanceof CronTrigger) {
+            return "cron";
+        } else if (trigger instanceof PeriodIntervalTrigger) {
+            return "period";
+        } else if (trigger instanceof CalendarIntervalTrigger) {
+            return "calendar";
+        }
+        return trigger.getClass().getSimpleName();
+    }
+}
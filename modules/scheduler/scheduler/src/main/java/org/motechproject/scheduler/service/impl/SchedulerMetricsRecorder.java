@@ -0,0 +1,238 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.scheduler.contract.FireMetrics;
+import org.motechproject.scheduler.contract.ThreadPoolMetrics;
+import org.motechproject.scheduler.service.SchedulerMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the timing metrics of the scheduler. The fire lag of a job is the time between its scheduled fire time and
+ * the time Quartz actually executed it, a growing lag means that the scheduler falls behind. Counters are kept per
+ * subject and per misfire policy in concurrent maps and are updated without locking. The number of tracked subjects
+ * is bounded, metrics of any further ones are aggregated under the {@link #OTHER} name.
+ */
+@Component("schedulerMetricsService")
+public class SchedulerMetricsRecorder implements SchedulerMetricsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerMetricsRecorder.class);
+
+    public static final String OTHER = "[other]";
+
+    private static final String METRICS_WINDOW = "scheduler.metrics.window";
+    private static final int DEFAULT_WINDOW_MINUTES = 60;
+    private static final int SLICE_COUNT = 12;
+    private static final int MAX_TRACKED_NAMES = 1000;
+
+    private final ConcurrentMap<String, SubjectCounters> subjects = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> misfires = new ConcurrentHashMap<>();
+
+    private final AtomicInteger busyThreads = new AtomicInteger();
+    private final AtomicInteger peakBusyThreads = new AtomicInteger();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder saturatedFires = new LongAdder();
+
+    private SettingsFacade schedulerSettings;
+
+    private volatile long windowMillis = TimeUnit.MINUTES.toMillis(DEFAULT_WINDOW_MINUTES);
+    private volatile RollingLatencyHistogram acquisitionLatency = newHistogram();
+    private volatile int threadPoolSize;
+
+    /**
+     * Reads the length of the rolling window, registers this service in the platform MBean server and starts
+     * recording the trigger acquisition latency of the {@link InstrumentedJobStoreTX}.
+     */
+    @PostConstruct
+    public void init() {
+        if (schedulerSettings != null) {
+            int windowMinutes = NumberUtils.toInt(schedulerSettings.getProperty(METRICS_WINDOW), DEFAULT_WINDOW_MINUTES);
+            windowMillis = TimeUnit.MINUTES.toMillis(Math.max(windowMinutes, 1));
+            acquisitionLatency = newHistogram();
+        }
+
+        InstrumentedJobStoreTX.setMetricsRecorder(this);
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new StandardMBean(this, SchedulerMetricsService.class, true), name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the scheduler metrics MBean", e);
+        }
+    }
+
+    /**
+     * Removes this service from the platform MBean server.
+     */
+    @PreDestroy
+    public void destroy() {
+        InstrumentedJobStoreTX.setMetricsRecorder(null);
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the scheduler metrics MBean", e);
+        }
+    }
+
+    /**
+     * Records the execution of a job.
+     *
+     * @param subject  the subject of the event published by the job
+     * @param scheduledFireTime  the time the job was scheduled to fire at
+     * @param fireTime  the time the job was actually fired at
+     */
+    public void recordFire(String subject, Date scheduledFireTime, Date fireTime) {
+        SubjectCounters counters = subjectCounters(subject);
+        counters.fired.increment();
+
+        if (scheduledFireTime != null && fireTime != null) {
+            long lag = Math.max(fireTime.getTime() - scheduledFireTime.getTime(), 0);
+            counters.fireLag.record(TimeUnit.MILLISECONDS.toNanos(lag));
+        }
+    }
+
+    /**
+     * Records a misfire of a trigger.
+     *
+     * @param policy  the name of the misfire policy of the trigger
+     */
+    public void recordMisfire(String policy) {
+        LongAdder counter = misfires.get(policy);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            LongAdder existing = misfires.putIfAbsent(policy, created);
+            counter = (existing == null) ? created : existing;
+        }
+        counter.increment();
+    }
+
+    /**
+     * Records that a thread of the pool started executing a fired trigger.
+     */
+    public void threadAcquired() {
+        int busy = busyThreads.incrementAndGet();
+        fired.increment();
+
+        if (threadPoolSize > 0 && busy >= threadPoolSize) {
+            saturatedFires.increment();
+        }
+
+        int peak = peakBusyThreads.get();
+        while (busy > peak && !peakBusyThreads.compareAndSet(peak, busy)) {
+            peak = peakBusyThreads.get();
+        }
+    }
+
+    /**
+     * Records that a thread of the pool finished executing a fired trigger.
+     */
+    public void threadReleased() {
+        busyThreads.decrementAndGet();
+    }
+
+    /**
+     * Records the time spent acquiring the next triggers from the job store.
+     *
+     * @param nanos  the duration of the acquisition
+     */
+    public void recordAcquisition(long nanos) {
+        acquisitionLatency.record(nanos);
+    }
+
+    @Override
+    public List<FireMetrics> getFireMetrics() {
+        List<FireMetrics> metrics = new ArrayList<>();
+        for (Map.Entry<String, SubjectCounters> entry : new TreeMap<>(subjects).entrySet()) {
+            SubjectCounters counters = entry.getValue();
+            metrics.add(new FireMetrics(entry.getKey(), counters.fired.sum(), counters.fireLag.snapshot()));
+        }
+        return metrics;
+    }
+
+    @Override
+    public Map<String, Long> getMisfireCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : misfires.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public ThreadPoolMetrics getThreadPoolMetrics() {
+        return new ThreadPoolMetrics(threadPoolSize, busyThreads.get(), peakBusyThreads.get(), fired.sum(),
+                saturatedFires.sum(), acquisitionLatency.snapshot());
+    }
+
+    @Override
+    public void reset() {
+        subjects.clear();
+        misfires.clear();
+        peakBusyThreads.set(busyThreads.get());
+        fired.reset();
+        saturatedFires.reset();
+        acquisitionLatency.reset();
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    @Autowired(required = false)
+    public void setSchedulerSettings(SettingsFacade schedulerSettings) {
+        this.schedulerSettings = schedulerSettings;
+    }
+
+    private SubjectCounters subjectCounters(String subject) {
+        SubjectCounters counters = subjects.get(subject);
+        if (counters == null) {
+            String name = (subjects.size() < MAX_TRACKED_NAMES) ? subject : OTHER;
+            SubjectCounters created = new SubjectCounters(newHistogram());
+            SubjectCounters existing = subjects.putIfAbsent(name, created);
+            counters = (existing == null) ? created : existing;
+        }
+        return counters;
+    }
+
+    private RollingLatencyHistogram newHistogram() {
+        return new RollingLatencyHistogram(windowMillis, SLICE_COUNT);
+    }
+
+    private static class SubjectCounters {
+        private final LongAdder fired = new LongAdder();
+        private final RollingLatencyHistogram fireLag;
+
+        SubjectCounters(RollingLatencyHistogram fireLag) {
+            this.fireLag = fireLag;
+        }
+    }
+}
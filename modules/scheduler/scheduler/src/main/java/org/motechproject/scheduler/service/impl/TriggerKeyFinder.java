@@ -0,0 +1,104 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.commons.sql.util.Drivers;
+import org.quartz.JobPersistenceException;
+import org.quartz.TriggerKey;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Finds the keys of the triggers whose names start with a given prefix directly in the Quartz tables. The query
+ * filters on the leading columns of the primary key of the triggers table, so the database can use its index
+ * instead of loading all the trigger keys of the group, as {@link org.quartz.Scheduler#getTriggerKeys} does.
+ */
+@Component
+public class TriggerKeyFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriggerKeyFinder.class);
+
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String TRIGGERS = "TRIGGERS";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final String TRIGGER_NAME = "TRIGGER_NAME";
+    private static final String TRIGGER_GROUP = "TRIGGER_GROUP";
+    private static final char ESCAPE = '!';
+
+    private Properties sqlProperties;
+
+    @Autowired
+    public TriggerKeyFinder(@Qualifier("sqlProperties") Properties sqlProperties) {
+        this.sqlProperties = sqlProperties;
+    }
+
+    /**
+     * Returns the keys of the triggers from the given group, whose names start with the given prefix.
+     *
+     * @param schedulerName  the name of the Quartz scheduler
+     * @param group  the group of the triggers
+     * @param prefix  the prefix of the trigger names, not empty
+     * @return the keys of the matching triggers
+     * @throws JobPersistenceException if the query fails
+     */
+    public List<TriggerKey> findByNamePrefix(String schedulerName, String group, String prefix)
+            throws JobPersistenceException {
+        String query = buildQuery();
+        LOGGER.debug("Executing {}", query);
+
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, schedulerName);
+            stmt.setString(2, escapeLikePattern(prefix) + "%");
+            stmt.setString(3, group);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    triggerKeys.add(new TriggerKey(rs.getString(1), group));
+                }
+            }
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Unable to find triggers with prefix " + prefix, e);
+        }
+
+        return triggerKeys;
+    }
+
+    private String buildQuery() {
+        return new StringBuilder("SELECT ").append(getCorrectNameRepresentation(TRIGGER_NAME))
+                .append(" FROM ").append(getCorrectNameRepresentation(sqlProperties.getProperty(TABLE_PREFIX) + TRIGGERS))
+                .append(" WHERE ").append(getCorrectNameRepresentation(SCHED_NAME)).append(" = ?")
+                .append(" AND ").append(getCorrectNameRepresentation(TRIGGER_NAME)).append(" LIKE ? ESCAPE '")
+                .append(ESCAPE).append('\'')
+                .append(" AND ").append(getCorrectNameRepresentation(TRIGGER_GROUP)).append(" = ?")
+                .toString();
+    }
+
+    private String escapeLikePattern(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == ESCAPE || c == '%' || c == '_') {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private String getCorrectNameRepresentation(String name) {
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.get(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
+    }
+}
@@ -0,0 +1,172 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.scheduler.exception.MotechSchedulerException;
+import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.Trigger;
+import org.quartz.TriggerKey;
+import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.listeners.SchedulerListenerSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static org.motechproject.scheduler.service.impl.MotechSchedulerServiceImpl.JOB_GROUP_NAME;
+
+/**
+ * Keeps the names of the triggers from the default group in a sorted set, so that the triggers whose names start with
+ * a given prefix can be found without loading all the trigger keys from the job store. The index is loaded once, when
+ * the module starts, and then kept up to date by listening to the local scheduler. Since the listener is only notified
+ * about triggers scheduled by this scheduler instance, the index is disabled if the job store is clustered, and
+ * callers must then find the triggers in the job store, see {@link #isEnabled()}. Callers must also be prepared for
+ * the triggers returned by the index to no longer exist.
+ */
+@Component
+public class TriggerNameIndex extends SchedulerListenerSupport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriggerNameIndex.class);
+
+    private final NavigableSet<String> triggerNames = new ConcurrentSkipListSet<>();
+
+    private Scheduler scheduler;
+    private volatile boolean enabled;
+
+    @Autowired
+    public TriggerNameIndex(MotechSchedulerFactoryBean motechSchedulerFactoryBean) {
+        this.scheduler = motechSchedulerFactoryBean.getQuartzScheduler();
+    }
+
+    /**
+     * Registers the index as a listener of the scheduler and loads the names of the existing triggers, unless the job
+     * store is clustered. The listener is registered first, so that no trigger scheduled in the meantime is missed.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            if (scheduler.getMetaData().isJobStoreClustered()) {
+                LOGGER.info("The job store is clustered, triggers will be looked up in the job store");
+                return;
+            }
+
+            scheduler.getListenerManager().addSchedulerListener(this);
+            reload();
+            enabled = true;
+        } catch (SchedulerException e) {
+            throw new MotechSchedulerException("Unable to build the index of trigger names", e);
+        }
+    }
+
+    /**
+     * Stops listening to the scheduler.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (!enabled) {
+            return;
+        }
+
+        enabled = false;
+        try {
+            scheduler.getListenerManager().removeSchedulerListener(this);
+        } catch (SchedulerException e) {
+            LOGGER.warn("Unable to remove the trigger name index from the scheduler listeners", e);
+        }
+    }
+
+    /**
+     * Reloads the names of all the triggers from the default group.
+     *
+     * @throws SchedulerException if the trigger keys could not be retrieved
+     */
+    public void reload() throws SchedulerException {
+        List<String> names = new ArrayList<>();
+        for (TriggerKey triggerKey : scheduler.getTriggerKeys(GroupMatcher.triggerGroupEquals(JOB_GROUP_NAME))) {
+            names.add(triggerKey.getName());
+        }
+
+        triggerNames.addAll(names);
+        triggerNames.retainAll(names);
+
+        LOGGER.debug("Indexed {} trigger names", names.size());
+    }
+
+    /**
+     * Returns the keys of the indexed triggers whose names start with the given prefix, ordered by their names.
+     *
+     * @param prefix  the prefix of the trigger names, not empty
+     * @return the keys of the matching triggers
+     */
+    public List<TriggerKey> findByNamePrefix(String prefix) {
+        List<TriggerKey> triggerKeys = new ArrayList<>();
+        for (String name : triggerNames.tailSet(prefix, true)) {
+            if (!name.startsWith(prefix)) {
+                break;
+            }
+            triggerKeys.add(new TriggerKey(name, JOB_GROUP_NAME));
+        }
+        return triggerKeys;
+    }
+
+    /**
+     * Removes the trigger with the given key from the index.
+     *
+     * @param triggerKey  the key of the trigger
+     */
+    public void remove(TriggerKey triggerKey) {
+        if (isIndexed(triggerKey)) {
+            triggerNames.remove(triggerKey.getName());
+        }
+    }
+
+    /**
+     * Checks whether the index can be used. The index is disabled when the job store is clustered, since triggers
+     * scheduled by other nodes are not added to it.
+     *
+     * @return true if the index contains all the triggers from the default group, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the number of indexed trigger names
+     */
+    public int size() {
+        return triggerNames.size();
+    }
+
+    @Override
+    public void jobScheduled(Trigger trigger) {
+        if (isIndexed(trigger.getKey())) {
+            triggerNames.add(trigger.getKey().getName());
+        }
+    }
+
+    @Override
+    public void jobUnscheduled(TriggerKey triggerKey) {
+        remove(triggerKey);
+    }
+
+    @Override
+    public void triggerFinalized(Trigger trigger) {
+        remove(trigger.getKey());
+    }
+
+    @Override
+    public void schedulingDataCleared() {
+        triggerNames.clear();
+    }
+
+    private boolean isIndexed(TriggerKey triggerKey) {
+        return triggerKey != null && JOB_GROUP_NAME.equals(triggerKey.getGroup());
+    }
+}
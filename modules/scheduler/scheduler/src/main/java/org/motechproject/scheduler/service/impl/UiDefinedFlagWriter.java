@@ -0,0 +1,113 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.motechproject.commons.sql.util.Drivers;
+import org.quartz.JobKey;
+import org.quartz.JobPersistenceException;
+import org.quartz.utils.DBConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Writes the UI defined flags of jobs to the <code>UI_DEFINED</code> column of the job details table, which is read
+ * by the jobs listing instead of the serialized job data. Quartz does not know about the column, so it keeps its
+ * value when a job is replaced. The flags of replaced jobs must therefore be written once the jobs are stored.
+ */
+@Component
+public class UiDefinedFlagWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UiDefinedFlagWriter.class);
+
+    private static final String DATA_SOURCE = "org.quartz.jobStore.dataSource";
+    private static final String TABLE_PREFIX = "org.quartz.jobStore.tablePrefix";
+    private static final String DRIVER = "org.quartz.dataSource.motechDS.driver";
+    private static final String JOB_DETAILS = "JOB_DETAILS";
+    private static final String UI_DEFINED = "UI_DEFINED";
+    private static final String SCHED_NAME = "SCHED_NAME";
+    private static final String JOB_NAME = "JOB_NAME";
+    private static final String JOB_GROUP = "JOB_GROUP";
+
+    private Properties sqlProperties;
+
+    @Autowired
+    public UiDefinedFlagWriter(@Qualifier("sqlProperties") Properties sqlProperties) {
+        this.sqlProperties = sqlProperties;
+    }
+
+    /**
+     * Writes the given flags of jobs.
+     *
+     * @param schedulerName  the name of the Quartz scheduler
+     * @param uiDefined  the UI defined flags of the jobs, by their keys
+     * @throws JobPersistenceException if the flags could not be written
+     */
+    public void write(String schedulerName, Map<JobKey, Boolean> uiDefined) throws JobPersistenceException {
+        write(schedulerName, uiDefined, false);
+    }
+
+    /**
+     * Writes the given flags of jobs, only if they were not written yet. Used for the flags resolved from the job data
+     * by the listing, so that it does not overwrite the flags written after the jobs were replaced in the meantime.
+     *
+     * @param schedulerName  the name of the Quartz scheduler
+     * @param uiDefined  the UI defined flags of the jobs, by their keys
+     * @throws JobPersistenceException if the flags could not be written
+     */
+    public void writeUnresolved(String schedulerName, Map<JobKey, Boolean> uiDefined) throws JobPersistenceException {
+        write(schedulerName, uiDefined, true);
+    }
+
+    private void write(String schedulerName, Map<JobKey, Boolean> uiDefined, boolean onlyUnresolved)
+            throws JobPersistenceException {
+        if (uiDefined.isEmpty()) {
+            return;
+        }
+
+        String update = buildUpdate(onlyUnresolved);
+        LOGGER.debug("Executing {} for {} jobs", update, uiDefined.size());
+
+        try (Connection conn = DBConnectionManager.getInstance().getConnection(sqlProperties.getProperty(DATA_SOURCE));
+             PreparedStatement stmt = conn.prepareStatement(update)) {
+            for (Map.Entry<JobKey, Boolean> entry : uiDefined.entrySet()) {
+                stmt.setBoolean(1, entry.getValue());
+                stmt.setString(2, schedulerName);
+                stmt.setString(3, entry.getKey().getName());
+                stmt.setString(4, entry.getKey().getGroup());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            throw new JobPersistenceException("Unable to write the UI defined flags of " + uiDefined.size() + " jobs", e);
+        }
+    }
+
+    private String buildUpdate(boolean onlyUnresolved) {
+        StringBuilder sb = new StringBuilder("UPDATE ")
+                .append(getCorrectNameRepresentation(sqlProperties.getProperty(TABLE_PREFIX) + JOB_DETAILS))
+                .append(" SET ").append(getCorrectNameRepresentation(UI_DEFINED)).append(" = ?")
+                .append(" WHERE ").append(getCorrectNameRepresentation(SCHED_NAME)).append(" = ?")
+                .append(" AND ").append(getCorrectNameRepresentation(JOB_NAME)).append(" = ?")
+                .append(" AND ").append(getCorrectNameRepresentation(JOB_GROUP)).append(" = ?");
+
+        if (onlyUnresolved) {
+            sb.append(" AND ").append(getCorrectNameRepresentation(UI_DEFINED)).append(" IS NULL");
+        }
+
+        return sb.toString();
+    }
+
+    private String getCorrectNameRepresentation(String name) {
+        return Drivers.MYSQL_DRIVER.equals(sqlProperties.get(DRIVER)) ? name : "\"" + name.toLowerCase() + "\"";
+    }
+}
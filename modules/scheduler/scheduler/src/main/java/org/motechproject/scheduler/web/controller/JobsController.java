@@ -1,13 +1,16 @@
 package org.motechproject.scheduler.web.controller;
 
 import org.motechproject.scheduler.constants.SchedulerConstants;
+import org.motechproject.scheduler.contract.FireMetrics;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.contract.JobDetailedInfo;
 import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.contract.SchedulableJob;
+import org.motechproject.scheduler.contract.ThreadPoolMetrics;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.motechproject.scheduler.service.SchedulerMetricsService;
 import org.motechproject.scheduler.web.domain.JobsRecords;
 import org.quartz.SchedulerException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +26,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * JobsController is the Spring Framework Controller, its used by view layer for getting information about
@@ -45,6 +49,9 @@ public class JobsController {
     @Autowired
     private MotechSchedulerService motechSchedulerService;
 
+    @Autowired
+    private SchedulerMetricsService schedulerMetricsService;
+
     private JobsRecords previousJobsRecords;
 
     /**
@@ -155,6 +162,48 @@ public class JobsController {
         return motechSchedulerService.getJob(jobInfo);
     }
 
+    /**
+     * Returns the fire lag of the jobs, per event subject.
+     *
+     * @return a list of {@link FireMetrics}, one for each subject
+     */
+    @RequestMapping(value = "/jobs/metrics/fires", method = RequestMethod.GET)
+    @ResponseBody
+    public List<FireMetrics> fireMetrics() {
+        return schedulerMetricsService.getFireMetrics();
+    }
+
+    /**
+     * Returns the number of misfired triggers, per misfire policy.
+     *
+     * @return the misfire counts keyed by policy
+     */
+    @RequestMapping(value = "/jobs/metrics/misfires", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Long> misfireMetrics() {
+        return schedulerMetricsService.getMisfireCounts();
+    }
+
+    /**
+     * Returns the usage of the scheduler thread pool and the trigger acquisition latency.
+     *
+     * @return the thread pool metrics
+     */
+    @RequestMapping(value = "/jobs/metrics/pool", method = RequestMethod.GET)
+    @ResponseBody
+    public ThreadPoolMetrics threadPoolMetrics() {
+        return schedulerMetricsService.getThreadPoolMetrics();
+    }
+
+    /**
+     * Clears all scheduler metrics.
+     */
+    @RequestMapping(value = "/jobs/metrics/reset", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.OK)
+    public void resetMetrics() {
+        schedulerMetricsService.reset();
+    }
+
     @ExceptionHandler(MotechSchedulerException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ResponseBody
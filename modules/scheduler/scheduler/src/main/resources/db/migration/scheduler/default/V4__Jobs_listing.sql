@@ -0,0 +1,7 @@
+--
+-- Flag of UI defined jobs, read by the jobs listing instead of deserializing JOB_DATA. NULL until resolved.
+--
+ALTER TABLE qrtz_job_details ADD COLUMN UI_DEFINED BOOL NULL;
+
+create index idx_qrtz_t_start_time on qrtz_triggers(SCHED_NAME,START_TIME);
+create index idx_qrtz_t_end_time on qrtz_triggers(SCHED_NAME,END_TIME);
@@ -0,0 +1,7 @@
+--
+-- Flag of UI defined jobs, read by the jobs listing instead of deserializing JOB_DATA. NULL until resolved.
+--
+ALTER TABLE QRTZ_JOB_DETAILS ADD COLUMN UI_DEFINED BOOLEAN NULL;
+
+CREATE INDEX IDX_QRTZ_T_START_TIME ON QRTZ_TRIGGERS(SCHED_NAME,START_TIME);
+CREATE INDEX IDX_QRTZ_T_END_TIME ON QRTZ_TRIGGERS(SCHED_NAME,END_TIME);
@@ -47,7 +47,9 @@ import static ch.lambdaj.Lambda.on;
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 import static org.motechproject.commons.date.util.DateUtil.newDateTime;
 import static org.motechproject.testing.utils.TimeFaker.fakeNow;
 import static org.motechproject.testing.utils.TimeFaker.stopFakingTime;
@@ -474,6 +476,57 @@ public class MotechSchedulerDatabaseServiceImplBundleIT extends BasePaxIT {
         }
     }
 
+    @Test
+    public void shouldPageJobsAfterTheLastJobName() {
+        try {
+            fakeNow(newDateTime(CURRENT_YEAR + 1, 7, 13, 5, 0, 0));
+            addTestJobs();
+
+            JobsSearchSettings jobsSearchSettings = getGridSettings(null, 4, "name", "asc");
+            jobsSearchSettings.setName("test_ev");
+
+            List<JobBasicInfo> firstPage = databaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
+            assertEquals(4, firstPage.size());
+
+            jobsSearchSettings.setAfterName(firstPage.get(3).getName());
+            List<JobBasicInfo> secondPage = databaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
+            assertEquals(2, secondPage.size());
+            assertTrue(secondPage.get(0).getName().compareTo(firstPage.get(3).getName()) > 0);
+            assertEquals(6, databaseService.countJobs(jobsSearchSettings));
+        } finally {
+            stopFakingTime();
+        }
+    }
+
+    @Test
+    public void shouldUpdateUIDefinedFlagOfReplacedJob() {
+        try {
+            fakeNow(newDateTime(CURRENT_YEAR + 6, 7, 15, 10, 0, 0));
+
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "job_id7");
+            RunOnceSchedulableJob job = new RunOnceSchedulableJob(new MotechEvent("test_event_7", params),
+                    newDateTime(CURRENT_YEAR + 6, 7, 15, 12, 0, 0), true);
+            schedulerService.scheduleRunOnceJob(job);
+
+            JobsSearchSettings jobsSearchSettings = getGridSettings(null, 10, "name", "asc");
+            jobsSearchSettings.setName("test_event_7");
+
+            List<JobBasicInfo> jobs = databaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
+            assertEquals(1, jobs.size());
+            assertTrue(jobs.get(0).isUiDefined());
+
+            job.setUiDefined(false);
+            schedulerService.updateJob(job);
+
+            jobs = databaseService.getScheduledJobsBasicInfo(jobsSearchSettings);
+            assertEquals(1, jobs.size());
+            assertFalse(jobs.get(0).isUiDefined());
+        } finally {
+            stopFakingTime();
+        }
+    }
+
     @Test
     public void shouldFilterJobsByActivity() {
         try {
@@ -2,6 +2,7 @@ package org.motechproject.scheduler.it;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeConstants;
+import org.joda.time.Duration;
 import org.joda.time.Period;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -23,6 +24,7 @@ import org.motechproject.scheduler.contract.RepeatingSchedulableJob;
 import org.motechproject.scheduler.contract.RunOnceSchedulableJob;
 import org.motechproject.scheduler.exception.MotechSchedulerException;
 import org.motechproject.scheduler.factory.MotechSchedulerFactoryBean;
+import org.motechproject.scheduler.service.MotechSchedulerForecastService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
 import org.motechproject.testing.osgi.BasePaxIT;
 import org.motechproject.testing.osgi.container.MotechNativeTestContainerFactory;
@@ -43,6 +45,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
@@ -76,6 +79,10 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
     @Filter(timeout = 360000)
     private MotechSchedulerService schedulerService;
 
+    @Inject
+    @Filter(timeout = 360000)
+    private MotechSchedulerForecastService schedulerForecastService;
+
     MotechSchedulerFactoryBean motechSchedulerFactoryBean;
 
     Scheduler scheduler;
@@ -610,6 +617,44 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
         assertNull(scheduler.getTrigger(triggerKey("test_event3-job_id", "default")));
     }
 
+    @Test
+    public void shouldNotUnscheduleJobsWhichOnlyContainTheJobIdPrefix() throws SchedulerException {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, "job_id");
+
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("test_event", params), "0 0 12 * * ?"));
+        schedulerService.scheduleJob(new CronSchedulableJob(new MotechEvent("other_test_event", params), "0 0 13 * * ?"));
+
+        try {
+            schedulerService.unscheduleAllJobs("test_event");
+
+            assertNull(scheduler.getTrigger(triggerKey("test_event-job_id", "default")));
+            assertNotNull(scheduler.getTrigger(triggerKey("other_test_event-job_id", "default")));
+        } finally {
+            schedulerService.unscheduleAllJobs("other_test_event");
+        }
+    }
+
+    @Test
+    public void shouldScheduleJobsInBatches() throws SchedulerException {
+        List<RunOnceSchedulableJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put(MotechSchedulerService.JOB_ID_KEY, "job_id_" + i);
+            jobs.add(new RunOnceSchedulableJob(new MotechEvent("test_event", params), now().plusDays(1)));
+        }
+
+        schedulerService.scheduleJobs(jobs);
+
+        assertNotNull(scheduler.getTrigger(triggerKey("test_event-job_id_0-runonce", "default")));
+        assertNotNull(scheduler.getTrigger(triggerKey("test_event-job_id_1199-runonce", "default")));
+
+        schedulerService.unscheduleAllJobs("test_event-job_id_");
+
+        assertNull(scheduler.getTrigger(triggerKey("test_event-job_id_0-runonce", "default")));
+        assertNull(scheduler.getTrigger(triggerKey("test_event-job_id_1199-runonce", "default")));
+    }
+
     @Test
     public void shouldPauseJobIfItIsUiDefined() throws Exception {
         Map<String, Object> params = new HashMap<>();
@@ -761,6 +806,60 @@ public class MotechSchedulerServiceImplBundleIT extends BasePaxIT {
         schedulerService.deleteJob(info);
     }
 
+    @Test
+    public void shouldForecastFireTimesOfJobsWithPrefix() {
+        try {
+            fakeNow(newDateTime(2020, 7, 15, 10, 0, 0));
+
+            for (String jobId : asList("forecast-1", "forecast-2", "other-1")) {
+                Map<String, Object> params = new HashMap<>();
+                params.put(MotechSchedulerService.JOB_ID_KEY, jobId);
+                schedulerService.scheduleRepeatingJob(
+                        new RepeatingSchedulableJob(
+                                new MotechEvent("test_event", params),
+                                3,
+                                DateTimeConstants.SECONDS_PER_DAY,
+                                newDateTime(2020, 7, 15, 12, 0, 0),
+                                null,
+                                false)
+                );
+            }
+            schedulerService.scheduleJob(
+                    new CronSchedulableJob(
+                            new MotechEvent("test_event", params("forecast-3")),
+                            "0 0 18 * * ?"
+                    ));
+
+            DateTime start = newDateTime(2020, 7, 16, 0, 0, 0);
+            DateTime end = newDateTime(2020, 7, 17, 23, 59, 59);
+
+            assertEquals(asList(
+                    newDateTime(2020, 7, 16, 12, 0, 0),
+                    newDateTime(2020, 7, 16, 12, 0, 0),
+                    newDateTime(2020, 7, 16, 18, 0, 0),
+                    newDateTime(2020, 7, 17, 12, 0, 0),
+                    newDateTime(2020, 7, 17, 12, 0, 0),
+                    newDateTime(2020, 7, 17, 18, 0, 0)),
+                    schedulerService.getScheduledJobTimingsWithPrefix("test_event", "forecast", start, end));
+
+            assertEquals(asList("test_event-forecast-1-repeat", "test_event-forecast-2-repeat", "test_event-forecast-3"),
+                    new ArrayList<>(schedulerForecastService.getFireTimesByJob("test_event", "forecast", start, end).keySet()));
+
+            SortedMap<DateTime, Integer> histogram = schedulerForecastService.getFireTimeHistogram("test_event",
+                    "forecast", start, end, Duration.standardHours(12));
+            assertEquals(asList(0, 3, 0, 3), new ArrayList<>(histogram.values()));
+            assertEquals(newDateTime(2020, 7, 16, 12, 0, 0), histogram.keySet().toArray()[1]);
+        } finally {
+            stopFakingTime();
+        }
+    }
+
+    private Map<String, Object> params(String jobId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(MotechSchedulerService.JOB_ID_KEY, jobId);
+        return params;
+    }
+
     private List<DateTime> getFireTimes(String triggerKey) throws SchedulerException {
         Trigger trigger = scheduler.getTrigger(triggerKey(triggerKey, "default"));
         List<DateTime> fireTimes = new ArrayList<>();
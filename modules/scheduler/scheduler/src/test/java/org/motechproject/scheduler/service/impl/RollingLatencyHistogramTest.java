@@ -0,0 +1,57 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.Test;
+import org.motechproject.event.metrics.LatencySnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class RollingLatencyHistogramTest {
+
+    private static final long WINDOW = 60000;
+
+    @Test
+    public void shouldComputePercentilesOfRecordedValues() {
+        RollingLatencyHistogram histogram = new RollingLatencyHistogram(WINDOW, 6);
+
+        for (int i = 0; i < 99; ++i) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1000), 1000);
+
+        LatencySnapshot snapshot = histogram.snapshot(1000);
+
+        assertEquals(100, snapshot.getCount());
+        assertEquals(1000, snapshot.getMaxMillis(), 0.001);
+        assertEquals(1.024, snapshot.getP50Millis(), 0.001);
+        assertEquals(1.024, snapshot.getP99Millis(), 0.001);
+    }
+
+    @Test
+    public void shouldDropValuesOutsideOfTheWindow() {
+        RollingLatencyHistogram histogram = new RollingLatencyHistogram(WINDOW, 6);
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(500), 0);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5), 30000);
+
+        assertEquals(2, histogram.snapshot(30000).getCount());
+
+        LatencySnapshot snapshot = histogram.snapshot(WINDOW + 5000);
+        assertEquals(1, snapshot.getCount());
+        assertEquals(5, snapshot.getMaxMillis(), 0.001);
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1), WINDOW + 5000);
+        assertEquals(2, histogram.snapshot(WINDOW + 5000).getCount());
+    }
+
+    @Test
+    public void shouldClearAllValuesOnReset() {
+        RollingLatencyHistogram histogram = new RollingLatencyHistogram(WINDOW, 6);
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5), 1000);
+        histogram.reset();
+
+        assertEquals(0, histogram.snapshot(1000).getCount());
+    }
+}
@@ -0,0 +1,155 @@
+package org.motechproject.scheduler.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventBatchResult;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.scheduler.contract.FireMetrics;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ScheduledEventPublisherTest {
+
+    @Mock
+    private EventRelay eventRelay;
+
+    @Mock
+    private SettingsFacade schedulerSettings;
+
+    private ScheduledEventPublisher publisher;
+
+    private SchedulerMetricsRecorder schedulerMetrics;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        schedulerMetrics = new SchedulerMetricsRecorder();
+
+        publisher = new ScheduledEventPublisher();
+        publisher.setEventRelay(eventRelay);
+        publisher.setSchedulerSettings(schedulerSettings);
+        publisher.setSchedulerMetrics(schedulerMetrics);
+    }
+
+    @After
+    public void tearDown() {
+        publisher.destroy();
+    }
+
+    @Test
+    public void shouldSendEventsDirectlyByDefault() {
+        publisher.init();
+
+        MotechEvent event = new MotechEvent("subject");
+        publisher.publish(event, new Date(1000), new Date(1250));
+
+        verify(eventRelay).sendEventMessage(event);
+        verify(eventRelay, never()).sendEventMessages(anyListOf(MotechEvent.class));
+        FireMetrics fireMetrics = schedulerMetrics.getFireMetrics().get(0);
+        assertEquals("subject", fireMetrics.getSubject());
+        assertEquals(1, fireMetrics.getFired());
+        assertEquals(250, fireMetrics.getFireLag().getMaxMillis(), 0.001);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSendEventsInBatchesOrderedByScheduledFireTime() throws InterruptedException {
+        CountDownLatch sent = new CountDownLatch(1);
+
+        when(schedulerSettings.getProperty("scheduler.firing.mode")).thenReturn("batch");
+        when(schedulerSettings.getProperty("scheduler.firing.batch.size")).thenReturn("3");
+        when(schedulerSettings.getProperty("scheduler.firing.batch.linger")).thenReturn("5000");
+        when(eventRelay.sendEventMessages(anyListOf(MotechEvent.class))).thenAnswer(countDown(sent, new EventBatchResult()));
+        publisher.init();
+
+        MotechEvent first = new MotechEvent("first");
+        MotechEvent second = new MotechEvent("second");
+        MotechEvent third = new MotechEvent("third");
+
+        publisher.publish(third, new Date(3000), new Date(3000));
+        publisher.publish(first, new Date(1000), new Date(3000));
+        publisher.publish(second, new Date(2000), new Date(3000));
+
+        assertTrue(sent.await(2, TimeUnit.SECONDS));
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(eventRelay).sendEventMessages(captor.capture());
+
+        assertEquals(asList(first, second, third), captor.getValue());
+        verify(eventRelay, never()).sendEventMessage(first);
+        assertEquals(3, schedulerMetrics.getFireMetrics().size());
+        assertEquals(2000, schedulerMetrics.getFireMetrics().get(0).getFireLag().getMaxMillis(), 0.001);
+    }
+
+    @Test
+    public void shouldResendFailedEventsOneByOne() throws InterruptedException {
+        CountDownLatch resent = new CountDownLatch(1);
+        MotechEvent event = new MotechEvent("subject");
+
+        EventBatchResult result = new EventBatchResult();
+        result.addFailure(event, new IllegalStateException());
+
+        when(schedulerSettings.getProperty("scheduler.firing.mode")).thenReturn("batch");
+        when(schedulerSettings.getProperty("scheduler.firing.batch.size")).thenReturn("1");
+        when(eventRelay.sendEventMessages(anyListOf(MotechEvent.class))).thenReturn(result);
+        doAnswer(countDown(resent, null)).when(eventRelay).sendEventMessage(event);
+        publisher.init();
+
+        publisher.publish(event, new Date(1000), new Date(1000));
+
+        assertTrue(resent.await(2, TimeUnit.SECONDS));
+        verify(eventRelay).sendEventMessage(event);
+    }
+
+    @Test
+    public void shouldSendQueuedEventsWhenStoppedAndLaterEventsDirectly() {
+        when(schedulerSettings.getProperty("scheduler.firing.mode")).thenReturn("batch");
+        when(schedulerSettings.getProperty("scheduler.firing.batch.size")).thenReturn("10");
+        when(schedulerSettings.getProperty("scheduler.firing.batch.linger")).thenReturn("5000");
+        when(eventRelay.sendEventMessages(anyListOf(MotechEvent.class))).thenReturn(new EventBatchResult());
+        publisher.init();
+
+        MotechEvent queued = new MotechEvent("queued");
+        publisher.publish(queued, new Date(1000), new Date(1000));
+
+        publisher.destroy();
+
+        verify(eventRelay).sendEventMessages(asList(queued));
+
+        MotechEvent late = new MotechEvent("late");
+        publisher.publish(late, new Date(2000), new Date(2000));
+
+        verify(eventRelay).sendEventMessage(late);
+    }
+
+    private Answer<Object> countDown(final CountDownLatch latch, final Object result) {
+        return new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                latch.countDown();
+                return result;
+            }
+        };
+    }
+}
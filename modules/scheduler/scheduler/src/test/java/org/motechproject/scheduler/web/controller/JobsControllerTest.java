@@ -4,9 +4,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.motechproject.event.metrics.LatencySnapshot;
+import org.motechproject.scheduler.contract.FireMetrics;
 import org.motechproject.scheduler.contract.JobBasicInfo;
 import org.motechproject.scheduler.service.MotechSchedulerDatabaseService;
 import org.motechproject.scheduler.service.MotechSchedulerService;
+import org.motechproject.scheduler.service.SchedulerMetricsService;
 import org.motechproject.scheduler.contract.JobsSearchSettings;
 import org.motechproject.scheduler.web.domain.JobsRecords;
 import org.quartz.SchedulerException;
@@ -15,6 +18,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,6 +38,9 @@ public class JobsControllerTest {
     @Mock
     MotechSchedulerDatabaseService motechSchedulerDatabaseService;
 
+    @Mock
+    SchedulerMetricsService schedulerMetricsService;
+
     JobBasicInfo testJobBasicInfo1;
     JobBasicInfo testJobBasicInfo2;
     JobBasicInfo testJobBasicInfo3;
@@ -105,6 +112,22 @@ public class JobsControllerTest {
         verify(motechSchedulerDatabaseService).getScheduledJobDetailedInfo(testJobBasicInfo3);
     }
 
+    @Test
+    public void shouldGetFireMetrics() {
+        List<FireMetrics> fireMetrics = asList(new FireMetrics("subject", 10,
+                new LatencySnapshot(10, 1.5, 4, 1, 2, 4, new long[0])));
+        when(schedulerMetricsService.getFireMetrics()).thenReturn(fireMetrics);
+
+        assertEquals(fireMetrics, jobsController.fireMetrics());
+    }
+
+    @Test
+    public void shouldResetMetrics() {
+        jobsController.resetMetrics();
+
+        verify(schedulerMetricsService).reset();
+    }
+
     private JobsSearchSettings getDefaultGridSettings() {
         JobsSearchSettings jobsSearchSettings = new JobsSearchSettings();
 
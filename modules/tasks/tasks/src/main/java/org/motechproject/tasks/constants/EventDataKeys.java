@@ -29,7 +29,9 @@ public final class EventDataKeys {
     public static final String REPEAT_INTERVAL_TIME = "repeatIntervalInSeconds";
     public static final String JOB_SUBJECT = "jobSubject";
     public static final String TASK_ID = "task_ID";
+    public static final String TASK_IDS = "task_IDs";
     public static final String TASK_ACTIVITY_ID = "task_activity_ID";
     public static final String TASK_RETRY = "taskRetry";
+    public static final String ORIGIN_NODE = "originNode";
 
 }
@@ -17,10 +17,13 @@ public final class EventSubjects {
     public static final String CHANNEL_UPDATE_SUBJECT = CHANNEL_SUBJECT + "update";
     public static final String CHANNEL_REGISTER_SUBJECT = CHANNEL_SUBJECT + "register";
     public static final String CHANNEL_DEREGISTER_SUBJECT = CHANNEL_SUBJECT + "deregister";
+    public static final String CHANNEL_CHANGED_SUBJECT = CHANNEL_SUBJECT + "changed";
 
     public static final String DATA_PROVIDER_SUBJECT = BASE_SUBJECT + "dataProvider.";
     public static final String DATA_PROVIDER_UPDATE_SUBJECT = DATA_PROVIDER_SUBJECT + "update";
 
+    public static final String TASK_CHANGED_SUBJECT = BASE_SUBJECT + "task.changed";
+
     public static final String SCHEDULE_REPEATING_JOB = "scheduleRepeatingJob";
     public static final String UNSCHEDULE_REPEATING_JOB = "unscheduleRepeatingJob";
 
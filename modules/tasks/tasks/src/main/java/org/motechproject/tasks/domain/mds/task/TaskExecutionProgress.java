@@ -33,6 +33,10 @@ public class TaskExecutionProgress {
         return actionsSucceeded;
     }
 
+    public void setActionsSucceeded(int actionsSucceeded) {
+        this.actionsSucceeded = actionsSucceeded;
+    }
+
     public void addSuccess() {
         actionsSucceeded++;
     }
@@ -15,11 +15,12 @@ import java.util.Set;
 public interface TaskActivityService {
 
     /**
-     * Adds a new task activity log and marks it as "In Progress".
+     * Adds a new task activity log and marks it as "In Progress". If activities are recorded asynchronously, the
+     * log is kept in memory and is written to the database once the task execution finishes.
      *
      * @param task The task to add the log for
      * @param parameters The event trigger parameters the task was initiated with
-     * @return id of the created activity log
+     * @return id of the created activity log, negative if the log is kept in memory
      */
     long addTaskStarted(Task task, Map<String, Object> parameters);
 
@@ -40,6 +41,15 @@ public interface TaskActivityService {
      */
     void addFailedExecution(Long activityId, Throwable e);
 
+    /**
+     * Makes sure the activity of the provided id is stored in the database, so that it can be updated by callbacks
+     * handled on any node. An activity kept in memory is written right away.
+     *
+     * @param activityId the id of the activity
+     * @return the id of the activity in the database
+     */
+    long persistActivity(Long activityId);
+
     /**
      * Logs a warning for the given task.
      *
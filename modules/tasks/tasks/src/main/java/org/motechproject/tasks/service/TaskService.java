@@ -61,13 +61,21 @@ public interface TaskService {
 
     /**
      * Returns the list of active tasks for the given trigger subject. Used for retrieving tasks to execute when a given
-     * trigger fires.
+     * trigger fires. The tasks are retrieved from an in-memory index, which is updated whenever tasks are saved or
+     * deleted using this service, on any node of the cluster.
      *
      * @param subject  the subject of the trigger, null returns empty list
      * @return  the list of active tasks
      */
     List<Task> findActiveTasksForTriggerSubject(final String subject);
 
+    /**
+     * Reloads the in-memory index of active tasks used by {@link #findActiveTasksForTriggerSubject(String)} from
+     * the database. This is only required after tasks were modified without using this service, for example directly
+     * through the data service.
+     */
+    void reloadActiveTasks();
+
     /**
      * Returns the list of task dependent on the module with the given name.
      *
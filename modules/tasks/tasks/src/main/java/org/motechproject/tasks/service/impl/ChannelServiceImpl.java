@@ -39,6 +39,7 @@ import java.util.Set;
 
 import static org.apache.commons.collections.CollectionUtils.isEmpty;
 import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAME;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_CHANGED_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 
@@ -201,6 +202,7 @@ public class ChannelServiceImpl implements ChannelService {
         parameters.put(CHANNEL_MODULE_NAME, channel.getModuleName());
 
         eventRelay.sendEventMessage(new MotechEvent(CHANNEL_UPDATE_SUBJECT, parameters));
+        broadcastChannelChanged(channel.getModuleName());
     }
 
     private void sendChannelDeleteEvent(String moduleName) {
@@ -208,6 +210,15 @@ public class ChannelServiceImpl implements ChannelService {
         parameters.put(CHANNEL_MODULE_NAME, moduleName);
 
         eventRelay.sendEventMessage(new MotechEvent(CHANNEL_DEREGISTER_SUBJECT, parameters));
+        broadcastChannelChanged(moduleName);
+    }
+
+    private void broadcastChannelChanged(String moduleName) {
+        // the update and deregister events are handled by a single node, every node must drop its execution plans
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(CHANNEL_MODULE_NAME, moduleName);
+
+        eventRelay.broadcastEventMessage(new MotechEvent(CHANNEL_CHANGED_SUBJECT, parameters));
     }
 
 }
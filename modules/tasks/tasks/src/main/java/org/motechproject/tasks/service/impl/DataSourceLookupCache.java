@@ -0,0 +1,297 @@
+package org.motechproject.tasks.service.impl;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.commons.api.DataProvider;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListenerRegistryService;
+import org.motechproject.event.listener.annotations.MotechListenerEventProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_NAME;
+
+/**
+ * Caches the objects retrieved from data providers by the data source steps of tasks. Objects are always cached
+ * within an {@link EventScope}, which covers all the tasks triggered by a single event, and identical lookups running
+ * at the same time in such scope are executed only once. If <code>task.lookup.cache.ttl</code> is set, objects are
+ * also shared across events for the given number of milliseconds, and are dropped earlier when an MDS CRUD event is
+ * received for their entity.
+ * <p/>
+ * The shared objects are kept by each node separately. MDS CRUD events are queue events, delivered to a single node,
+ * so objects cached by other nodes are not dropped when their entity changes, and can be stale for up to the TTL.
+ * The listener of CRUD events is only registered if objects are shared across events, so that no events are
+ * consumed when the TTL is not set.
+ * <p/>
+ * Lookups are identified by the name of the provider, the type of the object, the name of the lookup and the
+ * evaluated values of the lookup fields.
+ */
+@Component
+public class DataSourceLookupCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceLookupCache.class);
+
+    private static final String BEAN_NAME = "dataSourceLookupCache";
+    private static final String MDS_CRUD_SUBJECTS = "mds.crud.*";
+    private static final String TTL = "task.lookup.cache.ttl";
+    private static final String MAX_SIZE = "task.lookup.cache.size";
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final ConcurrentMap<LookupKey, CachedObject> shared = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private SettingsFacade settings;
+    private EventListenerRegistryService registryService;
+
+    private long ttl;
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Reads the configuration of the cache shared across events.
+     */
+    @PostConstruct
+    public void init() {
+        if (settings != null) {
+            ttl = NumberUtils.toLong(settings.getProperty(TTL), 0);
+            maxSize = NumberUtils.toInt(settings.getProperty(MAX_SIZE), DEFAULT_MAX_SIZE);
+        }
+
+        if (ttl > 0) {
+            LOGGER.info("Sharing data source objects across events for {} ms", ttl);
+            registerCrudListener();
+        }
+    }
+
+    /**
+     * Stops listening to MDS CRUD events.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (registryService != null) {
+            registryService.clearListenersForBean(BEAN_NAME);
+        }
+    }
+
+    /**
+     * Creates a new scope for the lookups of the tasks triggered by a single event.
+     *
+     * @return the new scope
+     */
+    public EventScope newEventScope() {
+        return new EventScope();
+    }
+
+    /**
+     * Drops the shared objects of the entity changed in MDS. Registered as a listener of MDS CRUD events only if
+     * objects are shared across events.
+     *
+     * @param event  the MDS CRUD event
+     */
+    public void handleCrudEvent(MotechEvent event) {
+        if (shared.isEmpty()) {
+            return;
+        }
+
+        Object entityClass = event.getParameters().get(ENTITY_CLASS);
+        Object entityName = event.getParameters().get(ENTITY_NAME);
+
+        invalidations.incrementAndGet();
+        for (Iterator<LookupKey> iterator = shared.keySet().iterator(); iterator.hasNext();) {
+            String type = iterator.next().type;
+            if (type != null && (type.equals(entityClass) || type.equals(entityName))) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all the shared objects.
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        shared.clear();
+    }
+
+    private void registerCrudListener() {
+        if (registryService == null) {
+            return;
+        }
+
+        Method method = ReflectionUtils.findMethod(getClass(), "handleCrudEvent", MotechEvent.class);
+        registryService.registerListener(new MotechListenerEventProxy(BEAN_NAME, this, method), MDS_CRUD_SUBJECTS);
+    }
+
+    private Object lookupShared(LookupKey key, DataProvider provider, Map<String, String> lookupFields) {
+        if (ttl <= 0) {
+            return provider.lookup(key.type, key.lookupName, lookupFields);
+        }
+
+        long now = System.currentTimeMillis();
+        CachedObject cached = shared.get(key);
+
+        if (cached != null && cached.expires > now) {
+            return cached.object;
+        }
+
+        long invalidationsBefore = invalidations.get();
+        Object object = provider.lookup(key.type, key.lookupName, lookupFields);
+
+        if (shared.size() >= maxSize) {
+            removeExpired(now);
+        }
+        // an object retrieved while its entity was being changed could already be stale
+        if (shared.size() < maxSize && invalidationsBefore == invalidations.get()) {
+            shared.put(key, new CachedObject(object, now + ttl));
+        }
+
+        return object;
+    }
+
+    private void removeExpired(long now) {
+        for (Iterator<CachedObject> iterator = shared.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().expires <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Autowired(required = false)
+    @Qualifier("tasksSettings")
+    public void setSettings(SettingsFacade settings) {
+        this.settings = settings;
+    }
+
+    @Autowired(required = false)
+    public void setRegistryService(EventListenerRegistryService registryService) {
+        this.registryService = registryService;
+    }
+
+    void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * The lookups of the tasks triggered by a single event. Objects are cached for the whole scope, and concurrent
+     * identical lookups wait for the first one instead of querying the provider again.
+     */
+    public final class EventScope {
+
+        private final ConcurrentMap<LookupKey, FutureTask<Object>> lookups = new ConcurrentHashMap<>();
+
+        private EventScope() {
+        }
+
+        /**
+         * Looks up the object using the given provider, unless it was already looked up in this scope.
+         *
+         * @param provider  the data provider, not null
+         * @param type  the type of the object
+         * @param lookupName  the name of the lookup
+         * @param lookupFields  the evaluated values of the lookup fields
+         * @return the object, null if it was not found
+         */
+        public Object lookup(final DataProvider provider, String type, String lookupName,
+                             Map<String, String> lookupFields) {
+            final LookupKey key = new LookupKey(provider.getName(), type, lookupName, lookupFields);
+            final Map<String, String> fields = new HashMap<>(lookupFields);
+
+            FutureTask<Object> lookup = lookups.get(key);
+
+            if (lookup == null) {
+                FutureTask<Object> created = new FutureTask<>(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        return lookupShared(key, provider, fields);
+                    }
+                });
+
+                lookup = lookups.putIfAbsent(key, created);
+                if (lookup == null) {
+                    lookup = created;
+                    created.run();
+                }
+            }
+
+            try {
+                return lookup.get();
+            } catch (ExecutionException e) {
+                // failed lookups are not cached
+                lookups.remove(key, lookup);
+
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for lookup of " + type, e);
+            }
+        }
+    }
+
+    private static final class LookupKey {
+
+        private final String providerName;
+        private final String type;
+        private final String lookupName;
+        private final Map<String, String> lookupFields;
+
+        private LookupKey(String providerName, String type, String lookupName, Map<String, String> lookupFields) {
+            this.providerName = providerName;
+            this.type = type;
+            this.lookupName = lookupName;
+            this.lookupFields = new HashMap<>(lookupFields);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey that = (LookupKey) o;
+            return Objects.equals(providerName, that.providerName) && Objects.equals(type, that.type)
+                    && Objects.equals(lookupName, that.lookupName) && Objects.equals(lookupFields, that.lookupFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(providerName, type, lookupName, lookupFields);
+        }
+    }
+
+    private static final class CachedObject {
+
+        private final Object object;
+        private final long expires;
+
+        private CachedObject(Object object, long expires) {
+            this.object = object;
+            this.expires = expires;
+        }
+    }
+}
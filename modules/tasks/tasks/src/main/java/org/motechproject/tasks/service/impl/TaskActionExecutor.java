@@ -3,8 +3,9 @@ package org.motechproject.tasks.service.impl;
 import com.google.common.collect.Multimap;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventConsumerInfo;
 import org.motechproject.event.listener.EventRelay;
-import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.constants.EventDataKeys;
 import org.motechproject.tasks.domain.mds.ParameterType;
 import org.motechproject.tasks.domain.mds.channel.ActionEvent;
 import org.motechproject.tasks.domain.mds.channel.ActionParameter;
@@ -14,6 +15,8 @@ import org.motechproject.tasks.exception.ActionNotFoundException;
 import org.motechproject.tasks.exception.TaskHandlerException;
 import org.motechproject.tasks.service.TaskActivityService;
 import org.motechproject.tasks.service.TaskService;
+import org.motechproject.tasks.service.impl.TaskExecutionPlan.ActionPlan;
+import org.motechproject.tasks.service.util.CompiledTemplate;
 import org.motechproject.tasks.service.util.KeyEvaluator;
 import org.motechproject.tasks.service.util.TaskContext;
 import org.osgi.framework.BundleContext;
@@ -51,6 +54,7 @@ public class TaskActionExecutor {
     private TaskService taskService;
     private TaskActivityService activityService;
     private TasksPostExecutionHandler postExecutionHandler;
+    private EventConsumerInfo eventConsumerInfo;
 
     @Autowired
     public TaskActionExecutor(TaskService taskService, TaskActivityService activityService,
@@ -72,11 +76,31 @@ public class TaskActionExecutor {
      * @throws TaskHandlerException when the task couldn't be executed
      */
     public void execute(Task task, TaskActionInformation actionInformation, Integer actionIndex, TaskContext taskContext, long activityId) throws TaskHandlerException {
+        ActionPlan actionPlan = TaskExecutionPlan.compileAction(actionInformation, getActionEvent(actionInformation));
+        execute(task, actionPlan, actionIndex, taskContext, activityId);
+    }
+
+    /**
+     * Executes the compiled action for the given task.
+     *
+     * @param task  the task for which its action should be executed, not null
+     * @param actionPlan  the compiled action, taken from the execution plan of the task, not null
+     * @param actionIndex the order of the task action
+     * @param taskContext  the context of the current task execution, not null
+     * @param activityId the ID of the activity associated with this execution
+     * @throws TaskHandlerException when the task couldn't be executed
+     */
+    void execute(Task task, ActionPlan actionPlan, Integer actionIndex, TaskContext taskContext, long activityId) throws TaskHandlerException {
+        TaskActionInformation actionInformation = actionPlan.getInformation();
         LOGGER.info("Executing task action: {} from task: {}", actionInformation.getName(), task.getName());
         KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
 
-        ActionEvent action = getActionEvent(actionInformation);
-        Map<String, Object> parameters = createParameters(actionInformation, action, keyEvaluator);
+        ActionEvent action = actionPlan.getActionEvent();
+        if (action == null) {
+            throw new TaskHandlerException(TRIGGER, "task.error.actionNotFound", actionPlan.getNotFoundException());
+        }
+
+        Map<String, Object> parameters = createParameters(actionPlan, keyEvaluator);
         addTriggerParameters(task, action, parameters, taskContext.getTriggerParameters());
 
         LOGGER.debug("Parameters created: {} for task action: {}", parameters.toString(), action.getName());
@@ -93,11 +117,23 @@ public class TaskActionExecutor {
         if (!action.hasSubject()) {
             throw new TaskHandlerException(ACTION, "task.error.cantExecuteAction");
         } else {
+            if (activityId < 0 && !isCallbackHandledLocally()) {
+                // the callback can be handled on another node, which will only find the activity in the database
+                taskContext.getMetadata().put(EventDataKeys.TASK_ACTIVITY_ID, activityService.persistActivity(activityId));
+            }
             eventRelay.sendEventMessage(new MotechEvent(action.getSubject(), parameters, TasksEventCallbackService.TASKS_EVENT_CALLBACK_NAME, taskContext.getMetadata()));
             LOGGER.info("Event: {} was sent", action.getSubject());
         }
     }
 
+    /**
+     * Checks whether the callback of an event sent by this node is handled by this node as well, which is the case
+     * if events are dispatched in-process. The activity recorded in memory can then be found by the callback.
+     */
+    private boolean isCallbackHandledLocally() {
+        return eventConsumerInfo != null && eventConsumerInfo.isLocalTransport();
+    }
+
     private ActionEvent getActionEvent(TaskActionInformation actionInformation)
             throws TaskHandlerException {
         ActionEvent action;
@@ -111,8 +147,9 @@ public class TaskActionExecutor {
         return action;
     }
 
-    private Map<String, Object> createParameters(TaskActionInformation info,
-                                         ActionEvent action, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+    private Map<String, Object> createParameters(ActionPlan actionPlan, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+        TaskActionInformation info = actionPlan.getInformation();
+        ActionEvent action = actionPlan.getActionEvent();
         SortedSet<ActionParameter> actionParameters = action.getActionParameters();
         Map<String, Object> parameters = new HashMap<>(actionParameters.size());
 
@@ -120,9 +157,7 @@ public class TaskActionExecutor {
             String key = actionParameter.getKey();
 
             if (info.getValues().containsKey(key)) {
-                String template = info.getValues().get(key);
-
-                if (template == null) {
+                if (info.getValues().get(key) == null) {
                     throw new TaskHandlerException(
                         TRIGGER, "task.error.templateNull", key, action.getDisplayName()
                     );
@@ -130,14 +165,14 @@ public class TaskActionExecutor {
 
                 switch (actionParameter.getType()) {
                     case LIST:
-                        parameters.put(key, convertToList((List<String>) LIST.parse(template), keyEvaluator));
+                        parameters.put(key, convertToList(actionPlan.getList(key), keyEvaluator));
                         break;
                     case MAP:
-                        parameters.put(key, convertToMap(template, keyEvaluator));
+                        parameters.put(key, convertToMap(actionPlan.getMap(key), keyEvaluator));
                         break;
                     default:
                         try {
-                            String userInput = keyEvaluator.evaluateTemplateString(template);
+                            String userInput = keyEvaluator.evaluateTemplate(actionPlan.getValue(key));
                             Object obj = actionParameter.getType().parse(userInput);
                             parameters.put(key, obj);
                         } catch (MotechException ex) {
@@ -163,25 +198,21 @@ public class TaskActionExecutor {
         return parameters;
     }
 
-    private Map<Object, Object> convertToMap(String template, KeyEvaluator keyEvaluator) throws TaskHandlerException {
-        String[] rows = template.split("(\\r)?\\n");
-        Map<Object, Object> tempMap = new HashMap<>(rows.length);
+    private Map<Object, Object> convertToMap(List<CompiledTemplate[]> rows, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+        Map<Object, Object> tempMap = new HashMap<>(rows.size());
 
-        for (String row : rows) {
-            String[] array = row.split(":", 2);
+        for (CompiledTemplate[] row : rows) {
             Object mapValue;
 
-            switch (array.length) {
+            switch (row.length) {
                 case 2:
-                    array[1] = array[1].trim();
-
                     tempMap.put(
-                        keyEvaluator.evaluateTemplateString(array[0]),
-                        keyEvaluator.evaluateTemplateString(array[1])
+                        keyEvaluator.evaluateTemplate(row[0]),
+                        keyEvaluator.evaluateTemplate(row[1])
                     );
                     break;
                 case 1:
-                    mapValue = getValue(array[0], keyEvaluator);
+                    mapValue = getValue(row[0], row[0].getTemplate(), keyEvaluator);
                     if (mapValue instanceof Multimap) {
                         tempMap.putAll(((Multimap) mapValue).asMap());
                     } else {
@@ -194,16 +225,16 @@ public class TaskActionExecutor {
         return tempMap;
     }
 
-    private List<Object> convertToList(List<String> templates, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+    private List<Object> convertToList(List<CompiledTemplate> templates, KeyEvaluator keyEvaluator) throws TaskHandlerException {
         List<Object> tempList = new ArrayList<>();
 
-        for (String template : templates) {
-            Object value = getValue(template.trim(), keyEvaluator);
+        for (CompiledTemplate template : templates) {
+            Object value = getValue(template, template.getTemplate().trim(), keyEvaluator);
             if (value != null) {
                 if (value instanceof Collection) {
                     tempList.addAll((Collection) value);
                 } else {
-                    tempList.add(ParameterType.getType(value.getClass()).parse(keyEvaluator.evaluateTemplateString(template)));
+                    tempList.add(ParameterType.getType(value.getClass()).parse(keyEvaluator.evaluateTemplate(template)));
                 }
             }
         }
@@ -211,18 +242,8 @@ public class TaskActionExecutor {
         return tempList;
     }
 
-    private Object getValue(String row, KeyEvaluator keyEvaluator) throws TaskHandlerException {
-        List<KeyInformation> keys = KeyInformation.parseAll(row);
-
-        Object result;
-        if (keys.isEmpty()) {
-            result = row;
-        } else {
-            KeyInformation rowKeyInfo = keys.get(0);
-            result = keyEvaluator.getValue(rowKeyInfo);
-        }
-
-        return result;
+    private Object getValue(CompiledTemplate template, String row, KeyEvaluator keyEvaluator) throws TaskHandlerException {
+        return template.hasKeys() ? keyEvaluator.getValue(template.getKeys().get(0)) : row;
     }
 
     private boolean callActionServiceMethod(ActionEvent action, Integer actionIndex, Map<String, Object> parameters, TaskContext taskContext)
@@ -281,4 +302,9 @@ public class TaskActionExecutor {
     void setBundleContext(BundleContext bundleContext) {
         this.bundleContext = bundleContext;
     }
+
+    @Autowired(required = false)
+    public void setEventConsumerInfo(EventConsumerInfo eventConsumerInfo) {
+        this.eventConsumerInfo = eventConsumerInfo;
+    }
 }
@@ -0,0 +1,600 @@
+package org.motechproject.tasks.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.tasks.domain.mds.task.TaskActivity;
+import org.motechproject.tasks.domain.mds.task.TaskActivityType;
+import org.motechproject.tasks.domain.mds.task.TaskExecutionProgress;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records the activities of task executions in memory and writes them to the database in batches. An activity is
+ * kept in memory, under a negative ID, until the execution of its task finishes or fails. It is then queued and
+ * written together with other activities by a background flusher. Activities of executions which do not finish
+ * within the in-progress timeout are written as "In Progress" and updated once they finish.
+ * <p/>
+ * If the queue is full, the thread recording the activity flushes the queue itself, or waits for room in it if
+ * another thread is flushing. Activities are therefore visible in the activity view once they are flushed, not
+ * right after they are recorded. Writes which fail are retried by the following flushes, up to
+ * {@value #MAX_WRITE_ATTEMPTS} times. Activities are written in their own transactions, so a rollback of the
+ * transaction of the caller does not discard them.
+ * <p/>
+ * IDs of activities kept in memory are only known to the node which recorded them. Before an action whose
+ * result is reported back through a callback handled on another node is dispatched, the activity is therefore
+ * {@link #persist(Long) written} right away, and from then on its in-memory ID refers to the stored one.
+ * <p/>
+ * Changes of an activity are applied under the lock of its entry, which is never held during database I/O. Writes
+ * of an entry are serialized by its own write lock instead, which the recording threads do not take.
+ *
+ * @see TaskActivityServiceImpl
+ */
+class TaskActivityRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityRecorder.class);
+
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    /**
+     * The way task activities are recorded.
+     */
+    enum Mode {
+        /**
+         * Every change of an activity is written to the database in its own transaction.
+         */
+        SYNC,
+        /**
+         * Activities are written in batches once their executions finish.
+         */
+        ASYNC,
+        /**
+         * Like {@link #ASYNC}, but activities of successful executions are not written at all.
+         */
+        OFF_FOR_SUCCESS;
+
+        static Mode fromString(String value) {
+            if (StringUtils.isBlank(value)) {
+                return SYNC;
+            }
+
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase());
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Unknown task activity recording mode: {}, recording activities synchronously", value);
+                return SYNC;
+            }
+        }
+    }
+
+    /**
+     * Applies a change to an activity recorded in memory.
+     *
+     * @param <T> the type of the result of the change
+     */
+    interface ActivityUpdate<T> {
+
+        /**
+         * Applies the change to the given activity.
+         *
+         * @param activity  the activity, not null
+         * @return the result of the change
+         */
+        T apply(TaskActivity activity);
+    }
+
+    private final TaskActivitiesDataService taskActivitiesDataService;
+    private final TransactionTemplate transactionTemplate;
+    private final Mode mode;
+    private final int flushSize;
+    private final long flushInterval;
+    private final long inProgressTimeout;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Entry> inProgress = new ConcurrentHashMap<>();
+    private final Map<Long, Entry> finished;
+    private final Map<Long, Long> persisted;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Lock flushLock = new ReentrantLock();
+
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Constructor.
+     *
+     * @param taskActivitiesDataService  the data service used to write the activities
+     * @param transactionTemplate  the template of the transactions in which activities are written, should start
+     *                             new transactions; if null, the transactions of the data service are used
+     * @param mode  the recording mode
+     * @param flushSize  the maximum number of activities written in a single transaction
+     * @param flushInterval  the delay between flushes, in milliseconds
+     * @param queueCapacity  the capacity of the queue of activities waiting to be written
+     * @param inProgressTimeout  the time after which activities in progress are written, in milliseconds
+     */
+    TaskActivityRecorder(TaskActivitiesDataService taskActivitiesDataService, TransactionTemplate transactionTemplate,
+                         Mode mode, int flushSize, long flushInterval, final int queueCapacity,
+                         long inProgressTimeout) {
+        this.taskActivitiesDataService = taskActivitiesDataService;
+        this.transactionTemplate = transactionTemplate;
+        this.mode = mode;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.inProgressTimeout = inProgressTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // finished activities are kept for late callbacks of their executions, up to the capacity of the queue
+        this.finished = Collections.synchronizedMap(new LinkedHashMap<Long, Entry>() {
+            private static final long serialVersionUID = 8476024335385093117L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > queueCapacity;
+            }
+        });
+        // in-memory IDs of the activities written on demand, mapped to their IDs in the database
+        this.persisted = Collections.synchronizedMap(new LinkedHashMap<Long, Long>() {
+            private static final long serialVersionUID = -2036245431567542361L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > queueCapacity;
+            }
+        });
+    }
+
+    /**
+     * Starts flushing the recorded activities in the background.
+     */
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush(false);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unable to flush task activities", e);
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background flusher and writes all recorded activities, including the ones still in progress.
+     */
+    void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        for (int i = 0; i < MAX_WRITE_ATTEMPTS && !queue.isEmpty(); ++i) {
+            flush(true);
+        }
+        if (!queue.isEmpty()) {
+            LOGGER.error("Unable to write {} task activities, they are lost", queue.size());
+        }
+    }
+
+    /**
+     * Checks whether the activity with the given ID was recorded by this recorder.
+     *
+     * @param activityId  the ID of the activity
+     * @return true if the activity was recorded in memory, false if it is stored in the database
+     */
+    boolean isRecorded(Long activityId) {
+        return activityId != null && activityId < 0;
+    }
+
+    /**
+     * Records the given activity of a started task execution.
+     *
+     * @param activity  the activity, not null
+     * @return the ID under which the activity was recorded
+     */
+    long start(TaskActivity activity) {
+        long activityId = -sequence.incrementAndGet();
+        inProgress.put(activityId, new Entry(activityId, activity));
+        return activityId;
+    }
+
+    /**
+     * Applies the given change to the recorded activity with the given ID. If the activity is no longer in progress
+     * after the change, it is queued for writing.
+     *
+     * @param activityId  the ID of the activity
+     * @param update  the change, not null
+     * @param <T>  the type of the result of the change
+     * @return the result of the change, null if there is no activity with the given ID
+     */
+    <T> T update(Long activityId, ActivityUpdate<T> update) {
+        Entry entry = find(activityId);
+        if (entry == null) {
+            Long persistedId = persisted.get(activityId);
+            return persistedId == null ? null : updatePersisted(persistedId, update);
+        }
+
+        T result = null;
+        boolean detached;
+        PendingWrite write = null;
+
+        synchronized (entry) {
+            detached = entry.detached;
+            if (!detached) {
+                result = update.apply(entry.activity);
+                entry.version++;
+
+                if (entry.activity.getActivityType() != TaskActivityType.IN_PROGRESS) {
+                    if (inProgress.remove(activityId) != null) {
+                        finished.put(activityId, entry);
+                    }
+
+                    boolean skipped = mode == Mode.OFF_FOR_SUCCESS
+                            && entry.activity.getActivityType() == TaskActivityType.SUCCESS && !entry.queued;
+                    if (!skipped) {
+                        write = entry.snapshot();
+                    }
+                }
+            }
+        }
+
+        if (detached) {
+            // the activity was written on demand, it is no longer changed in memory
+            return updatePersisted(entry.persistedId, update);
+        }
+
+        if (write != null) {
+            enqueue(write);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a copy of the recorded activity with the given ID.
+     *
+     * @param activityId  the ID of the activity
+     * @return the copy of the activity, null if there is no activity with the given ID
+     */
+    TaskActivity get(Long activityId) {
+        Entry entry = find(activityId);
+        if (entry == null) {
+            Long persistedId = persisted.get(activityId);
+            return persistedId == null ? null : taskActivitiesDataService.findById(persistedId);
+        }
+
+        synchronized (entry) {
+            if (!entry.detached) {
+                TaskActivity activity = copy(entry.activity);
+                activity.setId(entry.persistedId == null ? activityId : entry.persistedId);
+                return activity;
+            }
+        }
+
+        return taskActivitiesDataService.findById(entry.persistedId);
+    }
+
+    /**
+     * Writes the recorded activity with the given ID to the database right away, unless it was already written.
+     * All further changes of the activity are applied directly to the database, so that they do not conflict with
+     * changes made by other nodes.
+     *
+     * @param activityId  the in-memory ID of the activity
+     * @return the ID of the activity in the database
+     * @throws IllegalStateException if there is no activity with the given ID, or it could not be written
+     */
+    long persist(Long activityId) {
+        Entry entry = find(activityId);
+        if (entry == null) {
+            Long persistedId = persisted.get(activityId);
+            if (persistedId == null) {
+                throw new IllegalStateException("There is no task activity with ID: " + activityId);
+            }
+            return persistedId;
+        }
+
+        entry.writeLock.lock();
+        try {
+            while (true) {
+                PendingWrite write;
+
+                synchronized (entry) {
+                    if (entry.detached) {
+                        return entry.persistedId;
+                    }
+                    if (entry.persistedId != null && entry.writtenVersion == entry.version) {
+                        // queued writes of older states of the activity are skipped from now on
+                        entry.detached = true;
+                        persisted.put(activityId, entry.persistedId);
+                        inProgress.remove(activityId);
+                        finished.remove(activityId);
+                        return entry.persistedId;
+                    }
+                    write = entry.snapshot();
+                }
+
+                // the activity could change while it is written, it is then written again
+                if (!write(Collections.singletonList(write))) {
+                    throw new IllegalStateException("Unable to write task activity with ID: " + activityId);
+                }
+            }
+        } finally {
+            entry.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes all queued activities, and activities in progress for longer than the in-progress timeout.
+     */
+    void flush() {
+        flush(false);
+    }
+
+    private void flush(boolean all) {
+        flushLock.lock();
+        try {
+            flushLocked(all);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLocked(boolean all) {
+        List<PendingWrite> failed = new ArrayList<>();
+
+        // stale activities are written first, so that the updates queued after they were taken out are applied later
+        List<PendingWrite> stale = takeStale(all ? Long.MAX_VALUE : System.currentTimeMillis() - inProgressTimeout);
+        for (int i = 0; i < stale.size(); i += flushSize) {
+            List<PendingWrite> batch = stale.subList(i, Math.min(i + flushSize, stale.size()));
+            if (!write(batch)) {
+                failed.addAll(batch);
+            }
+        }
+
+        List<PendingWrite> batch = new ArrayList<>(flushSize);
+        while (queue.drainTo(batch, flushSize) > 0) {
+            if (!write(batch)) {
+                failed.addAll(batch);
+            }
+            batch.clear();
+        }
+
+        retry(failed);
+    }
+
+    private void retry(List<PendingWrite> failed) {
+        for (PendingWrite write : failed) {
+            PendingWrite retry;
+
+            synchronized (write.entry) {
+                if (write.entry.detached) {
+                    // the activity was written directly in the meantime
+                    continue;
+                }
+                // the current state is written, since the activity could have changed after the write was queued
+                retry = write.entry.snapshot();
+                retry.attempts = write.attempts + 1;
+            }
+
+            if (retry.attempts >= MAX_WRITE_ATTEMPTS || !queue.offer(retry)) {
+                LOGGER.error("Unable to write the activity of task: {} after {} attempts, it is lost",
+                        retry.activity.getTask(), retry.attempts);
+            }
+        }
+    }
+
+    private void enqueue(PendingWrite write) {
+        while (!queue.offer(write)) {
+            if (flushLock.tryLock()) {
+                try {
+                    LOGGER.debug("Task activity queue is full, flushing it in the recording thread");
+                    flushLocked(false);
+                } finally {
+                    flushLock.unlock();
+                }
+            } else {
+                try {
+                    // another thread is flushing the queue
+                    if (queue.offer(write, flushInterval, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.error("Interrupted while queueing the activity of task: {}, it is lost",
+                            write.activity.getTask());
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<PendingWrite> takeStale(long startedBefore) {
+        List<PendingWrite> stale = new ArrayList<>();
+
+        for (Entry entry : inProgress.values()) {
+            if (entry.started < startedBefore) {
+                synchronized (entry) {
+                    if (inProgress.remove(entry.id) != null) {
+                        finished.put(entry.id, entry);
+                        stale.add(entry.snapshot());
+                    }
+                }
+            }
+        }
+
+        return stale;
+    }
+
+    private boolean write(final List<PendingWrite> batch) {
+        final Map<Entry, TaskActivity> created = new HashMap<>();
+        Set<Entry> entries = new LinkedHashSet<>();
+
+        for (PendingWrite write : batch) {
+            entries.add(write.entry);
+        }
+        for (Entry entry : entries) {
+            entry.writeLock.lock();
+        }
+
+        try {
+            inNewTransaction(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    for (PendingWrite write : batch) {
+                        if (write.entry.detached) {
+                            // a newer state of the activity was written on demand
+                            continue;
+                        }
+
+                        TaskActivity activity = created.get(write.entry);
+
+                        if (activity == null && write.entry.persistedId == null) {
+                            created.put(write.entry, taskActivitiesDataService.create(write.activity));
+                            continue;
+                        }
+
+                        if (activity == null) {
+                            activity = taskActivitiesDataService.findById(write.entry.persistedId);
+                        }
+
+                        if (activity != null) {
+                            copyState(write.activity, activity);
+                            taskActivitiesDataService.update(activity);
+                        }
+                    }
+                }
+            });
+
+            for (Map.Entry<Entry, TaskActivity> entry : created.entrySet()) {
+                entry.getKey().persistedId = entry.getValue().getId();
+            }
+            for (PendingWrite write : batch) {
+                write.entry.writtenVersion = write.version;
+            }
+
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to write {} task activities", batch.size(), e);
+            return false;
+        } finally {
+            for (Entry entry : entries) {
+                entry.writeLock.unlock();
+            }
+        }
+    }
+
+    private <T> T updatePersisted(final Long persistedId, final ActivityUpdate<T> update) {
+        return inNewTransaction(new TransactionCallback<T>() {
+            @Override
+            public T doInTransaction(TransactionStatus status) {
+                TaskActivity activity = taskActivitiesDataService.findById(persistedId);
+                if (activity == null) {
+                    return null;
+                }
+
+                T result = update.apply(activity);
+                taskActivitiesDataService.update(activity);
+
+                return result;
+            }
+        });
+    }
+
+    private <T> T inNewTransaction(TransactionCallback<T> callback) {
+        return transactionTemplate == null
+                ? taskActivitiesDataService.doInTransaction(callback)
+                : transactionTemplate.execute(callback);
+    }
+
+    private Entry find(Long activityId) {
+        Entry entry = inProgress.get(activityId);
+        return entry == null ? finished.get(activityId) : entry;
+    }
+
+    private static TaskActivity copy(TaskActivity activity) {
+        TaskActivity copy = new TaskActivity();
+        copy.setTask(activity.getTask());
+        copy.setDate(activity.getDate());
+        copy.setParameters(activity.getParameters());
+        copyState(activity, copy);
+        return copy;
+    }
+
+    private static void copyState(TaskActivity from, TaskActivity to) {
+        to.setMessage(from.getMessage());
+        to.setFields(from.getFields() == null ? null : new ArrayList<>(from.getFields()));
+        to.setActivityType(from.getActivityType());
+        to.setStackTraceElement(from.getStackTraceElement());
+
+        TaskExecutionProgress progress = from.getTaskExecutionProgress();
+        if (progress != null) {
+            if (to.getTaskExecutionProgress() == null) {
+                to.setTaskExecutionProgress(new TaskExecutionProgress(progress.getTotalActions()));
+            }
+            to.getTaskExecutionProgress().setTotalActions(progress.getTotalActions());
+            to.getTaskExecutionProgress().setActionsSucceeded(progress.getActionsSucceeded());
+        }
+    }
+
+    /**
+     * A recorded activity, together with the ID under which it was written to the database. The activity and the
+     * versions of its state are guarded by the monitor of the entry, the writes of the entry by its write lock.
+     */
+    private static final class Entry {
+
+        private final long id;
+        private final TaskActivity activity;
+        private final long started = System.currentTimeMillis();
+        private final Lock writeLock = new ReentrantLock();
+        private boolean queued;
+        private int version;
+        private volatile int writtenVersion = -1;
+        private volatile boolean detached;
+        private volatile Long persistedId;
+
+        private Entry(long id, TaskActivity activity) {
+            this.id = id;
+            this.activity = activity;
+        }
+
+        private PendingWrite snapshot() {
+            queued = true;
+            return new PendingWrite(this, copy(activity), version);
+        }
+    }
+
+    /**
+     * The state of a recorded activity waiting to be written.
+     */
+    private static final class PendingWrite {
+
+        private final Entry entry;
+        private final TaskActivity activity;
+        private final int version;
+        private int attempts;
+
+        private PendingWrite(Entry entry, TaskActivity activity, int version) {
+            this.entry = entry;
+            this.activity = activity;
+            this.version = version;
+        }
+    }
+}
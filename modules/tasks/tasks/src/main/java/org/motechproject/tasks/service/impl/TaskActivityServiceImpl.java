@@ -1,6 +1,8 @@
 package org.motechproject.tasks.service.impl;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.config.SettingsFacade;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.util.Order;
 import org.motechproject.tasks.domain.mds.task.Task;
@@ -10,10 +12,21 @@ import org.motechproject.tasks.domain.mds.task.TaskExecutionProgress;
 import org.motechproject.tasks.exception.TaskHandlerException;
 import org.motechproject.tasks.repository.TaskActivitiesDataService;
 import org.motechproject.tasks.service.TaskActivityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,6 +35,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Default implementation of the {@link TaskActivityService}. Depending on the <code>task.activity.recording</code>
+ * setting, the activities of task executions are either written to the database as the execution progresses, or
+ * recorded in memory and written in batches by the {@link TaskActivityRecorder}.
+ */
 @Service
 public class TaskActivityServiceImpl implements TaskActivityService {
 
@@ -29,67 +47,139 @@ public class TaskActivityServiceImpl implements TaskActivityService {
     private static final String TASK_SUCCEEDED = "task.success.ok";
     private static final String TASK_DISABLED = "task.warning.taskDisabled";
 
+    private static final String ACTIVITY_RECORDING = "task.activity.recording";
+    private static final String ACTIVITY_FLUSH_SIZE = "task.activity.flush.size";
+    private static final String ACTIVITY_FLUSH_INTERVAL = "task.activity.flush.interval";
+    private static final String ACTIVITY_QUEUE_CAPACITY = "task.activity.queue.capacity";
+    private static final String ACTIVITY_IN_PROGRESS_TIMEOUT = "task.activity.inProgress.timeout";
+
+    private static final int DEFAULT_FLUSH_SIZE = 100;
+    private static final int DEFAULT_FLUSH_INTERVAL = 1000;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final int DEFAULT_IN_PROGRESS_TIMEOUT = 300000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskActivityServiceImpl.class);
+
     private TaskActivitiesDataService taskActivitiesDataService;
 
+    @Autowired(required = false)
+    @Qualifier("tasksSettings")
+    private SettingsFacade settings;
+
+    private TransactionTemplate transactionTemplate;
+    private TaskActivityRecorder recorder;
+
     @Autowired
     public TaskActivityServiceImpl(TaskActivitiesDataService taskActivitiesDataService) {
         this.taskActivitiesDataService = taskActivitiesDataService;
     }
 
-    @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public long addTaskStarted(Task task, Map<String, Object> parameters) {
-        int totalActions = task.getActions().size();
-        TaskActivity activity = taskActivitiesDataService.create(
-                new TaskActivity(TASK_IN_PROGRESS, Arrays.asList("0", String.valueOf(totalActions)), task.getId(),
-                        TaskActivityType.IN_PROGRESS, null, parameters, new TaskExecutionProgress(totalActions)));
-        return activity.getId();
+    /**
+     * Starts recording activities in memory, if the recording mode other than synchronous is configured.
+     */
+    @PostConstruct
+    public void init() {
+        if (settings == null) {
+            return;
+        }
+
+        TaskActivityRecorder.Mode mode = TaskActivityRecorder.Mode.fromString(settings.getProperty(ACTIVITY_RECORDING));
+
+        if (mode != TaskActivityRecorder.Mode.SYNC) {
+            recorder = new TaskActivityRecorder(taskActivitiesDataService, transactionTemplate, mode,
+                    getIntProperty(ACTIVITY_FLUSH_SIZE, DEFAULT_FLUSH_SIZE),
+                    getIntProperty(ACTIVITY_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL),
+                    getIntProperty(ACTIVITY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY),
+                    getIntProperty(ACTIVITY_IN_PROGRESS_TIMEOUT, DEFAULT_IN_PROGRESS_TIMEOUT));
+            recorder.start();
+            LOGGER.info("Recording task activities in mode: {}", mode);
+        }
+    }
+
+    /**
+     * Writes all activities recorded in memory.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (recorder != null) {
+            recorder.stop();
+        }
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public boolean addSuccessfulExecution(Long activityId) {
-        TaskActivity activity = taskActivitiesDataService.findById(activityId);
-        if (activity == null) {
-            return false;
+    public long addTaskStarted(final Task task, final Map<String, Object> parameters) {
+        if (recorder != null) {
+            return recorder.start(createInProgressActivity(task, parameters));
         }
 
-        TaskExecutionProgress progress = activity.getTaskExecutionProgress();
-        progress.addSuccess();
-        boolean taskFinished = progress.getActionsSucceeded() == progress.getTotalActions();
+        return inNewTransaction(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                return taskActivitiesDataService.create(createInProgressActivity(task, parameters)).getId();
+            }
+        });
+    }
 
-        if (taskFinished) {
-            activity.setActivityType(TaskActivityType.SUCCESS);
-            activity.setMessage(TASK_SUCCEEDED);
-            activity.getFields().clear();
+    @Override
+    public boolean addSuccessfulExecution(final Long activityId) {
+        if (recorder != null && recorder.isRecorded(activityId)) {
+            Boolean taskFinished = recorder.update(activityId, new TaskActivityRecorder.ActivityUpdate<Boolean>() {
+                @Override
+                public Boolean apply(TaskActivity activity) {
+                    return markSuccess(activity);
+                }
+            });
+            return Boolean.TRUE.equals(taskFinished);
         }
 
-        updateTaskInProgressMessage(activity);
-        taskActivitiesDataService.update(activity);
+        return inNewTransaction(new TransactionCallback<Boolean>() {
+            @Override
+            public Boolean doInTransaction(TransactionStatus status) {
+                TaskActivity activity = taskActivitiesDataService.findById(activityId);
+                if (activity == null) {
+                    return false;
+                }
 
-        return taskFinished;
+                boolean taskFinished = markSuccess(activity);
+                taskActivitiesDataService.update(activity);
+
+                return taskFinished;
+            }
+        });
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void addFailedExecution(Long activityId, Throwable e) {
-        TaskActivity activity = taskActivitiesDataService.findById(activityId);
-
-        if (activity == null){
+    public void addFailedExecution(final Long activityId, final Throwable e) {
+        if (recorder != null && recorder.isRecorded(activityId)) {
+            recorder.update(activityId, new TaskActivityRecorder.ActivityUpdate<Boolean>() {
+                @Override
+                public Boolean apply(TaskActivity activity) {
+                    return markFailure(activity, e);
+                }
+            });
             return;
         }
 
-        if (activity.getActivityType() != TaskActivityType.ERROR) {
-            activity.setMessage(e.getMessage());
-            activity.setActivityType(TaskActivityType.ERROR);
+        inNewTransaction(new TransactionCallback<Void>() {
+            @Override
+            public Void doInTransaction(TransactionStatus status) {
+                TaskActivity activity = taskActivitiesDataService.findById(activityId);
 
-            if (e instanceof TaskHandlerException) {
-                activity.setFields(((TaskHandlerException) e).getArgs());
+                if (activity != null && markFailure(activity, e)) {
+                    taskActivitiesDataService.update(activity);
+                }
+
+                return null;
             }
+        });
+    }
 
-            activity.setStackTraceElement(ExceptionUtils.getStackTrace(e));
-            taskActivitiesDataService.update(activity);
+    @Override
+    public long persistActivity(Long activityId) {
+        if (recorder != null && recorder.isRecorded(activityId)) {
+            return recorder.persist(activityId);
         }
+        return activityId;
     }
 
     @Override
@@ -114,6 +204,10 @@ public class TaskActivityServiceImpl implements TaskActivityService {
     @Override
     @Transactional
     public void deleteActivitiesForTask(Long taskId) {
+        if (recorder != null) {
+            recorder.flush();
+        }
+
         for (TaskActivity msg : taskActivitiesDataService.byTask(taskId)) {
             taskActivitiesDataService.delete(msg);
         }
@@ -122,6 +216,9 @@ public class TaskActivityServiceImpl implements TaskActivityService {
     @Override
     @Transactional
     public TaskActivity getTaskActivityById(Long activityId) {
+        if (recorder != null && recorder.isRecorded(activityId)) {
+            return recorder.get(activityId);
+        }
         return taskActivitiesDataService.findById(activityId);
     }
 
@@ -149,6 +246,64 @@ public class TaskActivityServiceImpl implements TaskActivityService {
         return taskActivitiesDataService.countByTaskAndActivityTypes(taskId, new HashSet<>(Arrays.asList(type)));
     }
 
+    @Autowired(required = false)
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    private <T> T inNewTransaction(TransactionCallback<T> callback) {
+        return transactionTemplate == null ? callback.doInTransaction(null) : transactionTemplate.execute(callback);
+    }
+
+    private TaskActivity createInProgressActivity(Task task, Map<String, Object> parameters) {
+        int totalActions = task.getActions().size();
+        return new TaskActivity(TASK_IN_PROGRESS, new ArrayList<>(Arrays.asList("0", String.valueOf(totalActions))),
+                task.getId(), TaskActivityType.IN_PROGRESS, null, parameters, new TaskExecutionProgress(totalActions));
+    }
+
+    private boolean markSuccess(TaskActivity activity) {
+        if (activity.getActivityType() == TaskActivityType.ERROR) {
+            // an action finished after the execution had already failed, e.g. timed out
+            return false;
+        }
+
+        TaskExecutionProgress progress = activity.getTaskExecutionProgress();
+        progress.addSuccess();
+        boolean taskFinished = progress.getActionsSucceeded() == progress.getTotalActions();
+
+        if (taskFinished) {
+            activity.setActivityType(TaskActivityType.SUCCESS);
+            activity.setMessage(TASK_SUCCEEDED);
+            activity.getFields().clear();
+        }
+
+        updateTaskInProgressMessage(activity);
+
+        return taskFinished;
+    }
+
+    private boolean markFailure(TaskActivity activity, Throwable e) {
+        if (activity.getActivityType() == TaskActivityType.ERROR) {
+            return false;
+        }
+
+        activity.setMessage(e.getMessage());
+        activity.setActivityType(TaskActivityType.ERROR);
+
+        if (e instanceof TaskHandlerException) {
+            activity.setFields(((TaskHandlerException) e).getArgs());
+        }
+
+        activity.setStackTraceElement(ExceptionUtils.getStackTrace(e));
+
+        return true;
+    }
+
+    private int getIntProperty(String key, int defaultValue) {
+        return NumberUtils.toInt(settings.getProperty(key), defaultValue);
+    }
+
     private void updateTaskInProgressMessage(TaskActivity activity) {
         if (TASK_IN_PROGRESS.equals(activity.getMessage())) {
             activity.getFields().set(0, String.valueOf(activity.getTaskExecutionProgress().getActionsSucceeded()));
@@ -0,0 +1,73 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.event.MotechEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.motechproject.tasks.constants.EventDataKeys.ORIGIN_NODE;
+import static org.motechproject.tasks.constants.EventDataKeys.TASK_IDS;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_CHANGED_SUBJECT;
+
+/**
+ * Creates the events broadcast after tasks are changed, so that the other nodes of the cluster refresh their state of
+ * the tasks. A single event can carry the IDs of many tasks changed at once. The events carry the ID of the node which
+ * made the change, so that the node can ignore its own changes.
+ */
+final class TaskChangedEvents {
+
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    /**
+     * Creates the event broadcast after the task with the given ID was changed by this node.
+     *
+     * @param taskId  the ID of the changed task
+     * @return the event
+     */
+    static MotechEvent create(Long taskId) {
+        return create(Collections.singletonList(taskId));
+    }
+
+    /**
+     * Creates the event broadcast after the tasks with the given IDs were changed by this node.
+     *
+     * @param taskIds  the IDs of the changed tasks
+     * @return the event
+     */
+    static MotechEvent create(Collection<Long> taskIds) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(TASK_IDS, new ArrayList<>(taskIds));
+        parameters.put(ORIGIN_NODE, NODE_ID);
+
+        return new MotechEvent(TASK_CHANGED_SUBJECT, parameters);
+    }
+
+    /**
+     * Returns the IDs of the tasks changed according to the given event.
+     *
+     * @param event  the task changed event
+     * @return the IDs of the changed tasks
+     */
+    static List<Long> getTaskIds(MotechEvent event) {
+        List<Long> taskIds = (List<Long>) event.getParameters().get(TASK_IDS);
+        return taskIds == null ? Collections.<Long>emptyList() : taskIds;
+    }
+
+    /**
+     * Checks whether the given event was broadcast by this node.
+     *
+     * @param event  the task changed event
+     * @return true if the change was made by this node, false otherwise
+     */
+    static boolean isLocal(MotechEvent event) {
+        return NODE_ID.equals(event.getParameters().get(ORIGIN_NODE));
+    }
+
+    private TaskChangedEvents() {
+    }
+}
@@ -0,0 +1,355 @@
+package org.motechproject.tasks.service.impl;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the tasks triggered by a single event. By default the tasks are executed one by one in the thread that
+ * received the event. If <code>task.execution.threads</code> is set, the tasks are executed in parallel by
+ * bounded executors, one for each trigger subject or, if <code>task.execution.isolation</code> is set to
+ * <code>task</code>, one for each task. The timeout of a task starts when the task starts running, so tasks waiting
+ * in a queue do not use up their time. The receiving thread waits until all the tasks finish or time out, and
+ * blocks when the queue of an executor is full, so that events are not consumed faster than tasks are executed.
+ */
+@Component
+public class TaskExecutionEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionEngine.class);
+
+    private static final String THREADS = "task.execution.threads";
+    private static final String QUEUE_CAPACITY = "task.execution.queue.capacity";
+    private static final String TIMEOUT = "task.execution.timeout";
+    private static final String ISOLATION = "task.execution.isolation";
+    private static final String ISOLATION_TASK = "task";
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 100;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ConcurrentMap<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    private volatile ScheduledExecutorService watchdog;
+    private volatile boolean destroyed;
+
+    private SettingsFacade settings;
+
+    private int threads;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private long timeout;
+    private boolean isolateTasks;
+
+    /**
+     * A single execution of a task.
+     */
+    interface Execution extends Runnable {
+
+        /**
+         * @return the executed task
+         */
+        Task getTask();
+
+        /**
+         * Executes the task, handling all of its errors.
+         */
+        void run();
+
+        /**
+         * Called if the task did not finish within the timeout. The execution is interrupted afterwards if the
+         * timeout was accepted, so it must not report the result of the task once this method returns true.
+         *
+         * @param timeout  the timeout in milliseconds
+         * @return true if the execution was marked as timed out, false if it had already finished
+         */
+        boolean timedOut(long timeout);
+    }
+
+    /**
+     * Reads the configuration of the engine.
+     */
+    @PostConstruct
+    public void init() {
+        if (settings != null) {
+            threads = NumberUtils.toInt(settings.getProperty(THREADS), 0);
+            queueCapacity = NumberUtils.toInt(settings.getProperty(QUEUE_CAPACITY), DEFAULT_QUEUE_CAPACITY);
+            timeout = NumberUtils.toLong(settings.getProperty(TIMEOUT), 0);
+            isolateTasks = ISOLATION_TASK.equalsIgnoreCase(settings.getProperty(ISOLATION));
+        }
+
+        if (threads > 0) {
+            LOGGER.info("Executing tasks using {} threads per {}, with timeout: {} ms", threads,
+                    isolateTasks ? "task" : "trigger subject", timeout);
+        }
+    }
+
+    /**
+     * Stops all the executors.
+     */
+    @PreDestroy
+    public void destroy() {
+        destroyed = true;
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.shutdownNow();
+        }
+        executors.clear();
+    }
+
+    /**
+     * Executes the given executions of tasks triggered by an event with the given subject, and waits until all of
+     * them finish or time out.
+     *
+     * @param subject  the subject of the trigger
+     * @param executions  the executions, not null
+     */
+    void execute(String subject, List<? extends Execution> executions) {
+        if (threads <= 0) {
+            for (Execution execution : executions) {
+                execution.run();
+            }
+            return;
+        }
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<Future<?>> futures = new ArrayList<>(executions.size());
+        Set<String> keys = new HashSet<>();
+
+        for (Execution execution : executions) {
+            String key = isolateTasks ? String.valueOf(execution.getTask().getId()) : subject;
+            ExecutionTask task = new ExecutionTask(execution, classLoader);
+
+            submit(key, task);
+            futures.add(task);
+            keys.add(key);
+        }
+
+        for (int i = 0; i < futures.size(); ++i) {
+            if (!await(futures.get(i), executions.get(i))) {
+                break;
+            }
+        }
+
+        if (isolateTasks) {
+            for (String key : keys) {
+                release(key);
+            }
+        }
+    }
+
+    private boolean await(Future<?> future, Execution execution) {
+        try {
+            future.get();
+        } catch (CancellationException e) {
+            LOGGER.debug("Execution of task: {} was cancelled", execution.getTask().getName());
+        } catch (ExecutionException e) {
+            LOGGER.error("Error while executing task: {}", execution.getTask().getName(), e.getCause());
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for task: {}", execution.getTask().getName());
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+
+    private void submit(String key, ExecutionTask task) {
+        while (true) {
+            ThreadPoolExecutor executor = getExecutor(key);
+            try {
+                executor.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                if (destroyed || !executor.isShutdown()) {
+                    throw e;
+                }
+                // the executor of a task was released concurrently, a new one will be created
+                executors.remove(key, executor);
+            }
+        }
+    }
+
+    /**
+     * Removes the executor of a single task once it is idle, so that executors of removed tasks do not pile up.
+     * The executor is shut down gracefully, so tasks queued concurrently are still executed.
+     */
+    private void release(String key) {
+        ThreadPoolExecutor executor = executors.get(key);
+
+        if (executor != null && executor.getActiveCount() == 0 && executor.getQueue().isEmpty()
+                && executors.remove(key, executor)) {
+            executor.shutdown();
+        }
+    }
+
+    private ScheduledExecutorService getWatchdog() {
+        if (watchdog == null) {
+            synchronized (this) {
+                if (watchdog == null) {
+                    ScheduledThreadPoolExecutor created = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "tasks-watchdog");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    created.setRemoveOnCancelPolicy(true);
+                    watchdog = created;
+                }
+            }
+        }
+        return watchdog;
+    }
+
+    private ThreadPoolExecutor getExecutor(final String key) {
+        ThreadPoolExecutor executor = executors.get(key);
+
+        if (executor == null) {
+            ThreadPoolExecutor created = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+                        private final AtomicInteger number = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "tasks-" + key + "-" + number.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new RejectedExecutionHandler() {
+                        @Override
+                        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+                            if (pool.isShutdown()) {
+                                throw new RejectedExecutionException("Task executor for " + key + " is shut down");
+                            }
+                            try {
+                                // block the receiving thread until there is room in the queue
+                                pool.getQueue().put(runnable);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new RejectedExecutionException("Interrupted while queueing task", e);
+                            }
+                        }
+                    });
+            created.allowCoreThreadTimeOut(true);
+
+            executor = executors.putIfAbsent(key, created);
+            if (executor == null) {
+                executor = created;
+            } else {
+                created.shutdown();
+            }
+        }
+
+        return executor;
+    }
+
+    @Autowired(required = false)
+    @Qualifier("tasksSettings")
+    public void setSettings(SettingsFacade settings) {
+        this.settings = settings;
+    }
+
+    void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    private static void runWithClassLoader(Runnable runnable, ClassLoader classLoader) {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+
+        thread.setContextClassLoader(classLoader);
+        try {
+            runnable.run();
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * Runs an execution with the context class loader of the thread which received the event. The timeout of the
+     * execution starts when it starts running. If it expires, the execution is marked as timed out and cancelled, so
+     * the receiving thread stops waiting for it.
+     */
+    private final class ExecutionTask extends FutureTask<Void> {
+
+        private final Execution execution;
+        private final ClassLoader classLoader;
+
+        private ExecutionTask(final Execution execution, final ClassLoader classLoader) {
+            super(new Runnable() {
+                @Override
+                public void run() {
+                    runWithClassLoader(execution, classLoader);
+                }
+            }, null);
+            this.execution = execution;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public void run() {
+            ScheduledFuture<?> timer = null;
+            if (timeout > 0 && !isDone()) {
+                timer = getWatchdog().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        runWithClassLoader(new Runnable() {
+                            @Override
+                            public void run() {
+                                timeOut();
+                            }
+                        }, classLoader);
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
+
+            try {
+                super.run();
+            } finally {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+        }
+
+        private void timeOut() {
+            if (!isDone() && execution.timedOut(timeout)) {
+                LOGGER.warn("Task: {} did not finish within {} ms", execution.getTask().getName(), timeout);
+                cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.domain.KeyInformation;
+import org.motechproject.tasks.domain.mds.channel.ActionEvent;
+import org.motechproject.tasks.domain.mds.channel.ActionParameter;
+import org.motechproject.tasks.domain.mds.task.DataSource;
+import org.motechproject.tasks.domain.mds.task.Filter;
+import org.motechproject.tasks.domain.mds.task.FilterSet;
+import org.motechproject.tasks.domain.mds.task.Lookup;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
+import org.motechproject.tasks.domain.mds.task.TaskConfigStep;
+import org.motechproject.tasks.exception.ActionNotFoundException;
+import org.motechproject.tasks.service.TaskService;
+import org.motechproject.tasks.service.util.CompiledTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.motechproject.tasks.domain.mds.ParameterType.LIST;
+
+/**
+ * The <code>TaskExecutionPlan</code> is the compiled form of a {@link Task}. It holds the config steps and actions of
+ * the task with all of their templates and filter keys already parsed, and the {@link ActionEvent}s of the actions
+ * already resolved, so that executing the task does not parse anything.
+ * <p/>
+ * Plans are immutable and are cached by the {@link TaskExecutionPlanCache} until the task or any channel changes.
+ *
+ * @see TaskInitializer
+ * @see TaskActionExecutor
+ */
+final class TaskExecutionPlan {
+
+    private final List<Object> steps;
+    private final List<ActionPlan> actions;
+    private final boolean complete;
+
+    private TaskExecutionPlan(List<Object> steps, List<ActionPlan> actions, boolean complete) {
+        this.steps = steps;
+        this.actions = actions;
+        this.complete = complete;
+    }
+
+    /**
+     * Compiles the given task.
+     *
+     * @param task  the task to be compiled, not null
+     * @param taskService  the task service used for resolving the action events, not null
+     * @return the compiled task
+     * @throws IllegalArgumentException if any of the templates or filter keys is incorrect
+     */
+    static TaskExecutionPlan compile(Task task, TaskService taskService) {
+        List<Object> steps = new ArrayList<>();
+
+        if (task.getTaskConfig() != null) {
+            for (TaskConfigStep step : task.getTaskConfig().getSteps()) {
+                if (step instanceof DataSource) {
+                    steps.add(compileDataSource((DataSource) step));
+                } else if (step instanceof FilterSet) {
+                    steps.add(compileFilterSet((FilterSet) step));
+                }
+            }
+        }
+
+        List<ActionPlan> actions = new ArrayList<>(task.getActions().size());
+        boolean complete = true;
+
+        for (TaskActionInformation information : task.getActions()) {
+            ActionPlan action;
+            try {
+                action = compileAction(information, taskService.getActionEventFor(information));
+            } catch (ActionNotFoundException e) {
+                action = new ActionPlan(information, e);
+                complete = false;
+            }
+            actions.add(action);
+        }
+
+        return new TaskExecutionPlan(Collections.unmodifiableList(steps), Collections.unmodifiableList(actions),
+                complete);
+    }
+
+    /**
+     * Compiles the given action.
+     *
+     * @param information  the information about the action, not null
+     * @param actionEvent  the action event resolved for the action, not null
+     * @return the compiled action
+     */
+    static ActionPlan compileAction(TaskActionInformation information, ActionEvent actionEvent) {
+        Map<String, CompiledTemplate> values = new HashMap<>();
+        Map<String, List<CompiledTemplate>> lists = new HashMap<>();
+        Map<String, List<CompiledTemplate[]>> maps = new HashMap<>();
+
+        for (ActionParameter actionParameter : actionEvent.getActionParameters()) {
+            String key = actionParameter.getKey();
+            String template = information.getValues().get(key);
+
+            if (template == null) {
+                continue;
+            }
+
+            switch (actionParameter.getType()) {
+                case LIST:
+                    List<CompiledTemplate> items = new ArrayList<>();
+                    for (String item : (List<String>) LIST.parse(template)) {
+                        items.add(CompiledTemplate.compile(item));
+                    }
+                    lists.put(key, items);
+                    break;
+                case MAP:
+                    List<CompiledTemplate[]> rows = new ArrayList<>();
+                    for (String row : template.split("(\\r)?\\n")) {
+                        String[] array = row.split(":", 2);
+                        if (array.length == 2) {
+                            rows.add(new CompiledTemplate[]{
+                                CompiledTemplate.compile(array[0]), CompiledTemplate.compile(array[1].trim())
+                            });
+                        } else if (array.length == 1) {
+                            rows.add(new CompiledTemplate[]{CompiledTemplate.compile(array[0])});
+                        }
+                    }
+                    maps.put(key, rows);
+                    break;
+                default:
+                    values.put(key, CompiledTemplate.compile(template));
+            }
+        }
+
+        return new ActionPlan(information, actionEvent, values, lists, maps);
+    }
+
+    private static DataSourcePlan compileDataSource(DataSource dataSource) {
+        Map<String, CompiledTemplate> lookupFields = new LinkedHashMap<>();
+        for (Lookup lookup : dataSource.getLookup()) {
+            lookupFields.put(lookup.getField(), CompiledTemplate.compile(lookup.getValue()));
+        }
+        return new DataSourcePlan(dataSource, lookupFields);
+    }
+
+    private static FilterSetPlan compileFilterSet(FilterSet filterSet) {
+        List<KeyInformation> keys = null;
+
+        if (filterSet.getFilters() != null) {
+            keys = new ArrayList<>(filterSet.getFilters().size());
+            try {
+                for (Filter filter : filterSet.getFilters()) {
+                    keys.add(KeyInformation.parse(filter.getKey()));
+                }
+            } catch (RuntimeException e) {
+                // the keys will be parsed during the execution, so the error is reported as a filter error
+                keys = null;
+            }
+        }
+
+        return new FilterSetPlan(filterSet, keys);
+    }
+
+    /**
+     * Returns the compiled config steps, each being either a {@link DataSourcePlan} or a {@link FilterSetPlan}, in
+     * the order of execution.
+     *
+     * @return the compiled config steps
+     */
+    List<Object> getSteps() {
+        return steps;
+    }
+
+    List<ActionPlan> getActions() {
+        return actions;
+    }
+
+    /**
+     * Checks whether all actions of the task were resolved. Incomplete plans are not cached.
+     *
+     * @return true if all the actions were resolved, false otherwise
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * A data source step with the lookup field templates compiled.
+     */
+    static final class DataSourcePlan {
+
+        private final DataSource dataSource;
+        private final Map<String, CompiledTemplate> lookupFields;
+
+        private DataSourcePlan(DataSource dataSource, Map<String, CompiledTemplate> lookupFields) {
+            this.dataSource = dataSource;
+            this.lookupFields = lookupFields;
+        }
+
+        DataSource getDataSource() {
+            return dataSource;
+        }
+
+        Map<String, CompiledTemplate> getLookupFields() {
+            return lookupFields;
+        }
+    }
+
+    /**
+     * A filter set step with the keys of the filters parsed.
+     */
+    static final class FilterSetPlan {
+
+        private final FilterSet filterSet;
+        private final List<KeyInformation> keys;
+
+        private FilterSetPlan(FilterSet filterSet, List<KeyInformation> keys) {
+            this.filterSet = filterSet;
+            this.keys = keys;
+        }
+
+        FilterSet getFilterSet() {
+            return filterSet;
+        }
+
+        List<KeyInformation> getKeys() {
+            return keys;
+        }
+    }
+
+    /**
+     * An action with its action event resolved and the templates of its parameters compiled.
+     */
+    static final class ActionPlan {
+
+        private final TaskActionInformation information;
+        private final ActionEvent actionEvent;
+        private final ActionNotFoundException notFoundException;
+        private final Map<String, CompiledTemplate> values;
+        private final Map<String, List<CompiledTemplate>> lists;
+        private final Map<String, List<CompiledTemplate[]>> maps;
+
+        private ActionPlan(TaskActionInformation information, ActionEvent actionEvent,
+                           Map<String, CompiledTemplate> values, Map<String, List<CompiledTemplate>> lists,
+                           Map<String, List<CompiledTemplate[]>> maps) {
+            this.information = information;
+            this.actionEvent = actionEvent;
+            this.notFoundException = null;
+            this.values = values;
+            this.lists = lists;
+            this.maps = maps;
+        }
+
+        private ActionPlan(TaskActionInformation information, ActionNotFoundException notFoundException) {
+            this.information = information;
+            this.actionEvent = null;
+            this.notFoundException = notFoundException;
+            this.values = Collections.emptyMap();
+            this.lists = Collections.emptyMap();
+            this.maps = Collections.emptyMap();
+        }
+
+        TaskActionInformation getInformation() {
+            return information;
+        }
+
+        /**
+         * @return the resolved action event, or null if it could not be found
+         */
+        ActionEvent getActionEvent() {
+            return actionEvent;
+        }
+
+        ActionNotFoundException getNotFoundException() {
+            return notFoundException;
+        }
+
+        /**
+         * @param key  the key of the parameter
+         * @return the compiled template of a parameter which is neither a list nor a map
+         */
+        CompiledTemplate getValue(String key) {
+            return values.get(key);
+        }
+
+        /**
+         * @param key  the key of the parameter
+         * @return the compiled items of a list parameter
+         */
+        List<CompiledTemplate> getList(String key) {
+            return lists.get(key);
+        }
+
+        /**
+         * @param key  the key of the parameter
+         * @return the compiled rows of a map parameter, each being either a key and a value, or a single template
+         *         resolving to a whole map
+         */
+        List<CompiledTemplate[]> getMap(String key) {
+            return maps.get(key);
+        }
+    }
+}
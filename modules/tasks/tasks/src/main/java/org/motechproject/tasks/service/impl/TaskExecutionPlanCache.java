@@ -0,0 +1,89 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.annotations.MotechListener;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.service.TaskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_CHANGED_SUBJECT;
+
+/**
+ * Caches the {@link TaskExecutionPlan}s of tasks by their IDs. A plan is compiled when its task is saved, on every
+ * node of the cluster, and is reused until the task is saved again or deleted, or until any channel is updated or
+ * deregistered. Channel changes are broadcast, so that the plans are dropped on every node of the cluster. Plans
+ * dropped this way are compiled again the first time their tasks are executed.
+ */
+@Component
+public class TaskExecutionPlanCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionPlanCache.class);
+
+    private final Map<Long, TaskExecutionPlan> plans = new ConcurrentHashMap<>();
+    private long generation;
+
+    /**
+     * Returns the execution plan for the given task, compiling it if it is not cached yet.
+     *
+     * @param task  the task, not null
+     * @param taskService  the task service used for resolving the action events, not null
+     * @return the execution plan of the task
+     * @throws IllegalArgumentException if any of the templates or filter keys of the task is incorrect
+     */
+    TaskExecutionPlan getPlan(Task task, TaskService taskService) {
+        Long taskId = task.getId();
+        TaskExecutionPlan plan = taskId == null ? null : plans.get(taskId);
+
+        if (plan == null) {
+            long compiledGeneration;
+            synchronized (this) {
+                compiledGeneration = generation;
+            }
+
+            plan = TaskExecutionPlan.compile(task, taskService);
+
+            if (taskId != null && plan.isComplete()) {
+                synchronized (this) {
+                    // skip caching if the cache was invalidated while the plan was being compiled
+                    if (compiledGeneration == generation) {
+                        plans.put(taskId, plan);
+                    }
+                }
+                LOGGER.debug("Compiled execution plan for task: {}", task.getName());
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * Removes the execution plan of the task with the given ID.
+     *
+     * @param taskId  the ID of the task
+     */
+    public synchronized void invalidate(Long taskId) {
+        generation++;
+        if (taskId != null) {
+            plans.remove(taskId);
+        }
+    }
+
+    /**
+     * Removes all the cached execution plans.
+     */
+    public synchronized void clear() {
+        generation++;
+        plans.clear();
+    }
+
+    @MotechListener(subjects = CHANNEL_CHANGED_SUBJECT)
+    public void handleChannelChange(MotechEvent event) {
+        LOGGER.debug("Clearing task execution plans after event: {}", event.getSubject());
+        clear();
+    }
+}
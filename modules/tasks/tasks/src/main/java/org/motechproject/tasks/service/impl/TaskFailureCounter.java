@@ -0,0 +1,343 @@
+package org.motechproject.tasks.service.impl;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.mds.util.InstanceSecurityRestriction;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jdo.Query;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the numbers of failures in a row of tasks in memory, so that task executions do not save the whole task.
+ * Each node counts the failures of a task since it last wrote its counter, and periodically adds them to the number
+ * stored in the task, in a transaction which locks the task, so that the failures of all the nodes of a cluster add
+ * up. A success resets the stored number instead. The counters are written without validating the tasks, and a single
+ * task changed event carrying the IDs of all the written tasks is broadcast after every write. Counters are dropped
+ * whenever their tasks are saved or deleted, since the saved tasks hold the current numbers.
+ */
+@Component
+public class TaskFailureCounter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskFailureCounter.class);
+
+    private static final String FLUSH_INTERVAL = "task.failures.flush.interval";
+    private static final long DEFAULT_FLUSH_INTERVAL = 5000;
+
+    private final ConcurrentMap<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final Set<Long> changed = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    private TasksDataService tasksDataService;
+    private EventRelay eventRelay;
+    private SettingsFacade settings;
+
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Starts writing the changed counters periodically.
+     */
+    @PostConstruct
+    public void init() {
+        long interval = settings == null
+                ? DEFAULT_FLUSH_INTERVAL
+                : NumberUtils.toLong(settings.getProperty(FLUSH_INTERVAL), DEFAULT_FLUSH_INTERVAL);
+
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic writes and writes the changed counters.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush();
+    }
+
+    /**
+     * Increments the number of failures in a row of the given task. The new number is also set in the task.
+     *
+     * @param task  the task, not null
+     * @return the number of failures in a row of the task, including the failures counted by this node which were
+     * not written yet
+     */
+    public int increment(Task task) {
+        int failures = getCounter(task).increment();
+
+        changed.add(task.getId());
+        task.setFailuresInRow(failures);
+
+        return failures;
+    }
+
+    /**
+     * Resets the number of failures in a row of the given task, also in the task itself.
+     *
+     * @param task  the task, not null
+     */
+    public void reset(Task task) {
+        Counter counter = counters.get(task.getId());
+
+        if (counter == null && task.getFailuresInRow() == 0) {
+            // nothing to write, which is the case for most of the executions
+            return;
+        }
+
+        if (getCounter(task).reset()) {
+            changed.add(task.getId());
+        }
+        task.resetFailuresInRow();
+    }
+
+    /**
+     * Returns the number of failures in a row of the task with the given ID.
+     *
+     * @param taskId  the ID of the task
+     * @param stored  the number stored in the task
+     * @return the number kept in memory, or the given number if the task has no counter
+     */
+    public int getFailuresInRow(Long taskId, int stored) {
+        Counter counter = taskId == null ? null : counters.get(taskId);
+        return counter == null ? stored : counter.get();
+    }
+
+    /**
+     * Updates the stored number of failures in a row of the given task, changed by another node, keeping the
+     * failures counted by this node which were not written yet.
+     *
+     * @param task  the task, as stored in the database, not null
+     */
+    public void refresh(Task task) {
+        Counter counter = counters.get(task.getId());
+        if (counter != null) {
+            counter.written(task.getFailuresInRow());
+        }
+    }
+
+    /**
+     * Drops the counter of the task with the given ID, without writing it.
+     *
+     * @param taskId  the ID of the task
+     */
+    public void remove(Long taskId) {
+        if (taskId != null) {
+            changed.remove(taskId);
+            counters.remove(taskId);
+        }
+    }
+
+    /**
+     * Writes the changed counters to their tasks.
+     */
+    public synchronized void flush() {
+        if (tasksDataService == null || changed.isEmpty()) {
+            return;
+        }
+
+        final Map<Long, Counter.Change> changes = new HashMap<>();
+        for (Iterator<Long> iterator = changed.iterator(); iterator.hasNext();) {
+            Long taskId = iterator.next();
+            iterator.remove();
+
+            Counter counter = counters.get(taskId);
+            if (counter != null) {
+                changes.put(taskId, counter.take());
+            }
+        }
+
+        final Map<Long, Integer> written = new HashMap<>();
+        try {
+            tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    for (Map.Entry<Long, Counter.Change> entry : changes.entrySet()) {
+                        Task task = findForUpdate(entry.getKey());
+                        if (task == null) {
+                            continue;
+                        }
+
+                        int failures = entry.getValue().apply(task.getFailuresInRow());
+                        if (task.getFailuresInRow() != failures) {
+                            task.setFailuresInRow(failures);
+                            tasksDataService.update(task);
+                        }
+                        written.put(entry.getKey(), failures);
+                    }
+                }
+            });
+            LOGGER.debug("Wrote failure counters of {} tasks", changes.size());
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to write failure counters of {} tasks", changes.size(), e);
+            for (Map.Entry<Long, Counter.Change> entry : changes.entrySet()) {
+                Counter counter = counters.get(entry.getKey());
+                if (counter != null) {
+                    counter.restore(entry.getValue());
+                    changed.add(entry.getKey());
+                }
+            }
+            return;
+        }
+
+        for (Map.Entry<Long, Integer> entry : written.entrySet()) {
+            Counter counter = counters.get(entry.getKey());
+            if (counter != null) {
+                counter.written(entry.getValue());
+            }
+        }
+
+        if (eventRelay != null && !written.isEmpty()) {
+            eventRelay.broadcastEventMessage(TaskChangedEvents.create(written.keySet()));
+        }
+    }
+
+    private Task findForUpdate(final Long taskId) {
+        return tasksDataService.executeQuery(new QueryExecution<Task>() {
+            @Override
+            public Task execute(Query query, InstanceSecurityRestriction restriction) {
+                // locks the task until the end of the transaction, so that concurrent writes of other nodes add up
+                query.setSerializeRead(true);
+                query.setFilter("id == param");
+                query.declareParameters("java.lang.Long param");
+                query.setUnique(true);
+
+                return (Task) query.execute(taskId);
+            }
+        });
+    }
+
+    private Counter getCounter(Task task) {
+        Counter counter = counters.get(task.getId());
+
+        if (counter == null) {
+            Counter created = new Counter(task.getFailuresInRow());
+            counter = counters.putIfAbsent(task.getId(), created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+
+        return counter;
+    }
+
+    @Autowired
+    public void setTasksDataService(TasksDataService tasksDataService) {
+        this.tasksDataService = tasksDataService;
+    }
+
+    @Autowired(required = false)
+    public void setEventRelay(EventRelay eventRelay) {
+        this.eventRelay = eventRelay;
+    }
+
+    @Autowired(required = false)
+    @Qualifier("tasksSettings")
+    public void setSettings(SettingsFacade settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * The failures of a task counted by this node. The number of failures in a row is the stored number plus the
+     * failures counted since it was last written or, if the task succeeded in the meantime, only the latter.
+     */
+    private static final class Counter {
+
+        private int stored;
+        private int failures;
+        private boolean reset;
+
+        private Counter(int stored) {
+            this.stored = stored;
+        }
+
+        private synchronized int get() {
+            return (reset ? 0 : stored) + failures;
+        }
+
+        private synchronized int increment() {
+            failures++;
+            return get();
+        }
+
+        private synchronized boolean reset() {
+            boolean changed = get() != 0;
+            reset = true;
+            failures = 0;
+            return changed;
+        }
+
+        /**
+         * Takes the changes to be written. The number of failures in a row does not change until they are written.
+         */
+        private synchronized Change take() {
+            Change change = new Change(reset, failures, stored);
+            stored = get();
+            failures = 0;
+            reset = false;
+            return change;
+        }
+
+        /**
+         * Puts back the changes which could not be written, unless the task succeeded in the meantime.
+         */
+        private synchronized void restore(Change change) {
+            if (!reset) {
+                stored = change.stored;
+                reset = change.reset;
+                failures += change.failures;
+            }
+        }
+
+        private synchronized void written(int number) {
+            stored = number;
+        }
+
+        /**
+         * Changes of the counter taken for writing.
+         */
+        private static final class Change {
+
+            private final boolean reset;
+            private final int failures;
+            private final int stored;
+
+            private Change(boolean reset, int failures, int stored) {
+                this.reset = reset;
+                this.failures = failures;
+                this.stored = stored;
+            }
+
+            private int apply(int persisted) {
+                return (reset ? 0 : persisted) + failures;
+            }
+        }
+    }
+}
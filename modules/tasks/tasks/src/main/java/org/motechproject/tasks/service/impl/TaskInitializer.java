@@ -3,9 +3,10 @@ package org.motechproject.tasks.service.impl;
 import org.motechproject.commons.api.DataProvider;
 import org.motechproject.tasks.domain.mds.task.DataSource;
 import org.motechproject.tasks.domain.mds.task.FilterSet;
-import org.motechproject.tasks.domain.mds.task.Lookup;
-import org.motechproject.tasks.domain.mds.task.TaskConfigStep;
 import org.motechproject.tasks.exception.TaskHandlerException;
+import org.motechproject.tasks.service.impl.TaskExecutionPlan.DataSourcePlan;
+import org.motechproject.tasks.service.impl.TaskExecutionPlan.FilterSetPlan;
+import org.motechproject.tasks.service.util.CompiledTemplate;
 import org.motechproject.tasks.service.util.KeyEvaluator;
 import org.motechproject.tasks.service.util.TaskContext;
 import org.motechproject.tasks.service.util.TaskFilterExecutor;
@@ -26,6 +27,8 @@ import static org.motechproject.tasks.constants.TaskFailureCause.FILTER;
  * <ul>
  * <li><b>evalConfigSteps</b> - executes all config steps (load data sources, check filters) defined in the task,</li>
  * </ul>
+ * The config steps are taken from the {@link TaskExecutionPlan} of the task, so their templates and filter keys are
+ * not parsed again.
  *
  * @see TaskTriggerHandler
  * @see TaskActionExecutor
@@ -36,14 +39,20 @@ class TaskInitializer {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskInitializer.class);
 
     private TaskContext taskContext;
+    private TaskExecutionPlan plan;
+    private DataSourceLookupCache.EventScope lookups;
 
     /**
      * Class constructor.
      *
      * @param taskContext  the task context
+     * @param plan  the execution plan of the task
+     * @param lookups  the data source lookups of the event which triggered the task, null to look up objects directly
      */
-    TaskInitializer(TaskContext taskContext) {
+    TaskInitializer(TaskContext taskContext, TaskExecutionPlan plan, DataSourceLookupCache.EventScope lookups) {
         this.taskContext = taskContext;
+        this.plan = plan;
+        this.lookups = lookups;
     }
 
     /**
@@ -55,23 +64,25 @@ class TaskInitializer {
      */
     public boolean evalConfigSteps(Map<String, DataProvider> dataProviders) throws TaskHandlerException {
         LOGGER.info("Executing all config steps for task: {}", taskContext.getTask().getName());
-        Iterator<TaskConfigStep> iterator = taskContext.getTask().getTaskConfig().getSteps().iterator();
+        Iterator<Object> iterator = plan.getSteps().iterator();
         boolean result = true;
 
         TaskFilterExecutor taskFilterExecutor = new TaskFilterExecutor();
 
         while (result && iterator.hasNext()) {
-            TaskConfigStep step = iterator.next();
+            Object step = iterator.next();
 
-            if (step instanceof DataSource) {
-                DataSource ds = (DataSource) step;
-                taskContext.addDataSourceObject(ds.getObjectId().toString(), getDataSourceObject(ds, dataProviders), ds.isFailIfDataNotFound());
+            if (step instanceof DataSourcePlan) {
+                DataSourcePlan dataSourcePlan = (DataSourcePlan) step;
+                DataSource ds = dataSourcePlan.getDataSource();
+                taskContext.addDataSourceObject(ds.getObjectId().toString(), getDataSourceObject(dataSourcePlan, dataProviders), ds.isFailIfDataNotFound());
                 LOGGER.info("Task data source: {} for task: {} added", ds.getName(), taskContext.getTask().getName());
-            } else if (step instanceof FilterSet) {
+            } else if (step instanceof FilterSetPlan) {
                 try {
-                    FilterSet filterSet = (FilterSet) step;
+                    FilterSetPlan filterSetPlan = (FilterSetPlan) step;
+                    FilterSet filterSet = filterSetPlan.getFilterSet();
 
-                    result = taskFilterExecutor.checkFilters(filterSet.getFilters(), filterSet.getOperator(), taskContext);
+                    result = taskFilterExecutor.checkFilters(filterSet.getFilters(), filterSetPlan.getKeys(), filterSet.getOperator(), taskContext);
                 } catch (RuntimeException e) {
                     throw new TaskHandlerException(FILTER, "task.error.filterError", e);
                 }
@@ -80,8 +91,10 @@ class TaskInitializer {
         return result;
     }
 
-    private Object getDataSourceObject(DataSource dataSource, Map<String, DataProvider> providers)
+    private Object getDataSourceObject(DataSourcePlan dataSourcePlan, Map<String, DataProvider> providers)
             throws TaskHandlerException {
+        DataSource dataSource = dataSourcePlan.getDataSource();
+
         if (providers == null || providers.isEmpty()) {
             throw new TaskHandlerException(
                     DATA_SOURCE, "task.error.notFoundDataProvider", dataSource.getType()
@@ -98,10 +111,12 @@ class TaskInitializer {
 
         KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
         Map<String, String> lookupFields = new HashMap<>();
-        for (Lookup lookup : dataSource.getLookup()) {
-            lookupFields.put(lookup.getField(), keyEvaluator.evaluateTemplateString(lookup.getValue()));
+        for (Map.Entry<String, CompiledTemplate> lookup : dataSourcePlan.getLookupFields().entrySet()) {
+            lookupFields.put(lookup.getKey(), keyEvaluator.evaluateTemplate(lookup.getValue()));
         }
 
-        return provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields);
+        return lookups == null
+                ? provider.lookup(dataSource.getType(), dataSource.getName(), lookupFields)
+                : lookups.lookup(provider, dataSource.getType(), dataSource.getName(), lookupFields);
     }
 }
@@ -44,7 +44,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionCallback;
 
 import javax.jdo.Query;
 import java.io.IOException;
@@ -67,6 +67,7 @@ import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAM
 import static org.motechproject.tasks.constants.EventDataKeys.DATA_PROVIDER_NAME;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
+import static org.motechproject.tasks.constants.EventSubjects.TASK_CHANGED_SUBJECT;
 import static org.motechproject.tasks.service.util.HandlerPredicates.tasksWithRegisteredChannel;
 
 /**
@@ -85,7 +86,9 @@ public class TaskServiceImpl implements TaskService {
     private EventRelay eventRelay;
     private BundleContext bundleContext;
     private TaskMigrationManager taskMigrationManager;
-
+    private TaskExecutionPlanCache planCache = new TaskExecutionPlanCache();
+    private TaskTriggerIndex triggerIndex = new TaskTriggerIndex();
+    private TaskFailureCounter failureCounter = new TaskFailureCounter();
 
     private static final String[] TASK_TRIGGER_VALIDATION_ERRORS = new String[]{"task.validation.error.triggerNotExist",
             "task.validation.error.triggerFieldNotExist"};
@@ -112,9 +115,18 @@ public class TaskServiceImpl implements TaskService {
         }
 
         validateName(task);
+
+        Set<TaskError> templateErrors = validateTemplates(task);
+        if (task.isEnabled() && !isEmpty(templateErrors)) {
+            throw new ValidationException(TaskValidator.TASK, templateErrors);
+        }
+
+        errors.addAll(templateErrors);
         errors.addAll(validateTrigger(task));
-        errors.addAll(validateDataSources(task));
-        errors.addAll(validateActions(task));
+        if (isEmpty(templateErrors)) {
+            errors.addAll(validateDataSources(task));
+            errors.addAll(validateActions(task));
+        }
 
         if (!isEmpty(errors)) {
             if (task.isEnabled()) {
@@ -156,8 +168,13 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public List<Task> getAllTasks() {
+        long indexGeneration = triggerIndex.getGeneration();
         List<Task> tasks = tasksDataService.retrieveAll();
 
+        if (!triggerIndex.isLoaded() && tasks != null) {
+            triggerIndex.load(tasks, indexGeneration);
+        }
+
         checkChannelAvailableInTasks(tasks);
 
         return tasks;
@@ -182,20 +199,13 @@ public class TaskServiceImpl implements TaskService {
         List<Task> list = null;
 
         if (isNotBlank(subject)) {
-            List enabledTasks = tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
-                @Override
-                public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
-                    String byTriggerSubject = "trigger.subject == param";
-                    String isTaskActive = "enabled == true";
-                    String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
-
-                    query.setFilter(filter);
-                    query.declareParameters("java.lang.String param");
-                    query.setOrdering("id asc");
-
-                    return (List) QueryExecutor.execute(query, subject, restriction);
-                }
-            });
+            if (!triggerIndex.isLoaded()) {
+                loadTriggerIndex();
+            }
+
+            List enabledTasks = triggerIndex.isLoaded()
+                    ? triggerIndex.getActiveTasks(subject)
+                    : findActiveTasksInDatabase(subject);
             if (enabledTasks != null) {
                 checkChannelAvailableInTasks(enabledTasks);
                 list = new ArrayList<>(enabledTasks);
@@ -206,6 +216,41 @@ public class TaskServiceImpl implements TaskService {
         return list == null ? new ArrayList<>() : list;
     }
 
+    @Override
+    public void reloadActiveTasks() {
+        List<Task> tasks = tasksDataService.retrieveAll();
+
+        triggerIndex.load(tasks, triggerIndex.getGeneration());
+        LOGGER.info("Reloaded trigger index with {} tasks", tasks.size());
+    }
+
+    private List findActiveTasksInDatabase(final String subject) {
+        return tasksDataService.executeQuery(new QueryExecution<List<Task>>() {
+            @Override
+            public List<Task> execute(Query query, InstanceSecurityRestriction restriction) {
+                String byTriggerSubject = "trigger.subject == param";
+                String isTaskActive = "enabled == true";
+                String filter = String.format("(%s) && (%s)", isTaskActive, byTriggerSubject);
+
+                query.setFilter(filter);
+                query.declareParameters("java.lang.String param");
+                query.setOrdering("id asc");
+
+                return (List) QueryExecutor.execute(query, subject, restriction);
+            }
+        });
+    }
+
+    private void loadTriggerIndex() {
+        long indexGeneration = triggerIndex.getGeneration();
+        List<Task> tasks = tasksDataService.retrieveAll();
+
+        // if tasks were modified in the meantime, the database is queried directly until the next attempt succeeds
+        if (tasks != null && triggerIndex.load(tasks, indexGeneration)) {
+            LOGGER.info("Loaded trigger index with {} tasks", tasks.size());
+        }
+    }
+
     @Override
     public TasksEventParser findCustomParser(String name) {
         if (StringUtils.isEmpty(name)) {
@@ -236,6 +281,10 @@ public class TaskServiceImpl implements TaskService {
         Task task = tasksDataService.findById(taskId);
         checkChannelAvailableInTask(task);
 
+        if (task != null) {
+            task.setFailuresInRow(failureCounter.getFailuresInRow(taskId, task.getFailuresInRow()));
+        }
+
         return task;
     }
 
@@ -248,9 +297,49 @@ public class TaskServiceImpl implements TaskService {
         }
 
         tasksDataService.delete(t);
+        failureCounter.remove(taskId);
+        triggerIndex.remove(taskId);
+        planCache.invalidate(taskId);
+        broadcastTaskChanged(taskId);
         LOGGER.info("Deleted task: {} with ID: {}", t.getName(), taskId);
     }
 
+    /**
+     * Refreshes the tasks changed on another node of the cluster in the trigger index and recompiles their execution
+     * plans.
+     *
+     * @param event  the event sent after the tasks were saved or deleted
+     */
+    @MotechListener(subjects = TASK_CHANGED_SUBJECT)
+    public void handleTaskChanged(MotechEvent event) {
+        if (TaskChangedEvents.isLocal(event)) {
+            return;
+        }
+
+        for (Long taskId : TaskChangedEvents.getTaskIds(event)) {
+            refreshChangedTask(taskId);
+        }
+    }
+
+    private void refreshChangedTask(Long taskId) {
+        Task task = tasksDataService.findById(taskId);
+
+        LOGGER.debug("Handling a change of task with ID: {} made on another node", taskId);
+
+        if (task == null) {
+            planCache.invalidate(taskId);
+            failureCounter.remove(taskId);
+            triggerIndex.remove(taskId);
+        } else {
+            failureCounter.refresh(task);
+            triggerIndex.update(task);
+            compilePlan(task);
+            if (task.getTrigger() != null) {
+                registerHandler(task);
+            }
+        }
+    }
+
     @MotechListener(subjects = CHANNEL_UPDATE_SUBJECT)
     public void validateTasksAfterChannelUpdate(MotechEvent event) {
         String moduleName = event.getParameters().get(CHANNEL_MODULE_NAME).toString();
@@ -378,6 +467,57 @@ public class TaskServiceImpl implements TaskService {
         return tasks;
     }
 
+    /**
+     * Compiles the templates and filter keys of the task, so that a task which could not be executed is rejected
+     * when it is saved, instead of failing when it is triggered. Tasks with actions from unregistered channels are
+     * not compiled, the missing channels are reported by the validation of the actions.
+     */
+    private Set<TaskError> validateTemplates(Task task) {
+        LOGGER.debug("Validating templates in task: {} with ID: {}", task.getName(), task.getId());
+        Set<TaskError> errors = new HashSet<>();
+
+        if (hasActionChannels(task)) {
+            try {
+                TaskExecutionPlan.compile(task, this);
+            } catch (IllegalArgumentException e) {
+                errors.add(new TaskError("task.validation.error.invalidTemplate", e.getMessage()));
+            }
+        }
+
+        logResultOfValidation("templates", task.getName(), errors);
+
+        return errors;
+    }
+
+    /**
+     * Replaces the cached execution plan of the given task, so that the first execution after the task was saved
+     * does not have to compile it. Disabled tasks are compiled once they are enabled.
+     */
+    private void compilePlan(Task task) {
+        planCache.invalidate(task.getId());
+
+        if (task.isEnabled() && hasActionChannels(task)) {
+            try {
+                planCache.getPlan(task, this);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Unable to compile the execution plan of task: {} with ID: {}", task.getName(),
+                        task.getId(), e);
+            }
+        }
+    }
+
+    private boolean hasActionChannels(Task task) {
+        if (task.getActions() == null) {
+            return false;
+        }
+        for (TaskActionInformation action : task.getActions()) {
+            if (channelService.getChannel(action.getModuleName()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Set<TaskError> validateTrigger(Task task) {
 
         LOGGER.debug("Validating trigger in task: {} with ID: {}", task.getName(), task.getId());
@@ -555,16 +695,16 @@ public class TaskServiceImpl implements TaskService {
     }
 
     private void addOrUpdate(final Task task) {
-        tasksDataService.doInTransaction(new TransactionCallbackWithoutResult() {
+        Task saved = tasksDataService.doInTransaction(new TransactionCallback<Task>() {
             @Override
-            protected void doInTransactionWithoutResult(TransactionStatus status) {
+            public Task doInTransaction(TransactionStatus status) {
                 Task existing = tasksDataService.findById(task.getId());
 
                 if (null != existing) {
                     LOGGER.debug("Updating task: {} with ID: {}", existing.getName(), existing.getId());
                     existing.setActions(task.getActions());
                     existing.setDescription(task.getDescription());
-                    existing.setFailuresInRow(task.getFailuresInRow());
+                    existing.setFailuresInRow(failureCounter.getFailuresInRow(task.getId(), task.getFailuresInRow()));
 
                     if (!existing.isEnabled() && task.isEnabled()) {
                         existing.resetFailuresInRow();
@@ -581,19 +721,30 @@ public class TaskServiceImpl implements TaskService {
 
                     checkChannelAvailableInTask(existing);
 
-                    tasksDataService.update(existing);
+                    return tasksDataService.update(existing);
                 } else {
                     LOGGER.debug("Creating task: {}", task.getName());
                     checkChannelAvailableInTask(task);
 
-                    tasksDataService.create(task);
+                    return tasksDataService.create(task);
                 }
             }
         });
 
+        if (saved != null) {
+            failureCounter.remove(saved.getId());
+            triggerIndex.update(saved);
+            compilePlan(saved);
+            broadcastTaskChanged(saved.getId());
+        }
+
         LOGGER.info("Saved task: {}", task.getName());
     }
 
+    private void broadcastTaskChanged(Long taskId) {
+        eventRelay.broadcastEventMessage(TaskChangedEvents.create(taskId));
+    }
+
     private void registerHandler(Task task) {
         // We cannot simply autowire trigger handler bean, since that would create
         // circular dependency between TaskService and TriggerHandler
@@ -674,4 +825,19 @@ public class TaskServiceImpl implements TaskService {
     public void setTaskMigrationManager(TaskMigrationManager taskMigrationManager) {
         this.taskMigrationManager = taskMigrationManager;
     }
+
+    @Autowired
+    public void setPlanCache(TaskExecutionPlanCache planCache) {
+        this.planCache = planCache;
+    }
+
+    @Autowired
+    public void setFailureCounter(TaskFailureCounter failureCounter) {
+        this.failureCounter = failureCounter;
+    }
+
+    @Autowired
+    public void setTriggerIndex(TaskTriggerIndex triggerIndex) {
+        this.triggerIndex = triggerIndex;
+    }
 }
@@ -27,9 +27,11 @@ import org.springframework.util.ReflectionUtils;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.motechproject.tasks.constants.EventDataKeys.JOB_SUBJECT;
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_ID;
@@ -65,6 +67,12 @@ public class TaskTriggerHandler implements TriggerHandler {
     @Autowired
     private TasksPostExecutionHandler postExecutionHandler;
 
+    private TaskExecutionPlanCache planCache = new TaskExecutionPlanCache();
+
+    private TaskExecutionEngine executionEngine = new TaskExecutionEngine();
+
+    private DataSourceLookupCache lookupCache = new DataSourceLookupCache();
+
     private Map<String, DataProvider> dataProviders;
 
     @PostConstruct
@@ -131,11 +139,16 @@ public class TaskTriggerHandler implements TriggerHandler {
         Map<String, Object> parameters = parser == null ? eventParams : parser.parseEventParameters(event.getSubject(), eventParams);
 
         List<Task> tasks = taskService.findActiveTasksForTriggerSubject(triggerSubject);
+        List<TaskExecution> executions = new ArrayList<>(tasks.size());
+        DataSourceLookupCache.EventScope lookups = lookupCache.newEventScope();
 
-        // Handle all tasks one by one
         for (Task task : tasks) {
-            handleTask(task, parameters, false);
+            // the executions may run in parallel, so each of them gets its own copy of the parameters
+            Map<String, Object> taskParameters = parameters == null ? null : new HashMap<>(parameters);
+            executions.add(new TaskExecution(task, taskParameters, false, lookups));
         }
+
+        executionEngine.execute(triggerSubject, executions);
     }
 
     @Override
@@ -162,25 +175,7 @@ public class TaskTriggerHandler implements TriggerHandler {
     }
 
     private void handleTask(Task task, Map<String, Object> parameters, boolean isRetry) {
-        long activityId = activityService.addTaskStarted(task, parameters);
-        Map<String, Object> metadata = prepareTaskMetadata(task.getId(), activityId, isRetry);
-
-        TaskContext taskContext = new TaskContext(task, parameters, metadata, activityService);
-        TaskInitializer initializer = new TaskInitializer(taskContext);
-
-        try {
-            LOGGER.info("Executing all actions from task: {}", task.getName());
-            if (initializer.evalConfigSteps(dataProviders)) {
-                for (int i = 0; i < task.getActions().size(); i++) {
-                    executor.execute(task, task.getActions().get(i), i, taskContext, activityId);
-                }
-            }
-            LOGGER.warn("Actions from task: {} weren't executed, because config steps didn't pass the evaluation", task.getName());
-        } catch (TaskHandlerException e) {
-            postExecutionHandler.handleError(parameters, metadata, task, e, activityId);
-        } catch (RuntimeException e) {
-            postExecutionHandler.handleError(parameters, metadata, task, new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e), activityId);
-        }
+        new TaskExecution(task, parameters, isRetry, lookupCache.newEventScope()).run();
     }
 
     @Override
@@ -212,8 +207,113 @@ public class TaskTriggerHandler implements TriggerHandler {
         return metadata;
     }
 
+    @Autowired
+    public void setPlanCache(TaskExecutionPlanCache planCache) {
+        this.planCache = planCache;
+    }
+
+    @Autowired
+    public void setLookupCache(DataSourceLookupCache lookupCache) {
+        this.lookupCache = lookupCache;
+    }
+
+    @Autowired
+    public void setExecutionEngine(TaskExecutionEngine executionEngine) {
+        this.executionEngine = executionEngine;
+    }
+
     @Autowired(required = false)
     public void setBundleContext(BundleContext bundleContext) {
         this.executor.setBundleContext(bundleContext);
     }
+
+    /**
+     * A single execution of a task, run by the {@link TaskExecutionEngine}.
+     */
+    private final class TaskExecution implements TaskExecutionEngine.Execution {
+
+        private final Task task;
+        private final Map<String, Object> parameters;
+        private final boolean isRetry;
+        private final DataSourceLookupCache.EventScope lookups;
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private volatile Long activityId;
+        private volatile Map<String, Object> metadata;
+
+        private TaskExecution(Task task, Map<String, Object> parameters, boolean isRetry,
+                              DataSourceLookupCache.EventScope lookups) {
+            this.task = task;
+            this.parameters = parameters;
+            this.isRetry = isRetry;
+            this.lookups = lookups;
+        }
+
+        @Override
+        public Task getTask() {
+            return task;
+        }
+
+        @Override
+        public void run() {
+            start();
+
+            TaskContext taskContext = new TaskContext(task, parameters, metadata, activityService);
+
+            try {
+                TaskExecutionPlan plan = planCache.getPlan(task, taskService);
+                TaskInitializer initializer = new TaskInitializer(taskContext, plan, lookups);
+
+                LOGGER.info("Executing all actions from task: {}", task.getName());
+                if (initializer.evalConfigSteps(dataProviders)) {
+                    for (int i = 0; i < plan.getActions().size() && !finished.get(); i++) {
+                        executor.execute(task, plan.getActions().get(i), i, taskContext, activityId);
+                    }
+                } else {
+                    LOGGER.warn("Actions from task: {} weren't executed, because config steps didn't pass the evaluation", task.getName());
+                }
+                finished.compareAndSet(false, true);
+            } catch (TaskHandlerException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new TaskHandlerException(TRIGGER, "task.error.unrecognizedError", e));
+            }
+        }
+
+        @Override
+        public boolean timedOut(long timeout) {
+            if (!finished.compareAndSet(false, true)) {
+                // the execution has already finished or failed
+                return false;
+            }
+
+            if (activityId == null) {
+                // the execution did not even start
+                start();
+            }
+            postExecutionHandler.handleError(parameters, metadata, task,
+                    new TaskHandlerException(TRIGGER, "task.error.timeout", String.valueOf(timeout)), activityId);
+            return true;
+        }
+
+        private void fail(TaskHandlerException e) {
+            // an execution that timed out has already been reported as failed
+            if (finished.compareAndSet(false, true)) {
+                postExecutionHandler.handleError(parameters, metadata, task, e, activityId);
+            } else {
+                LOGGER.debug("Ignoring error of task: {} which has already finished", task.getName(), e);
+            }
+        }
+
+        private synchronized void start() {
+            if (activityId != null) {
+                return;
+            }
+
+            long id = activityService.addTaskStarted(task, parameters);
+            metadata = prepareTaskMetadata(task.getId(), id, isRetry);
+            activityId = id;
+        }
+    }
 }
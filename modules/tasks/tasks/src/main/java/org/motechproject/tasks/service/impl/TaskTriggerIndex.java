@@ -0,0 +1,193 @@
+package org.motechproject.tasks.service.impl;
+
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the active tasks indexed by the subjects of their triggers, so that retrieving the tasks to execute when
+ * a trigger fires does not query the database. The index is loaded with all tasks once and is then updated by the
+ * {@link TaskServiceImpl} whenever a task is saved, deleted, or changed on another node of the cluster.
+ * <p/>
+ * Tasks for the same subject are kept in the ascending order of their IDs. The index keeps its own copies of the
+ * tasks and hands out copies as well, since callers change the returned tasks, for example disable them before
+ * saving, from many threads at once. A change of a returned task therefore reaches the index only once it is saved.
+ */
+@Component
+public class TaskTriggerIndex {
+
+    private volatile Map<String, List<Task>> tasksBySubject = Collections.emptyMap();
+    private final Map<Long, String> subjectsByTaskId = new HashMap<>();
+
+    private volatile boolean loaded;
+    private long generation;
+
+    /**
+     * Checks whether the index was loaded.
+     *
+     * @return true if the index was loaded, false otherwise
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns the current generation of the index. The generation changes every time the index is modified, so it
+     * can be used to detect whether tasks retrieved from the database are still up to date when they are loaded.
+     *
+     * @return the generation of the index
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Loads the index with the given tasks, unless it was modified since the given generation.
+     *
+     * @param tasks  all the tasks
+     * @param expectedGeneration  the generation of the index at the moment the tasks were retrieved
+     * @return true if the index was loaded, false if it was modified in the meantime
+     */
+    public synchronized boolean load(Collection<Task> tasks, long expectedGeneration) {
+        if (expectedGeneration != generation) {
+            return false;
+        }
+
+        Map<String, List<Task>> index = new HashMap<>();
+        subjectsByTaskId.clear();
+
+        for (Task task : tasks) {
+            if (isIndexed(task)) {
+                String subject = task.getTrigger().getSubject();
+                List<Task> subjectTasks = index.get(subject);
+
+                if (subjectTasks == null) {
+                    subjectTasks = new ArrayList<>();
+                    index.put(subject, subjectTasks);
+                }
+
+                insert(subjectTasks, copy(task));
+                subjectsByTaskId.put(task.getId(), subject);
+            }
+        }
+
+        tasksBySubject = index;
+        loaded = true;
+        generation++;
+
+        return true;
+    }
+
+    /**
+     * Adds or replaces the given task in the index. Disabled tasks and tasks without trigger are removed from it.
+     *
+     * @param task  the task, not null
+     */
+    public synchronized void update(Task task) {
+        Map<String, List<Task>> index = remove(new HashMap<>(tasksBySubject), task.getId());
+
+        if (isIndexed(task)) {
+            String subject = task.getTrigger().getSubject();
+            List<Task> subjectTasks = index.get(subject);
+
+            subjectTasks = subjectTasks == null ? new ArrayList<Task>() : new ArrayList<>(subjectTasks);
+            insert(subjectTasks, copy(task));
+
+            index.put(subject, subjectTasks);
+            subjectsByTaskId.put(task.getId(), subject);
+        }
+
+        tasksBySubject = index;
+        generation++;
+    }
+
+    /**
+     * Removes the task with the given ID from the index.
+     *
+     * @param taskId  the ID of the task
+     */
+    public synchronized void remove(Long taskId) {
+        tasksBySubject = remove(new HashMap<>(tasksBySubject), taskId);
+        generation++;
+    }
+
+    /**
+     * Returns the active tasks with the given trigger subject.
+     *
+     * @param subject  the subject of the trigger
+     * @return the copies of the active tasks, never null
+     */
+    public List<Task> getActiveTasks(String subject) {
+        List<Task> tasks = tasksBySubject.get(subject);
+        List<Task> copies = new ArrayList<>();
+
+        if (tasks != null) {
+            for (Task task : tasks) {
+                copies.add(copy(task));
+            }
+        }
+
+        return copies;
+    }
+
+    private Map<String, List<Task>> remove(Map<String, List<Task>> index, Long taskId) {
+        String subject = subjectsByTaskId.remove(taskId);
+
+        if (subject != null && index.containsKey(subject)) {
+            List<Task> subjectTasks = new ArrayList<>(index.get(subject));
+
+            for (int i = 0; i < subjectTasks.size(); ++i) {
+                if (subjectTasks.get(i).getId().equals(taskId)) {
+                    subjectTasks.remove(i);
+                    break;
+                }
+            }
+
+            if (subjectTasks.isEmpty()) {
+                index.remove(subject);
+            } else {
+                index.put(subject, subjectTasks);
+            }
+        }
+
+        return index;
+    }
+
+    private void insert(List<Task> subjectTasks, Task task) {
+        int position = 0;
+        while (position < subjectTasks.size() && subjectTasks.get(position).getId() < task.getId()) {
+            position++;
+        }
+        subjectTasks.add(position, task);
+    }
+
+    /**
+     * Copies the task with its own lists of actions and validation errors. The actions, trigger and configuration
+     * themselves are shared, since they are only changed by saving the task, which replaces the indexed copy.
+     */
+    private static Task copy(Task task) {
+        Task copy = new Task(task.getName(), task.getTrigger(), new ArrayList<>(task.getActions()),
+                task.getTaskConfig(), task.isEnabled(), task.hasRegisteredChannel());
+
+        copy.setId(task.getId());
+        copy.setDescription(task.getDescription());
+        copy.setFailuresInRow(task.getFailuresInRow());
+        copy.setValidationErrors(new HashSet<>(task.getValidationErrors()));
+        copy.setNumberOfRetries(task.getNumberOfRetries());
+        copy.setRetryIntervalInMilliseconds(task.getRetryIntervalInMilliseconds());
+
+        return copy;
+    }
+
+    private boolean isIndexed(Task task) {
+        return task.getId() != null && task.isEnabled() && task.getTrigger() != null
+                && task.getTrigger().getSubject() != null;
+    }
+}
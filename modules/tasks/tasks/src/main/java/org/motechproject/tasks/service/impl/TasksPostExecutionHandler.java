@@ -26,6 +26,7 @@ import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_STACK_TR
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_TASK_ID;
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_TASK_NAME;
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_FAIL_TRIGGER_DISABLED;
+import static org.motechproject.tasks.constants.EventDataKeys.TASK_ID;
 import static org.motechproject.tasks.constants.EventDataKeys.TASK_RETRY;
 import static org.motechproject.tasks.constants.EventSubjects.createHandlerFailureSubject;
 import static org.motechproject.tasks.constants.EventSubjects.createHandlerSuccessSubject;
@@ -58,6 +59,8 @@ public class TasksPostExecutionHandler {
     @Qualifier("tasksSettings")
     private SettingsFacade settings;
 
+    private TaskFailureCounter failureCounter = new TaskFailureCounter();
+
     /**
      * Handles successful execution of a single task action. If all actions of the task have been successfully executed,
      * it sends an event with the message about successful execution, resets the task failures in row count and passes the
@@ -69,7 +72,10 @@ public class TasksPostExecutionHandler {
     public void handleActionExecuted(Map<String, Object> params, Map<String, Object> metadata, Long activityId) {
         boolean taskFinished = activityService.addSuccessfulExecution(activityId);
         if (taskFinished) {
-            Long taskId = activityService.getTaskActivityById(activityId).getTask();
+            Long taskId = metadata == null ? null : (Long) metadata.get(TASK_ID);
+            if (taskId == null) {
+                taskId = activityService.getTaskActivityById(activityId).getTask();
+            }
             Task task = taskService.getTask(taskId);
 
             handleSuccess(params, metadata, task);
@@ -90,11 +96,10 @@ public class TasksPostExecutionHandler {
         LOGGER.warn("Omitted task: {} with ID: {} because: {}", task.getName(), task.getId(), e);
 
         activityService.addFailedExecution(activityId, e);
-        task.incrementFailuresInRow();
+        int failureNumber = failureCounter.increment(task);
 
-        LOGGER.info("The number of failures for task: {} is: {}", task.getName(), task.getFailuresInRow());
+        LOGGER.info("The number of failures for task: {} is: {}", task.getName(), failureNumber);
 
-        int failureNumber = task.getFailuresInRow();
         int possibleErrorsNumber = getPossibleErrorsNumber();
 
         if (failureNumber >= possibleErrorsNumber) {
@@ -102,9 +107,9 @@ public class TasksPostExecutionHandler {
 
             activityService.addTaskDisabledWarning(task);
             publishTaskDisabledMessage(task.getName());
-        }
 
-        taskService.save(task);
+            taskService.save(task);
+        }
 
         Map<String, Object> errorParam = new HashMap<>();
         errorParam.put(TASK_FAIL_MESSAGE, e.getMessage());
@@ -132,8 +137,7 @@ public class TasksPostExecutionHandler {
     private void handleSuccess(Map<String, Object> params, Map<String, Object> metadata, Task task) {
         LOGGER.debug("All actions from task: {} with ID: {} were successfully executed", task.getName(), task.getId());
 
-        task.resetFailuresInRow();
-        taskService.save(task);
+        failureCounter.reset(task);
 
         eventRelay.sendEventMessage(new MotechEvent(
                 createHandlerSuccessSubject(task.getName()),
@@ -174,4 +178,9 @@ public class TasksPostExecutionHandler {
     private boolean isRetryScheduled(Map<String, Object> metadata) {
         return metadata.get(TASK_RETRY) != null && (boolean) metadata.get(TASK_RETRY);
     }
+
+    @Autowired
+    public void setFailureCounter(TaskFailureCounter failureCounter) {
+        this.failureCounter = failureCounter;
+    }
 }
@@ -0,0 +1,117 @@
+package org.motechproject.tasks.service.util;
+
+import org.motechproject.tasks.domain.KeyInformation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.motechproject.tasks.domain.KeyInformation.parseAll;
+
+/**
+ * A template parsed once into literal segments and the keys placed between them. Evaluating a compiled template with
+ * {@link KeyEvaluator#evaluateTemplate(CompiledTemplate)} gives the same result as
+ * {@link KeyEvaluator#evaluateTemplateString(String)}, but does not parse the template again.
+ */
+public final class CompiledTemplate {
+
+    private final String template;
+    private final List<KeyInformation> keys;
+    private final String[] literals;
+    private final int[] keyIndexes;
+
+    private CompiledTemplate(String template, List<KeyInformation> keys, String[] literals, int[] keyIndexes) {
+        this.template = template;
+        this.keys = keys;
+        this.literals = literals;
+        this.keyIndexes = keyIndexes;
+    }
+
+    /**
+     * Parses the given template.
+     *
+     * @param template  the template to be parsed
+     * @return the compiled template
+     * @throws IllegalArgumentException if any of the keys in the template is incorrect
+     */
+    public static CompiledTemplate compile(String template) {
+        List<KeyInformation> keys = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+
+        for (KeyInformation key : parseAll(template)) {
+            String token = String.format("{{%s}}", key.getOriginalKey());
+            if (!tokens.contains(token)) {
+                keys.add(key);
+                tokens.add(token);
+            }
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> keyIndexes = new ArrayList<>();
+        int position = 0;
+
+        while (!tokens.isEmpty()) {
+            int nextPosition = -1;
+            int nextKey = -1;
+
+            for (int i = 0; i < tokens.size(); ++i) {
+                int index = template.indexOf(tokens.get(i), position);
+                if (index != -1 && (nextPosition == -1 || index < nextPosition)) {
+                    nextPosition = index;
+                    nextKey = i;
+                }
+            }
+
+            if (nextKey == -1) {
+                break;
+            }
+
+            literals.add(template.substring(position, nextPosition));
+            keyIndexes.add(nextKey);
+            position = nextPosition + tokens.get(nextKey).length();
+        }
+
+        literals.add(template == null ? null : template.substring(position));
+
+        int[] indexes = new int[keyIndexes.size()];
+        for (int i = 0; i < indexes.length; ++i) {
+            indexes[i] = keyIndexes.get(i);
+        }
+
+        return new CompiledTemplate(template, keys, literals.toArray(new String[literals.size()]), indexes);
+    }
+
+    /**
+     * Returns the template from which this object was compiled.
+     *
+     * @return the template
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the distinct keys used in the template, in the order of their first occurrence.
+     *
+     * @return the keys
+     */
+    public List<KeyInformation> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Checks whether the template contains any keys.
+     *
+     * @return true if the template contains keys, false if it is a plain text
+     */
+    public boolean hasKeys() {
+        return !keys.isEmpty();
+    }
+
+    String[] getLiterals() {
+        return literals;
+    }
+
+    int[] getKeyIndexes() {
+        return keyIndexes;
+    }
+}
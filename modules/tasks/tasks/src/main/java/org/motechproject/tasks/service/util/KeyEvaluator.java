@@ -74,6 +74,39 @@ public class KeyEvaluator {
         return conversionTemplate;
     }
 
+    /**
+     * Evaluates the given compiled template by replacing the keys with their manipulated values.
+     *
+     * @param template  the compiled template to be evaluated, not null
+     * @return the evaluated template
+     * @throws TaskHandlerException if there was problem while manipulating the value
+     */
+    public String evaluateTemplate(CompiledTemplate template) throws TaskHandlerException {
+        if (!template.hasKeys()) {
+            return template.getTemplate();
+        }
+
+        List<KeyInformation> keys = template.getKeys();
+        String[] values = new String[keys.size()];
+
+        for (int i = 0; i < values.length; ++i) {
+            KeyInformation key = keys.get(i);
+            Object value = getValue(key);
+
+            values[i] = manipulateValue(key.getManipulations(), value != null ? value.toString() : "");
+        }
+
+        String[] literals = template.getLiterals();
+        int[] keyIndexes = template.getKeyIndexes();
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < keyIndexes.length; ++i) {
+            builder.append(literals[i]).append(values[keyIndexes[i]]);
+        }
+
+        return builder.append(literals[keyIndexes.length]).toString();
+    }
+
     /**
      * Returns value for the given key.
      *
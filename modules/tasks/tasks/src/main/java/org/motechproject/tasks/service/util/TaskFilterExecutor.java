@@ -54,18 +54,36 @@ public class TaskFilterExecutor {
      */
     public boolean checkFilters(List<Filter> filters, LogicalOperator logicalOperator, TaskContext taskContext)
             throws TaskHandlerException {
+        return checkFilters(filters, null, logicalOperator, taskContext);
+    }
+
+    /**
+     * Checks whether task with the given context matches the given filters, using keys of the filters parsed
+     * beforehand.
+     *
+     * @param filters  the filters, null returns true
+     * @param keys  the parsed keys of the filters, in the same order as the filters; if null, the keys are parsed
+     *              from the filters
+     * @param logicalOperator  the logical operator
+     * @param taskContext  the task context, not null
+     * @return true if the task matches the filters
+     * @throws TaskHandlerException if there were problems while handling task
+     */
+    public boolean checkFilters(List<Filter> filters, List<KeyInformation> keys, LogicalOperator logicalOperator,
+                                TaskContext taskContext) throws TaskHandlerException {
         LOGGER.debug("Checking if task: {} matches the filters", taskContext.getTask().getName());
         Map<String, Object> parameters = taskContext.getTriggerParameters();
         if (isEmpty(filters) || parameters == null) {
             return true;
         }
 
+        KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
         boolean filterCheck = false;
-        for (Filter filter : filters) {
-            KeyInformation key = parse(filter.getKey());
+        for (int i = 0; i < filters.size(); ++i) {
+            Filter filter = filters.get(i);
+            KeyInformation key = keys == null ? parse(filter.getKey()) : keys.get(i);
             Object value;
             try {
-                KeyEvaluator keyEvaluator = new KeyEvaluator(taskContext);
                 value = keyEvaluator.getManipulatedValue(key);
             } catch (TaskHandlerException e) {
                 if (TaskFailureCause.DATA_SOURCE.equals(e.getFailureCause())) {
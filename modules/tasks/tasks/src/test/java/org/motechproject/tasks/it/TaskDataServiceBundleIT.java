@@ -97,6 +97,9 @@ public class TaskDataServiceBundleIT extends BasePaxIT {
         tasksDataService.create(expected2);
         tasksDataService.create(expected3);
 
+        // tasks were created directly through the data service, bypassing the trigger index
+        taskService.reloadActiveTasks();
+
         assertEquals(new ArrayList<Task>(), taskService.findActiveTasksForTriggerSubject(""));
         assertEquals(asList(expected1, expected3), taskService.findActiveTasksForTriggerSubject(trigger1.getSubject()));
         assertEquals(new ArrayList<Task>(), taskService.findActiveTasksForTriggerSubject(trigger2.getSubject()));
@@ -178,5 +181,6 @@ public class TaskDataServiceBundleIT extends BasePaxIT {
     @After
     public void tearDown() {
         tasksDataService.deleteAll();
+        taskService.reloadActiveTasks();
     }
 }
@@ -138,5 +138,6 @@ public class TasksBundleIT extends BasePaxIT {
     @After
     public void tearDown() {
         taskDataService.deleteAll();
+        taskService.reloadActiveTasks();
     }
 }
@@ -46,6 +46,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAME;
+import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_CHANGED_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_DEREGISTER_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 
@@ -209,6 +210,10 @@ public class ChannelServiceImplTest {
 
         assertEquals(CHANNEL_DEREGISTER_SUBJECT, event.getSubject());
         assertEquals(BUNDLE_SYMBOLIC_NAME, event.getParameters().get(CHANNEL_MODULE_NAME));
+
+        verify(eventRelay).broadcastEventMessage(captor.capture());
+        assertEquals(CHANNEL_CHANGED_SUBJECT, captor.getValue().getSubject());
+        assertEquals(BUNDLE_SYMBOLIC_NAME, captor.getValue().getParameters().get(CHANNEL_MODULE_NAME));
     }
 
     @Test
@@ -241,6 +246,10 @@ public class ChannelServiceImplTest {
 
         assertEquals(CHANNEL_UPDATE_SUBJECT, event.getSubject());
         assertEquals(BUNDLE_SYMBOLIC_NAME, event.getParameters().get(CHANNEL_MODULE_NAME));
+
+        verify(eventRelay).broadcastEventMessage(captor.capture());
+        assertEquals(CHANNEL_CHANGED_SUBJECT, captor.getValue().getSubject());
+        assertEquals(BUNDLE_SYMBOLIC_NAME, captor.getValue().getParameters().get(CHANNEL_MODULE_NAME));
     }
 
     @Test
@@ -0,0 +1,118 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.commons.api.DataProvider;
+import org.motechproject.config.SettingsFacade;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventListener;
+import org.motechproject.event.listener.EventListenerRegistryService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.motechproject.mds.util.Constants.MDSEvents.ENTITY_CLASS;
+
+public class DataSourceLookupCacheTest {
+
+    private static final String TYPE = "org.motechproject.Patient";
+    private static final String LOOKUP = "By ID";
+
+    @Mock
+    private DataProvider provider;
+
+    @Mock
+    private SettingsFacade settings;
+
+    @Mock
+    private EventListenerRegistryService registryService;
+
+    private DataSourceLookupCache cache;
+
+    private Map<String, String> fields;
+    private Object patient = new Object();
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        cache = new DataSourceLookupCache();
+
+        fields = new HashMap<>();
+        fields.put("id", "1");
+
+        when(provider.getName()).thenReturn("provider");
+        when(provider.lookup(TYPE, LOOKUP, fields)).thenReturn(patient);
+    }
+
+    @Test
+    public void shouldListenToCrudEventsOnlyIfObjectsAreShared() {
+        cache.setSettings(settings);
+        cache.setRegistryService(registryService);
+        cache.init();
+
+        verify(registryService, never()).registerListener(any(EventListener.class), anyString());
+
+        when(settings.getProperty("task.lookup.cache.ttl")).thenReturn("60000");
+        cache.init();
+
+        verify(registryService).registerListener(any(EventListener.class), eq("mds.crud.*"));
+    }
+
+    @Test
+    public void shouldLookUpObjectOncePerEvent() {
+        DataSourceLookupCache.EventScope scope = cache.newEventScope();
+
+        assertSame(patient, scope.lookup(provider, TYPE, LOOKUP, fields));
+        assertSame(patient, scope.lookup(provider, TYPE, LOOKUP, new HashMap<>(fields)));
+        verify(provider, times(1)).lookup(TYPE, LOOKUP, fields);
+
+        cache.newEventScope().lookup(provider, TYPE, LOOKUP, fields);
+        verify(provider, times(2)).lookup(TYPE, LOOKUP, fields);
+    }
+
+    @Test
+    public void shouldShareObjectsAcrossEventsUntilEntityChanges() {
+        cache.setTtl(60000);
+
+        cache.newEventScope().lookup(provider, TYPE, LOOKUP, fields);
+        cache.newEventScope().lookup(provider, TYPE, LOOKUP, fields);
+        verify(provider, times(1)).lookup(TYPE, LOOKUP, fields);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(ENTITY_CLASS, TYPE);
+        cache.handleCrudEvent(new MotechEvent("mds.crud.test.Patient.UPDATE", params));
+
+        cache.newEventScope().lookup(provider, TYPE, LOOKUP, fields);
+        verify(provider, times(2)).lookup(TYPE, LOOKUP, fields);
+    }
+
+    @Test
+    public void shouldNotCacheFailedLookups() {
+        when(provider.lookup(TYPE, LOOKUP, fields)).thenThrow(new IllegalStateException("failure"));
+        DataSourceLookupCache.EventScope scope = cache.newEventScope();
+
+        for (int i = 0; i < 2; ++i) {
+            try {
+                scope.lookup(provider, TYPE, LOOKUP, fields);
+                fail("Expected lookup to fail");
+            } catch (IllegalStateException e) {
+                assertEquals("failure", e.getMessage());
+            }
+        }
+
+        verify(provider, times(2)).lookup(TYPE, LOOKUP, fields);
+    }
+}
@@ -2,9 +2,11 @@ package org.motechproject.tasks.service.impl;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventConsumerInfo;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.tasks.constants.EventDataKeys;
 import org.motechproject.tasks.domain.ObjectTest;
@@ -30,6 +32,7 @@ import java.util.TreeSet;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -53,6 +56,8 @@ public class TaskActionExecutorTest {
     private BundleContext bundleContext;
     @Mock
     private TasksPostExecutionHandler postExecutionHandler;
+    @Mock
+    private EventConsumerInfo eventConsumerInfo;
 
     @Test
     public void shouldRaiseEventIfActionHasSubject() throws ActionNotFoundException, TaskHandlerException {
@@ -78,6 +83,58 @@ public class TaskActionExecutorTest {
         verify(eventRelay).sendEventMessage(raisedEvent);
     }
 
+    @Test
+    public void shouldPersistActivityRecordedInMemoryBeforeRaisingEvent() throws ActionNotFoundException, TaskHandlerException {
+        TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "actionSubject");
+        ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
+                .setDescription("").setActionParameters(new TreeSet<>()).build();
+        when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
+        when(activityService.persistActivity(-3L)).thenReturn(TASK_ACTIVITY_ID);
+
+        Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
+        task.setId(11L);
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(EventDataKeys.TASK_ID, 11L);
+        metadata.put(EventDataKeys.TASK_ACTIVITY_ID, -3L);
+
+        TaskActionExecutor taskActionExecutor = new TaskActionExecutor(taskService, activityService, eventRelay, postExecutionHandler);
+        taskActionExecutor.setBundleContext(bundleContext);
+
+        taskActionExecutor.execute(task, actionInformation, 0, new TaskContext(task, new HashMap<>(), metadata, activityService), -3L);
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay).sendEventMessage(captor.capture());
+        assertEquals(TASK_ACTIVITY_ID, captor.getValue().getMetadata().get(EventDataKeys.TASK_ACTIVITY_ID));
+    }
+
+    @Test
+    public void shouldNotPersistActivityWhenCallbackIsHandledLocally() throws ActionNotFoundException, TaskHandlerException {
+        TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "actionSubject");
+        ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("Action").setSubject("actionSubject")
+                .setDescription("").setActionParameters(new TreeSet<>()).build();
+        when(taskService.getActionEventFor(actionInformation)).thenReturn(actionEvent);
+        when(eventConsumerInfo.isLocalTransport()).thenReturn(true);
+
+        Task task = new TaskBuilder().addAction(new TaskActionInformation("Action", "channel", "module", "0.1", "actionSubject")).build();
+        task.setId(11L);
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(EventDataKeys.TASK_ID, 11L);
+        metadata.put(EventDataKeys.TASK_ACTIVITY_ID, -3L);
+
+        TaskActionExecutor taskActionExecutor = new TaskActionExecutor(taskService, activityService, eventRelay, postExecutionHandler);
+        taskActionExecutor.setBundleContext(bundleContext);
+        taskActionExecutor.setEventConsumerInfo(eventConsumerInfo);
+
+        taskActionExecutor.execute(task, actionInformation, 0, new TaskContext(task, new HashMap<>(), metadata, activityService), -3L);
+
+        verify(activityService, never()).persistActivity(anyLong());
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay).sendEventMessage(captor.capture());
+        assertEquals(Long.valueOf(-3L), captor.getValue().getMetadata().get(EventDataKeys.TASK_ACTIVITY_ID));
+    }
+
     @Test
     public void shouldRaiseEventWhenActionHasSubjectAndService_IfServiceIsNotAvailable() throws TaskHandlerException, ActionNotFoundException {
         TaskActionInformation actionInformation = new TaskActionInformation("action", "channel", "module", "0.1", "serviceInterface", "serviceMethod");
@@ -0,0 +1,230 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.tasks.domain.mds.task.TaskActivity;
+import org.motechproject.tasks.domain.mds.task.TaskActivityType;
+import org.motechproject.tasks.domain.mds.task.TaskExecutionProgress;
+import org.motechproject.tasks.repository.TaskActivitiesDataService;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskActivityRecorderTest {
+
+    private static final Long TASK_ID = 7L;
+
+    @Mock
+    private TaskActivitiesDataService taskActivitiesDataService;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        when(taskActivitiesDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+        when(taskActivitiesDataService.create(any(TaskActivity.class))).thenAnswer(new Answer<TaskActivity>() {
+            @Override
+            public TaskActivity answer(InvocationOnMock invocation) {
+                TaskActivity activity = (TaskActivity) invocation.getArguments()[0];
+                activity.setId(100L);
+                return activity;
+            }
+        });
+    }
+
+    @Test
+    public void shouldWriteActivityOnceTheExecutionFinishes() {
+        TaskActivityRecorder recorder = recorder(TaskActivityRecorder.Mode.ASYNC, 300000);
+
+        long activityId = recorder.start(inProgress());
+        assertTrue(recorder.isRecorded(activityId));
+
+        recorder.update(activityId, setType(TaskActivityType.SUCCESS));
+        assertEquals(TaskActivityType.SUCCESS, recorder.get(activityId).getActivityType());
+
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+        recorder.flush();
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+        verify(taskActivitiesDataService).create(captor.capture());
+        assertEquals(TaskActivityType.SUCCESS, captor.getValue().getActivityType());
+        assertEquals(TASK_ID, captor.getValue().getTask());
+    }
+
+    @Test
+    public void shouldNotWriteSuccessfulActivitiesIfConfigured() {
+        TaskActivityRecorder recorder = recorder(TaskActivityRecorder.Mode.OFF_FOR_SUCCESS, 300000);
+
+        long successId = recorder.start(inProgress());
+        long failureId = recorder.start(inProgress());
+
+        recorder.update(successId, setType(TaskActivityType.SUCCESS));
+        recorder.update(failureId, setType(TaskActivityType.ERROR));
+        recorder.flush();
+
+        ArgumentCaptor<TaskActivity> captor = ArgumentCaptor.forClass(TaskActivity.class);
+        verify(taskActivitiesDataService).create(captor.capture());
+        assertEquals(TaskActivityType.ERROR, captor.getValue().getActivityType());
+    }
+
+    @Test
+    public void shouldWriteStaleActivitiesAndUpdateThemLater() {
+        TaskActivityRecorder recorder = recorder(TaskActivityRecorder.Mode.OFF_FOR_SUCCESS, -1);
+        TaskActivity persisted = inProgress();
+        when(taskActivitiesDataService.findById(100L)).thenReturn(persisted);
+
+        long activityId = recorder.start(inProgress());
+        recorder.flush();
+
+        verify(taskActivitiesDataService).create(any(TaskActivity.class));
+        assertEquals(Long.valueOf(100L), recorder.get(activityId).getId());
+
+        recorder.update(activityId, setType(TaskActivityType.SUCCESS));
+        recorder.flush();
+
+        verify(taskActivitiesDataService, times(1)).create(any(TaskActivity.class));
+        verify(taskActivitiesDataService).update(persisted);
+        assertEquals(TaskActivityType.SUCCESS, persisted.getActivityType());
+    }
+
+    @Test
+    public void shouldFlushWhenQueueIsFull() {
+        TaskActivityRecorder recorder = new TaskActivityRecorder(taskActivitiesDataService, null,
+                TaskActivityRecorder.Mode.ASYNC, 10, 1000, 1, 300000);
+
+        recorder.update(recorder.start(inProgress()), setType(TaskActivityType.ERROR));
+        verify(taskActivitiesDataService, never()).create(any(TaskActivity.class));
+
+        recorder.update(recorder.start(inProgress()), setType(TaskActivityType.ERROR));
+        verify(taskActivitiesDataService).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldReturnNullForUnknownActivities() {
+        TaskActivityRecorder recorder = recorder(TaskActivityRecorder.Mode.ASYNC, 300000);
+
+        assertNull(recorder.get(-5L));
+        assertNull(recorder.update(-5L, setType(TaskActivityType.SUCCESS)));
+    }
+
+    @Test
+    public void shouldPersistActivityAndUpdateItInDatabaseAfterwards() {
+        TaskActivityRecorder recorder = recorder(TaskActivityRecorder.Mode.ASYNC, 300000);
+        TaskActivity persisted = inProgress();
+        when(taskActivitiesDataService.findById(100L)).thenReturn(persisted);
+
+        long activityId = recorder.start(inProgress());
+
+        assertEquals(100L, recorder.persist(activityId));
+        assertEquals(100L, recorder.persist(activityId));
+        verify(taskActivitiesDataService, times(1)).create(any(TaskActivity.class));
+
+        recorder.update(activityId, setType(TaskActivityType.SUCCESS));
+
+        verify(taskActivitiesDataService).update(persisted);
+        assertEquals(TaskActivityType.SUCCESS, persisted.getActivityType());
+        assertEquals(TaskActivityType.SUCCESS, recorder.get(activityId).getActivityType());
+
+        recorder.flush();
+        verify(taskActivitiesDataService, times(1)).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldRetryFailedWrites() {
+        TaskActivityRecorder recorder = recorder(TaskActivityRecorder.Mode.ASYNC, 300000);
+        doThrow(new IllegalStateException("Database unavailable")).doReturn(inProgress())
+                .when(taskActivitiesDataService).create(any(TaskActivity.class));
+
+        recorder.update(recorder.start(inProgress()), setType(TaskActivityType.ERROR));
+
+        recorder.flush();
+        verify(taskActivitiesDataService, times(1)).create(any(TaskActivity.class));
+
+        recorder.flush();
+        verify(taskActivitiesDataService, times(2)).create(any(TaskActivity.class));
+
+        recorder.flush();
+        verify(taskActivitiesDataService, times(2)).create(any(TaskActivity.class));
+    }
+
+    @Test
+    public void shouldWriteActivitiesInNewTransactions() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        TaskActivityRecorder recorder = new TaskActivityRecorder(taskActivitiesDataService, transactionTemplate,
+                TaskActivityRecorder.Mode.ASYNC, 10, 1000, 100, 300000);
+
+        recorder.update(recorder.start(inProgress()), setType(TaskActivityType.ERROR));
+        recorder.flush();
+
+        ArgumentCaptor<TransactionDefinition> captor = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(captor.capture());
+        assertEquals(TransactionDefinition.PROPAGATION_REQUIRES_NEW, captor.getValue().getPropagationBehavior());
+        verify(taskActivitiesDataService).create(any(TaskActivity.class));
+        verify(taskActivitiesDataService, never()).doInTransaction(any(TransactionCallback.class));
+    }
+
+    @Test
+    public void shouldNotWriteOlderStatesOfPersistedActivity() {
+        TaskActivityRecorder recorder = recorder(TaskActivityRecorder.Mode.ASYNC, 300000);
+        TaskActivity persisted = inProgress();
+        when(taskActivitiesDataService.findById(100L)).thenReturn(persisted);
+
+        long activityId = recorder.start(inProgress());
+        recorder.update(activityId, setType(TaskActivityType.ERROR));
+
+        assertEquals(100L, recorder.persist(activityId));
+        recorder.flush();
+
+        verify(taskActivitiesDataService, times(1)).create(any(TaskActivity.class));
+        verify(taskActivitiesDataService, never()).update(any(TaskActivity.class));
+    }
+
+    private TaskActivityRecorder recorder(TaskActivityRecorder.Mode mode, long inProgressTimeout) {
+        return new TaskActivityRecorder(taskActivitiesDataService, null, mode, 10, 1000, 100, inProgressTimeout);
+    }
+
+    private TaskActivity inProgress() {
+        return new TaskActivity("task.inProgress", new ArrayList<>(Arrays.asList("0", "1")), TASK_ID,
+                TaskActivityType.IN_PROGRESS, null, new HashMap<String, Object>(), new TaskExecutionProgress(1));
+    }
+
+    private TaskActivityRecorder.ActivityUpdate<Boolean> setType(final TaskActivityType type) {
+        return new TaskActivityRecorder.ActivityUpdate<Boolean>() {
+            @Override
+            public Boolean apply(TaskActivity activity) {
+                activity.setActivityType(type);
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.tasks.domain.mds.task.Task;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskExecutionEngineTest {
+
+    private TaskExecutionEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new TaskExecutionEngine();
+    }
+
+    @After
+    public void tearDown() {
+        engine.destroy();
+    }
+
+    @Test
+    public void shouldExecuteTasksInReceivingThreadByDefault() {
+        TestExecution first = new TestExecution(1L, null);
+        TestExecution second = new TestExecution(2L, null);
+
+        engine.execute("subject", asList(first, second));
+
+        assertEquals(Thread.currentThread(), first.thread);
+        assertEquals(Thread.currentThread(), second.thread);
+    }
+
+    @Test
+    public void shouldExecuteTasksInParallel() {
+        engine.setThreads(2);
+
+        // each execution waits for the other one, so they can only finish if executed in parallel
+        CountDownLatch latch = new CountDownLatch(2);
+        TestExecution first = new TestExecution(1L, latch);
+        TestExecution second = new TestExecution(2L, latch);
+
+        engine.execute("subject", asList(first, second));
+
+        assertTrue(first.finished);
+        assertTrue(second.finished);
+        assertFalse(Thread.currentThread().equals(first.thread));
+    }
+
+    @Test
+    public void shouldTimeOutSlowTasksWithoutBlockingOthers() {
+        engine.setThreads(2);
+        engine.setTimeout(200);
+
+        // the latch of the slow execution is never released
+        TestExecution slow = new TestExecution(1L, new CountDownLatch(2));
+        TestExecution fast = new TestExecution(2L, null);
+
+        engine.execute("subject", asList(slow, fast));
+
+        assertTrue(slow.timedOut);
+        assertFalse(slow.finished);
+        assertTrue(fast.finished);
+        assertFalse(fast.timedOut);
+    }
+
+    @Test
+    public void shouldStartTimeoutWhenTaskStartsRunning() {
+        engine.setThreads(1);
+        engine.setTimeout(500);
+
+        // the second execution waits in the queue for most of the timeout, but does not use up its own time
+        TestExecution first = new TestExecution(1L, null, 300);
+        TestExecution second = new TestExecution(2L, null, 300);
+
+        engine.execute("subject", asList(first, second));
+
+        assertTrue(first.finished);
+        assertTrue(second.finished);
+        assertFalse(first.timedOut);
+        assertFalse(second.timedOut);
+    }
+
+    @Test
+    public void shouldNotAcceptTimeoutOfFinishedExecution() {
+        TestExecution execution = new TestExecution(1L, null);
+        execution.run();
+
+        assertFalse(execution.timedOut(100));
+        assertFalse(execution.timedOut);
+    }
+
+    private static class TestExecution implements TaskExecutionEngine.Execution {
+
+        private final Task task = new Task();
+        private final CountDownLatch latch;
+        private final long sleep;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private volatile Thread thread;
+        private volatile boolean finished;
+        private volatile boolean timedOut;
+
+        TestExecution(Long taskId, CountDownLatch latch) {
+            this(taskId, latch, 0);
+        }
+
+        TestExecution(Long taskId, CountDownLatch latch, long sleep) {
+            this.latch = latch;
+            this.sleep = sleep;
+            task.setId(taskId);
+            task.setName("task-" + taskId);
+        }
+
+        @Override
+        public Task getTask() {
+            return task;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    if (!latch.await(5, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (completed.compareAndSet(false, true)) {
+                finished = true;
+            }
+        }
+
+        @Override
+        public boolean timedOut(long timeout) {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+            timedOut = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventRelay;
+import org.motechproject.mds.query.QueryExecution;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.repository.TasksDataService;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.util.HashSet;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TaskFailureCounterTest {
+
+    private static final Long TASK_ID = 3L;
+    private static final Long OTHER_TASK_ID = 4L;
+
+    @Mock
+    private TasksDataService tasksDataService;
+
+    @Mock
+    private EventRelay eventRelay;
+
+    private TaskFailureCounter failureCounter;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+
+        failureCounter = new TaskFailureCounter();
+        failureCounter.setTasksDataService(tasksDataService);
+        failureCounter.setEventRelay(eventRelay);
+
+        when(tasksDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
+    }
+
+    @Test
+    public void shouldCountFailuresStartingFromTheStoredNumber() {
+        Task task = task(2);
+
+        assertEquals(3, failureCounter.increment(task));
+        assertEquals(4, failureCounter.increment(task(2)));
+        assertEquals(4, task.getFailuresInRow());
+        assertEquals(4, failureCounter.getFailuresInRow(TASK_ID, 2));
+
+        failureCounter.reset(task);
+        assertEquals(0, task.getFailuresInRow());
+        assertEquals(0, failureCounter.getFailuresInRow(TASK_ID, 2));
+    }
+
+    @Test
+    public void shouldWriteChangedCountersWithoutSavingTasks() {
+        Task stored = task(0);
+        when(tasksDataService.executeQuery(any(QueryExecution.class))).thenReturn(stored);
+
+        failureCounter.increment(task(0));
+        failureCounter.flush();
+
+        assertEquals(1, stored.getFailuresInRow());
+        verify(tasksDataService).update(stored);
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay).broadcastEventMessage(captor.capture());
+        assertEquals(asList(TASK_ID), TaskChangedEvents.getTaskIds(captor.getValue()));
+    }
+
+    @Test
+    public void shouldBroadcastSingleEventForAllWrittenCounters() {
+        Task stored = task(0);
+        Task otherStored = task(OTHER_TASK_ID, 0);
+        when(tasksDataService.executeQuery(any(QueryExecution.class))).thenReturn(stored, otherStored);
+
+        failureCounter.increment(task(0));
+        failureCounter.increment(task(OTHER_TASK_ID, 0));
+        failureCounter.flush();
+
+        verify(tasksDataService).update(stored);
+        verify(tasksDataService).update(otherStored);
+
+        ArgumentCaptor<MotechEvent> captor = ArgumentCaptor.forClass(MotechEvent.class);
+        verify(eventRelay, times(1)).broadcastEventMessage(captor.capture());
+        assertEquals(new HashSet<>(asList(TASK_ID, OTHER_TASK_ID)),
+                new HashSet<>(TaskChangedEvents.getTaskIds(captor.getValue())));
+    }
+
+    @Test
+    public void shouldAddFailuresToTheNumberStoredByOtherNodes() {
+        Task stored = task(5);
+        when(tasksDataService.executeQuery(any(QueryExecution.class))).thenReturn(stored);
+
+        assertEquals(2, failureCounter.increment(task(1)));
+        failureCounter.flush();
+
+        assertEquals(6, stored.getFailuresInRow());
+        assertEquals(6, failureCounter.getFailuresInRow(TASK_ID, 1));
+
+        failureCounter.refresh(task(8));
+        assertEquals(9, failureCounter.increment(task(8)));
+    }
+
+    @Test
+    public void shouldResetTheStoredNumberAfterSuccess() {
+        Task stored = task(5);
+        when(tasksDataService.executeQuery(any(QueryExecution.class))).thenReturn(stored);
+
+        Task task = task(2);
+        failureCounter.reset(task);
+        failureCounter.increment(task);
+        failureCounter.flush();
+
+        assertEquals(1, stored.getFailuresInRow());
+    }
+
+    @Test
+    public void shouldKeepFailuresWhichCouldNotBeWritten() {
+        Task stored = task(0);
+        doThrow(new IllegalStateException()).doReturn(stored)
+                .when(tasksDataService).executeQuery(any(QueryExecution.class));
+
+        failureCounter.increment(task(0));
+        failureCounter.flush();
+
+        assertEquals(0, stored.getFailuresInRow());
+        verify(eventRelay, never()).broadcastEventMessage(any(MotechEvent.class));
+
+        failureCounter.increment(task(0));
+        failureCounter.flush();
+
+        assertEquals(2, stored.getFailuresInRow());
+    }
+
+    @Test
+    public void shouldNotWriteAnythingForSuccessfulTasksWithoutFailures() {
+        failureCounter.reset(task(0));
+        failureCounter.flush();
+
+        verify(tasksDataService, never()).doInTransaction(any(TransactionCallback.class));
+    }
+
+    @Test
+    public void shouldDropCounterOfRemovedTask() {
+        failureCounter.increment(task(0));
+        failureCounter.remove(TASK_ID);
+        failureCounter.flush();
+
+        assertEquals(7, failureCounter.getFailuresInRow(TASK_ID, 7));
+        verify(tasksDataService, never()).doInTransaction(any(TransactionCallback.class));
+    }
+
+    private Task task(int failuresInRow) {
+        return task(TASK_ID, failuresInRow);
+    }
+
+    private Task task(Long id, int failuresInRow) {
+        Task task = new Task();
+        task.setId(id);
+        task.setFailuresInRow(failuresInRow);
+        return task;
+    }
+}
@@ -73,6 +73,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.never;
@@ -85,6 +86,7 @@ import static org.mockito.MockitoAnnotations.initMocks;
 import static org.motechproject.tasks.domain.mds.ParameterType.UNICODE;
 import static org.motechproject.tasks.constants.EventDataKeys.CHANNEL_MODULE_NAME;
 import static org.motechproject.tasks.constants.EventDataKeys.DATA_PROVIDER_NAME;
+import static org.motechproject.tasks.constants.EventDataKeys.ORIGIN_NODE;
 import static org.motechproject.tasks.constants.EventSubjects.CHANNEL_UPDATE_SUBJECT;
 import static org.motechproject.tasks.constants.EventSubjects.DATA_PROVIDER_UPDATE_SUBJECT;
 
@@ -407,6 +409,88 @@ public class TaskServiceImplTest {
         assertEquals(asList(t), tasks);
     }
 
+    @Test
+    public void shouldKeepIndexedTaskUnchangedWhenSaveFails() {
+        Task t = new Task("name", trigger, asList(action));
+        t.setId(1L);
+
+        when(tasksDataService.retrieveAll()).thenReturn(asList(t));
+        when(tasksDataService.doInTransaction(any(TransactionCallback.class)))
+                .thenThrow(new IllegalStateException("Unable to save"));
+
+        Task retrieved = taskService.findActiveTasksForTriggerSubject(trigger.getSubject()).get(0);
+        retrieved.setEnabled(false);
+
+        try {
+            taskService.save(retrieved);
+            fail("The save should have failed");
+        } catch (IllegalStateException e) {
+            // expected, the task was not saved
+        }
+
+        List<Task> tasks = taskService.findActiveTasksForTriggerSubject(trigger.getSubject());
+        assertEquals(1, tasks.size());
+        assertTrue(tasks.get(0).isEnabled());
+    }
+
+    @Test(expected = ValidationException.class)
+    public void shouldNotSaveEnabledTaskWithIncorrectTemplate() {
+        TaskActionInformation incorrectAction = new TaskActionInformation("receive", "test", "test-action", "0.14",
+                "RECEIVE");
+        Map<String, String> values = new HashMap<>();
+        values.put("phone", "{{unknown.phone}}");
+        incorrectAction.setValues(values);
+
+        Task task = new Task("name", trigger, asList(incorrectAction), null, true, false);
+        when(triggerEventService.triggerExists(trigger)).thenReturn(true);
+        when(channelService.getChannel(incorrectAction.getModuleName())).thenReturn(actionChannel());
+
+        try {
+            taskService.save(task);
+        } finally {
+            verify(tasksDataService, never()).doInTransaction(any(TransactionCallback.class));
+        }
+    }
+
+    @Test
+    public void shouldCompileExecutionPlanWhenTaskIsSaved() {
+        TaskExecutionPlanCache planCache = new TaskExecutionPlanCache();
+        taskService.setPlanCache(planCache);
+
+        Task task = new Task("name", trigger, asList(new TaskActionInformation("receive", "test", "test-action",
+                "0.14", "RECEIVE")), null, true, false);
+        final Task saved = new Task("name", trigger, task.getActions(), null, true, false);
+        saved.setId(7L);
+
+        when(triggerEventService.triggerExists(trigger)).thenReturn(true);
+        when(channelService.getChannel("test-action")).thenReturn(actionChannel());
+        when(tasksDataService.doInTransaction(any(TransactionCallback.class))).thenReturn(saved);
+
+        taskService.save(task);
+
+        // the plan compiled during the save is cached, so the actions do not have to be resolved again
+        when(channelService.getChannel("test-action")).thenReturn(null);
+        assertTrue(planCache.getPlan(saved, taskService).isComplete());
+    }
+
+    @Test
+    public void shouldRefreshEveryTaskChangedOnAnotherNode() {
+        MotechEvent event = TaskChangedEvents.create(asList(7L, 8L));
+        event.getParameters().put(ORIGIN_NODE, "otherNode");
+
+        taskService.handleTaskChanged(event);
+
+        verify(tasksDataService).findById(7L);
+        verify(tasksDataService).findById(8L);
+    }
+
+    @Test
+    public void shouldIgnoreTasksChangedOnThisNode() {
+        taskService.handleTaskChanged(TaskChangedEvents.create(asList(7L, 8L)));
+
+        verifyZeroInteractions(tasksDataService);
+    }
+
     @Test
     public void shouldGetTaskById() {
         long taskId = 12345L;
@@ -845,4 +929,11 @@ public class TaskServiceImplTest {
 
         return new MotechEvent(DATA_PROVIDER_UPDATE_SUBJECT, parameters);
     }
+
+    private Channel actionChannel() {
+        ActionEvent actionEvent = new ActionEventBuilder().setDisplayName("receive").setSubject("RECEIVE")
+                .setDescription("").setActionParameters(null).build();
+        actionEvent.addParameter(new ActionParameterBuilder().setDisplayName("Phone").setKey("phone").build(), true);
+        return new Channel("test", "test-action", "0.14", "", null, asList(actionEvent));
+    }
 }
@@ -0,0 +1,103 @@
+package org.motechproject.tasks.service.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.tasks.domain.mds.task.Task;
+import org.motechproject.tasks.domain.mds.task.TaskActionInformation;
+import org.motechproject.tasks.domain.mds.task.TaskTriggerInformation;
+import org.motechproject.tasks.domain.mds.task.builder.TaskBuilder;
+
+import java.util.HashMap;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class TaskTriggerIndexTest {
+
+    private static final String SUBJECT_1 = "SUBJECT-1";
+    private static final String SUBJECT_2 = "SUBJECT-2";
+
+    private TaskTriggerIndex index;
+
+    @Before
+    public void setUp() {
+        index = new TaskTriggerIndex();
+    }
+
+    @Test
+    public void shouldIndexOnlyActiveTasksBySubject() {
+        Task task1 = task(3L, SUBJECT_1, true);
+        Task task2 = task(1L, SUBJECT_1, true);
+        Task task3 = task(2L, SUBJECT_1, false);
+        Task task4 = task(4L, SUBJECT_2, true);
+
+        assertFalse(index.isLoaded());
+        assertTrue(index.load(asList(task1, task2, task3, task4), index.getGeneration()));
+        assertTrue(index.isLoaded());
+
+        assertEquals(asList(task2, task1), index.getActiveTasks(SUBJECT_1));
+        assertEquals(asList(task4), index.getActiveTasks(SUBJECT_2));
+        assertTrue(index.getActiveTasks("OTHER").isEmpty());
+    }
+
+    @Test
+    public void shouldUpdateIndexIncrementally() {
+        Task task1 = task(1L, SUBJECT_1, true);
+        index.load(asList(task1), index.getGeneration());
+
+        Task task2 = task(2L, SUBJECT_1, true);
+        index.update(task2);
+        assertEquals(asList(task1, task2), index.getActiveTasks(SUBJECT_1));
+
+        Task movedTask = task(1L, SUBJECT_2, true);
+        index.update(movedTask);
+        assertEquals(asList(task2), index.getActiveTasks(SUBJECT_1));
+        assertEquals(asList(movedTask), index.getActiveTasks(SUBJECT_2));
+
+        index.update(task(2L, SUBJECT_1, false));
+        assertTrue(index.getActiveTasks(SUBJECT_1).isEmpty());
+
+        index.remove(1L);
+        assertTrue(index.getActiveTasks(SUBJECT_2).isEmpty());
+    }
+
+    @Test
+    public void shouldNotLoadIndexModifiedInTheMeantime() {
+        long generation = index.getGeneration();
+
+        index.update(task(1L, SUBJECT_1, true));
+
+        assertFalse(index.load(asList(task(2L, SUBJECT_1, true)), generation));
+        assertFalse(index.isLoaded());
+    }
+
+    @Test
+    public void shouldNotShareIndexedTasksWithCallers() {
+        Task task = task(1L, SUBJECT_1, true);
+        index.load(asList(task), index.getGeneration());
+
+        task.setFailuresInRow(3);
+        Task retrieved = index.getActiveTasks(SUBJECT_1).get(0);
+        retrieved.setEnabled(false);
+        retrieved.setHasRegisteredChannel(false);
+
+        Task indexed = index.getActiveTasks(SUBJECT_1).get(0);
+        assertNotSame(retrieved, indexed);
+        assertTrue(indexed.isEnabled());
+        assertTrue(indexed.hasRegisteredChannel());
+        assertEquals(0, indexed.getFailuresInRow());
+    }
+
+    private Task task(Long id, String subject, boolean enabled) {
+        return new TaskBuilder()
+                .withId(id)
+                .withName("task-" + id)
+                .withTrigger(new TaskTriggerInformation("trigger", "test", "test", "0.1", subject, subject))
+                .addAction(new TaskActionInformation("action", "test", "test", "0.1", "ACTION", new HashMap<String, String>()))
+                .isEnabled(enabled)
+                .build();
+    }
+}
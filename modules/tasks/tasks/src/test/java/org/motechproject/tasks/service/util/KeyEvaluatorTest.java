@@ -4,9 +4,14 @@ import org.joda.time.DateTime;
 import org.junit.Test;
 import org.motechproject.commons.api.MotechException;
 import org.motechproject.commons.date.util.DateUtil;
+import org.motechproject.tasks.domain.mds.task.Task;
 import org.motechproject.tasks.service.util.KeyEvaluator;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 
 public class KeyEvaluatorTest {
 
@@ -45,4 +50,28 @@ public class KeyEvaluatorTest {
     public void shouldThrowExceptionWhenManipulationIsUnknown(){
         new KeyEvaluator(null).manipulate("undefined", "something");
     }
+
+    @Test
+    public void shouldEvaluateCompiledTemplateLikeTemplateString() throws Exception {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "john");
+        parameters.put("count", 3);
+        KeyEvaluator keyEvaluator = new KeyEvaluator(new TaskContext(new Task(), parameters, new HashMap<String, Object>(), null));
+
+        String[] templates = {
+            "Hello {{trigger.name?capitalize}}, you have {{trigger.count}} messages, {{trigger.name?capitalize}}!",
+            "{{trigger.name}}{{trigger.count}}",
+            "{{trigger.count?format({{trigger.name}})}}",
+            "no keys at all",
+            ""
+        };
+
+        for (String template : templates) {
+            assertEquals(keyEvaluator.evaluateTemplateString(template),
+                    keyEvaluator.evaluateTemplate(CompiledTemplate.compile(template)));
+        }
+
+        assertFalse(CompiledTemplate.compile("no keys at all").hasKeys());
+        assertEquals(2, CompiledTemplate.compile(templates[0]).getKeys().size());
+    }
 }
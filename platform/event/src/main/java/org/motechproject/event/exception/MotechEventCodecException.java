@@ -0,0 +1,25 @@
+package org.motechproject.event.exception;
+
+/**
+ * Signals that a {@link org.motechproject.event.MotechEvent} could not be encoded or decoded by a
+ * {@link org.motechproject.event.messaging.MotechEventCodec}.
+ */
+public class MotechEventCodecException extends RuntimeException {
+
+    private static final long serialVersionUID = 2350418834593720469L;
+
+    /**
+     * @param message the description of the error
+     */
+    public MotechEventCodecException(String message) {
+        super(message);
+    }
+
+    /**
+     * @param message the description of the error
+     * @param cause the cause of the error
+     */
+    public MotechEventCodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,97 @@
+package org.motechproject.event.listener;
+
+import org.motechproject.event.MotechEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of publishing a batch of events using {@link EventRelay#sendEventMessages(java.util.Collection)}
+ * or {@link EventRelay#broadcastEventMessages(java.util.Collection)}. Contains the number of messages that were sent
+ * and the events that could not be sent, together with the cause of the failure.
+ */
+public class EventBatchResult {
+
+    private int sentCount;
+    private final List<FailedEvent> failedEvents = new ArrayList<>();
+
+    /**
+     * Returns the number of messages that were successfully sent to the broker. Events sent to the queue are split
+     * per listener, so this can be larger than the number of published events.
+     *
+     * @return the number of sent messages
+     */
+    public int getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Returns the events that could not be sent.
+     *
+     * @return the list of failed events, never null
+     */
+    public List<FailedEvent> getFailedEvents() {
+        return Collections.unmodifiableList(failedEvents);
+    }
+
+    /**
+     * Checks whether all events from the batch were sent.
+     *
+     * @return true if no event failed, false otherwise
+     */
+    public boolean isSuccessful() {
+        return failedEvents.isEmpty();
+    }
+
+    public void addSent(int count) {
+        sentCount += count;
+    }
+
+    public void addFailure(MotechEvent event, Throwable cause) {
+        failedEvents.add(new FailedEvent(event, cause));
+    }
+
+    /**
+     * Merges the given result into this one.
+     *
+     * @param other the result to merge
+     */
+    public void merge(EventBatchResult other) {
+        sentCount += other.sentCount;
+        failedEvents.addAll(other.failedEvents);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventBatchResult{sentCount=%d, failedEvents=%d}", sentCount, failedEvents.size());
+    }
+
+    /**
+     * An event that could not be sent, along with the cause of the failure.
+     */
+    public static class FailedEvent {
+
+        private final MotechEvent event;
+        private final Throwable cause;
+
+        public FailedEvent(MotechEvent event, Throwable cause) {
+            this.event = event;
+            this.cause = cause;
+        }
+
+        /**
+         * Returns the event that could not be sent. For events sent to the queue, this is the copy of the event
+         * addressed to a single listener.
+         *
+         * @return the failed event
+         */
+        public MotechEvent getEvent() {
+            return event;
+        }
+
+        public Throwable getCause() {
+            return cause;
+        }
+    }
+}
@@ -6,9 +6,17 @@ import org.motechproject.event.MotechEvent;
  * Implementing {@link EventCallbackService} and exposing it as OSGi service allows to receive callbacks, after
  * the events have been handled by their respective listener. In order to invoke a callback, the name of the callback service must be set in
  * the {@link MotechEvent} and must match the name returned by the {@link #getName()} method.
+ * If the service is registered with the {@link #ASYNC_PROPERTY} service property set to true, the callbacks are
+ * invoked asynchronously, after the transaction in which the event was handled. The result of the failure callback
+ * of such services is ignored, and failed events are never redelivered.
  */
 public interface EventCallbackService {
 
+    /**
+     * The name of the service property marking the callbacks of the service as asynchronous.
+     */
+    String ASYNC_PROPERTY = "motech.callback.async";
+
     /**
      * Callback method, invoked when the event handler method has thrown an exception.
      *
@@ -1,5 +1,7 @@
 package org.motechproject.event.listener;
 
+import java.util.List;
+
 /**
  * The <code>EventConsumerInfo</code> interface provides methods for getting information about ActiveMQ Event Consumers.
  */
@@ -11,4 +13,19 @@ public interface EventConsumerInfo {
      * @return true if Event Consumers are running, false otherwise
      */
     boolean isRunning();
+
+    /**
+     * Checks if events are dispatched in-process instead of through ActiveMQ. Queue events, and the callbacks of
+     * their handlers, are then handled by the node which sent them.
+     *
+     * @return true if the local transport is used, false otherwise
+     */
+    boolean isLocalTransport();
+
+    /**
+     * Returns the state of the consumption lanes configured in the <code>motech.message.lanes</code> setting.
+     *
+     * @return the state of each lane, empty if no lanes are configured
+     */
+    List<EventLaneInfo> getLanes();
 }
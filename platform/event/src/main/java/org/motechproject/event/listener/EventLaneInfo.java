@@ -0,0 +1,72 @@
+package org.motechproject.event.listener;
+
+import java.util.List;
+
+/**
+ * Describes the state of a consumption lane. Lanes consume events with matching subjects from their own JMS queue,
+ * with their own consumer concurrency and limit of events handled at the same time.
+ */
+public class EventLaneInfo {
+
+    /**
+     * The queue depth reported when the broker does not provide the size of the queue.
+     */
+    public static final int UNKNOWN_QUEUE_DEPTH = -1;
+
+    private final String name;
+    private final List<String> subjects;
+    private final int queueDepth;
+    private final int inFlight;
+    private final int maxInFlight;
+    private final int activeConsumers;
+
+    public EventLaneInfo(String name, List<String> subjects, int queueDepth, int inFlight, int maxInFlight,
+                         int activeConsumers) {
+        this.name = name;
+        this.subjects = subjects;
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+        this.maxInFlight = maxInFlight;
+        this.activeConsumers = activeConsumers;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the subject patterns of events consumed by this lane. Patterns can end with a wildcard.
+     *
+     * @return the subject patterns
+     */
+    public List<String> getSubjects() {
+        return subjects;
+    }
+
+    /**
+     * Returns the number of messages waiting in the queue of this lane, as reported by the statistics plugin of the
+     * broker.
+     *
+     * @return the number of queued messages, or {@link #UNKNOWN_QUEUE_DEPTH} if the broker did not report it
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Returns the number of events currently being handled by this lane.
+     *
+     * @return the number of events in flight
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getActiveConsumers() {
+        return activeConsumers;
+    }
+}
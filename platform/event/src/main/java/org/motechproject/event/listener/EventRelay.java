@@ -2,6 +2,8 @@ package org.motechproject.event.listener;
 
 import org.motechproject.event.MotechEvent;
 
+import java.util.Collection;
+
 /**
  * The <code>EventRelay</code> interface provides methods that allow sending {@link org.motechproject.event.MotechEvent}
  * via ActiveMQ, either to the queue (ActiveMQ selects the subscriber that will handle the event) or to the topic (event
@@ -34,4 +36,27 @@ public interface EventRelay {
      * @param motechEvent the event to be broadcast
      */
     void broadcastEventMessage(MotechEvent motechEvent);
+
+    /**
+     * Publishes the events in a queue, the same way {@link #sendEventMessage(MotechEvent)} does, but sends all
+     * messages of the batch using a single transacted JMS session. The transaction is committed every
+     * {@link org.motechproject.event.messaging.MotechEventConfig#getMessageBatchSize()} messages or
+     * {@link org.motechproject.event.messaging.MotechEventConfig#getMessageBatchFlushInterval()} milliseconds.
+     * Events that could not be sent are reported in the returned result instead of aborting the whole batch.
+     * Events taken over by a coalescing policy are sent once their window ends, outside of the batch.
+     *
+     * @param motechEvents the events to be sent
+     * @return the result of the batch, with the events that could not be sent
+     */
+    EventBatchResult sendEventMessages(Collection<MotechEvent> motechEvents);
+
+    /**
+     * Publishes the events in a topic, the same way {@link #broadcastEventMessage(MotechEvent)} does, but sends all
+     * messages of the batch using a single transacted JMS session.
+     *
+     * @param motechEvents the events to be broadcast
+     * @return the result of the batch, with the events that could not be sent
+     * @see #sendEventMessages(Collection)
+     */
+    EventBatchResult broadcastEventMessages(Collection<MotechEvent> motechEvents);
 }
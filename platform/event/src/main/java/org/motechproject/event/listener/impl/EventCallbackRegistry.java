@@ -0,0 +1,243 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventCallbackService;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the {@link EventCallbackService}s registered in the OSGi service registry, indexed by their names.
+ * The index is updated by a {@link ServiceTracker}, so resolving a callback by name costs a single map lookup.
+ * Callback services registered with the {@link EventCallbackService#ASYNC_PROPERTY} service property set to true are
+ * invoked in a separate thread pool, outside of the transaction in which the event was handled: if a transaction is
+ * active, success callbacks are invoked once it commits and failure callbacks once it completes. The queue of the
+ * pool is bounded, so when callbacks are requested faster than they finish, they are invoked in the requesting thread.
+ */
+public class EventCallbackRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventCallbackRegistry.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final Map<String, EventCallbackService> callbacks = new ConcurrentHashMap<>();
+    private final Map<ServiceReference<EventCallbackService>, String> names = new ConcurrentHashMap<>();
+
+    private BundleContext bundleContext;
+    private MotechEventConfig motechEventConfig;
+
+    private ServiceTracker<EventCallbackService, EventCallbackService> tracker;
+    private ThreadPoolExecutor asyncExecutor;
+
+    /**
+     * Starts tracking callback services.
+     */
+    public void open() {
+        int threads = Math.max(1, motechEventConfig.getAsyncCallbackThreads());
+        asyncExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, motechEventConfig.getAsyncCallbackQueueCapacity())),
+                new CallbackThreadFactory(), new CallerRunsUnlessShutdownPolicy());
+
+        tracker = new ServiceTracker<EventCallbackService, EventCallbackService>(bundleContext,
+                EventCallbackService.class, null) {
+            @Override
+            public EventCallbackService addingService(ServiceReference<EventCallbackService> reference) {
+                EventCallbackService service = super.addingService(reference);
+                if (service != null) {
+                    register(reference, service);
+                }
+                return service;
+            }
+
+            @Override
+            public void modifiedService(ServiceReference<EventCallbackService> reference, EventCallbackService service) {
+                unregister(reference);
+                register(reference, service);
+            }
+
+            @Override
+            public void removedService(ServiceReference<EventCallbackService> reference, EventCallbackService service) {
+                unregister(reference);
+                super.removedService(reference, service);
+            }
+        };
+        tracker.open();
+    }
+
+    /**
+     * Stops tracking callback services. Pending asynchronous callbacks are given some time to finish.
+     */
+    public void close() {
+        if (tracker != null) {
+            tracker.close();
+        }
+
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+            try {
+                if (!asyncExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Asynchronous event callbacks did not finish in {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+                    asyncExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                asyncExecutor.shutdownNow();
+            }
+        }
+
+        callbacks.clear();
+        names.clear();
+    }
+
+    /**
+     * Returns the callback service with the given name.
+     *
+     * @param name the name of the callback service
+     * @return the callback service, or null if there is no such service
+     */
+    public EventCallbackService getCallbackService(String name) {
+        return callbacks.get(name);
+    }
+
+    private void register(ServiceReference<EventCallbackService> reference, EventCallbackService service) {
+        String name = service.getName();
+        boolean async = Boolean.parseBoolean(String.valueOf(reference.getProperty(EventCallbackService.ASYNC_PROPERTY)));
+
+        callbacks.put(name, async ? new AsyncEventCallbackService(service) : service);
+        names.put(reference, name);
+
+        LOGGER.debug("Registered {} event callback service {}", async ? "asynchronous" : "synchronous", name);
+    }
+
+    private void unregister(ServiceReference<EventCallbackService> reference) {
+        String name = names.remove(reference);
+        if (name != null) {
+            callbacks.remove(name);
+            LOGGER.debug("Unregistered event callback service {}", name);
+        }
+    }
+
+    public void setBundleContext(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    /**
+     * Invokes the callbacks of the wrapped service in the asynchronous callback thread pool. Since the result of
+     * the failure callback is not known at the time it is requested, failed events are never redelivered.
+     */
+    private class AsyncEventCallbackService implements EventCallbackService {
+
+        private final EventCallbackService service;
+
+        AsyncEventCallbackService(EventCallbackService service) {
+            this.service = service;
+        }
+
+        @Override
+        public boolean failureCallback(final MotechEvent event, final Throwable throwable) {
+            final Runnable callback = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        service.failureCallback(event, throwable);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Failure callback {} failed for event {}", service.getName(), event, e);
+                    }
+                }
+            };
+
+            // the transaction of the failed handler is usually rolled back, the callback is invoked anyway
+            execute(callback, false);
+            return false;
+        }
+
+        @Override
+        public void successCallback(final MotechEvent event) {
+            final Runnable callback = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        service.successCallback(event);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Success callback {} failed for event {}", service.getName(), event, e);
+                    }
+                }
+            };
+
+            execute(callback, true);
+        }
+
+        @Override
+        public String getName() {
+            return service.getName();
+        }
+
+        /**
+         * Executes the given callback once the current transaction, if any, completes.
+         */
+        private void execute(final Runnable callback, final boolean onlyAfterCommit) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                asyncExecutor.execute(callback);
+                return;
+            }
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (!onlyAfterCommit || status == TransactionSynchronization.STATUS_COMMITTED) {
+                        asyncExecutor.execute(callback);
+                    } else {
+                        LOGGER.warn("Transaction was not committed, skipping success callback {}", getName());
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Invokes the callbacks which do not fit in the queue in the requesting thread, slowing down the handling of
+     * events. Callbacks requested after the registry was closed are dropped.
+     */
+    private static class CallerRunsUnlessShutdownPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                LOGGER.warn("Event callback registry is closed, dropping an asynchronous event callback");
+            } else {
+                runnable.run();
+            }
+        }
+    }
+
+    private static class CallbackThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "motech-event-callback-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
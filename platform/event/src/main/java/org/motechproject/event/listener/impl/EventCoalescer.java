@@ -0,0 +1,276 @@
+package org.motechproject.event.listener.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.config.core.service.CoreConfigurationService;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.metrics.impl.EventMetricsRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces bursts of events published with subjects configured in the <code>motech.message.coalescing</code>
+ * setting. The first matching event starts a window, during which further events with the same key are collapsed into
+ * it. When the window ends, a single event is dispatched - either the first or the last one published. Each policy is
+ * configured using the following settings:
+ * <ul>
+ *     <li><code>motech.message.coalescing.[name].subjects</code> - comma separated subject patterns, can end with *</li>
+ *     <li><code>motech.message.coalescing.[name].keyParameters</code> - comma separated names of the parameters
+ *     identifying collapsed events, together with the subject; defaults to none, which collapses all events with
+ *     the same subject</li>
+ *     <li><code>motech.message.coalescing.[name].window</code> - the window in milliseconds, defaults to 1000</li>
+ *     <li><code>motech.message.coalescing.[name].keep</code> - <code>first</code> or <code>last</code>, defaults
+ *     to last</li>
+ * </ul>
+ */
+public class EventCoalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventCoalescer.class);
+
+    public static final String POLICIES_PROPERTY = "motech.message.coalescing";
+    public static final String POLICY_PROPERTY_PREFIX = "motech.message.coalescing.";
+    public static final String KEEP_FIRST = "first";
+
+    private static final long DEFAULT_WINDOW = 1000;
+
+    private final List<EventCoalescingPolicy> policies = new ArrayList<>();
+    private final Map<String, EventCoalescingPolicy> policiesBySubject = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> unmatchedSubjects = new ConcurrentHashMap<>();
+    private final Map<PendingKey, PendingEvent> pending = new HashMap<>();
+
+    private CoreConfigurationService coreConfigurationService;
+    private EventMetricsRecorder eventMetrics;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Dispatches the events left after coalescing.
+     */
+    public interface Dispatcher {
+
+        /**
+         * Dispatches the event to its listeners.
+         *
+         * @param event the event
+         * @param broadcast true if the event was broadcast, false if it was sent to the queue
+         */
+        void dispatch(MotechEvent event, boolean broadcast);
+    }
+
+    /**
+     * Reads the coalescing policies from the configuration.
+     */
+    public void init() {
+        Properties properties = coreConfigurationService.getActiveMqConfig();
+        String policyNames = properties.getProperty(POLICIES_PROPERTY);
+
+        if (StringUtils.isBlank(policyNames)) {
+            return;
+        }
+
+        for (String policyName : StringUtils.split(policyNames, ',')) {
+            EventCoalescingPolicy policy = createPolicy(policyName.trim(), properties);
+            policies.add(policy);
+            LOGGER.info("Coalescing events with subjects {} by parameters {} within {} ms", policy.getSubjects(),
+                    policy.getKeyParameters(), policy.getWindow());
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Stops the scheduler and dispatches all pending events immediately.
+     */
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        List<PendingKey> keys;
+        synchronized (pending) {
+            keys = new ArrayList<>(pending.keySet());
+        }
+        for (PendingKey key : keys) {
+            flush(key);
+        }
+    }
+
+    /**
+     * Coalesces the event, if its subject matches any of the policies. Coalesced events are dispatched using
+     * the given dispatcher once the window of the policy ends.
+     *
+     * @param event the published event
+     * @param broadcast true if the event is broadcast, false if it is sent to the queue
+     * @param dispatcher the dispatcher used once the window ends
+     * @return true if the event was taken over by the coalescer, false if it should be dispatched right away
+     */
+    public boolean coalesce(MotechEvent event, boolean broadcast, Dispatcher dispatcher) {
+        EventCoalescingPolicy policy = getPolicy(event.getSubject());
+        if (policy == null) {
+            return false;
+        }
+
+        final PendingKey key = new PendingKey(broadcast, policy.getKey(event));
+        boolean collapsed;
+
+        synchronized (pending) {
+            PendingEvent existing = pending.get(key);
+            collapsed = existing != null;
+
+            if (collapsed) {
+                if (policy.isKeepLast()) {
+                    existing.event = event;
+                }
+            } else {
+                pending.put(key, new PendingEvent(event, dispatcher));
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(key);
+                    }
+                }, policy.getWindow(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (collapsed && eventMetrics != null) {
+            eventMetrics.eventCoalesced(event.getSubject());
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of events waiting for the end of their window.
+     *
+     * @return the number of pending events
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private EventCoalescingPolicy getPolicy(String subject) {
+        if (policies.isEmpty() || unmatchedSubjects.containsKey(subject)) {
+            return null;
+        }
+
+        EventCoalescingPolicy policy = policiesBySubject.get(subject);
+        if (policy == null) {
+            for (EventCoalescingPolicy candidate : policies) {
+                if (candidate.matches(subject)) {
+                    policy = candidate;
+                    policiesBySubject.put(subject, policy);
+                    break;
+                }
+            }
+            if (policy == null) {
+                unmatchedSubjects.put(subject, true);
+            }
+        }
+
+        return policy;
+    }
+
+    private void flush(PendingKey key) {
+        PendingEvent pendingEvent;
+        synchronized (pending) {
+            pendingEvent = pending.remove(key);
+        }
+
+        if (pendingEvent != null) {
+            try {
+                pendingEvent.dispatcher.dispatch(pendingEvent.event, key.broadcast);
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to dispatch coalesced event {}", pendingEvent.event, e);
+            }
+        }
+    }
+
+    private EventCoalescingPolicy createPolicy(String name, Properties properties) {
+        String prefix = POLICY_PROPERTY_PREFIX + name + ".";
+
+        List<String> subjects = split(properties.getProperty(prefix + "subjects"));
+        if (subjects.isEmpty()) {
+            throw new IllegalArgumentException("No subjects configured for event coalescing policy " + name);
+        }
+
+        List<String> keyParameters = split(properties.getProperty(prefix + "keyParameters"));
+        String window = properties.getProperty(prefix + "window");
+        boolean keepLast = !KEEP_FIRST.equalsIgnoreCase(StringUtils.trim(properties.getProperty(prefix + "keep")));
+
+        return new EventCoalescingPolicy(name, subjects, keyParameters,
+                StringUtils.isBlank(window) ? DEFAULT_WINDOW : Long.parseLong(window.trim()), keepLast);
+    }
+
+    private List<String> split(String value) {
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptyList();
+        }
+
+        List<String> values = new ArrayList<>();
+        for (String part : Arrays.asList(StringUtils.split(value, ','))) {
+            values.add(part.trim());
+        }
+        return values;
+    }
+
+    public void setCoreConfigurationService(CoreConfigurationService coreConfigurationService) {
+        this.coreConfigurationService = coreConfigurationService;
+    }
+
+    public void setEventMetrics(EventMetricsRecorder eventMetrics) {
+        this.eventMetrics = eventMetrics;
+    }
+
+    private static class PendingKey {
+
+        private final boolean broadcast;
+        private final List<Object> key;
+
+        PendingKey(boolean broadcast, List<Object> key) {
+            this.broadcast = broadcast;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            PendingKey that = (PendingKey) o;
+            return broadcast == that.broadcast && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + (broadcast ? 1 : 0);
+        }
+    }
+
+    private static class PendingEvent {
+
+        private MotechEvent event;
+        private final Dispatcher dispatcher;
+
+        PendingEvent(MotechEvent event, Dispatcher dispatcher) {
+            this.event = event;
+            this.dispatcher = dispatcher;
+        }
+    }
+}
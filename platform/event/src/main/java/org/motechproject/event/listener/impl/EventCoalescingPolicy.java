@@ -0,0 +1,82 @@
+package org.motechproject.event.listener.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.utils.SubjectPatternUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defines which events are coalesced by the {@link EventCoalescer}. Events with matching subjects and equal values
+ * of the key parameters, published within the window of the policy, are collapsed into a single event.
+ */
+public class EventCoalescingPolicy {
+
+    private final String name;
+    private final List<String> subjects;
+    private final List<String> keyParameters;
+    private final long window;
+    private final boolean keepLast;
+
+    /**
+     * @param name the name of the policy
+     * @param subjects the subject patterns, which can end with a <code>*</code> wildcard
+     * @param keyParameters the names of the event parameters that, together with the subject, identify the events
+     *                      which are collapsed; if empty, all events with the same subject are collapsed
+     * @param window the time (in milliseconds) for which events are held before being dispatched
+     * @param keepLast true if the last event published in the window is dispatched, false if the first one is
+     */
+    public EventCoalescingPolicy(String name, List<String> subjects, List<String> keyParameters, long window,
+                                 boolean keepLast) {
+        this.name = name;
+        this.subjects = subjects;
+        this.keyParameters = keyParameters;
+        this.window = window;
+        this.keepLast = keepLast;
+    }
+
+    /**
+     * Checks whether events with the given subject are coalesced by this policy.
+     *
+     * @param subject the subject of the event
+     * @return true if the subject matches any of the patterns of this policy
+     */
+    public boolean matches(String subject) {
+        return SubjectPatternUtils.matches(subjects, subject);
+    }
+
+    /**
+     * Returns the key identifying events collapsed with the given event.
+     *
+     * @param event the event
+     * @return the key of the event
+     */
+    public List<Object> getKey(MotechEvent event) {
+        List<Object> key = new ArrayList<>(keyParameters.size() + 1);
+        key.add(event.getSubject());
+        for (String parameter : keyParameters) {
+            key.add(event.getParameters().get(parameter));
+        }
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getSubjects() {
+        return subjects;
+    }
+
+    public List<String> getKeyParameters() {
+        return keyParameters;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public boolean isKeepLast() {
+        return keepLast;
+    }
+}
@@ -1,10 +1,17 @@
 package org.motechproject.event.listener.impl;
 
 import org.motechproject.event.listener.EventConsumerInfo;
+import org.motechproject.event.listener.EventLaneInfo;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.impl.EventLaneManager;
+import org.motechproject.event.messaging.impl.LocalEventTransport;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.integration.jms.JmsMessageDrivenEndpoint;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Default implementation of EventConsumerInfo interface
  *
@@ -14,12 +21,31 @@ public class EventConsumerInfoImpl implements EventConsumerInfo {
 
     private JmsMessageDrivenEndpoint queueEndpoint;
     private JmsMessageDrivenEndpoint topicEndpoint;
+    private MotechEventConfig motechEventConfig;
+    private LocalEventTransport localEventTransport;
+    private EventLaneManager eventLaneManager;
 
     @Override
     public boolean isRunning() {
+        if (motechEventConfig.isLocalTransport()) {
+            return localEventTransport.isRunning();
+        }
         return queueEndpoint.isRunning() && topicEndpoint.isRunning();
     }
 
+    @Override
+    public boolean isLocalTransport() {
+        return motechEventConfig.isLocalTransport();
+    }
+
+    @Override
+    public List<EventLaneInfo> getLanes() {
+        if (motechEventConfig.isLocalTransport()) {
+            return Collections.emptyList();
+        }
+        return eventLaneManager.getLaneInfo();
+    }
+
     @Autowired
     @Qualifier("eventQueueJMSIn")
     public void setQueueEndpoint(JmsMessageDrivenEndpoint queueEndpoint) {
@@ -31,4 +57,19 @@ public class EventConsumerInfoImpl implements EventConsumerInfo {
     public void setTopicEndpoint(JmsMessageDrivenEndpoint topicEndpoint) {
         this.topicEndpoint = topicEndpoint;
     }
+
+    @Autowired
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    @Autowired
+    public void setLocalEventTransport(LocalEventTransport localEventTransport) {
+        this.localEventTransport = localEventTransport;
+    }
+
+    @Autowired
+    public void setEventLaneManager(EventLaneManager eventLaneManager) {
+        this.eventLaneManager = eventLaneManager;
+    }
 }
@@ -4,21 +4,34 @@ import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventListenerRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
- import org.springframework.stereotype.Service;
+import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of the {@link EventListenerRegistryService} interface.
- * Acts as a registry for all scheduled event listeners.
+ * Acts as a registry for all scheduled event listeners. The listeners resolved for a concrete subject
+ * are cached, so that relaying an event does not walk the listener tree. The cache is invalidated
+ * whenever a listener is registered or removed.
  */
 @Service
 public class EventListenerRegistry implements EventListenerRegistryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerRegistry.class);
 
+    /**
+     * Upper bound for the number of cached subjects, protects against subjects built from unbounded values.
+     */
+    private static final int MAX_CACHED_SUBJECTS = 10000;
+
     private EventListenerTree listenerTree = new EventListenerTree();
 
+    private final Map<String, Set<EventListener>> resolvedListeners = new ConcurrentHashMap<>();
+
     public void registerListener(EventListener listener, List<String> subjects) {
 
         if (listener == null) {
@@ -48,23 +61,50 @@ public class EventListenerRegistry implements EventListenerRegistryService {
             LOGGER.debug("registering handler for {} to {}", subject, this.toString());
         }
 
-        listenerTree.addListener(listener, subject);
+        synchronized (this) {
+            listenerTree.addListener(listener, subject);
+            resolvedListeners.clear();
+        }
     }
 
+    /**
+     * Returns an unmodifiable set of listeners for the given subject. The returned set is shared between callers
+     * and stays valid until the next registration or removal of a listener.
+     *
+     * @param subject the subject of the event
+     * @return the matching event listeners
+     */
     public Set<EventListener> getListeners(String subject) {
-        return listenerTree.getListeners(subject);
+        Set<EventListener> listeners = resolvedListeners.get(subject);
+        return (listeners == null) ? resolveListeners(subject) : listeners;
     }
 
     public boolean hasListener(String subject) {
-        return listenerTree.hasListener(subject);
+        return !getListeners(subject).isEmpty();
     }
 
-    public int getListenerCount(String subject) {
+    public synchronized int getListenerCount(String subject) {
         return listenerTree.getListenerCount(subject);
     }
 
-    public void clearListenersForBean(String beanName) {
+    public synchronized void clearListenersForBean(String beanName) {
         LOGGER.debug("Clearing listeners for bean: {}", beanName);
         listenerTree.removeAllListeners(beanName);
+        resolvedListeners.clear();
+    }
+
+    private synchronized Set<EventListener> resolveListeners(String subject) {
+        Set<EventListener> listeners = resolvedListeners.get(subject);
+
+        if (listeners == null) {
+            listeners = Collections.unmodifiableSet(new HashSet<>(listenerTree.getListeners(subject)));
+
+            if (resolvedListeners.size() >= MAX_CACHED_SUBJECTS) {
+                resolvedListeners.clear();
+            }
+            resolvedListeners.put(subject, listeners);
+        }
+
+        return listeners;
     }
 }
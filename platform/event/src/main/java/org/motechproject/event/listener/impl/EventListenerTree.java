@@ -4,10 +4,10 @@ import org.motechproject.event.listener.EventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.springframework.util.CollectionUtils.isEmpty;
@@ -21,7 +21,7 @@ public class EventListenerTree {
 
     private static final String SPLIT_REGEX = "\\.";
 
-    private List<EventListenerTree> children = new ArrayList<>();
+    private Map<String, EventListenerTree> children = new HashMap<>();
     private EventListenerTree parent;
 
     private String pathElement;
@@ -295,26 +295,15 @@ public class EventListenerTree {
     }
 
     private EventListenerTree getChild(String pathElement) {
-        EventListenerTree ret = null;
-
-        if (children != null) {
-            for (EventListenerTree n : children) {
-                if (n.getPathElement().equals(pathElement)) {
-                    ret = n;
-                    break;
-                }
-            }
-        }
-
-        return ret;
+        return (children == null) ? null : children.get(pathElement);
     }
 
     private void addChild(EventListenerTree child) {
         if (children == null) {
-            children = new ArrayList<EventListenerTree>();
+            children = new HashMap<>();
         }
 
-        children.add(child);
+        children.put(child.getPathElement(), child);
     }
 
     /**
@@ -322,7 +311,7 @@ public class EventListenerTree {
      */
     public void removeAllListeners(String beanName) {
 
-        for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
+        for (Iterator<EventListenerTree> listenerIterator = children.values().iterator(); listenerIterator.hasNext();) {
             EventListenerTree child = listenerIterator.next();
             if (child.removeListeners(beanName) && child.removeEmptyChildWithWildcardListeners()) {
                 listenerIterator.remove();
@@ -335,7 +324,7 @@ public class EventListenerTree {
         if (children.size() == 0) {
             return this.getAllListeners().size() == 0;
         } else {
-            for (Iterator<EventListenerTree> listenerIterator = children.iterator(); listenerIterator.hasNext();) {
+            for (Iterator<EventListenerTree> listenerIterator = children.values().iterator(); listenerIterator.hasNext();) {
                 EventListenerTree child = listenerIterator.next();
                 if (!child.removeEmptyChildWithWildcardListeners() || isEmpty(wildcardListeners)) {
                     return false;
@@ -369,7 +358,7 @@ public class EventListenerTree {
                 }
             }
         }
-        for (EventListenerTree childTree : children) {
+        for (EventListenerTree childTree : children.values()) {
             if (childTree.removeListeners(beanName)) {
                 removed = true;
             }
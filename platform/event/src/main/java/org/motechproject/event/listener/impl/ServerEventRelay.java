@@ -3,16 +3,16 @@ package org.motechproject.event.listener.impl;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.event.MotechEvent;
 import org.motechproject.event.exception.CallbackServiceNotFoundException;
+import org.motechproject.event.listener.EventBatchResult;
 import org.motechproject.event.listener.EventCallbackService;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.listener.EventRelay;
 import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.OutboundEventBatchGateway;
 import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.metrics.impl.EventMetricsRecorder;
 import org.motechproject.event.utils.MotechProxyUtils;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
-import org.osgi.framework.BundleContext;
-import org.osgi.framework.InvalidSyntaxException;
-import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.event.EventHandler;
@@ -21,8 +21,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -38,47 +40,97 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
     private EventListenerRegistry eventListenerRegistry;
     private OutboundEventGateway outboundEventGateway;
+    private OutboundEventBatchGateway outboundEventBatchGateway;
     private MotechEventConfig motechEventConfig;
     private EventAdmin osgiEventAdmin;
-    private BundleContext bundleContext;
+    private EventCallbackRegistry eventCallbackRegistry;
+    private EventMetricsRecorder eventMetrics = new EventMetricsRecorder();
+    private EventCoalescer eventCoalescer = new EventCoalescer();
+
+    private final EventCoalescer.Dispatcher coalescedEventDispatcher = new EventCoalescer.Dispatcher() {
+        @Override
+        public void dispatch(MotechEvent event, boolean broadcast) {
+            if (broadcast) {
+                dispatchTopicEvent(event);
+            } else {
+                dispatchQueueEvent(event);
+            }
+        }
+    };
 
     @Autowired
-    public ServerEventRelay(OutboundEventGateway outboundEventGateway, EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
-                            EventAdmin osgiEventAdmin, BundleContext bundleContext) {
+    public ServerEventRelay(OutboundEventGateway outboundEventGateway, OutboundEventBatchGateway outboundEventBatchGateway,
+                            EventListenerRegistry eventListenerRegistry, MotechEventConfig motechEventConfig,
+                            EventAdmin osgiEventAdmin, EventCallbackRegistry eventCallbackRegistry) {
         this.outboundEventGateway = outboundEventGateway;
+        this.outboundEventBatchGateway = outboundEventBatchGateway;
         this.eventListenerRegistry = eventListenerRegistry;
         this.motechEventConfig = motechEventConfig;
         this.osgiEventAdmin = osgiEventAdmin;
-        this.bundleContext = bundleContext;
+        this.eventCallbackRegistry = eventCallbackRegistry;
     }
 
     // @TODO either relayQueueEvent should be made private, or this method moved out to it's own class.
     @Override
     public void sendEventMessage(MotechEvent event) {
         verifyEventNotNull(event);
-        Set<EventListener> listeners = getEventListeners(event);
+        eventMetrics.eventPublished(event.getSubject());
 
-        if (!listeners.isEmpty()) {
-            // We need to split the message for each listener to ensure the work units
-            // are completed individually. Therefore, if a message fails it will be
-            // re-distributed to another server without being lost
-            splitEvent(event, listeners);
+        if (!eventCoalescer.coalesce(event, false, coalescedEventDispatcher)) {
+            dispatchQueueEvent(event);
         }
     }
 
     @Override
     public void broadcastEventMessage(MotechEvent event) {
         verifyEventNotNull(event);
-        Set<EventListener> listeners = getEventListeners(event);
+        eventMetrics.eventPublished(event.getSubject());
 
-        // broadcast the event if there are listeners for it, or if it should get proxied as an OSGi event,
-        // since we don't keep track of OSGi listeners
-        if (!listeners.isEmpty() || proxyInOsgi(event)) {
-            event.setBroadcast(true);
-            outboundEventGateway.broadcastEventMessage(event);
+        if (!eventCoalescer.coalesce(event, true, coalescedEventDispatcher)) {
+            dispatchTopicEvent(event);
         }
     }
 
+    @Override
+    public EventBatchResult sendEventMessages(Collection<MotechEvent> motechEvents) {
+        verifyEventsNotNull(motechEvents);
+
+        List<MotechEvent> splitEvents = new ArrayList<>();
+        for (MotechEvent event : motechEvents) {
+            eventMetrics.eventPublished(event.getSubject());
+            if (eventCoalescer.coalesce(event, false, coalescedEventDispatcher)) {
+                continue;
+            }
+
+            Set<EventListener> listeners = getEventListeners(event);
+            for (EventListener listener : listeners) {
+                splitEvents.add(enrichEvent(event, listener));
+            }
+        }
+
+        return outboundEventBatchGateway.sendEventMessages(splitEvents);
+    }
+
+    @Override
+    public EventBatchResult broadcastEventMessages(Collection<MotechEvent> motechEvents) {
+        verifyEventsNotNull(motechEvents);
+
+        List<MotechEvent> broadcastEvents = new ArrayList<>();
+        for (MotechEvent event : motechEvents) {
+            eventMetrics.eventPublished(event.getSubject());
+            if (eventCoalescer.coalesce(event, true, coalescedEventDispatcher)) {
+                continue;
+            }
+
+            if (!getEventListeners(event).isEmpty() || proxyInOsgi(event)) {
+                event.setBroadcast(true);
+                broadcastEvents.add(event);
+            }
+        }
+
+        return outboundEventBatchGateway.broadcastEventMessages(broadcastEvents);
+    }
+
     /**
      * Relays the event that were published in the message queue to all listeners of that event.
      *
@@ -86,6 +138,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      */
     public void relayQueueEvent(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.eventReceived(event);
         String messageDestination = event.getMessageDestination();
         if (null != messageDestination) {
             EventListener listener = getEventListener(event, messageDestination);
@@ -107,6 +160,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      */
     public void relayTopicEvent(MotechEvent event) {
         verifyEventNotNull(event);
+        eventMetrics.eventReceived(event);
         Set<EventListener> listeners = getEventListeners(event);
         for (EventListener listener : listeners) {
             handleTopicEvent(listener, event);
@@ -161,7 +215,7 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         try {
             Object target = MotechProxyUtils.getTargetIfProxied(listener);
             Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
-            listener.handle(event);
+            handle(listener, event);
             if (callbackService != null) {
                 callbackService.successCallback(event);
             }
@@ -174,10 +228,12 @@ public class ServerEventRelay implements EventRelay, EventHandler {
 
                 if (event.getMessageRedeliveryCount() == motechEventConfig.getMessageMaxRedeliveryCount()) {
                     event.setDiscarded(true);
+                    eventMetrics.eventDiscarded(event.getSubject(), listener.getIdentifier());
                     LOGGER.error("Discarding Motech event {}. Max retry count reached.", event);
                     throw e;
                 }
 
+                eventMetrics.eventRetried(event.getSubject(), listener.getIdentifier());
                 event.incrementMessageRedeliveryCount();
                 outboundEventGateway.sendEventMessage(event);
             } else {
@@ -190,28 +246,54 @@ public class ServerEventRelay implements EventRelay, EventHandler {
         }
     }
 
-    private EventCallbackService findCallbackService(String callbackName) {
-        if (StringUtils.isEmpty(callbackName)) {
-            return null;
+    private void dispatchQueueEvent(MotechEvent event) {
+        Set<EventListener> listeners = getEventListeners(event);
+
+        if (!listeners.isEmpty()) {
+            // We need to split the message for each listener to ensure the work units
+            // are completed individually. Therefore, if a message fails it will be
+            // re-distributed to another server without being lost
+            splitEvent(event, listeners);
         }
+    }
+
+    private void dispatchTopicEvent(MotechEvent event) {
+        Set<EventListener> listeners = getEventListeners(event);
+
+        // broadcast the event if there are listeners for it, or if it should get proxied as an OSGi event,
+        // since we don't keep track of OSGi listeners
+        if (!listeners.isEmpty() || proxyInOsgi(event)) {
+            event.setBroadcast(true);
+            outboundEventGateway.broadcastEventMessage(event);
+        }
+    }
+
+    private void handle(EventListener listener, MotechEvent event) {
+        long start = System.nanoTime();
+        boolean failed = true;
 
         try {
-            Collection<ServiceReference<EventCallbackService>> references = bundleContext.getServiceReferences(EventCallbackService.class, null);
+            listener.handle(event);
+            failed = false;
+        } finally {
+            eventMetrics.eventHandled(listener.getIdentifier(), System.nanoTime() - start, failed);
+        }
+    }
 
-            for (ServiceReference<EventCallbackService> ref : references) {
-                EventCallbackService callback = bundleContext.getService(ref);
-                if (callback.getName().equals(callbackName)) {
-                    return callback;
-                }
-            }
-        } catch (InvalidSyntaxException e) {
-            //Should never happen
-            LOGGER.error("Passed filter expression is incorrect.", e);
+    private EventCallbackService findCallbackService(String callbackName) {
+        if (StringUtils.isEmpty(callbackName)) {
+            return null;
         }
 
+        EventCallbackService callback = eventCallbackRegistry.getCallbackService(callbackName);
+
         // If a non-null callback name has been provided, yet it cannot be found in
         // the running context, this indicates an error
-        throw new CallbackServiceNotFoundException(callbackName);
+        if (callback == null) {
+            throw new CallbackServiceNotFoundException(callbackName);
+        }
+
+        return callback;
     }
 
     private void handleTopicEvent(EventListener listener, MotechEvent event) {
@@ -223,13 +305,15 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             try {
                 Object target = MotechProxyUtils.getTargetIfProxied(listener);
                 Thread.currentThread().setContextClassLoader(target.getClass().getClassLoader());
-                listener.handle(event);
+                handle(listener, event);
                 break;
             } catch (RuntimeException e) {
                 if (retryCount < maxRetryCount) {
+                    eventMetrics.eventRetried(event.getSubject(), listener.getIdentifier());
                     LOGGER.warn(String.format("An exception occurred when handling topic event %s by listener %s.",
                             event.toString(), listener.getIdentifier()), e);
                 } else {
+                    eventMetrics.eventDiscarded(event.getSubject(), listener.getIdentifier());
                     LOGGER.error(String.format("Discarding topic event %s for listener %s. Max retry count reached.",
                             event.toString(), listener.getIdentifier()), e);
                     break;
@@ -249,19 +333,22 @@ public class ServerEventRelay implements EventRelay, EventHandler {
      * @param listeners A list of listeners for this given message that will be used as message destinations
      */
     private void splitEvent(MotechEvent event, Set<EventListener> listeners) {
-        MotechEvent enrichedEventMessage;
-        Map<String, Object> parameters;
-
         for (EventListener listener : listeners) {
-            parameters = new HashMap<>();
-            parameters.putAll(event.getParameters());
-            enrichedEventMessage = new MotechEvent(event.getSubject(), parameters, event.getCallbackName());
-            enrichedEventMessage.setMetadata(event.getMetadata());
-            enrichedEventMessage.setMessageDestination(listener.getIdentifier());
-            outboundEventGateway.sendEventMessage(enrichedEventMessage);
+            outboundEventGateway.sendEventMessage(enrichEvent(event, listener));
         }
     }
 
+    private MotechEvent enrichEvent(MotechEvent event, EventListener listener) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.putAll(event.getParameters());
+
+        MotechEvent enrichedEventMessage = new MotechEvent(event.getSubject(), parameters, event.getCallbackName());
+        enrichedEventMessage.setMetadata(event.getMetadata());
+        enrichedEventMessage.setMessageDestination(listener.getIdentifier());
+
+        return enrichedEventMessage;
+    }
+
     private EventListener getEventListener(MotechEvent event, String identifier) {
         Set<EventListener> listeners = getEventListeners(event);
         for (EventListener listener : listeners) {
@@ -312,4 +399,23 @@ public class ServerEventRelay implements EventRelay, EventHandler {
             throw new IllegalArgumentException("Invalid request to relay null event");
         }
     }
+
+    private void verifyEventsNotNull(Collection<MotechEvent> events) {
+        if (events == null) {
+            throw new IllegalArgumentException("Invalid request to relay null events");
+        }
+        for (MotechEvent event : events) {
+            verifyEventNotNull(event);
+        }
+    }
+
+    @Autowired
+    public void setEventMetrics(EventMetricsRecorder eventMetrics) {
+        this.eventMetrics = eventMetrics;
+    }
+
+    @Autowired
+    public void setEventCoalescer(EventCoalescer eventCoalescer) {
+        this.eventCoalescer = eventCoalescer;
+    }
 }
@@ -1,5 +1,9 @@
 package org.motechproject.event.listener.starter;
 
+import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.impl.EventLaneManager;
+import org.motechproject.event.messaging.impl.LocalEventTransport;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
 import org.motechproject.server.osgi.util.PlatformConstants;
 import org.osgi.service.event.Event;
@@ -11,13 +15,18 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.integration.jms.JmsMessageDrivenEndpoint;
 
 /**
- * Handles incoming events and starts ActiveMQ outbound channels.
+ * Handles incoming events and starts ActiveMQ outbound channels, or the local event consumers
+ * if the in-process event transport is enabled.
  */
 public class EventConsumerStarter implements EventHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(EventConsumerStarter.class);
 
     private JmsMessageDrivenEndpoint queue;
     private JmsMessageDrivenEndpoint topic;
+    private MotechEventConfig motechEventConfig;
+    private LocalEventTransport localEventTransport;
+    private EventLaneManager eventLaneManager;
+    private ServerEventRelay eventRelay;
 
     /**
      * Receives an OSGi event with the proxy topic.
@@ -31,7 +40,13 @@ public class EventConsumerStarter implements EventHandler {
     public void handleEvent(Event osgiEvent) {
         String subject = (String) osgiEvent.getProperty(OsgiEventProxy.SUBJECT_PARAM);
         if (subject.equals(PlatformConstants.MODULES_STARTUP_TOPIC)) {
+            if (motechEventConfig.isLocalTransport()) {
+                localEventTransport.start(eventRelay);
+                LOGGER.info("Local event consumers started.");
+                return;
+            }
             startActiveMQConsumers();
+            eventLaneManager.start(eventRelay);
         }
         LOGGER.info("ActiveMQ outbound channels started.");
     }
@@ -63,4 +78,24 @@ public class EventConsumerStarter implements EventHandler {
     public void setTopic(JmsMessageDrivenEndpoint topic) {
         this.topic = topic;
     }
+
+    @Autowired
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    @Autowired
+    public void setLocalEventTransport(LocalEventTransport localEventTransport) {
+        this.localEventTransport = localEventTransport;
+    }
+
+    @Autowired
+    public void setEventLaneManager(EventLaneManager eventLaneManager) {
+        this.eventLaneManager = eventLaneManager;
+    }
+
+    @Autowired
+    public void setEventRelay(ServerEventRelay eventRelay) {
+        this.eventRelay = eventRelay;
+    }
 }
@@ -0,0 +1,36 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+
+/**
+ * Encodes and decodes {@link MotechEvent}s that are sent through JMS as <code>BytesMessage</code> bodies.
+ * Codecs are picked by name, using the value of {@link MotechEventConfig#getMessageCodec()}. The name of the codec used
+ * for encoding is stored in the message, so that every Motech instance is able to decode it.
+ */
+public interface MotechEventCodec {
+
+    /**
+     * Returns the unique name of this codec.
+     *
+     * @return the name of the codec
+     */
+    String getName();
+
+    /**
+     * Encodes the given event into an array of bytes.
+     *
+     * @param event the event to encode
+     * @return the encoded event
+     * @throws org.motechproject.event.exception.MotechEventCodecException if the event could not be encoded
+     */
+    byte[] encode(MotechEvent event);
+
+    /**
+     * Decodes the event from the given array of bytes.
+     *
+     * @param bytes the encoded event
+     * @return the decoded event
+     * @throws org.motechproject.event.exception.MotechEventCodecException if the event could not be decoded
+     */
+    MotechEvent decode(byte[] bytes);
+}
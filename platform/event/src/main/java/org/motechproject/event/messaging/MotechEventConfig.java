@@ -9,12 +9,47 @@ import org.springframework.stereotype.Component;
 @Component
 public class MotechEventConfig {
 
+    public static final String LOCAL_TRANSPORT = "local";
+
     @Value("${motech.message.max.redelivery.count:3}")
     private int messageMaxRedeliveryCount;
 
     @Value("${motech.message.redelivery.delay:1}")
     private long messageRedeliveryDelay;
 
+    @Value("${motech.message.codec:serializable}")
+    private String messageCodec;
+
+    @Value("${motech.message.batch.size:500}")
+    private int messageBatchSize;
+
+    @Value("${motech.message.batch.flush.interval:1000}")
+    private long messageBatchFlushInterval;
+
+    @Value("${motech.message.transport:jms}")
+    private String messageTransport;
+
+    @Value("${motech.message.local.queue.capacity:10000}")
+    private int localQueueCapacity;
+
+    @Value("${motech.message.local.consumers:10}")
+    private int localConsumers;
+
+    @Value("${motech.message.local.journal.dir:}")
+    private String localJournalDir;
+
+    @Value("${motech.message.local.journal.max.size:67108864}")
+    private long localJournalMaxSize;
+
+    @Value("${motech.message.metrics.enabled:true}")
+    private boolean metricsEnabled;
+
+    @Value("${motech.message.callback.async.threads:5}")
+    private int asyncCallbackThreads;
+
+    @Value("${motech.message.callback.async.queue.capacity:1000}")
+    private int asyncCallbackQueueCapacity;
+
     /**
      * Returns maximum number of times a message would be re-delivered
      * in case of any exception.
@@ -36,4 +71,115 @@ public class MotechEventConfig {
     public long getMessageRedeliveryDelay() {
         return messageRedeliveryDelay;
     }
+
+    /**
+     * Returns the name of the codec used for sending events through JMS. The value <code>serializable</code> means
+     * that events are sent as <code>ObjectMessage</code>s using Java serialization, any other value is the name
+     * of the {@link MotechEventCodec} used for writing events as <code>BytesMessage</code>s.
+     *
+     * @return the name of the event codec
+     */
+    public String getMessageCodec() {
+        return messageCodec;
+    }
+
+    /**
+     * Returns the maximum number of messages sent in a single JMS transaction when events are published in batches.
+     *
+     * @return the maximum number of messages in a batch
+     */
+    public int getMessageBatchSize() {
+        return messageBatchSize;
+    }
+
+    /**
+     * Returns the time (in milliseconds) after which the JMS transaction of a batch is committed, even if the batch
+     * did not reach its maximum size.
+     *
+     * @return the batch flush interval
+     */
+    public long getMessageBatchFlushInterval() {
+        return messageBatchFlushInterval;
+    }
+
+    /**
+     * Checks whether events are dispatched in-process instead of being sent through ActiveMQ.
+     * This is the case if the <code>motech.message.transport</code> setting is set to <code>local</code>.
+     * The in-process transport should be only used with single node deployments.
+     *
+     * @return true if events are dispatched in-process, false if they are sent through ActiveMQ
+     */
+    public boolean isLocalTransport() {
+        return LOCAL_TRANSPORT.equalsIgnoreCase(messageTransport);
+    }
+
+    /**
+     * Returns the maximum number of events waiting for dispatch when the in-process transport is used.
+     * Publishing an event blocks when the queue is full.
+     *
+     * @return the capacity of the in-process event queue
+     */
+    public int getLocalQueueCapacity() {
+        return localQueueCapacity;
+    }
+
+    /**
+     * Returns the number of threads dispatching events when the in-process transport is used.
+     *
+     * @return the number of in-process consumers
+     */
+    public int getLocalConsumers() {
+        return localConsumers;
+    }
+
+    /**
+     * Returns the directory of the journal to which events are written before being dispatched by the in-process
+     * transport. Events which were not handled before shutdown are dispatched again after a restart.
+     * If blank, no journal is used.
+     *
+     * @return the journal directory, or blank if the journal is disabled
+     */
+    public String getLocalJournalDir() {
+        return localJournalDir;
+    }
+
+    /**
+     * Returns the size in bytes after which the journal of the in-process transport is compacted, so that it only
+     * contains the events which were not handled yet.
+     *
+     * @return the maximum size of the journal
+     */
+    public long getLocalJournalMaxSize() {
+        return localJournalMaxSize;
+    }
+
+    /**
+     * Checks whether publish counts, queue dwell times and handler latencies of events are recorded.
+     *
+     * @return true if event metrics are recorded, false otherwise
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Returns the number of threads invoking asynchronous event callbacks.
+     *
+     * @return the number of asynchronous callback threads
+     * @see org.motechproject.event.listener.EventCallbackService#ASYNC_PROPERTY
+     */
+    public int getAsyncCallbackThreads() {
+        return asyncCallbackThreads;
+    }
+
+    /**
+     * Returns the maximum number of asynchronous event callbacks waiting for a thread. Once it is reached, callbacks
+     * are invoked in the thread which handled the event.
+     *
+     * @return the capacity of the asynchronous callback queue
+     * @see org.motechproject.event.listener.EventCallbackService#ASYNC_PROPERTY
+     */
+    public int getAsyncCallbackQueueCapacity() {
+        return asyncCallbackQueueCapacity;
+    }
 }
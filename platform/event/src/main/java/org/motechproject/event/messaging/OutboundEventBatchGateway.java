@@ -0,0 +1,31 @@
+package org.motechproject.event.messaging;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventBatchResult;
+
+import java.util.Collection;
+
+/**
+ * Sends batches of <code>MotechEvent</code>s to the ActiveMQ broker. Unlike {@link OutboundEventGateway}, which sends
+ * every event in its own JMS session, the events of a batch are sent using a single transacted session, committed
+ * every {@link MotechEventConfig#getMessageBatchSize()} messages or {@link MotechEventConfig#getMessageBatchFlushInterval()}
+ * milliseconds.
+ */
+public interface OutboundEventBatchGateway {
+
+    /**
+     * Sends the events to the event queue, meaning each of them will be received by only one Motech instance.
+     *
+     * @param motechEvents the events to be sent
+     * @return the result of the batch, with the events that could not be sent
+     */
+    EventBatchResult sendEventMessages(Collection<MotechEvent> motechEvents);
+
+    /**
+     * Broadcasts the events to the event topic, meaning all Motech instances will receive them.
+     *
+     * @param motechEvents the events to be broadcast
+     * @return the result of the batch, with the events that could not be sent
+     */
+    EventBatchResult broadcastEventMessages(Collection<MotechEvent> motechEvents);
+}
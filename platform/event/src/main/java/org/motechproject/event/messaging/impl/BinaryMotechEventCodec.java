@@ -0,0 +1,359 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.exception.MotechEventCodecException;
+import org.motechproject.event.messaging.MotechEventCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary {@link MotechEventCodec}. The subject, flags, metadata and parameters of the event are written
+ * field by field. Values of the most common types (strings, numbers, booleans, dates, UUIDs, byte arrays, array lists
+ * and hash maps) are written using a one byte type tag followed by their value. Any other value is written using
+ * Java serialization, so every event that could be sent as an <code>ObjectMessage</code> can be sent using this codec.
+ */
+public class BinaryMotechEventCodec implements MotechEventCodec {
+
+    public static final String NAME = "binary";
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte FLAG_INVALID = 1;
+    private static final byte FLAG_DISCARDED = 1 << 1;
+    private static final byte FLAG_BROADCAST = 1 << 2;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_BOOLEAN = 6;
+    private static final byte TYPE_SHORT = 7;
+    private static final byte TYPE_BYTE = 8;
+    private static final byte TYPE_CHARACTER = 9;
+    private static final byte TYPE_DATE = 10;
+    private static final byte TYPE_UUID = 11;
+    private static final byte TYPE_BYTES = 12;
+    private static final byte TYPE_LIST = 13;
+    private static final byte TYPE_MAP = 14;
+    private static final byte TYPE_SERIALIZED = 15;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int NULL_LENGTH = -1;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(MotechEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            writeUUID(out, event.getId());
+            out.writeByte(getFlags(event));
+            out.writeInt(event.getMessageRedeliveryCount());
+            writeString(out, event.getSubject());
+            writeString(out, event.getMessageDestination());
+            writeString(out, event.getCallbackName());
+            writeMap(out, event.getMetadata());
+            writeMap(out, event.getParameters());
+        } catch (IOException e) {
+            throw new MotechEventCodecException("Unable to encode event " + event, e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public MotechEvent decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new MotechEventCodecException("Unsupported binary event format version: " + version);
+            }
+
+            UUID id = readUUID(in);
+            byte flags = in.readByte();
+            int redeliveryCount = in.readInt();
+            String subject = readString(in);
+            String messageDestination = readString(in);
+            String callbackName = readString(in);
+            Map<String, Object> metadata = readMap(in);
+            Map<String, Object> parameters = readMap(in);
+
+            MotechEvent event = new MotechEvent(subject, parameters, callbackName, metadata);
+            event.setId(id);
+            event.setInvalid((flags & FLAG_INVALID) != 0);
+            event.setDiscarded((flags & FLAG_DISCARDED) != 0);
+            event.setBroadcast((flags & FLAG_BROADCAST) != 0);
+            event.setMessageRedeliveryCount(redeliveryCount);
+            event.setMessageDestination(messageDestination);
+
+            return event;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new MotechEventCodecException("Unable to decode event", e);
+        }
+    }
+
+    private byte getFlags(MotechEvent event) {
+        byte flags = 0;
+
+        if (event.isInvalid()) {
+            flags |= FLAG_INVALID;
+        }
+        if (event.isDiscarded()) {
+            flags |= FLAG_DISCARDED;
+        }
+        if (event.isBroadcast()) {
+            flags |= FLAG_BROADCAST;
+        }
+
+        return flags;
+    }
+
+    private void writeUUID(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private UUID readUUID(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return (bytes == null) ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        if (map == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        out.writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private <K> Map<K, Object> readMap(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        if (size == NULL_LENGTH) {
+            return null;
+        }
+
+        Map<K, Object> map = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            K key = (K) readValue(in);
+            map.put(key, readValue(in));
+        }
+
+        return map;
+    }
+
+    private void writeList(DataOutputStream out, List<?> list) throws IOException {
+        out.writeInt(list.size());
+        for (Object element : list) {
+            writeValue(out, element);
+        }
+    }
+
+    private List<Object> readList(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            list.add(readValue(in));
+        }
+
+        return list;
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException { //NO CHECKSTYLE CyclomaticComplexity
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(TYPE_CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof UUID) {
+            out.writeByte(TYPE_UUID);
+            writeUUID(out, (UUID) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(TYPE_BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value.getClass() == ArrayList.class) {
+            out.writeByte(TYPE_LIST);
+            writeList(out, (List<?>) value);
+        } else if (value.getClass() == HashMap.class) {
+            out.writeByte(TYPE_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof Serializable) {
+            out.writeByte(TYPE_SERIALIZED);
+            writeBytes(out, serialize(value));
+        } else {
+            throw new MotechEventCodecException("Value of type " + value.getClass().getName() +
+                    " is not serializable and cannot be sent in an event");
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException { //NO CHECKSTYLE CyclomaticComplexity
+        byte type = in.readByte();
+
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_SHORT:
+                return in.readShort();
+            case TYPE_BYTE:
+                return in.readByte();
+            case TYPE_CHARACTER:
+                return in.readChar();
+            case TYPE_DATE:
+                return new Date(in.readLong());
+            case TYPE_UUID:
+                return readUUID(in);
+            case TYPE_BYTES:
+                return readBytes(in);
+            case TYPE_LIST:
+                return readList(in);
+            case TYPE_MAP:
+                return readMap(in);
+            case TYPE_SERIALIZED:
+                return deserialize(readBytes(in));
+            default:
+                throw new MotechEventCodecException("Unknown value type in binary event: " + type);
+        }
+    }
+
+    private byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ClassLoaderAwareObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Resolves classes using the context class loader first and falls back to the class loader of the event bundle,
+     * which is able to load classes from any exported package.
+     */
+    private static class ClassLoaderAwareObjectInputStream extends ObjectInputStream {
+
+        ClassLoaderAwareObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+            if (contextClassLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, contextClassLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the bundle class loader
+                }
+            }
+
+            try {
+                return Class.forName(desc.getName(), false, BinaryMotechEventCodec.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
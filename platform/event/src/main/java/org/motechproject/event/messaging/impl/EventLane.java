@@ -0,0 +1,100 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.utils.SubjectPatternUtils;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A consumption lane for events with matching subjects. Each lane has its own JMS queue, consumer concurrency
+ * and limit of events handled at the same time. The limit is enforced by the listener container of the lane, which
+ * never runs more consumers than the limit, each of them prefetching a single message, so events beyond the limit
+ * stay in the queue of the lane instead of being taken by a consumer that cannot handle them yet.
+ */
+public class EventLane implements MessageListener {
+
+    private final String name;
+    private final List<String> subjects;
+    private final Destination destination;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private DefaultMessageListenerContainer container;
+    private MessageConverter messageConverter;
+    private ServerEventRelay eventRelay;
+
+    public EventLane(String name, List<String> subjects, Destination destination, int maxInFlight) {
+        this.name = name;
+        this.subjects = subjects;
+        this.destination = destination;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Checks whether events with the given subject are consumed by this lane. Subject patterns are either exact
+     * subjects, or end with a <code>*</code> wildcard matching any subject with the given prefix.
+     *
+     * @param subject the subject of the event
+     * @return true if the subject matches any of the patterns of this lane
+     */
+    public boolean matches(String subject) {
+        return SubjectPatternUtils.matches(subjects, subject);
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        inFlight.incrementAndGet();
+        try {
+            eventRelay.relayQueueEvent((MotechEvent) messageConverter.fromMessage(message));
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getSubjects() {
+        return subjects;
+    }
+
+    public Destination getDestination() {
+        return destination;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public DefaultMessageListenerContainer getContainer() {
+        return container;
+    }
+
+    public void setContainer(DefaultMessageListenerContainer container) {
+        this.container = container;
+    }
+
+    public void setMessageConverter(MessageConverter messageConverter) {
+        this.messageConverter = messageConverter;
+    }
+
+    public void setEventRelay(ServerEventRelay eventRelay) {
+        this.eventRelay = eventRelay;
+    }
+}
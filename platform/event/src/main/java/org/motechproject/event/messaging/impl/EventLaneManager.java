@@ -0,0 +1,385 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.config.core.service.CoreConfigurationService;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventLaneInfo;
+import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Manages the consumption lanes configured in the <code>motech.message.lanes</code> setting. Queue events with subjects
+ * matching a lane are sent to the queue of that lane, and consumed by its own listener container, so that slow
+ * listeners on one lane do not starve the others. Events which do not match any lane go to the default event queue.
+ * Each lane is configured using the following settings:
+ * <ul>
+ *     <li><code>motech.message.lane.[name].subjects</code> - comma separated subject patterns, can end with *</li>
+ *     <li><code>motech.message.lane.[name].destination</code> - the queue, defaults to the event queue name
+ *     followed by the lane name</li>
+ *     <li><code>motech.message.lane.[name].maxInFlight</code> - the maximal number of events of the lane handled
+ *     at the same time on this node, defaults to 1</li>
+ *     <li><code>motech.message.lane.[name].concurrentConsumers</code> - defaults to 1</li>
+ *     <li><code>motech.message.lane.[name].maxConcurrentConsumers</code> - defaults to concurrentConsumers</li>
+ * </ul>
+ * The consumers of a lane are limited to maxInFlight, and every consumer prefetches a single message, so a busy lane
+ * leaves its events in the broker, where the consumers of other nodes can still take them. Lanes are matched in the
+ * order they are configured. The subjects are looked up in indexes of the configured patterns, so the memory used
+ * does not depend on the number of distinct subjects published.
+ * The depths of the lane queues are requested from the statistics plugin of the ActiveMQ broker, which answers
+ * with the sizes the broker keeps for the queues, so no messages are browsed. If the plugin is not enabled in the
+ * broker configuration (<code>&lt;statisticsBrokerPlugin/&gt;</code>), the depths are reported as unknown.
+ */
+public class EventLaneManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLaneManager.class);
+
+    public static final String LANES_PROPERTY = "motech.message.lanes";
+    public static final String LANE_PROPERTY_PREFIX = "motech.message.lane.";
+
+    private static final String EVENT_QUEUE_PROPERTY = "jms.queue.for.events";
+    private static final String STATISTICS_DESTINATION_PREFIX = "ActiveMQ.Statistics.Destination.";
+    private static final String STATISTICS_SIZE = "size";
+    private static final String STATISTICS_DESTINATION_NAME = "destinationName";
+    private static final String QUEUE_URL_PREFIX = "queue://";
+    private static final long STATISTICS_TIMEOUT_MILLIS = 1000;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1;
+    private static final String CONSUMER_OPTIONS = "?consumer.prefetchSize=1";
+    private static final String WILDCARD = "*";
+
+    private final List<EventLane> lanes = new ArrayList<>();
+    private final Map<String, EventLane> lanesByExactSubject = new HashMap<>();
+    private final Map<String, EventLane> lanesByPrefix = new LinkedHashMap<>();
+
+    private CoreConfigurationService coreConfigurationService;
+    private MotechEventConfig motechEventConfig;
+    private ConnectionFactory connectionFactory;
+    private MessageConverter messageConverter;
+    private MotechEventTransformer eventTransformer;
+    private MotechEventHeaderMapper eventHeaderMapper;
+
+    private JmsTemplate jmsTemplate;
+
+    /**
+     * Reads the lane configuration and creates the listener containers of the lanes. The containers are not started.
+     * Does nothing if the local transport is enabled.
+     */
+    public void init() {
+        if (motechEventConfig.isLocalTransport()) {
+            return;
+        }
+
+        Properties properties = coreConfigurationService.getActiveMqConfig();
+        String laneNames = properties.getProperty(LANES_PROPERTY);
+
+        if (StringUtils.isBlank(laneNames)) {
+            return;
+        }
+
+        jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setMessageConverter(messageConverter);
+
+        for (String laneName : StringUtils.split(laneNames, ',')) {
+            EventLane lane = createLane(laneName.trim(), properties);
+            lanes.add(lane);
+            LOGGER.info("Created event lane {} for subjects {}", lane.getName(), lane.getSubjects());
+        }
+
+        indexSubjectPatterns();
+    }
+
+    /**
+     * Starts consuming events from the lane queues.
+     *
+     * @param relay the relay which handles the events
+     */
+    public void start(ServerEventRelay relay) {
+        ClassLoader oldClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+
+            for (EventLane lane : lanes) {
+                lane.setEventRelay(relay);
+                if (!lane.getContainer().isRunning()) {
+                    lane.getContainer().start();
+                }
+            }
+        } finally {
+            Thread.currentThread().setContextClassLoader(oldClassLoader);
+        }
+    }
+
+    /**
+     * Stops and shuts down the listener containers of all lanes.
+     */
+    public void destroy() {
+        for (EventLane lane : lanes) {
+            lane.getContainer().shutdown();
+        }
+    }
+
+    /**
+     * Returns the lane consuming events with the given subject.
+     *
+     * @param subject the subject of the event
+     * @return the matching lane, or null if the event should go to the default queue
+     */
+    public EventLane getLane(String subject) {
+        EventLane lane = lanesByExactSubject.get(subject);
+        if (lane != null) {
+            return lane;
+        }
+
+        for (Map.Entry<String, EventLane> entry : lanesByPrefix.entrySet()) {
+            if (subject.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Sends the event to the queue of the given lane.
+     *
+     * @param lane the lane
+     * @param event the event to send
+     */
+    public void send(EventLane lane, final MotechEvent event) {
+        eventTransformer.transform(event);
+
+        jmsTemplate.send(lane.getDestination(), new MessageCreator() {
+            @Override
+            public Message createMessage(Session session) throws JMSException {
+                Message message = messageConverter.toMessage(event, session);
+                eventHeaderMapper.setScheduledDelay(message);
+                return message;
+            }
+        });
+    }
+
+    /**
+     * Returns the state of every lane.
+     *
+     * @return the state of the lanes
+     */
+    public List<EventLaneInfo> getLaneInfo() {
+        List<EventLaneInfo> info = new ArrayList<>();
+        Map<String, Integer> queueDepths = lanes.isEmpty() ? new HashMap<String, Integer>() : getQueueDepths();
+
+        for (EventLane lane : lanes) {
+            Integer queueDepth = queueDepths.get(getQueueName(lane));
+            info.add(new EventLaneInfo(lane.getName(), lane.getSubjects(),
+                    queueDepth == null ? EventLaneInfo.UNKNOWN_QUEUE_DEPTH : queueDepth, lane.getInFlight(),
+                    lane.getMaxInFlight(), lane.getContainer().getActiveConsumerCount()));
+        }
+
+        return info;
+    }
+
+    public List<EventLane> getLanes() {
+        return Collections.unmodifiableList(lanes);
+    }
+
+    private EventLane createLane(String name, Properties properties) {
+        String prefix = LANE_PROPERTY_PREFIX + name + ".";
+
+        String subjects = properties.getProperty(prefix + "subjects");
+        if (StringUtils.isBlank(subjects)) {
+            throw new IllegalArgumentException("No subjects configured for event lane " + name);
+        }
+
+        String queueName = properties.getProperty(prefix + "destination",
+                properties.getProperty(EVENT_QUEUE_PROPERTY) + "." + name);
+        int maxInFlight = getInt(properties, prefix + "maxInFlight", DEFAULT_MAX_IN_FLIGHT);
+        int concurrentConsumers = getInt(properties, prefix + "concurrentConsumers", 1);
+        int maxConcurrentConsumers = getInt(properties, prefix + "maxConcurrentConsumers", concurrentConsumers);
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The maxInFlight of event lane " + name + " must be positive");
+        }
+        if (maxConcurrentConsumers > maxInFlight) {
+            LOGGER.warn("Event lane {} is limited to {} events in flight, its consumers are limited accordingly",
+                    name, maxInFlight);
+            maxConcurrentConsumers = maxInFlight;
+        }
+        concurrentConsumers = Math.min(concurrentConsumers, maxConcurrentConsumers);
+
+        List<String> subjectPatterns = new ArrayList<>();
+        for (String subject : Arrays.asList(StringUtils.split(subjects, ','))) {
+            subjectPatterns.add(subject.trim());
+        }
+
+        EventLane lane = new EventLane(name, subjectPatterns, new ActiveMQQueue(queueName), maxInFlight);
+        lane.setMessageConverter(messageConverter);
+
+        DefaultMessageListenerContainer container = new DefaultMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // every consumer handles a single event at a time, so it should not take more than that from the broker
+        container.setDestination(new ActiveMQQueue(queueName + CONSUMER_OPTIONS));
+        container.setSessionTransacted(true);
+        container.setConcurrentConsumers(concurrentConsumers);
+        container.setMaxConcurrentConsumers(maxConcurrentConsumers);
+        container.setMessageListener(lane);
+        container.setAutoStartup(false);
+        container.setBeanName("eventLane-" + name);
+        container.afterPropertiesSet();
+
+        lane.setContainer(container);
+
+        return lane;
+    }
+
+    private void indexSubjectPatterns() {
+        for (EventLane lane : lanes) {
+            for (String pattern : lane.getSubjects()) {
+                if (!pattern.endsWith(WILDCARD)) {
+                    // the first matching lane consumes the subject, which can also be one with a prefix
+                    lanesByExactSubject.put(pattern, findLane(pattern));
+                } else if (!lanesByPrefix.containsKey(StringUtils.removeEnd(pattern, WILDCARD))) {
+                    lanesByPrefix.put(StringUtils.removeEnd(pattern, WILDCARD), lane);
+                }
+            }
+        }
+    }
+
+    private EventLane findLane(String subject) {
+        for (EventLane lane : lanes) {
+            if (lane.matches(subject)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    private int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return StringUtils.isBlank(value) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Requests the sizes of all the lane queues from the broker statistics plugin at once, and waits for the replies
+     * for a limited time. The requests expire, so they do not pile up if the plugin is not enabled.
+     */
+    private Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = null;
+
+        try {
+            depths = jmsTemplate.execute(new SessionCallback<Map<String, Integer>>() {
+                @Override
+                public Map<String, Integer> doInJms(Session session) throws JMSException {
+                    return requestQueueDepths(session);
+                }
+            }, true);
+        } catch (JmsException e) {
+            LOGGER.warn("Unable to retrieve the queue depths of the event lanes", e);
+        }
+
+        return (depths == null) ? new HashMap<String, Integer>() : depths;
+    }
+
+    private Map<String, Integer> requestQueueDepths(Session session) throws JMSException {
+        Map<String, Integer> depths = new HashMap<>();
+
+        TemporaryQueue replyQueue = session.createTemporaryQueue();
+        MessageProducer producer = session.createProducer(null);
+        MessageConsumer consumer = session.createConsumer(replyQueue);
+        try {
+            producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+            producer.setTimeToLive(STATISTICS_TIMEOUT_MILLIS);
+
+            for (EventLane lane : lanes) {
+                Message request = session.createMessage();
+                request.setJMSReplyTo(replyQueue);
+                request.setJMSCorrelationID(getQueueName(lane));
+                producer.send(session.createQueue(STATISTICS_DESTINATION_PREFIX + getQueueName(lane)), request);
+            }
+            if (session.getTransacted()) {
+                session.commit();
+            }
+
+            long deadline = System.currentTimeMillis() + STATISTICS_TIMEOUT_MILLIS;
+            while (depths.size() < lanes.size()) {
+                long remaining = deadline - System.currentTimeMillis();
+                Message reply = (remaining > 0) ? consumer.receive(remaining) : null;
+                if (reply == null) {
+                    break;
+                }
+                if (reply instanceof MapMessage) {
+                    MapMessage statistics = (MapMessage) reply;
+                    String queueName = reply.getJMSCorrelationID() != null ? reply.getJMSCorrelationID()
+                            : StringUtils.removeStart(statistics.getString(STATISTICS_DESTINATION_NAME), QUEUE_URL_PREFIX);
+                    depths.put(queueName, (int) Math.min(statistics.getLong(STATISTICS_SIZE), Integer.MAX_VALUE));
+                }
+            }
+            if (session.getTransacted()) {
+                session.commit();
+            }
+        } finally {
+            consumer.close();
+            producer.close();
+            replyQueue.delete();
+        }
+
+        if (depths.size() < lanes.size()) {
+            LOGGER.debug("The broker did not report the depths of {} event lane queues, is the statistics plugin enabled?",
+                    lanes.size() - depths.size());
+        }
+
+        return depths;
+    }
+
+    private String getQueueName(EventLane lane) {
+        return ((ActiveMQQueue) lane.getDestination()).getPhysicalName();
+    }
+
+    public void setCoreConfigurationService(CoreConfigurationService coreConfigurationService) {
+        this.coreConfigurationService = coreConfigurationService;
+    }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public void setMessageConverter(MessageConverter messageConverter) {
+        this.messageConverter = messageConverter;
+    }
+
+    public void setEventTransformer(MotechEventTransformer eventTransformer) {
+        this.eventTransformer = eventTransformer;
+    }
+
+    public void setEventHeaderMapper(MotechEventHeaderMapper eventHeaderMapper) {
+        this.eventHeaderMapper = eventHeaderMapper;
+    }
+}
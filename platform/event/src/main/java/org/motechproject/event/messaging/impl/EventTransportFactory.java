@@ -0,0 +1,51 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.OutboundEventBatchGateway;
+import org.motechproject.event.messaging.OutboundEventGateway;
+
+/**
+ * Picks the gateways used for publishing events, based on {@link MotechEventConfig#isLocalTransport()}.
+ * Events are either sent through ActiveMQ, or dispatched in-process by the {@link LocalEventTransport}.
+ */
+public class EventTransportFactory {
+
+    private OutboundEventGateway jmsOutboundEventGateway;
+    private OutboundEventBatchGateway jmsOutboundEventBatchGateway;
+    private LocalEventTransport localEventTransport;
+    private MotechEventConfig motechEventConfig;
+
+    /**
+     * Returns the gateway used for publishing single events.
+     *
+     * @return the local transport if it is enabled, the ActiveMQ gateway otherwise
+     */
+    public OutboundEventGateway getOutboundEventGateway() {
+        return motechEventConfig.isLocalTransport() ? localEventTransport : jmsOutboundEventGateway;
+    }
+
+    /**
+     * Returns the gateway used for publishing batches of events.
+     *
+     * @return the local transport if it is enabled, the ActiveMQ batch gateway otherwise
+     */
+    public OutboundEventBatchGateway getOutboundEventBatchGateway() {
+        return motechEventConfig.isLocalTransport() ? localEventTransport : jmsOutboundEventBatchGateway;
+    }
+
+    public void setJmsOutboundEventGateway(OutboundEventGateway jmsOutboundEventGateway) {
+        this.jmsOutboundEventGateway = jmsOutboundEventGateway;
+    }
+
+    public void setJmsOutboundEventBatchGateway(OutboundEventBatchGateway jmsOutboundEventBatchGateway) {
+        this.jmsOutboundEventBatchGateway = jmsOutboundEventBatchGateway;
+    }
+
+    public void setLocalEventTransport(LocalEventTransport localEventTransport) {
+        this.localEventTransport = localEventTransport;
+    }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+}
@@ -0,0 +1,198 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventBatchResult;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.OutboundEventBatchGateway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMS implementation of the {@link OutboundEventBatchGateway}. A single transacted session is checked out from the
+ * connection factory for the whole batch. The session is committed every time the configured batch size is reached
+ * or the flush interval elapses. Events that fail to be converted or sent are reported in the result, while the rest
+ * of the batch is still sent. If a commit fails, all events sent since the previous commit are reported as failed.
+ * Queue events with subjects matching an {@link EventLane} are sent to the queue of that lane. The messages get the
+ * same headers from the {@link MotechEventHeaderMapper} as the events sent one by one.
+ */
+public class JmsOutboundEventBatchGateway implements OutboundEventBatchGateway {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JmsOutboundEventBatchGateway.class);
+
+    private ConnectionFactory connectionFactory;
+    private Destination queueDestination;
+    private Destination topicDestination;
+    private MessageConverter messageConverter;
+    private MotechEventTransformer eventTransformer;
+    private MotechEventHeaderMapper eventHeaderMapper;
+    private MotechEventConfig motechEventConfig;
+    private EventLaneManager eventLaneManager;
+
+    @Override
+    public EventBatchResult sendEventMessages(Collection<MotechEvent> motechEvents) {
+        if (eventLaneManager == null || eventLaneManager.getLanes().isEmpty()) {
+            return send(queueDestination, motechEvents);
+        }
+
+        Map<Destination, List<MotechEvent>> eventsByDestination = new LinkedHashMap<>();
+        for (MotechEvent event : motechEvents) {
+            EventLane lane = eventLaneManager.getLane(event.getSubject());
+            Destination destination = (lane == null) ? queueDestination : lane.getDestination();
+
+            List<MotechEvent> events = eventsByDestination.get(destination);
+            if (events == null) {
+                events = new ArrayList<>();
+                eventsByDestination.put(destination, events);
+            }
+            events.add(event);
+        }
+
+        EventBatchResult result = new EventBatchResult();
+        for (Map.Entry<Destination, List<MotechEvent>> entry : eventsByDestination.entrySet()) {
+            result.merge(send(entry.getKey(), entry.getValue()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public EventBatchResult broadcastEventMessages(Collection<MotechEvent> motechEvents) {
+        return send(topicDestination, motechEvents);
+    }
+
+    private EventBatchResult send(Destination destination, Collection<MotechEvent> motechEvents) {
+        EventBatchResult result = new EventBatchResult();
+
+        if (motechEvents.isEmpty()) {
+            return result;
+        }
+
+        Connection connection = null;
+        Session session = null;
+        MessageProducer producer = null;
+
+        try {
+            connection = connectionFactory.createConnection();
+            session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            producer = session.createProducer(destination);
+
+            sendInTransactions(session, producer, motechEvents, result);
+        } catch (JMSException e) {
+            LOGGER.error("Unable to open a JMS session for sending a batch of {} events", motechEvents.size(), e);
+            for (MotechEvent event : motechEvents) {
+                result.addFailure(event, e);
+            }
+        } finally {
+            JmsUtils.closeMessageProducer(producer);
+            JmsUtils.closeSession(session);
+            JmsUtils.closeConnection(connection);
+        }
+
+        LOGGER.debug("Sent batch of events to {}: {}", destination, result);
+
+        return result;
+    }
+
+    private void sendInTransactions(Session session, MessageProducer producer, Collection<MotechEvent> motechEvents,
+                                    EventBatchResult result) {
+        int batchSize = Math.max(1, motechEventConfig.getMessageBatchSize());
+        long flushInterval = motechEventConfig.getMessageBatchFlushInterval();
+
+        List<MotechEvent> uncommitted = new ArrayList<>(Math.min(batchSize, motechEvents.size()));
+        long transactionStart = System.currentTimeMillis();
+
+        for (MotechEvent event : motechEvents) {
+            try {
+                eventTransformer.transform(event);
+                Message message = messageConverter.toMessage(event, session);
+                eventHeaderMapper.setScheduledDelay(message);
+                producer.send(message);
+                uncommitted.add(event);
+            } catch (JMSException | RuntimeException e) {
+                LOGGER.error("Unable to send event {} in batch", event, e);
+                result.addFailure(event, e);
+            }
+
+            if (uncommitted.size() >= batchSize || System.currentTimeMillis() - transactionStart >= flushInterval) {
+                commit(session, uncommitted, result);
+                transactionStart = System.currentTimeMillis();
+            }
+        }
+
+        commit(session, uncommitted, result);
+    }
+
+    private void commit(Session session, List<MotechEvent> uncommitted, EventBatchResult result) {
+        if (uncommitted.isEmpty()) {
+            return;
+        }
+
+        try {
+            session.commit();
+            result.addSent(uncommitted.size());
+        } catch (JMSException e) {
+            LOGGER.error("Unable to commit a batch of {} events", uncommitted.size(), e);
+            rollback(session);
+            for (MotechEvent event : uncommitted) {
+                result.addFailure(event, e);
+            }
+        } finally {
+            uncommitted.clear();
+        }
+    }
+
+    private void rollback(Session session) {
+        try {
+            session.rollback();
+        } catch (JMSException e) {
+            LOGGER.warn("Unable to rollback the batch transaction", e);
+        }
+    }
+
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public void setQueueDestination(Destination queueDestination) {
+        this.queueDestination = queueDestination;
+    }
+
+    public void setTopicDestination(Destination topicDestination) {
+        this.topicDestination = topicDestination;
+    }
+
+    public void setMessageConverter(MessageConverter messageConverter) {
+        this.messageConverter = messageConverter;
+    }
+
+    public void setEventTransformer(MotechEventTransformer eventTransformer) {
+        this.eventTransformer = eventTransformer;
+    }
+
+    public void setEventHeaderMapper(MotechEventHeaderMapper eventHeaderMapper) {
+        this.eventHeaderMapper = eventHeaderMapper;
+    }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    public void setEventLaneManager(EventLaneManager eventLaneManager) {
+        this.eventLaneManager = eventLaneManager;
+    }
+}
@@ -0,0 +1,38 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.OutboundEventGateway;
+
+/**
+ * Sends queue events with subjects matching one of the configured {@link EventLane}s to the queue of that lane.
+ * All other events, including broadcast events, are passed to the ActiveMQ gateway.
+ */
+public class LaneRoutingOutboundEventGateway implements OutboundEventGateway {
+
+    private OutboundEventGateway delegate;
+    private EventLaneManager eventLaneManager;
+
+    @Override
+    public void sendEventMessage(MotechEvent motechEvent) {
+        EventLane lane = eventLaneManager.getLane(motechEvent.getSubject());
+
+        if (lane == null) {
+            delegate.sendEventMessage(motechEvent);
+        } else {
+            eventLaneManager.send(lane, motechEvent);
+        }
+    }
+
+    @Override
+    public void broadcastEventMessage(MotechEvent motechEvent) {
+        delegate.broadcastEventMessage(motechEvent);
+    }
+
+    public void setDelegate(OutboundEventGateway delegate) {
+        this.delegate = delegate;
+    }
+
+    public void setEventLaneManager(EventLaneManager eventLaneManager) {
+        this.eventLaneManager = eventLaneManager;
+    }
+}
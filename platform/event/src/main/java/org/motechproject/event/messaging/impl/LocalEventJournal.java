@@ -0,0 +1,320 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.exception.MotechEventCodecException;
+import org.motechproject.event.messaging.MotechEventCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-ahead journal of the in-process event transport. Every event is appended to the journal before it is queued
+ * for dispatch, and is marked as completed once it has been handled. When the journal is opened, events that were
+ * not completed are returned, so that they can be dispatched again, and the journal is compacted to contain only them.
+ * The journal is also truncated every time there are no pending events left, and compacted once it grows beyond
+ * its maximum size, so that it does not grow without bounds while events keep being pending.
+ * <p/>
+ * Appended events are synced to disk using group commit: threads appending concurrently wait for a single sync
+ * which covers all of their records, instead of syncing one by one.
+ */
+public class LocalEventJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEventJournal.class);
+
+    private static final String JOURNAL_FILE_NAME = "motech-events.journal";
+    private static final String COMPACTED_FILE_SUFFIX = ".compacted";
+
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final byte RECORD_APPENDED = 1;
+    private static final byte RECORD_COMPLETED = 2;
+
+    private final File file;
+    private final MotechEventCodec codec;
+    private final long maxSize;
+
+    private final Object syncLock = new Object();
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+
+    private RandomAccessFile journal;
+    private long nextSequence;
+    private long compactedSize;
+    private volatile long syncedSequence = -1;
+
+    /**
+     * @param directory the directory in which the journal file is kept, created if it does not exist
+     * @param codec the codec used for writing events to the journal
+     */
+    public LocalEventJournal(File directory, MotechEventCodec codec) {
+        this(directory, codec, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param directory the directory in which the journal file is kept, created if it does not exist
+     * @param codec the codec used for writing events to the journal
+     * @param maxSize the size in bytes after which the journal is compacted, the default is used if not positive
+     */
+    public LocalEventJournal(File directory, MotechEventCodec codec, long maxSize) {
+        this.file = new File(directory, JOURNAL_FILE_NAME);
+        this.codec = codec;
+        this.maxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+    }
+
+    /**
+     * Opens the journal and returns the entries that were not completed.
+     *
+     * @return the pending entries, in the order they were appended
+     * @throws IOException if the journal could not be read or written
+     */
+    public List<Entry> open() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+
+        synchronized (this) {
+            if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Unable to create journal directory " + file.getParentFile());
+            }
+
+            Map<Long, Entry> previous = file.exists() ? readPending() : new LinkedHashMap<Long, Entry>();
+
+            journal = new RandomAccessFile(file, "rw");
+            journal.setLength(0);
+            nextSequence = 0;
+            syncedSequence = -1;
+            compactedSize = 0;
+            pending.clear();
+
+            for (Entry entry : previous.values()) {
+                entries.add(write(entry.getEvent(), entry.isBroadcast()));
+            }
+        }
+
+        if (!entries.isEmpty()) {
+            sync(entries.get(entries.size() - 1).getSequence());
+        }
+
+        LOGGER.info("Opened event journal {}, {} pending events", file, entries.size());
+
+        return entries;
+    }
+
+    /**
+     * Appends the event to the journal. The journal is synced to disk before this method returns.
+     *
+     * @param event the event to append
+     * @param broadcast true if the event was broadcast, false if it was sent to the queue
+     * @return the journal entry of the event
+     * @throws IOException if the journal could not be written
+     */
+    public Entry append(MotechEvent event, boolean broadcast) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = write(event, broadcast);
+        }
+
+        sync(entry.getSequence());
+
+        return entry;
+    }
+
+    /**
+     * Marks the entry as completed, meaning it will not be dispatched again after a restart.
+     *
+     * @param entry the completed entry
+     * @throws IOException if the journal could not be written
+     */
+    public synchronized void complete(Entry entry) throws IOException {
+        pending.remove(entry.getSequence());
+
+        if (pending.isEmpty()) {
+            journal.setLength(0);
+            compactedSize = 0;
+        } else {
+            journal.seek(journal.length());
+            journal.writeByte(RECORD_COMPLETED);
+            journal.writeLong(entry.getSequence());
+
+            // the pending events alone can exceed the maximum size, so the journal must at least double in between
+            if (journal.length() > Math.max(maxSize, 2 * compactedSize)) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal file.
+     */
+    public synchronized void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close event journal {}", file, e);
+            }
+            journal = null;
+        }
+    }
+
+    private Entry write(MotechEvent event, boolean broadcast) throws IOException {
+        byte[] bytes = codec.encode(event);
+        Entry entry = new Entry(nextSequence++, event, broadcast);
+
+        journal.seek(journal.length());
+        writeAppended(journal, entry.getSequence(), broadcast, bytes);
+        pending.put(entry.getSequence(), entry);
+
+        return entry;
+    }
+
+    private void writeAppended(RandomAccessFile out, long sequence, boolean broadcast, byte[] bytes)
+            throws IOException {
+        out.writeByte(RECORD_APPENDED);
+        out.writeLong(sequence);
+        out.writeBoolean(broadcast);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Syncs the journal to disk, unless the record with the given sequence was already synced by another thread.
+     * A single sync covers all the records written before it started.
+     */
+    private void sync(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+
+            FileDescriptor fd;
+            long written;
+            synchronized (this) {
+                if (journal == null) {
+                    throw new IOException("Event journal " + file + " is closed");
+                }
+                fd = journal.getFD();
+                written = nextSequence - 1;
+            }
+
+            try {
+                fd.sync();
+            } catch (IOException e) {
+                // the journal could have been compacted, and therefore synced, in the meantime
+                if (syncedSequence < sequence) {
+                    throw e;
+                }
+            }
+
+            syncedSequence = Math.max(syncedSequence, written);
+        }
+    }
+
+    /**
+     * Rewrites the journal so that it only contains the pending entries. The compacted journal is synced before it
+     * replaces the current one.
+     */
+    private void compact() throws IOException {
+        File compacted = new File(file.getPath() + COMPACTED_FILE_SUFFIX);
+        long size = journal.length();
+
+        try (RandomAccessFile out = new RandomAccessFile(compacted, "rw")) {
+            out.setLength(0);
+            for (Entry entry : pending.values()) {
+                writeAppended(out, entry.getSequence(), entry.isBroadcast(), codec.encode(entry.getEvent()));
+            }
+            out.getFD().sync();
+        }
+
+        // all the records written so far are in the synced compacted journal
+        syncedSequence = nextSequence - 1;
+
+        journal.close();
+        if (!compacted.renameTo(file)) {
+            journal = new RandomAccessFile(file, "rw");
+            throw new IOException("Unable to replace event journal " + file + " with its compacted version");
+        }
+        journal = new RandomAccessFile(file, "rw");
+        compactedSize = journal.length();
+
+        LOGGER.debug("Compacted event journal {} from {} to {} bytes, {} pending events", file, size,
+                journal.length(), pending.size());
+    }
+
+    private Map<Long, Entry> readPending() throws IOException {
+        Map<Long, Entry> pending = new LinkedHashMap<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte type = in.readByte();
+                long sequence = in.readLong();
+
+                if (type == RECORD_APPENDED) {
+                    boolean broadcast = in.readBoolean();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+
+                    MotechEvent event = decode(bytes);
+                    if (event != null) {
+                        pending.put(sequence, new Entry(sequence, event, broadcast));
+                    }
+                } else if (type == RECORD_COMPLETED) {
+                    pending.remove(sequence);
+                } else {
+                    throw new IOException("Corrupted event journal " + file);
+                }
+            }
+        } catch (EOFException e) {
+            // end of the journal, the last record could have been only partially written
+            LOGGER.debug("Finished reading event journal {}", file);
+        }
+
+        return pending;
+    }
+
+    private MotechEvent decode(byte[] bytes) {
+        try {
+            return codec.decode(bytes);
+        } catch (MotechEventCodecException e) {
+            LOGGER.error("Unable to read event from journal {}, the event will be dropped", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * An event written to the journal.
+     */
+    public static class Entry {
+
+        private final long sequence;
+        private final MotechEvent event;
+        private final boolean broadcast;
+
+        public Entry(long sequence, MotechEvent event, boolean broadcast) {
+            this.sequence = sequence;
+            this.event = event;
+            this.broadcast = broadcast;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public MotechEvent getEvent() {
+            return event;
+        }
+
+        public boolean isBroadcast() {
+            return broadcast;
+        }
+    }
+}
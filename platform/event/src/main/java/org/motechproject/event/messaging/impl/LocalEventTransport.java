@@ -0,0 +1,280 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventBatchResult;
+import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.OutboundEventBatchGateway;
+import org.motechproject.event.messaging.OutboundEventGateway;
+import org.motechproject.event.utils.MotechEventIdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process event transport, used instead of ActiveMQ when <code>motech.message.transport</code> is set to
+ * <code>local</code>. Events are put on a bounded in-memory queue and dispatched by a pool of consumer threads to
+ * {@link ServerEventRelay#relayQueueEvent(MotechEvent)} or {@link ServerEventRelay#relayTopicEvent(MotechEvent)}.
+ * Publishing blocks when the queue is full. Failed queue events are resent by the relay, the same way they are with
+ * ActiveMQ, and are dispatched again after the redelivery delay from {@link MotechEventConfig}.
+ * If a journal directory is configured, events are written to a {@link LocalEventJournal} before being queued.
+ * Redeliveries are written to the journal when they are scheduled, before the failed event is marked as completed,
+ * so they are not lost if the server stops before the redelivery delay passes.
+ */
+public class LocalEventTransport implements OutboundEventGateway, OutboundEventBatchGateway {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalEventTransport.class);
+
+    private static final long MILLIS_PER_SEC = 1000L;
+
+    private static final ThreadLocal<Boolean> CONSUMER_THREAD = new ThreadLocal<>();
+
+    private MotechEventConfig motechEventConfig;
+
+    private BlockingQueue<LocalEventJournal.Entry> queue;
+    private LocalEventJournal journal;
+    private ScheduledExecutorService redeliveryExecutor;
+    private List<Thread> consumers = new ArrayList<>();
+    private ServerEventRelay eventRelay;
+    private long sequence;
+
+    private volatile boolean running;
+
+    /**
+     * Initializes the queue and opens the journal, if it is configured. Events which were not handled before
+     * the last shutdown are put on the queue, and will be dispatched once the consumers are started.
+     * Does nothing if the local transport is not enabled.
+     *
+     * @throws IOException if the journal could not be opened
+     */
+    public synchronized void init() throws IOException {
+        if (!motechEventConfig.isLocalTransport()) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(Math.max(1, motechEventConfig.getLocalQueueCapacity()));
+        redeliveryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        String journalDir = motechEventConfig.getLocalJournalDir();
+        if (StringUtils.isNotBlank(journalDir)) {
+            journal = new LocalEventJournal(new File(journalDir), new BinaryMotechEventCodec(),
+                    motechEventConfig.getLocalJournalMaxSize());
+            for (LocalEventJournal.Entry entry : journal.open()) {
+                enqueue(entry);
+            }
+        }
+    }
+
+    /**
+     * Starts the consumer threads, which dispatch queued events to the given relay.
+     *
+     * @param relay the relay which handles the events
+     */
+    public synchronized void start(ServerEventRelay relay) {
+        if (running) {
+            return;
+        }
+
+        eventRelay = relay;
+        running = true;
+
+        int consumerCount = Math.max(1, motechEventConfig.getLocalConsumers());
+        for (int i = 0; i < consumerCount; ++i) {
+            Thread consumer = new Thread(new Consumer(), "motech-local-event-consumer-" + i);
+            consumer.setDaemon(true);
+            consumer.start();
+            consumers.add(consumer);
+        }
+
+        LOGGER.info("Started {} local event consumers", consumerCount);
+    }
+
+    /**
+     * Stops the consumer threads and closes the journal. Events left on the queue remain in the journal.
+     */
+    public synchronized void destroy() {
+        running = false;
+
+        for (Thread consumer : consumers) {
+            consumer.interrupt();
+        }
+        consumers.clear();
+
+        if (redeliveryExecutor != null) {
+            redeliveryExecutor.shutdownNow();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the number of events waiting for dispatch.
+     *
+     * @return the number of queued events
+     */
+    public int getQueueSize() {
+        return (queue == null) ? 0 : queue.size();
+    }
+
+    @Override
+    public void sendEventMessage(MotechEvent motechEvent) {
+        if (motechEvent.isInvalid()) {
+            scheduleRedelivery(motechEvent);
+        } else {
+            publish(motechEvent, false);
+        }
+    }
+
+    @Override
+    public void broadcastEventMessage(MotechEvent motechEvent) {
+        publish(motechEvent, true);
+    }
+
+    @Override
+    public EventBatchResult sendEventMessages(Collection<MotechEvent> motechEvents) {
+        return publishAll(motechEvents, false);
+    }
+
+    @Override
+    public EventBatchResult broadcastEventMessages(Collection<MotechEvent> motechEvents) {
+        return publishAll(motechEvents, true);
+    }
+
+    private EventBatchResult publishAll(Collection<MotechEvent> motechEvents, boolean broadcast) {
+        EventBatchResult result = new EventBatchResult();
+
+        for (MotechEvent event : motechEvents) {
+            try {
+                publish(event, broadcast);
+                result.addSent(1);
+            } catch (RuntimeException e) {
+                result.addFailure(event, e);
+            }
+        }
+
+        return result;
+    }
+
+    private void publish(MotechEvent event, boolean broadcast) {
+        enqueue(createEntry(event, broadcast));
+    }
+
+    private LocalEventJournal.Entry createEntry(MotechEvent event, boolean broadcast) {
+        if (event.getId() == null) {
+            event.setId(MotechEventIdUtils.newId());
+        }
+
+        if (journal == null) {
+            return new LocalEventJournal.Entry(nextSequence(), event, broadcast);
+        }
+
+        try {
+            return journal.append(event, broadcast);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write event " + event + " to the journal", e);
+        }
+    }
+
+    private void enqueue(LocalEventJournal.Entry entry) {
+        // consumers waiting for space in the queue would deadlock, so they dispatch the event themselves
+        if (Boolean.TRUE.equals(CONSUMER_THREAD.get())) {
+            if (!queue.offer(entry)) {
+                LOGGER.debug("Local event queue is full, dispatching {} in the consumer thread", entry.getEvent());
+                dispatch(entry);
+            }
+            return;
+        }
+
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing event " + entry.getEvent(), e);
+        }
+    }
+
+    private void scheduleRedelivery(final MotechEvent event) {
+        long redeliveryCount = event.getMessageRedeliveryCount();
+        Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
+                ((Math.pow(2, redeliveryCount - 1)));
+        LOGGER.debug("Redelivering {} after {} millis.", event, delay);
+
+        // the redelivery is journaled right away, the failed event is completed only after this method returns
+        final LocalEventJournal.Entry entry = createEntry(event, false);
+
+        redeliveryExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    enqueue(entry);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Unable to redeliver event {}", event, e);
+                }
+            }
+        }, delay.longValue(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized long nextSequence() {
+        return sequence++;
+    }
+
+    private void dispatch(LocalEventJournal.Entry entry) {
+        MotechEvent event = entry.getEvent();
+
+        try {
+            if (entry.isBroadcast()) {
+                eventRelay.relayTopicEvent(event);
+            } else {
+                eventRelay.relayQueueEvent(event);
+            }
+        } catch (RuntimeException e) {
+            // the relay throws when the maximum redelivery count was reached
+            LOGGER.error("Event {} was discarded", event, e);
+        }
+
+        if (journal != null) {
+            try {
+                journal.complete(entry);
+            } catch (IOException e) {
+                LOGGER.error("Unable to mark event {} as completed in the journal", event, e);
+            }
+        }
+    }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    private class Consumer implements Runnable {
+
+        @Override
+        public void run() {
+            CONSUMER_THREAD.set(true);
+
+            while (running) {
+                try {
+                    dispatch(queue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package org.motechproject.event.messaging.impl;
 
 import org.apache.activemq.ScheduledMessage;
-import org.apache.activemq.command.ActiveMQObjectMessage;
 import org.apache.log4j.Logger;
-import org.motechproject.event.MotechEvent;
 import org.motechproject.event.messaging.MotechEventConfig;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.MessageHeaders;
@@ -16,6 +14,8 @@ import javax.jms.Message;
  * Sets the <code>AMQ_SCHEDULED_DELAY</code> header of the JMS message being sent based on the <code>MotechEventConfig</code>.
  * For the delay to work, set attribute schedulerSupport="true" in the broker element of the activemq.xml
  * Ref: http://activemq.apache.org/delay-and-schedule-message-delivery.html
+ * The redelivery information is read from the message properties set by {@link MotechEventMessageConverter},
+ * so the body of the message is never decoded.
  */
 public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
 
@@ -32,18 +32,36 @@ public class MotechEventHeaderMapper extends DefaultJmsHeaderMapper {
     @Override
     public void fromHeaders(MessageHeaders messageHeaders, Message message) {
         super.fromHeaders(messageHeaders, message);
-        try {
-            MotechEvent motechEvent = (MotechEvent) ((ActiveMQObjectMessage) message).getObject();
+        setScheduledDelay(message);
+    }
 
-            if (motechEvent.isInvalid()) {
-                long redeliveryCount = motechEvent.getMessageRedeliveryCount();
+    /**
+     * Sets <code>AMQ_SCHEDULED_DELAY</code> of the message, if it carries an event that failed and is redelivered.
+     * The event is never decoded, its redelivery information is read from the message properties. Messages without
+     * those properties are sent without a delay.
+     *
+     * @param message the message to update
+     */
+    public void setScheduledDelay(Message message) {
+        try {
+            if (message.propertyExists(MotechEventMessageConverter.INVALID_PROPERTY) &&
+                    message.propertyExists(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY) &&
+                    message.getBooleanProperty(MotechEventMessageConverter.INVALID_PROPERTY)) {
+                long redeliveryCount = message.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY);
                 Double delay = motechEventConfig.getMessageRedeliveryDelay() * MILLIS_PER_SEC *
                         ((Math.pow(2, redeliveryCount - 1)));
-                LOGGER.debug("Redelivering " + motechEvent + " after " + delay + " millis.");
+                LOGGER.debug("Redelivering event with subject " +
+                        message.getStringProperty(MotechEventMessageConverter.SUBJECT_PROPERTY) + " for " +
+                        message.getStringProperty(MotechEventMessageConverter.DESTINATION_PROPERTY) +
+                        " after " + delay + " millis.");
                 message.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay.longValue());
             }
         } catch (JMSException e) {
             LOGGER.error("Failed to set header", e);
         }
     }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
 }
@@ -0,0 +1,110 @@
+package org.motechproject.event.messaging.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.exception.MotechEventCodecException;
+import org.motechproject.event.messaging.MotechEventCodec;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts {@link MotechEvent}s to JMS messages and back. Depending on {@link MotechEventConfig#getMessageCodec()},
+ * events are either sent as <code>ObjectMessage</code>s using Java serialization, or as <code>BytesMessage</code>s
+ * written by the {@link MotechEventCodec} with the configured name. The redelivery information and the destination
+ * of the event are always copied to the message properties, so that they can be read without decoding the body.
+ * Received messages are decoded using the codec they were written with, regardless of the local configuration.
+ */
+public class MotechEventMessageConverter implements MessageConverter {
+
+    public static final String SERIALIZABLE_CODEC = "serializable";
+
+    public static final String CODEC_PROPERTY = "motechCodec";
+    public static final String SUBJECT_PROPERTY = "motechSubject";
+    public static final String DESTINATION_PROPERTY = "motechDestination";
+    public static final String INVALID_PROPERTY = "motechInvalid";
+    public static final String REDELIVERY_COUNT_PROPERTY = "motechRedeliveryCount";
+
+    private final MessageConverter fallbackConverter = new SimpleMessageConverter();
+    private final Map<String, MotechEventCodec> codecs = new HashMap<>();
+
+    @Autowired
+    private MotechEventConfig motechEventConfig;
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        if (!(object instanceof MotechEvent)) {
+            return fallbackConverter.toMessage(object, session);
+        }
+
+        MotechEvent event = (MotechEvent) object;
+        String codecName = motechEventConfig.getMessageCodec();
+
+        Message message;
+        if (SERIALIZABLE_CODEC.equals(codecName)) {
+            message = session.createObjectMessage(event);
+        } else {
+            BytesMessage bytesMessage = session.createBytesMessage();
+            try {
+                bytesMessage.writeBytes(getCodec(codecName).encode(event));
+            } catch (MotechEventCodecException e) {
+                throw new MessageConversionException("Unable to encode event with subject " + event.getSubject(), e);
+            }
+            bytesMessage.setStringProperty(CODEC_PROPERTY, codecName);
+            message = bytesMessage;
+        }
+
+        message.setStringProperty(SUBJECT_PROPERTY, event.getSubject());
+        message.setStringProperty(DESTINATION_PROPERTY, event.getMessageDestination());
+        message.setBooleanProperty(INVALID_PROPERTY, event.isInvalid());
+        message.setIntProperty(REDELIVERY_COUNT_PROPERTY, event.getMessageRedeliveryCount());
+
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        if (message instanceof BytesMessage && message.propertyExists(CODEC_PROPERTY)) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+
+            byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(bytes);
+
+            try {
+                return getCodec(message.getStringProperty(CODEC_PROPERTY)).decode(bytes);
+            } catch (MotechEventCodecException e) {
+                throw new MessageConversionException("Unable to decode event from message " + message.getJMSMessageID(), e);
+            }
+        }
+
+        return fallbackConverter.fromMessage(message);
+    }
+
+    @Autowired(required = false)
+    public void setCodecs(List<MotechEventCodec> codecs) {
+        for (MotechEventCodec codec : codecs) {
+            this.codecs.put(codec.getName(), codec);
+        }
+    }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    private MotechEventCodec getCodec(String name) {
+        MotechEventCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new MessageConversionException("No event codec registered with name " + name);
+        }
+        return codec;
+    }
+}
@@ -1,8 +1,7 @@
 package org.motechproject.event.messaging.impl;
 
 import org.motechproject.event.MotechEvent;
-
-import java.util.UUID;
+import org.motechproject.event.utils.MotechEventIdUtils;
 
 /**
  * Transforms <code>MotechEvent</code> by settings its UUID.
@@ -10,16 +9,16 @@ import java.util.UUID;
 public class MotechEventTransformer {
 
     /**
-     * Updates the motechEvent's {@code UUID} with a random value
+     * Updates the motechEvent's {@code UUID} with a new time-ordered value
      * if it is null, otherwise it does not change it.
      *
      * @param motechEvent the motechEvent to be updated
      * @return the motechEvent after being updated
-     * @see java.util.UUID#randomUUID()
+     * @see MotechEventIdUtils#newId()
      */
     public MotechEvent transform(MotechEvent motechEvent) {
         if (motechEvent.getId() == null) {
-            motechEvent.setId(UUID.randomUUID());
+            motechEvent.setId(MotechEventIdUtils.newId());
         }
         return motechEvent;
     }
@@ -0,0 +1,41 @@
+package org.motechproject.event.metrics;
+
+import javax.management.MXBean;
+import java.util.List;
+
+/**
+ * Gives access to the metrics of the event pipeline: publish counts and queue dwell times per subject, and handler
+ * latencies per listener, together with retry and discard counts. The service is also registered in the platform
+ * MBean server under the {@link #OBJECT_NAME} name.
+ */
+@MXBean
+public interface EventMetricsService {
+
+    String OBJECT_NAME = "org.motechproject.event:type=EventMetrics";
+
+    /**
+     * Returns the metrics of every subject for which events were published or relayed.
+     *
+     * @return the subject metrics, sorted by subject
+     */
+    List<SubjectMetrics> getSubjectMetrics();
+
+    /**
+     * Returns the metrics of every listener which handled events.
+     *
+     * @return the listener metrics, sorted by listener identifier
+     */
+    List<ListenerMetrics> getListenerMetrics();
+
+    /**
+     * Checks whether metrics are recorded.
+     *
+     * @return true if metrics are recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * Clears all recorded metrics.
+     */
+    void reset();
+}
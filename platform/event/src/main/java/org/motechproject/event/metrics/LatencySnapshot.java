@@ -0,0 +1,83 @@
+package org.motechproject.event.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.Arrays;
+
+/**
+ * A point in time view of a latency histogram. Values are recorded into buckets whose upper bounds are powers of two
+ * microseconds, so the percentiles are the upper bounds of the buckets holding them.
+ */
+public class LatencySnapshot {
+
+    private final long count;
+    private final double meanMillis;
+    private final double maxMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final long[] buckets;
+
+    @ConstructorProperties({"count", "meanMillis", "maxMillis", "p50Millis", "p90Millis", "p99Millis", "buckets"})
+    public LatencySnapshot(long count, double meanMillis, double maxMillis, double p50Millis, double p90Millis,
+                           double p99Millis, long[] buckets) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.maxMillis = maxMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.buckets = Arrays.copyOf(buckets, buckets.length);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean of recorded values, in milliseconds
+     */
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    /**
+     * @return the largest recorded value, in milliseconds
+     */
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return the median, in milliseconds
+     */
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    /**
+     * @return the 90th percentile, in milliseconds
+     */
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    /**
+     * @return the 99th percentile, in milliseconds
+     */
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    /**
+     * Returns the number of values in each bucket. The bucket with index 0 holds values below one microsecond,
+     * the bucket with index i holds values from 2^(i-1) to 2^i microseconds.
+     *
+     * @return the bucket counts
+     */
+    public long[] getBuckets() {
+        return Arrays.copyOf(buckets, buckets.length);
+    }
+}
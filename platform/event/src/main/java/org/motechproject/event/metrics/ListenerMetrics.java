@@ -0,0 +1,57 @@
+package org.motechproject.event.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Metrics of a single event listener.
+ */
+public class ListenerMetrics {
+
+    private final String identifier;
+    private final long failures;
+    private final long retries;
+    private final long discards;
+    private final LatencySnapshot handlerLatency;
+
+    @ConstructorProperties({"identifier", "failures", "retries", "discards", "handlerLatency"})
+    public ListenerMetrics(String identifier, long failures, long retries, long discards,
+                           LatencySnapshot handlerLatency) {
+        this.identifier = identifier;
+        this.failures = failures;
+        this.retries = retries;
+        this.discards = discards;
+        this.handlerLatency = handlerLatency;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the number of times the listener threw an exception
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of times handling of an event by the listener was retried
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return the number of events discarded after the listener reached the maximum redelivery count
+     */
+    public long getDiscards() {
+        return discards;
+    }
+
+    /**
+     * @return the time spent in the handle method of the listener, for both successful and failed calls
+     */
+    public LatencySnapshot getHandlerLatency() {
+        return handlerLatency;
+    }
+}
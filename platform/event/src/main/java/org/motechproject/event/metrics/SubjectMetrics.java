@@ -0,0 +1,75 @@
+package org.motechproject.event.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Metrics of events with a single subject.
+ */
+public class SubjectMetrics {
+
+    private final String subject;
+    private final long published;
+    private final double publishRate;
+    private final long retries;
+    private final long discards;
+    private final long coalesced;
+    private final LatencySnapshot dwellTime;
+
+    @ConstructorProperties({"subject", "published", "publishRate", "retries", "discards", "coalesced", "dwellTime"})
+    public SubjectMetrics(String subject, long published, double publishRate, long retries, long discards,
+                          long coalesced, LatencySnapshot dwellTime) {
+        this.subject = subject;
+        this.published = published;
+        this.publishRate = publishRate;
+        this.retries = retries;
+        this.discards = discards;
+        this.coalesced = coalesced;
+        this.dwellTime = dwellTime;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the number of events published with this subject
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * @return the average number of events published per second since the metrics were reset
+     */
+    public double getPublishRate() {
+        return publishRate;
+    }
+
+    /**
+     * @return the number of times handling of an event with this subject was retried
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return the number of events with this subject discarded after reaching the maximum redelivery count
+     */
+    public long getDiscards() {
+        return discards;
+    }
+
+    /**
+     * @return the number of events with this subject collapsed into other events by the event coalescing policies
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return the time between publishing events and relaying them to listeners
+     */
+    public LatencySnapshot getDwellTime() {
+        return dwellTime;
+    }
+}
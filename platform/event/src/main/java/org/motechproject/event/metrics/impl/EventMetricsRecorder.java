@@ -0,0 +1,243 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.metrics.EventMetricsService;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.motechproject.event.utils.MotechEventIdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the metrics of the event pipeline, used by the {@link org.motechproject.event.listener.impl.ServerEventRelay}.
+ * Counters and histograms are kept per subject and per listener identifier in concurrent maps, and are updated
+ * without locking. The number of tracked subjects and listeners is bounded, metrics of any further ones are
+ * aggregated under the {@link #OTHER} name.
+ */
+public class EventMetricsRecorder implements EventMetricsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventMetricsRecorder.class);
+
+    public static final String OTHER = "[other]";
+
+    private static final int MAX_TRACKED_NAMES = 1000;
+    private static final double MILLIS_PER_SEC = 1000.0;
+
+    private final ConcurrentMap<String, SubjectCounters> subjects = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListenerCounters> listeners = new ConcurrentHashMap<>();
+
+    private MotechEventConfig motechEventConfig;
+
+    private volatile long startTime = System.currentTimeMillis();
+
+    /**
+     * Registers this service in the platform MBean server.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new StandardMBean(this, EventMetricsService.class, true), name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the event metrics MBean", e);
+        }
+    }
+
+    /**
+     * Removes this service from the platform MBean server.
+     */
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to unregister the event metrics MBean", e);
+        }
+    }
+
+    /**
+     * Records publishing of an event.
+     *
+     * @param subject the subject of the event
+     */
+    public void eventPublished(String subject) {
+        if (isEnabled()) {
+            subjectCounters(subject).published.increment();
+        }
+    }
+
+    /**
+     * Records the time the event spent in the queue, based on the publish time held in its id. Redelivered events
+     * are skipped, since their dwell time includes the redelivery delay.
+     *
+     * @param event the event being relayed
+     */
+    public void eventReceived(MotechEvent event) {
+        if (!isEnabled() || event.getMessageRedeliveryCount() > 0) {
+            return;
+        }
+
+        long publishTime = MotechEventIdUtils.getTimestamp(event.getId());
+        if (publishTime >= 0) {
+            long dwellTime = System.currentTimeMillis() - publishTime;
+            subjectCounters(event.getSubject()).dwellTime.record(TimeUnit.MILLISECONDS.toNanos(dwellTime));
+        }
+    }
+
+    /**
+     * Records a call of the handle method of a listener.
+     *
+     * @param identifier the identifier of the listener
+     * @param nanos the duration of the call
+     * @param failed true if the listener threw an exception
+     */
+    public void eventHandled(String identifier, long nanos, boolean failed) {
+        if (isEnabled()) {
+            ListenerCounters counters = listenerCounters(identifier);
+            counters.latency.record(nanos);
+            if (failed) {
+                counters.failures.increment();
+            }
+        }
+    }
+
+    /**
+     * Records a retry of handling an event by a listener.
+     *
+     * @param subject the subject of the event
+     * @param identifier the identifier of the listener
+     */
+    public void eventRetried(String subject, String identifier) {
+        if (isEnabled()) {
+            subjectCounters(subject).retries.increment();
+            listenerCounters(identifier).retries.increment();
+        }
+    }
+
+    /**
+     * Records discarding an event which reached the maximum redelivery count.
+     *
+     * @param subject the subject of the event
+     * @param identifier the identifier of the listener
+     */
+    public void eventDiscarded(String subject, String identifier) {
+        if (isEnabled()) {
+            subjectCounters(subject).discards.increment();
+            listenerCounters(identifier).discards.increment();
+        }
+    }
+
+    /**
+     * Records collapsing an event into another event with the same coalescing key.
+     *
+     * @param subject the subject of the event
+     */
+    public void eventCoalesced(String subject) {
+        if (isEnabled()) {
+            subjectCounters(subject).coalesced.increment();
+        }
+    }
+
+    @Override
+    public List<SubjectMetrics> getSubjectMetrics() {
+        double elapsedSeconds = Math.max(1, System.currentTimeMillis() - startTime) / MILLIS_PER_SEC;
+
+        List<SubjectMetrics> metrics = new ArrayList<>();
+        for (Map.Entry<String, SubjectCounters> entry : new TreeMap<>(subjects).entrySet()) {
+            SubjectCounters counters = entry.getValue();
+            long published = counters.published.sum();
+
+            metrics.add(new SubjectMetrics(entry.getKey(), published, published / elapsedSeconds,
+                    counters.retries.sum(), counters.discards.sum(), counters.coalesced.sum(),
+                    counters.dwellTime.snapshot()));
+        }
+
+        return metrics;
+    }
+
+    @Override
+    public List<ListenerMetrics> getListenerMetrics() {
+        List<ListenerMetrics> metrics = new ArrayList<>();
+        for (Map.Entry<String, ListenerCounters> entry : new TreeMap<>(listeners).entrySet()) {
+            ListenerCounters counters = entry.getValue();
+
+            metrics.add(new ListenerMetrics(entry.getKey(), counters.failures.sum(), counters.retries.sum(),
+                    counters.discards.sum(), counters.latency.snapshot()));
+        }
+
+        return metrics;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return motechEventConfig == null || motechEventConfig.isMetricsEnabled();
+    }
+
+    @Override
+    public void reset() {
+        subjects.clear();
+        listeners.clear();
+        startTime = System.currentTimeMillis();
+    }
+
+    private SubjectCounters subjectCounters(String subject) {
+        SubjectCounters counters = subjects.get(subject);
+        if (counters == null) {
+            String name = (subjects.size() < MAX_TRACKED_NAMES) ? subject : OTHER;
+            SubjectCounters created = new SubjectCounters();
+            SubjectCounters existing = subjects.putIfAbsent(name, created);
+            counters = (existing == null) ? created : existing;
+        }
+        return counters;
+    }
+
+    private ListenerCounters listenerCounters(String identifier) {
+        ListenerCounters counters = listeners.get(identifier);
+        if (counters == null) {
+            String name = (listeners.size() < MAX_TRACKED_NAMES) ? identifier : OTHER;
+            ListenerCounters created = new ListenerCounters();
+            ListenerCounters existing = listeners.putIfAbsent(name, created);
+            counters = (existing == null) ? created : existing;
+        }
+        return counters;
+    }
+
+    public void setMotechEventConfig(MotechEventConfig motechEventConfig) {
+        this.motechEventConfig = motechEventConfig;
+    }
+
+    private static class SubjectCounters {
+        private final LongAdder published = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder discards = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LatencyHistogram dwellTime = new LatencyHistogram();
+    }
+
+    private static class ListenerCounters {
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder discards = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
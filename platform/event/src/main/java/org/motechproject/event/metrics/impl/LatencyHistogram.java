@@ -0,0 +1,91 @@
+package org.motechproject.event.metrics.impl;
+
+import org.motechproject.event.metrics.LatencySnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with buckets whose upper bounds are powers of two microseconds. Recording a value
+ * costs a few atomic increments, which makes the histogram cheap enough for the event dispatch path.
+ */
+public class LatencyHistogram {
+
+    static final int BUCKET_COUNT = 40;
+
+    private static final long NANOS_PER_MICRO = 1000L;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private static final double P50 = 0.5;
+    private static final double P90 = 0.9;
+    private static final double P99 = 0.99;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single value.
+     *
+     * @param nanos the value, in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        buckets.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        updateMax(value);
+    }
+
+    /**
+     * Returns a snapshot of the recorded values. Values recorded while the snapshot is taken may or may not be
+     * included in it.
+     *
+     * @return the snapshot
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        double mean = (total == 0) ? 0 : sum.sum() / NANOS_PER_MILLI / total;
+
+        return new LatencySnapshot(total, mean, max.get() / NANOS_PER_MILLI, percentile(counts, total, P50),
+                percentile(counts, total, P90), percentile(counts, total, P99), counts);
+    }
+
+    private void updateMax(long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        long micros = nanos / NANOS_PER_MICRO;
+        int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    private double percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << i) / MICROS_PER_MILLI;
+            }
+        }
+
+        return (1L << (counts.length - 1)) / MICROS_PER_MILLI;
+    }
+}
@@ -0,0 +1,48 @@
+package org.motechproject.event.utils;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the ids of Motech events. The ids are time-ordered UUIDs (version 7), whose most significant 48 bits
+ * hold the time at which the event was published, which allows measuring how long the event spent in the queue.
+ */
+public final class MotechEventIdUtils {
+
+    private static final int VERSION = 7;
+    private static final int TIMESTAMP_SHIFT = 16;
+    private static final long VERSION_BITS = 0x7000L;
+    private static final long RANDOM_MSB_MASK = 0x0FFFL;
+    private static final long VARIANT_MASK = 0x3FFFFFFFFFFFFFFFL;
+    private static final long VARIANT_BITS = 0x8000000000000000L;
+
+    private MotechEventIdUtils() {
+    }
+
+    /**
+     * Generates a new event id, holding the current time.
+     *
+     * @return the new id
+     */
+    public static UUID newId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long msb = (System.currentTimeMillis() << TIMESTAMP_SHIFT) | VERSION_BITS | (random.nextLong() & RANDOM_MSB_MASK);
+        long lsb = (random.nextLong() & VARIANT_MASK) | VARIANT_BITS;
+
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Returns the time at which the event with the given id was published.
+     *
+     * @param id the id of the event
+     * @return the publish time in milliseconds, or -1 if the id was not generated by {@link #newId()}
+     */
+    public static long getTimestamp(UUID id) {
+        if (id == null || id.version() != VERSION) {
+            return -1;
+        }
+        return id.getMostSignificantBits() >>> TIMESTAMP_SHIFT;
+    }
+}
@@ -0,0 +1,35 @@
+package org.motechproject.event.utils;
+
+import java.util.Collection;
+
+/**
+ * Matches event subjects against configured subject patterns. A pattern is either an exact subject, or ends with
+ * a <code>*</code> wildcard matching any subject with the given prefix.
+ */
+public final class SubjectPatternUtils {
+
+    private static final String WILDCARD = "*";
+
+    private SubjectPatternUtils() {
+    }
+
+    /**
+     * Checks whether the subject matches any of the patterns.
+     *
+     * @param patterns the subject patterns
+     * @param subject the subject of the event
+     * @return true if the subject matches any of the patterns
+     */
+    public static boolean matches(Collection<String> patterns, String subject) {
+        for (String pattern : patterns) {
+            if (pattern.endsWith(WILDCARD)) {
+                if (subject.startsWith(pattern.substring(0, pattern.length() - 1))) {
+                    return true;
+                }
+            } else if (pattern.equals(subject)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
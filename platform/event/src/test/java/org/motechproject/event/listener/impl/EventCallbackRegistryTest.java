@@ -0,0 +1,176 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventCallbackService;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventCallbackRegistryTest {
+
+    private static final String SYNC_CALLBACK = "SyncCallback";
+    private static final String ASYNC_CALLBACK = "AsyncCallback";
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private ServiceReference syncReference;
+
+    @Mock
+    private ServiceReference asyncReference;
+
+    @Mock
+    private EventCallbackService syncCallback;
+
+    @Mock
+    private EventCallbackService asyncCallback;
+
+    private EventCallbackRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        when(motechEventConfig.getAsyncCallbackThreads()).thenReturn(1);
+        when(motechEventConfig.getAsyncCallbackQueueCapacity()).thenReturn(10);
+
+        when(syncCallback.getName()).thenReturn(SYNC_CALLBACK);
+        when(asyncCallback.getName()).thenReturn(ASYNC_CALLBACK);
+        when(asyncReference.getProperty(EventCallbackService.ASYNC_PROPERTY)).thenReturn("true");
+
+        when(bundleContext.getServiceReferences(EventCallbackService.class.getName(), null))
+                .thenReturn(new ServiceReference[]{syncReference, asyncReference});
+        when(bundleContext.getService(syncReference)).thenReturn(syncCallback);
+        when(bundleContext.getService(asyncReference)).thenReturn(asyncCallback);
+
+        registry = new EventCallbackRegistry();
+        registry.setBundleContext(bundleContext);
+        registry.setMotechEventConfig(motechEventConfig);
+        registry.open();
+    }
+
+    @After
+    public void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    public void shouldResolveCallbackServicesByName() {
+        assertSame(syncCallback, registry.getCallbackService(SYNC_CALLBACK));
+        assertEquals(ASYNC_CALLBACK, registry.getCallbackService(ASYNC_CALLBACK).getName());
+        assertNull(registry.getCallbackService("unknown"));
+    }
+
+    @Test
+    public void shouldInvokeAsyncCallbacksInSeparateThreadWithoutRedelivery() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Thread callerThread = Thread.currentThread();
+        final boolean[] calledInCallerThread = new boolean[1];
+
+        Answer<Boolean> answer = new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                calledInCallerThread[0] |= Thread.currentThread() == callerThread;
+                latch.countDown();
+                return true;
+            }
+        };
+        doAnswer(answer).when(asyncCallback).successCallback(any(MotechEvent.class));
+        doAnswer(answer).when(asyncCallback).failureCallback(any(MotechEvent.class), any(Throwable.class));
+
+        EventCallbackService callback = registry.getCallbackService(ASYNC_CALLBACK);
+        callback.successCallback(new MotechEvent("subject"));
+        assertFalse(callback.failureCallback(new MotechEvent("subject"), new RuntimeException()));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(calledInCallerThread[0]);
+    }
+
+    @Test
+    public void shouldInvokeAsyncCallbacksAfterTransactionCompletes() {
+        EventCallbackService callback = registry.getCallbackService(ASYNC_CALLBACK);
+        MotechEvent committed = new MotechEvent("committed");
+        MotechEvent failed = new MotechEvent("failed");
+        RuntimeException exception = new RuntimeException();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            callback.successCallback(committed);
+            callback.failureCallback(failed, exception);
+
+            verify(asyncCallback, never()).successCallback(any(MotechEvent.class));
+            verify(asyncCallback, never()).failureCallback(any(MotechEvent.class), any(Throwable.class));
+
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(asyncCallback, timeout(5000)).successCallback(committed);
+        verify(asyncCallback, timeout(5000)).failureCallback(failed, exception);
+    }
+
+    @Test
+    public void shouldNotInvokeSuccessCallbackIfTransactionWasRolledBack() throws Exception {
+        EventCallbackService callback = registry.getCallbackService(ASYNC_CALLBACK);
+        MotechEvent failed = new MotechEvent("failed");
+        RuntimeException exception = new RuntimeException();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            callback.successCallback(new MotechEvent("rolledBack"));
+            callback.failureCallback(failed, exception);
+
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(asyncCallback, timeout(5000)).failureCallback(failed, exception);
+        verify(asyncCallback, never()).successCallback(any(MotechEvent.class));
+    }
+
+    @Test
+    public void shouldDropAsyncCallbacksRequestedAfterClose() {
+        EventCallbackService callback = registry.getCallbackService(ASYNC_CALLBACK);
+        registry.close();
+
+        callback.successCallback(new MotechEvent("subject"));
+
+        verify(asyncCallback, never()).successCallback(any(MotechEvent.class));
+    }
+
+    private void completeTransaction(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.motechproject.event.listener.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.config.core.service.CoreConfigurationService;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.metrics.impl.EventMetricsRecorder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventCoalescerTest {
+
+    private static final String UPDATE_SUBJECT = "mds.crud.patient.UPDATE";
+    private static final String CHANNEL_SUBJECT = "org.motechproject.tasks.channel.update";
+
+    @Mock
+    private CoreConfigurationService coreConfigurationService;
+
+    private EventMetricsRecorder eventMetrics;
+    private EventCoalescer coalescer;
+    private RecordingDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("motech.message.coalescing", "mds, channels");
+        properties.setProperty("motech.message.coalescing.mds.subjects", "mds.crud.*");
+        properties.setProperty("motech.message.coalescing.mds.keyParameters", "object_id");
+        properties.setProperty("motech.message.coalescing.mds.window", "100");
+        properties.setProperty("motech.message.coalescing.channels.subjects", CHANNEL_SUBJECT);
+        properties.setProperty("motech.message.coalescing.channels.window", "100");
+        properties.setProperty("motech.message.coalescing.channels.keep", "first");
+        when(coreConfigurationService.getActiveMqConfig()).thenReturn(properties);
+
+        eventMetrics = new EventMetricsRecorder();
+
+        coalescer = new EventCoalescer();
+        coalescer.setCoreConfigurationService(coreConfigurationService);
+        coalescer.setEventMetrics(eventMetrics);
+        coalescer.init();
+
+        dispatcher = new RecordingDispatcher();
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.destroy();
+    }
+
+    @Test
+    public void shouldNotCoalesceEventsWithoutPolicy() {
+        assertFalse(coalescer.coalesce(new MotechEvent("other.subject"), false, dispatcher));
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void shouldDispatchLastEventForEachKey() throws Exception {
+        dispatcher.expect(2);
+
+        MotechEvent first = updateEvent(1L, "first");
+        MotechEvent last = updateEvent(1L, "last");
+        MotechEvent other = updateEvent(2L, "other");
+
+        assertTrue(coalescer.coalesce(first, false, dispatcher));
+        assertTrue(coalescer.coalesce(last, false, dispatcher));
+        assertTrue(coalescer.coalesce(other, false, dispatcher));
+        assertEquals(2, coalescer.getPendingCount());
+
+        assertTrue(dispatcher.await());
+        assertEquals(2, dispatcher.events.size());
+        assertTrue(dispatcher.events.contains(last));
+        assertTrue(dispatcher.events.contains(other));
+        assertEquals(1, eventMetrics.getSubjectMetrics().get(0).getCoalesced());
+    }
+
+    @Test
+    public void shouldDispatchFirstEventWhenConfigured() throws Exception {
+        dispatcher.expect(1);
+
+        MotechEvent first = new MotechEvent(CHANNEL_SUBJECT);
+        coalescer.coalesce(first, true, dispatcher);
+        coalescer.coalesce(new MotechEvent(CHANNEL_SUBJECT), true, dispatcher);
+        coalescer.coalesce(new MotechEvent(CHANNEL_SUBJECT), true, dispatcher);
+
+        assertTrue(dispatcher.await());
+        assertEquals(1, dispatcher.events.size());
+        assertTrue(first == dispatcher.events.get(0));
+        assertTrue(dispatcher.broadcast);
+    }
+
+    @Test
+    public void shouldDispatchPendingEventsOnDestroy() {
+        coalescer.coalesce(updateEvent(1L, "pending"), false, dispatcher);
+
+        coalescer.destroy();
+
+        assertEquals(1, dispatcher.events.size());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    private MotechEvent updateEvent(Long id, String name) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("object_id", id);
+        parameters.put("name", name);
+        return new MotechEvent(UPDATE_SUBJECT, parameters);
+    }
+
+    private static class RecordingDispatcher implements EventCoalescer.Dispatcher {
+
+        private final List<MotechEvent> events = new ArrayList<>();
+        private CountDownLatch latch = new CountDownLatch(0);
+        private boolean broadcast;
+
+        void expect(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public synchronized void dispatch(MotechEvent event, boolean broadcast) {
+            this.broadcast = broadcast;
+            events.add(event);
+            latch.countDown();
+        }
+    }
+}
@@ -18,6 +18,7 @@ import java.util.Set;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -249,6 +250,44 @@ public class EventListenerRegistryTest {
         assertEquals(0, el.size());
     }
 
+    @Test
+    public void shouldInvalidateResolvedListenersWhenRegisteringListener() {
+        EventListener sel = new SampleEventListener();
+        EventListener sel2 = new FooEventListener();
+
+        registry.registerListener(sel, "org.motechproject.server.someevent");
+        assertEquals(1, registry.getListeners("org.motechproject.server.someevent").size());
+        assertEquals(0, registry.getListeners("org.motechproject.server.otherevent").size());
+
+        registry.registerListener(sel2, "org.motechproject.server.*");
+
+        Set<EventListener> el = registry.getListeners("org.motechproject.server.someevent");
+        assertEquals(2, el.size());
+        assertTrue(el.contains(sel));
+        assertTrue(el.contains(sel2));
+
+        el = registry.getListeners("org.motechproject.server.otherevent");
+        assertEquals(1, el.size());
+        assertTrue(el.contains(sel2));
+        assertTrue(registry.hasListener("org.motechproject.server.otherevent"));
+    }
+
+    @Test
+    public void shouldReturnSameResolvedListenersForSubject() {
+        registry.registerListener(new SampleEventListener(), "org.motechproject.server.someevent");
+
+        Set<EventListener> el = registry.getListeners("org.motechproject.server.someevent");
+
+        assertSame(el, registry.getListeners("org.motechproject.server.someevent"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowModifyingResolvedListeners() {
+        registry.registerListener(new SampleEventListener(), "org.motechproject.server.someevent");
+
+        registry.getListeners("org.motechproject.server.someevent").add(new FooEventListener());
+    }
+
     class FooEventListener implements EventListener {
 
         @Override
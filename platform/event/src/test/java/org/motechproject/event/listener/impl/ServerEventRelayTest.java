@@ -14,25 +14,28 @@ import org.motechproject.event.exception.CallbackServiceNotFoundException;
 import org.motechproject.event.listener.EventCallbackService;
 import org.motechproject.event.listener.EventListener;
 import org.motechproject.event.messaging.MotechEventConfig;
+import org.motechproject.event.messaging.OutboundEventBatchGateway;
 import org.motechproject.event.messaging.OutboundEventGateway;
-import org.osgi.framework.BundleContext;
-import org.osgi.framework.ServiceReference;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -50,6 +53,9 @@ public class ServerEventRelayTest {
     @Mock
     private OutboundEventGateway outboundEventGateway;
 
+    @Mock
+    private OutboundEventBatchGateway outboundEventBatchGateway;
+
     @Mock
     private MotechEventConfig motechEventConfig;
 
@@ -66,10 +72,7 @@ public class ServerEventRelayTest {
     private EventListenerRegistry registry;
 
     @Mock
-    private BundleContext bundleContext;
-
-    @Mock
-    private ServiceReference<EventCallbackService> serviceReference;
+    private EventCallbackRegistry callbackRegistry;
 
     @Mock
     private EventCallbackService callbackService;
@@ -78,7 +81,7 @@ public class ServerEventRelayTest {
 
     @Before
     public void setUp() throws Exception {
-        eventRelay = new ServerEventRelay(outboundEventGateway, registry, motechEventConfig, eventAdmin, bundleContext);
+        eventRelay = new ServerEventRelay(outboundEventGateway, outboundEventBatchGateway, registry, motechEventConfig, eventAdmin, callbackRegistry);
 
         when(eventListener.getIdentifier()).thenReturn(LISTENER_IDENTIFIER);
         when(secondaryEventListener.getIdentifier()).thenReturn(SECONDARY_LISTENER_IDENTIFIER);
@@ -98,9 +101,7 @@ public class ServerEventRelayTest {
         motechEvent.setCallbackName(TEST_SERVICE_CALLBACK);
         setUpListeners(SUBJECT, eventListener);
 
-        when(bundleContext.getServiceReferences(EventCallbackService.class, null)).thenReturn(Arrays.asList(serviceReference));
-        when(bundleContext.getService(serviceReference)).thenReturn(callbackService);
-        when(callbackService.getName()).thenReturn(TEST_SERVICE_CALLBACK);
+        when(callbackRegistry.getCallbackService(TEST_SERVICE_CALLBACK)).thenReturn(callbackService);
 
         eventRelay.relayQueueEvent(motechEvent);
 
@@ -126,9 +127,7 @@ public class ServerEventRelayTest {
         motechEvent.setCallbackName(TEST_SERVICE_CALLBACK);
         setUpListeners(SUBJECT, eventListener);
 
-        when(bundleContext.getServiceReferences(EventCallbackService.class, null)).thenReturn(Arrays.asList(serviceReference));
-        when(bundleContext.getService(serviceReference)).thenReturn(callbackService);
-        when(callbackService.getName()).thenReturn(TEST_SERVICE_CALLBACK);
+        when(callbackRegistry.getCallbackService(TEST_SERVICE_CALLBACK)).thenReturn(callbackService);
         RuntimeException initCause = new RuntimeException();
         doThrow(new RuntimeException("Failed", initCause)).when(eventListener).handle(any(MotechEvent.class));
 
@@ -163,6 +162,87 @@ public class ServerEventRelayTest {
         assertEquals(capturedEvent.getMessageDestination(), SECONDARY_LISTENER_IDENTIFIER);
     }
 
+    @Test
+    public void shouldSplitEventsSentInBatch() {
+        setUpListeners(SUBJECT, eventListener, secondaryEventListener);
+        setUpListeners("other.subject", eventListener);
+
+        eventRelay.sendEventMessages(Arrays.asList(createEvent(), new MotechEvent("other.subject"),
+                new MotechEvent("no.listeners")));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchGateway).sendEventMessages(captor.capture());
+        verify(outboundEventGateway, never()).sendEventMessage(any(MotechEvent.class));
+
+        List<MotechEvent> sent = (List<MotechEvent>) captor.getValue();
+        assertEquals(3, sent.size());
+        assertEquals(LISTENER_IDENTIFIER, sent.get(0).getMessageDestination());
+        assertEquals(SECONDARY_LISTENER_IDENTIFIER, sent.get(1).getMessageDestination());
+        assertEquals("value", sent.get(1).getParameters().get("test"));
+        assertEquals("other.subject", sent.get(2).getSubject());
+        assertEquals(LISTENER_IDENTIFIER, sent.get(2).getMessageDestination());
+    }
+
+    @Test
+    public void shouldBroadcastOnlyEventsWithListenersInBatch() {
+        setUpListeners(SUBJECT, eventListener);
+        MotechEvent event = createEvent();
+
+        eventRelay.broadcastEventMessages(Arrays.asList(event, new MotechEvent("no.listeners")));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchGateway).broadcastEventMessages(captor.capture());
+
+        assertEquals(Arrays.asList(event), captor.getValue());
+        assertTrue(event.isBroadcast());
+    }
+
+    @Test
+    public void shouldCoalesceEventsSentInBatch() {
+        setUpListeners(SUBJECT, eventListener);
+        setUpListeners("other.subject", eventListener);
+        EventCoalescer eventCoalescer = mock(EventCoalescer.class);
+        eventRelay.setEventCoalescer(eventCoalescer);
+
+        MotechEvent coalesced = createEvent();
+        MotechEvent queued = new MotechEvent("other.subject");
+        when(eventCoalescer.coalesce(eq(coalesced), eq(false), any(EventCoalescer.Dispatcher.class))).thenReturn(true);
+
+        eventRelay.sendEventMessages(Arrays.asList(coalesced, queued));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchGateway).sendEventMessages(captor.capture());
+        verify(eventCoalescer).coalesce(eq(queued), eq(false), any(EventCoalescer.Dispatcher.class));
+
+        List<MotechEvent> sent = (List<MotechEvent>) captor.getValue();
+        assertEquals(1, sent.size());
+        assertEquals("other.subject", sent.get(0).getSubject());
+    }
+
+    @Test
+    public void shouldCoalesceEventsBroadcastInBatch() {
+        setUpListeners(SUBJECT, eventListener);
+        EventCoalescer eventCoalescer = mock(EventCoalescer.class);
+        eventRelay.setEventCoalescer(eventCoalescer);
+
+        MotechEvent coalesced = createEvent();
+        MotechEvent broadcast = new MotechEvent(SUBJECT);
+        when(eventCoalescer.coalesce(eq(coalesced), eq(true), any(EventCoalescer.Dispatcher.class))).thenReturn(true);
+
+        eventRelay.broadcastEventMessages(Arrays.asList(coalesced, broadcast));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(outboundEventBatchGateway).broadcastEventMessages(captor.capture());
+
+        assertEquals(1, captor.getValue().size());
+        assertSame(broadcast, captor.getValue().iterator().next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotSendBatchWithNullEvent() {
+        eventRelay.sendEventMessages(Arrays.asList(createEvent(), null));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRelayNullQueueEvent() throws Exception {
         eventRelay.relayQueueEvent(null);
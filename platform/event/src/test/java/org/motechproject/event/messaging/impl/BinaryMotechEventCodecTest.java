@@ -0,0 +1,120 @@
+package org.motechproject.event.messaging.impl;
+
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.domain.TestEventPayload;
+import org.motechproject.event.exception.MotechEventCodecException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryMotechEventCodecTest {
+
+    private BinaryMotechEventCodec codec = new BinaryMotechEventCodec();
+
+    @Test
+    public void shouldEncodeAndDecodeEvent() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("origin", "test");
+
+        MotechEvent event = new MotechEvent("org.motechproject.test.subject", createParameters(), "callback", metadata);
+        event.setId(UUID.randomUUID());
+        event.setInvalid(true);
+        event.setBroadcast(true);
+        event.setMessageRedeliveryCount(2);
+        event.setMessageDestination("TestEventListener");
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertEquals(event.getId(), decoded.getId());
+    }
+
+    @Test
+    public void shouldEncodeAndDecodeByteArrays() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("bytes", new byte[] {1, 2, 3});
+
+        MotechEvent decoded = codec.decode(codec.encode(new MotechEvent("subject", parameters)));
+
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) decoded.getParameters().get("bytes"));
+    }
+
+    @Test
+    public void shouldEncodeAndDecodeEventWithoutOptionalFields() {
+        MotechEvent event = new MotechEvent("org.motechproject.test.subject");
+
+        MotechEvent decoded = codec.decode(codec.encode(event));
+
+        assertEquals(event, decoded);
+        assertNull(decoded.getId());
+        assertNull(decoded.getCallbackName());
+        assertNull(decoded.getMessageDestination());
+    }
+
+    @Test
+    public void shouldUseJavaSerializationForOtherValues() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("payload", new TestEventPayload());
+        parameters.put("linkedList", new LinkedList<>(Arrays.asList(1, 2, 3)));
+
+        MotechEvent decoded = codec.decode(codec.encode(new MotechEvent("subject", parameters)));
+
+        assertTrue(decoded.getParameters().get("payload") instanceof TestEventPayload);
+        assertEquals(LinkedList.class, decoded.getParameters().get("linkedList").getClass());
+        assertEquals(Arrays.asList(1, 2, 3), decoded.getParameters().get("linkedList"));
+    }
+
+    @Test
+    public void shouldProduceSmallerPayloadThanJavaSerialization() throws IOException {
+        MotechEvent event = new MotechEvent("org.motechproject.test.subject", createParameters());
+        event.setId(UUID.randomUUID());
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(event);
+        }
+
+        assertTrue(codec.encode(event).length < serialized.size());
+    }
+
+    @Test(expected = MotechEventCodecException.class)
+    public void shouldRejectUnknownFormatVersion() {
+        byte[] bytes = codec.encode(new MotechEvent("subject"));
+        bytes[0] = 42;
+
+        codec.decode(bytes);
+    }
+
+    private Map<String, Object> createParameters() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("key", 1L);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "value");
+        parameters.put("integer", 5);
+        parameters.put("long", 10L);
+        parameters.put("double", 1.5);
+        parameters.put("boolean", true);
+        parameters.put("date", new Date());
+        parameters.put("uuid", UUID.randomUUID());
+        parameters.put("list", new ArrayList<>(Arrays.asList("a", "b", null)));
+        parameters.put("map", nested);
+        parameters.put("null", null);
+
+        return parameters;
+    }
+}
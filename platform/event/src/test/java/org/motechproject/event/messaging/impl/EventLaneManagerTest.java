@@ -0,0 +1,112 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.config.core.service.CoreConfigurationService;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventLaneManagerTest {
+
+    @Mock
+    private CoreConfigurationService coreConfigurationService;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private MessageConverter messageConverter;
+
+    private Properties properties = new Properties();
+
+    private EventLaneManager laneManager;
+
+    @Before
+    public void setUp() throws Exception {
+        properties.setProperty("jms.queue.for.events", "QueueForEvents");
+        when(coreConfigurationService.getActiveMqConfig()).thenReturn(properties);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+
+        laneManager = new EventLaneManager();
+        laneManager.setCoreConfigurationService(coreConfigurationService);
+        laneManager.setMotechEventConfig(motechEventConfig);
+        laneManager.setConnectionFactory(connectionFactory);
+        laneManager.setMessageConverter(messageConverter);
+    }
+
+    @Test
+    public void shouldLimitConsumersOfLaneToEventsInFlight() {
+        properties.setProperty("motech.message.lanes", "sms");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*");
+        properties.setProperty("motech.message.lane.sms.concurrentConsumers", "2");
+        properties.setProperty("motech.message.lane.sms.maxConcurrentConsumers", "5");
+
+        laneManager.init();
+
+        EventLane lane = laneManager.getLanes().get(0);
+        DefaultMessageListenerContainer container = lane.getContainer();
+
+        assertEquals(1, lane.getMaxInFlight());
+        assertEquals(1, container.getConcurrentConsumers());
+        assertEquals(1, container.getMaxConcurrentConsumers());
+
+        // the consumers take a single message at a time, the events they cannot handle stay in the broker
+        ActiveMQQueue consumerQueue = (ActiveMQQueue) container.getDestination();
+        assertEquals("QueueForEvents.sms", consumerQueue.getPhysicalName());
+        assertEquals("1", consumerQueue.getOptions().get("consumer.prefetchSize"));
+    }
+
+    @Test
+    public void shouldAllowMoreEventsInFlightIfConfigured() {
+        properties.setProperty("motech.message.lanes", "sms");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*");
+        properties.setProperty("motech.message.lane.sms.maxConcurrentConsumers", "5");
+        properties.setProperty("motech.message.lane.sms.maxInFlight", "3");
+
+        laneManager.init();
+
+        EventLane lane = laneManager.getLanes().get(0);
+
+        assertEquals(3, lane.getMaxInFlight());
+        assertEquals(1, lane.getContainer().getConcurrentConsumers());
+        assertEquals(3, lane.getContainer().getMaxConcurrentConsumers());
+    }
+
+    @Test
+    public void shouldMatchLanesInConfiguredOrder() {
+        properties.setProperty("motech.message.lanes", "sms,other");
+        properties.setProperty("motech.message.lane.sms.subjects", "org.motechproject.sms.*");
+        properties.setProperty("motech.message.lane.other.subjects", "org.motechproject.sms.send,org.motechproject.*");
+
+        laneManager.init();
+
+        EventLane sms = laneManager.getLanes().get(0);
+        EventLane other = laneManager.getLanes().get(1);
+
+        assertSame(sms, laneManager.getLane("org.motechproject.sms.send"));
+        assertSame(sms, laneManager.getLane("org.motechproject.sms.status"));
+        assertSame(other, laneManager.getLane("org.motechproject.email.send"));
+        assertNull(laneManager.getLane("other.subject"));
+    }
+}
@@ -0,0 +1,97 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Message;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventLaneTest {
+
+    @Mock
+    private MessageConverter messageConverter;
+
+    @Mock
+    private ServerEventRelay eventRelay;
+
+    @Mock
+    private Message message;
+
+    private EventLane lane;
+
+    @Before
+    public void setUp() {
+        lane = new EventLane("sms", Arrays.asList("org.motechproject.sms.*", "outbound.call"),
+                new ActiveMQQueue("QueueForEvents.sms"), 2);
+        lane.setMessageConverter(messageConverter);
+        lane.setEventRelay(eventRelay);
+    }
+
+    @Test
+    public void shouldMatchExactSubjectsAndPrefixes() {
+        assertTrue(lane.matches("outbound.call"));
+        assertTrue(lane.matches("org.motechproject.sms.send"));
+        assertTrue(lane.matches("org.motechproject.sms."));
+
+        assertFalse(lane.matches("outbound.call.status"));
+        assertFalse(lane.matches("org.motechproject.email.send"));
+    }
+
+    @Test
+    public void shouldRelayEventsAndTrackInFlightCount() throws Exception {
+        final MotechEvent event = new MotechEvent("outbound.call");
+        when(messageConverter.fromMessage(message)).thenReturn(event);
+
+        final int[] inFlightDuringRelay = new int[1];
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                inFlightDuringRelay[0] = lane.getInFlight();
+                return null;
+            }
+        }).when(eventRelay).relayQueueEvent(any(MotechEvent.class));
+
+        lane.onMessage(message);
+
+        verify(eventRelay).relayQueueEvent(event);
+        assertEquals(1, inFlightDuringRelay[0]);
+        assertEquals(0, lane.getInFlight());
+    }
+
+    @Test
+    public void shouldDecreaseInFlightCountWhenRelayFails() throws Exception {
+        when(messageConverter.fromMessage(message)).thenReturn(new MotechEvent("outbound.call"));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                throw new IllegalStateException("listener failed");
+            }
+        }).when(eventRelay).relayQueueEvent(any(MotechEvent.class));
+
+        try {
+            lane.onMessage(message);
+        } catch (IllegalStateException e) {
+            assertEquals("listener failed", e.getMessage());
+        }
+
+        assertEquals(0, lane.getInFlight());
+    }
+}
@@ -0,0 +1,160 @@
+package org.motechproject.event.messaging.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventBatchResult;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JmsOutboundEventBatchGatewayTest {
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MessageProducer producer;
+
+    @Mock
+    private Destination queue;
+
+    @Mock
+    private Destination topic;
+
+    @Mock
+    private MessageConverter messageConverter;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private MotechEventHeaderMapper eventHeaderMapper;
+
+    @Mock
+    private Message message;
+
+    private JmsOutboundEventBatchGateway gateway;
+
+    @Before
+    public void setUp() throws JMSException {
+        gateway = new JmsOutboundEventBatchGateway();
+        gateway.setConnectionFactory(connectionFactory);
+        gateway.setQueueDestination(queue);
+        gateway.setTopicDestination(topic);
+        gateway.setMessageConverter(messageConverter);
+        gateway.setEventTransformer(new MotechEventTransformer());
+        gateway.setEventHeaderMapper(eventHeaderMapper);
+        gateway.setMotechEventConfig(motechEventConfig);
+
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(session);
+        when(session.createProducer(queue)).thenReturn(producer);
+        when(session.createProducer(topic)).thenReturn(producer);
+        when(motechEventConfig.getMessageBatchSize()).thenReturn(2);
+        when(motechEventConfig.getMessageBatchFlushInterval()).thenReturn(60000L);
+    }
+
+    @Test
+    public void shouldSendEventsInTransactedBatches() throws JMSException {
+        List<MotechEvent> events = createEvents(5);
+        for (MotechEvent event : events) {
+            when(messageConverter.toMessage(event, session)).thenReturn(message);
+        }
+
+        EventBatchResult result = gateway.sendEventMessages(events);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(5, result.getSentCount());
+        verify(connectionFactory).createConnection();
+        verify(eventHeaderMapper, times(5)).setScheduledDelay(message);
+        verify(producer, times(5)).send(message);
+        verify(session, times(3)).commit();
+        verify(session).close();
+
+        for (MotechEvent event : events) {
+            assertNotNull(event.getId());
+        }
+    }
+
+    @Test
+    public void shouldReportEventsThatCouldNotBeConverted() throws JMSException {
+        List<MotechEvent> events = createEvents(3);
+        MessageConversionException exception = new MessageConversionException("error");
+        when(messageConverter.toMessage(events.get(0), session)).thenReturn(message);
+        when(messageConverter.toMessage(events.get(1), session)).thenThrow(exception);
+        when(messageConverter.toMessage(events.get(2), session)).thenReturn(message);
+
+        EventBatchResult result = gateway.broadcastEventMessages(events);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(2, result.getSentCount());
+        assertEquals(1, result.getFailedEvents().size());
+        assertEquals(events.get(1), result.getFailedEvents().get(0).getEvent());
+        assertEquals(exception, result.getFailedEvents().get(0).getCause());
+        verify(session).createProducer(topic);
+    }
+
+    @Test
+    public void shouldReportAllUncommittedEventsWhenCommitFails() throws JMSException {
+        List<MotechEvent> events = createEvents(3);
+        for (MotechEvent event : events) {
+            when(messageConverter.toMessage(event, session)).thenReturn(message);
+        }
+        doThrow(new JMSException("commit failed")).doNothing().when(session).commit();
+
+        EventBatchResult result = gateway.sendEventMessages(events);
+
+        assertEquals(1, result.getSentCount());
+        assertEquals(2, result.getFailedEvents().size());
+        assertEquals(events.get(0), result.getFailedEvents().get(0).getEvent());
+        assertEquals(events.get(1), result.getFailedEvents().get(1).getEvent());
+        verify(session).rollback();
+    }
+
+    @Test
+    public void shouldNotOpenSessionForEmptyBatch() throws JMSException {
+        EventBatchResult result = gateway.sendEventMessages(new ArrayList<MotechEvent>());
+
+        assertTrue(result.isSuccessful());
+        verify(connectionFactory, never()).createConnection();
+    }
+
+    private List<MotechEvent> createEvents(int count) {
+        List<MotechEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            events.add(new MotechEvent("org.motechproject.test.event" + i));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,66 @@
+package org.motechproject.event.messaging.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.motechproject.event.MotechEvent;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LocalEventJournalTest {
+
+    @Rule
+    public TemporaryFolder journalDir = new TemporaryFolder();
+
+    @Test
+    public void shouldReturnPendingEventsAfterReopening() throws Exception {
+        LocalEventJournal journal = new LocalEventJournal(journalDir.getRoot(), new BinaryMotechEventCodec());
+        journal.open();
+
+        LocalEventJournal.Entry completed = journal.append(new MotechEvent("event.1"), false);
+        journal.append(new MotechEvent("event.2"), true);
+        journal.complete(completed);
+        journal.close();
+
+        journal = new LocalEventJournal(journalDir.getRoot(), new BinaryMotechEventCodec());
+        List<LocalEventJournal.Entry> pending = journal.open();
+        journal.close();
+
+        assertEquals(1, pending.size());
+        assertEquals("event.2", pending.get(0).getEvent().getSubject());
+        assertTrue(pending.get(0).isBroadcast());
+    }
+
+    @Test
+    public void shouldCompactJournalOnceItExceedsMaxSize() throws Exception {
+        LocalEventJournal journal = new LocalEventJournal(journalDir.getRoot(), new BinaryMotechEventCodec(), 1);
+        journal.open();
+
+        LocalEventJournal.Entry first = journal.append(new MotechEvent("event.1"), false);
+        LocalEventJournal.Entry second = journal.append(new MotechEvent("event.2"), false);
+        journal.append(new MotechEvent("event.3"), false);
+
+        File file = journalDir.getRoot().listFiles()[0];
+        long size = file.length();
+
+        journal.complete(first);
+        journal.complete(second);
+
+        assertTrue(file.length() < size);
+
+        journal.append(new MotechEvent("event.4"), false);
+        journal.close();
+
+        journal = new LocalEventJournal(journalDir.getRoot(), new BinaryMotechEventCodec());
+        List<LocalEventJournal.Entry> pending = journal.open();
+        journal.close();
+
+        assertEquals(2, pending.size());
+        assertEquals("event.3", pending.get(0).getEvent().getSubject());
+        assertEquals("event.4", pending.get(1).getEvent().getSubject());
+    }
+}
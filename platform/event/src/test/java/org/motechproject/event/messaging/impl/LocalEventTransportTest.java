@@ -0,0 +1,183 @@
+package org.motechproject.event.messaging.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.listener.EventBatchResult;
+import org.motechproject.event.listener.impl.ServerEventRelay;
+import org.motechproject.event.messaging.MotechEventConfig;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LocalEventTransportTest {
+
+    private static final long TIMEOUT = 5;
+
+    @Rule
+    public TemporaryFolder journalDir = new TemporaryFolder();
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    @Mock
+    private ServerEventRelay eventRelay;
+
+    private LocalEventTransport transport;
+
+    @Before
+    public void setUp() {
+        when(motechEventConfig.isLocalTransport()).thenReturn(true);
+        when(motechEventConfig.getLocalQueueCapacity()).thenReturn(10);
+        when(motechEventConfig.getLocalConsumers()).thenReturn(2);
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(0L);
+
+        transport = new LocalEventTransport();
+        transport.setMotechEventConfig(motechEventConfig);
+    }
+
+    @After
+    public void tearDown() {
+        transport.destroy();
+    }
+
+    @Test
+    public void shouldDispatchQueueAndTopicEvents() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        countDown(latch);
+
+        transport.init();
+        transport.start(eventRelay);
+
+        MotechEvent queueEvent = new MotechEvent("queue.event");
+        MotechEvent topicEvent = new MotechEvent("topic.event");
+        transport.sendEventMessage(queueEvent);
+        transport.broadcastEventMessage(topicEvent);
+
+        assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+        verify(eventRelay).relayQueueEvent(queueEvent);
+        verify(eventRelay).relayTopicEvent(topicEvent);
+        assertNotNull(queueEvent.getId());
+    }
+
+    @Test
+    public void shouldRedeliverInvalidEvents() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        countDown(latch);
+
+        transport.init();
+        transport.start(eventRelay);
+
+        MotechEvent event = new MotechEvent("queue.event");
+        event.setInvalid(true);
+        event.incrementMessageRedeliveryCount();
+        transport.sendEventMessage(event);
+
+        assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+        verify(eventRelay).relayQueueEvent(event);
+    }
+
+    @Test
+    public void shouldQueueEventsUntilStarted() throws Exception {
+        CountDownLatch latch = new CountDownLatch(3);
+        countDown(latch);
+
+        transport.init();
+
+        List<MotechEvent> events = Arrays.asList(new MotechEvent("event.1"), new MotechEvent("event.2"),
+                new MotechEvent("event.3"));
+        EventBatchResult result = transport.sendEventMessages(events);
+
+        assertEquals(3, result.getSentCount());
+        assertEquals(3, transport.getQueueSize());
+
+        transport.start(eventRelay);
+
+        assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldReplayPendingEventsFromJournal() throws Exception {
+        when(motechEventConfig.getLocalJournalDir()).thenReturn(journalDir.getRoot().getAbsolutePath());
+
+        transport.init();
+        transport.sendEventMessage(new MotechEvent("journaled.event"));
+        transport.broadcastEventMessage(new MotechEvent("journaled.broadcast"));
+        transport.destroy();
+
+        CountDownLatch latch = new CountDownLatch(2);
+        countDown(latch);
+
+        transport = new LocalEventTransport();
+        transport.setMotechEventConfig(motechEventConfig);
+        transport.init();
+
+        assertEquals(2, transport.getQueueSize());
+
+        transport.start(eventRelay);
+
+        assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+        verify(eventRelay).relayQueueEvent(createEvent("journaled.event"));
+        verify(eventRelay).relayTopicEvent(createEvent("journaled.broadcast"));
+    }
+
+    @Test
+    public void shouldKeepScheduledRedeliveriesInJournal() throws Exception {
+        when(motechEventConfig.getLocalJournalDir()).thenReturn(journalDir.getRoot().getAbsolutePath());
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(60L);
+
+        transport.init();
+
+        MotechEvent event = new MotechEvent("redelivered.event");
+        event.setInvalid(true);
+        event.incrementMessageRedeliveryCount();
+        transport.sendEventMessage(event);
+        transport.destroy();
+
+        transport = new LocalEventTransport();
+        transport.setMotechEventConfig(motechEventConfig);
+        transport.init();
+
+        assertEquals(1, transport.getQueueSize());
+    }
+
+    private MotechEvent createEvent(String subject) {
+        // events read from the journal have empty, not null, maps
+        MotechEvent event = new MotechEvent(subject);
+        event.getParameters();
+        event.getMetadata();
+        return event;
+    }
+
+    private void countDown(final CountDownLatch latch) {
+        Answer<Void> answer = new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                latch.countDown();
+                return null;
+            }
+        };
+
+        doAnswer(answer).when(eventRelay).relayQueueEvent(any(MotechEvent.class));
+        doAnswer(answer).when(eventRelay).relayTopicEvent(any(MotechEvent.class));
+    }
+}
@@ -0,0 +1,97 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.activemq.ScheduledMessage;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.messaging.MotechEventCodec;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.springframework.integration.MessageHeaders;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MotechEventHeaderMapperTest {
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private MotechEventMessageConverter converter;
+
+    private MotechEventHeaderMapper headerMapper;
+
+    @Before
+    public void setUp() throws JMSException {
+        converter = new MotechEventMessageConverter();
+        converter.setMotechEventConfig(motechEventConfig);
+        converter.setCodecs(Arrays.<MotechEventCodec>asList(new BinaryMotechEventCodec()));
+
+        headerMapper = new MotechEventHeaderMapper();
+        headerMapper.setMotechEventConfig(motechEventConfig);
+
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        when(motechEventConfig.getMessageRedeliveryDelay()).thenReturn(2L);
+        when(session.createBytesMessage()).thenAnswer(new Answer<BytesMessage>() {
+            @Override
+            public BytesMessage answer(InvocationOnMock invocation) {
+                return new ActiveMQBytesMessage();
+            }
+        });
+    }
+
+    @Test
+    public void shouldDelayRedeliveryOfInvalidEvent() throws JMSException {
+        MotechEvent event = new MotechEvent("subject");
+        event.setInvalid(true);
+        event.setMessageRedeliveryCount(3);
+
+        Message message = converter.toMessage(event, session);
+        headerMapper.fromHeaders(new MessageHeaders(new HashMap<String, Object>()), message);
+
+        assertEquals(8000L, message.getLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY));
+    }
+
+    @Test
+    public void shouldNotDelayValidEvent() throws JMSException {
+        Message message = converter.toMessage(new MotechEvent("subject"), session);
+        headerMapper.setScheduledDelay(message);
+
+        assertFalse(message.propertyExists(ScheduledMessage.AMQ_SCHEDULED_DELAY));
+    }
+
+    @Test
+    public void shouldNotDelayMessagesWithoutEventProperties() throws JMSException {
+        Message message = new ActiveMQTextMessage();
+        headerMapper.setScheduledDelay(message);
+
+        assertFalse(message.propertyExists(ScheduledMessage.AMQ_SCHEDULED_DELAY));
+    }
+
+    @Test
+    public void shouldNotDelayMessagesWithoutRedeliveryCount() throws JMSException {
+        Message message = new ActiveMQTextMessage();
+        message.setBooleanProperty(MotechEventMessageConverter.INVALID_PROPERTY, true);
+        headerMapper.setScheduledDelay(message);
+
+        assertFalse(message.propertyExists(ScheduledMessage.AMQ_SCHEDULED_DELAY));
+    }
+}
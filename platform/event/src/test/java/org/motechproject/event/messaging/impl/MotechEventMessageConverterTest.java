@@ -0,0 +1,210 @@
+package org.motechproject.event.messaging.impl;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQObjectMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.domain.TestEventPayload;
+import org.motechproject.event.messaging.MotechEventCodec;
+import org.motechproject.event.messaging.MotechEventConfig;
+import org.springframework.jms.support.converter.MessageConversionException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MotechEventMessageConverterTest {
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MotechEventConfig motechEventConfig;
+
+    private MotechEventMessageConverter converter;
+
+    @Before
+    public void setUp() throws JMSException {
+        converter = new MotechEventMessageConverter();
+        converter.setMotechEventConfig(motechEventConfig);
+        converter.setCodecs(Arrays.<MotechEventCodec>asList(new BinaryMotechEventCodec()));
+
+        when(session.createBytesMessage()).thenAnswer(new Answer<BytesMessage>() {
+            @Override
+            public BytesMessage answer(InvocationOnMock invocation) {
+                return new ActiveMQBytesMessage();
+            }
+        });
+        when(session.createObjectMessage(any(Serializable.class))).thenAnswer(new Answer<ObjectMessage>() {
+            @Override
+            public ObjectMessage answer(InvocationOnMock invocation) throws JMSException {
+                ActiveMQObjectMessage message = new ActiveMQObjectMessage();
+                message.setObject((Serializable) invocation.getArguments()[0]);
+                return message;
+            }
+        });
+        when(session.createTextMessage(anyString())).thenAnswer(new Answer<Message>() {
+            @Override
+            public Message answer(InvocationOnMock invocation) throws JMSException {
+                ActiveMQTextMessage message = new ActiveMQTextMessage();
+                message.setText((String) invocation.getArguments()[0]);
+                return message;
+            }
+        });
+    }
+
+    @Test
+    public void shouldSendAndReceiveEventWithBinaryCodec() throws JMSException {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        MotechEvent event = createEvent();
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message instanceof BytesMessage);
+        assertEquals(BinaryMotechEventCodec.NAME, message.getStringProperty(MotechEventMessageConverter.CODEC_PROPERTY));
+        assertEventProperties(event, message);
+
+        MotechEvent received = (MotechEvent) converter.fromMessage(sent(message));
+
+        assertEquals(event, received);
+        assertEquals(event.getId(), received.getId());
+    }
+
+    @Test
+    public void shouldSendAndReceiveEventWithJavaSerialization() throws JMSException {
+        when(motechEventConfig.getMessageCodec()).thenReturn(MotechEventMessageConverter.SERIALIZABLE_CODEC);
+        MotechEvent event = createEvent();
+
+        Message message = converter.toMessage(event, session);
+
+        assertTrue(message instanceof ObjectMessage);
+        assertFalse(message.propertyExists(MotechEventMessageConverter.CODEC_PROPERTY));
+        assertEventProperties(event, message);
+
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    public void shouldReceiveEventsRegardlessOfConfiguredCodec() throws JMSException {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        MotechEvent event = createEvent();
+        Message message = sent(converter.toMessage(event, session));
+
+        when(motechEventConfig.getMessageCodec()).thenReturn(MotechEventMessageConverter.SERIALIZABLE_CODEC);
+
+        assertEquals(event, converter.fromMessage(message));
+    }
+
+    @Test
+    public void shouldSendValuesOfUnknownTypesWithBinaryCodec() throws JMSException {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("payload", new TestEventPayload());
+
+        Message message = converter.toMessage(new MotechEvent("subject", parameters), session);
+        MotechEvent received = (MotechEvent) converter.fromMessage(sent(message));
+
+        assertTrue(received.getParameters().get("payload") instanceof TestEventPayload);
+    }
+
+    @Test(expected = MessageConversionException.class)
+    public void shouldNotSendValuesWhichCannotBeSerialized() throws JMSException {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("value", new Object());
+
+        converter.toMessage(new MotechEvent("subject", parameters), session);
+    }
+
+    @Test(expected = MessageConversionException.class)
+    public void shouldNotSendEventsWithUnknownCodec() throws JMSException {
+        when(motechEventConfig.getMessageCodec()).thenReturn("unknown");
+
+        converter.toMessage(createEvent(), session);
+    }
+
+    @Test(expected = MessageConversionException.class)
+    public void shouldNotReceiveEventsWrittenWithUnknownCodec() throws JMSException {
+        when(motechEventConfig.getMessageCodec()).thenReturn(BinaryMotechEventCodec.NAME);
+        Message message = converter.toMessage(createEvent(), session);
+        message.setStringProperty(MotechEventMessageConverter.CODEC_PROPERTY, "unknown");
+
+        converter.fromMessage(sent(message));
+    }
+
+    @Test
+    public void shouldConvertMessagesWithoutCodecPropertyAsPlainMessages() throws JMSException {
+        ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        message.writeBytes(new byte[] {1, 2, 3});
+
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) converter.fromMessage(sent(message)));
+    }
+
+    @Test
+    public void shouldConvertOtherObjectsAsPlainMessages() throws JMSException {
+        Message message = converter.toMessage("text", session);
+
+        assertEquals("text", converter.fromMessage(message));
+        assertFalse(message.propertyExists(MotechEventMessageConverter.SUBJECT_PROPERTY));
+    }
+
+    private void assertEventProperties(MotechEvent event, Message message) throws JMSException {
+        assertEquals(event.getSubject(), message.getStringProperty(MotechEventMessageConverter.SUBJECT_PROPERTY));
+        assertEquals(event.getMessageDestination(),
+                message.getStringProperty(MotechEventMessageConverter.DESTINATION_PROPERTY));
+        assertTrue(message.getBooleanProperty(MotechEventMessageConverter.INVALID_PROPERTY));
+        assertEquals(2, message.getIntProperty(MotechEventMessageConverter.REDELIVERY_COUNT_PROPERTY));
+    }
+
+    private Message sent(Message message) throws JMSException {
+        // the producer makes the body of a sent bytes message readable
+        if (message instanceof ActiveMQBytesMessage) {
+            ((ActiveMQBytesMessage) message).reset();
+        }
+        return message;
+    }
+
+    private MotechEvent createEvent() {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("origin", "test");
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("string", "value");
+        parameters.put("long", 10L);
+        parameters.put("date", new Date());
+        parameters.put("list", new ArrayList<>(Arrays.asList("a", "b")));
+
+        MotechEvent event = new MotechEvent("org.motechproject.test.subject", parameters, "callback", metadata);
+        event.setId(UUID.randomUUID());
+        event.setInvalid(true);
+        event.setMessageRedeliveryCount(2);
+        event.setMessageDestination("TestEventListener");
+
+        return event;
+    }
+}
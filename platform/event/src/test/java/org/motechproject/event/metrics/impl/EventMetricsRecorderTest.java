@@ -0,0 +1,105 @@
+package org.motechproject.event.metrics.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.motechproject.event.MotechEvent;
+import org.motechproject.event.metrics.LatencySnapshot;
+import org.motechproject.event.metrics.ListenerMetrics;
+import org.motechproject.event.metrics.SubjectMetrics;
+import org.motechproject.event.utils.MotechEventIdUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventMetricsRecorderTest {
+
+    private EventMetricsRecorder recorder;
+
+    @Before
+    public void setUp() {
+        recorder = new EventMetricsRecorder();
+    }
+
+    @Test
+    public void shouldCountPublishedEventsRetriesAndDiscardsPerSubject() {
+        recorder.eventPublished("subject.a");
+        recorder.eventPublished("subject.a");
+        recorder.eventPublished("subject.b");
+        recorder.eventRetried("subject.a", "listener");
+        recorder.eventDiscarded("subject.a", "listener");
+
+        List<SubjectMetrics> metrics = recorder.getSubjectMetrics();
+
+        assertEquals(2, metrics.size());
+        assertEquals("subject.a", metrics.get(0).getSubject());
+        assertEquals(2, metrics.get(0).getPublished());
+        assertEquals(1, metrics.get(0).getRetries());
+        assertEquals(1, metrics.get(0).getDiscards());
+        assertEquals("subject.b", metrics.get(1).getSubject());
+        assertEquals(1, metrics.get(1).getPublished());
+    }
+
+    @Test
+    public void shouldRecordHandlerLatencyPerListener() {
+        recorder.eventHandled("listener", TimeUnit.MILLISECONDS.toNanos(3), false);
+        recorder.eventHandled("listener", TimeUnit.MILLISECONDS.toNanos(5), true);
+
+        List<ListenerMetrics> metrics = recorder.getListenerMetrics();
+
+        assertEquals(1, metrics.size());
+        ListenerMetrics listenerMetrics = metrics.get(0);
+        assertEquals(1, listenerMetrics.getFailures());
+
+        LatencySnapshot latency = listenerMetrics.getHandlerLatency();
+        assertEquals(2, latency.getCount());
+        assertEquals(4.0, latency.getMeanMillis(), 0.001);
+        assertEquals(5.0, latency.getMaxMillis(), 0.001);
+        // 3 ms falls into the bucket up to 4096 microseconds, 5 ms into the one up to 8192 microseconds
+        assertEquals(4.096, latency.getP50Millis(), 0.001);
+        assertEquals(8.192, latency.getP99Millis(), 0.001);
+    }
+
+    @Test
+    public void shouldRecordDwellTimeFromEventId() {
+        MotechEvent event = new MotechEvent("subject");
+        event.setId(MotechEventIdUtils.newId());
+        recorder.eventReceived(event);
+
+        MotechEvent redelivered = new MotechEvent("subject");
+        redelivered.setId(MotechEventIdUtils.newId());
+        redelivered.incrementMessageRedeliveryCount();
+        recorder.eventReceived(redelivered);
+
+        MotechEvent randomId = new MotechEvent("subject");
+        randomId.setId(UUID.randomUUID());
+        recorder.eventReceived(randomId);
+
+        LatencySnapshot dwellTime = recorder.getSubjectMetrics().get(0).getDwellTime();
+        assertEquals(1, dwellTime.getCount());
+        assertTrue(dwellTime.getMaxMillis() < TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @Test
+    public void shouldClearMetricsOnReset() {
+        recorder.eventPublished("subject");
+        recorder.eventHandled("listener", 1000, false);
+
+        recorder.reset();
+
+        assertTrue(recorder.getSubjectMetrics().isEmpty());
+        assertTrue(recorder.getListenerMetrics().isEmpty());
+    }
+
+    @Test
+    public void shouldPlaceValuesInPowerOfTwoBuckets() {
+        assertEquals(0, LatencyHistogram.bucketOf(999));
+        assertEquals(1, LatencyHistogram.bucketOf(1000));
+        assertEquals(2, LatencyHistogram.bucketOf(2000));
+        assertEquals(2, LatencyHistogram.bucketOf(3999));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+}
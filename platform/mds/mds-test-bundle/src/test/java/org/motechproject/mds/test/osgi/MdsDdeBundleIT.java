@@ -542,6 +542,44 @@ public class MdsDdeBundleIT extends BasePaxIT {
         testMdsEntityService.deleteAll();
     }
 
+    @Test
+    public void testBulkOperations() {
+        List<Book> books = bookDataService.createAll(Arrays.asList(new Book("Book 1"), new Book("Book 2"),
+                new Book("Book 3")));
+
+        assertEquals(3, books.size());
+        assertEquals(3, bookDataService.count());
+
+        // update transient copies, as a client of the REST API would
+        Book first = new Book("Book 1 - 2nd edition");
+        first.setId(books.get(0).getId());
+        Book second = new Book("Book 2 - 2nd edition");
+        second.setId(books.get(1).getId());
+
+        List<Book> updated = bookDataService.updateAll(Arrays.asList(first, second));
+
+        assertEquals(2, updated.size());
+        assertEquals("Book 1 - 2nd edition", bookDataService.findById(books.get(0).getId()).getTitle());
+        assertEquals("Book 2 - 2nd edition", bookDataService.findById(books.get(1).getId()).getTitle());
+        assertEquals("Book 3", bookDataService.findById(books.get(2).getId()).getTitle());
+
+        long deleted = bookDataService.deleteAll(Arrays.asList(books.get(0).getId(), books.get(2).getId(), -1L));
+
+        assertEquals(2, deleted);
+        assertEquals(1, bookDataService.count());
+        assertEquals("Book 2 - 2nd edition", bookDataService.retrieveAll().get(0).getTitle());
+
+        testLookupService.createAll(Arrays.asList(new TestLookup("first", "deleted"),
+                new TestLookup("second", "deleted"), new TestLookup("third", "kept")));
+
+        Map<String, Object> lookupParams = new HashMap<>();
+        lookupParams.put("superClassString", "deleted");
+
+        assertEquals(2, testLookupService.deleteByLookup("By Inherited Field", lookupParams));
+        assertEquals(1, testLookupService.count());
+        assertEquals("third", testLookupService.retrieveAll().get(0).getSomeString());
+    }
+
     @Test
     public void testHistoryTrackingWithRelationships() {
         final District district = new District();
@@ -102,16 +102,19 @@ public class MdsRestController  {
         MdsRestFacade restFacade = restFacadeRetriever.getRestFacade(entityName, moduleName, namespace);
 
         Boolean includeBlob = ParamParser.getIncludeBlob(requestParams);
+        Boolean includeTotal = ParamParser.getIncludeTotal(requestParams);
 
         if (lookupName != null) {
             // lookup
-            return restFacade.executeLookup(lookupName, requestParams, queryParams, includeBlob != null && includeBlob);
+            return restFacade.executeLookup(lookupName, requestParams, queryParams, includeBlob != null && includeBlob,
+                    includeTotal == null || includeTotal);
         } else if (id != null) {
             // retrieve by id
             return restFacade.get(id, includeBlob == null || includeBlob);
         } else {
             // get records
-            return restFacade.get(queryParams, includeBlob != null && includeBlob);
+            return restFacade.get(queryParams, includeBlob != null && includeBlob,
+                    includeTotal == null || includeTotal);
         }
     }
 
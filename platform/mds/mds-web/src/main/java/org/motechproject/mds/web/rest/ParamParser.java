@@ -2,9 +2,12 @@ package org.motechproject.mds.web.rest;
 
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.rest.RestCursor;
 import org.motechproject.mds.util.Order;
 import org.motechproject.mds.web.exception.InvalidParameterException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,6 +23,8 @@ public final class ParamParser {
     public static final String LOOKUP_NAME = "lookup";
     public static final String ID = "id";
     public static final String INCLUDE_BLOB = "includeBlob";
+    public static final String CURSOR = "cursor";
+    public static final String INCLUDE_TOTAL = "includeTotal";
 
     public static QueryParams buildQueryParams(Map<String, String> requestParams) {
         Integer page;
@@ -27,6 +32,7 @@ public final class ParamParser {
         String sortBy;
         String orderDir;
         Order order;
+        List<Object> keyset = null;
 
         try {
             page = getInteger(requestParams, PAGE, 1);
@@ -45,7 +51,24 @@ public final class ParamParser {
 
         order = buildOrder(sortBy, orderDir);
 
-        return new QueryParams(page, pageSize, order);
+        // the id is always the last ordered field, this keeps the pages stable and allows using cursors
+        List<Order> orderList = new ArrayList<>();
+        if (order != null) {
+            orderList.add(order);
+        }
+        if (order == null || !ID.equals(order.getField())) {
+            orderList.add(new Order(ID, Order.Direction.ASC));
+        }
+
+        try {
+            if (requestParams.containsKey(CURSOR)) {
+                keyset = new ArrayList<Object>(RestCursor.decode(requestParams.get(CURSOR)));
+            }
+
+            return new QueryParams(page, pageSize, orderList, keyset);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParameterException("Given cursor is not valid for the requested order!", e);
+        }
     }
 
     public static String getLookupName(Map<String, String> requestParams) {
@@ -66,23 +89,31 @@ public final class ParamParser {
     }
 
     public static Boolean getIncludeBlob(Map<String, String> requestParams) {
+        return getBoolean(requestParams, INCLUDE_BLOB);
+    }
+
+    public static Boolean getIncludeTotal(Map<String, String> requestParams) {
+        return getBoolean(requestParams, INCLUDE_TOTAL);
+    }
+
+    private static Boolean getBoolean(Map<String, String> requestParams, String key) {
 
-        Boolean includeBlob = null;
+        Boolean result = null;
 
-        if (requestParams.containsKey(INCLUDE_BLOB)) {
+        if (requestParams.containsKey(key)) {
 
-            String value = requestParams.get(INCLUDE_BLOB);
+            String value = requestParams.get(key);
 
             if (value.toLowerCase().equals("true")) {
-                includeBlob = Boolean.TRUE;
+                result = Boolean.TRUE;
             } else if (value.toLowerCase().equals("false")) {
-                includeBlob = Boolean.FALSE;
+                result = Boolean.FALSE;
             } else {
-                throw new InvalidParameterException("The \"includeBlob\" is neither \"true\" nor \"false\"");
+                throw new InvalidParameterException(String.format("The \"%s\" is neither \"true\" nor \"false\"", key));
             }
         }
 
-        return includeBlob;
+        return result;
     }
 
     private static Integer getInteger(Map<String, String> requestParams, String key, Integer defaultVal) {
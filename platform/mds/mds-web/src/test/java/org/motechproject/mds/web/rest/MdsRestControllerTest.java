@@ -179,7 +179,7 @@ public class MdsRestControllerTest {
     public void shouldReturn404WhenResultNotFoundForSingleValueLookup() throws Exception {
         when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
                 .thenReturn(restFacade);
-        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean()))
+        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean(), anyBoolean()))
                 .thenThrow(new RestNoLookupResultException("No result found!"));
 
         String url = buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE) + "?lookup=" + LOOKUP_NAME + "&" + LOOKUP_PAGINATION_STR;
@@ -194,7 +194,7 @@ public class MdsRestControllerTest {
         when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
                 .thenReturn(restFacade);
 
-        when(restFacade.get(any(QueryParams.class), anyBoolean()))
+        when(restFacade.get(any(QueryParams.class), anyBoolean(), anyBoolean()))
                 .thenThrow(new RestOperationNotSupportedException("not supported"));
         doThrow(new RestOperationNotSupportedException("not supported")).
                 when(restFacade).create(any(InputStream.class));
@@ -315,28 +315,28 @@ public class MdsRestControllerTest {
     public void shouldReturn404ForNotExistingLookups() throws Exception {
         when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
                 .thenReturn(restFacade);
-        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean()))
+        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean(), anyBoolean()))
                 .thenThrow(new RestLookupNotFoundException(LOOKUP_NAME));
 
         mockMvc.perform(
                 get(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE) + "?lookup=" + LOOKUP_NAME)
         ).andExpect(status().isNotFound());
 
-        verify(restFacade).executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean());
+        verify(restFacade).executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean(), anyBoolean());
     }
 
     @Test
     public void shouldReturn403ForForbiddenLookups() throws Exception {
         when(restFacadeRetriever.getRestFacade(ENTITY_NAME, MODULE_NAME, NAMESPACE))
                 .thenReturn(restFacade);
-        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean()))
+        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean(), anyBoolean()))
                 .thenThrow(new RestLookupExecutionForbiddenException(LOOKUP_NAME));
 
         mockMvc.perform(
                 get(buildUrl(ENTITY_NAME, MODULE_NAME, NAMESPACE) + "?lookup=" + LOOKUP_NAME)
         ).andExpect(status().isForbidden());
 
-        verify(restFacade).executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean());
+        verify(restFacade).executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean(), anyBoolean());
     }
 
     // general errors
@@ -396,7 +396,7 @@ public class MdsRestControllerTest {
 
         when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
                 .thenReturn(restFacade);
-        when(restFacade.get(any(QueryParams.class), anyBoolean())).thenReturn(response);
+        when(restFacade.get(any(QueryParams.class), anyBoolean(), anyBoolean())).thenReturn(response);
 
         when(restFacade.get(1l, true)).thenReturn(response2);
 
@@ -413,7 +413,7 @@ public class MdsRestControllerTest {
          .andExpect(content().string(objectMapper.writeValueAsString(response2)));
 
         ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
-        verify(restFacade).get(captor.capture(), anyBoolean());
+        verify(restFacade).get(captor.capture(), anyBoolean(), anyBoolean());
         ArgumentCaptor<Long> longCaptor = ArgumentCaptor.forClass(Long.class);
         verify(restFacade).get(longCaptor.capture(), anyBoolean());
 
@@ -478,7 +478,7 @@ public class MdsRestControllerTest {
                 RestProjection.createProjectionCollection(records, fields, new ArrayList<String>()));
         when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
                 .thenReturn(restFacade);
-        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean()))
+        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean(), anyBoolean()))
                 .thenReturn(response);
 
         String url;
@@ -501,7 +501,7 @@ public class MdsRestControllerTest {
         final TestRecord record = new TestRecord("T1", 5);
         when(restFacadeRetriever.getRestFacade(entityName, moduleName, namespace))
                 .thenReturn(restFacade);
-        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean()))
+        when(restFacade.executeLookup(eq(LOOKUP_NAME), any(Map.class), any(QueryParams.class), anyBoolean(), anyBoolean()))
                 .thenReturn(record);
 
         String url;
@@ -523,7 +523,7 @@ public class MdsRestControllerTest {
         ArgumentCaptor<Map> lookupMapCaptor = ArgumentCaptor.forClass(Map.class);
         ArgumentCaptor<QueryParams> queryParamsCaptor = ArgumentCaptor.forClass(QueryParams.class);
 
-        verify(restFacade).executeLookup(eq(LOOKUP_NAME), lookupMapCaptor.capture(), queryParamsCaptor.capture(), anyBoolean());
+        verify(restFacade).executeLookup(eq(LOOKUP_NAME), lookupMapCaptor.capture(), queryParamsCaptor.capture(), anyBoolean(), anyBoolean());
 
         Map lookupMap = lookupMapCaptor.getValue();
         assertEquals("something", lookupMap.get("strField"));
@@ -540,6 +540,9 @@ public class MdsRestControllerTest {
         assertNotNull(order);
         assertEquals("name", order.getField());
         assertEquals(Order.Direction.DESC, order.getDirection());
+        // the id is appended, so that the pages are stable
+        assertEquals(2, queryParams.getOrderList().size());
+        assertEquals("id", queryParams.getOrderList().get(1).getField());
     }
 
     private String buildUrl(String entityName, String moduleName, String namespace) {
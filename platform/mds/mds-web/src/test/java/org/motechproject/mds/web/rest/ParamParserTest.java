@@ -2,12 +2,16 @@ package org.motechproject.mds.web.rest;
 
 import org.junit.Test;
 import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.rest.RestCursor;
 import org.motechproject.mds.util.Order;
+import org.motechproject.mds.web.exception.InvalidParameterException;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -27,18 +31,22 @@ public class ParamParserTest {
         assertEquals(Integer.valueOf(14), queryParams.getPage());
         assertEquals(Integer.valueOf(120), queryParams.getPageSize());
         assertNotNull(queryParams.getOrderList());
-        assertEquals(1, queryParams.getOrderList().size());
+        assertEquals(2, queryParams.getOrderList().size());
         assertEquals("someColumn", queryParams.getOrderList().get(0).getField());
         assertEquals(Order.Direction.DESC, queryParams.getOrderList().get(0).getDirection());
+        assertEquals("id", queryParams.getOrderList().get(1).getField());
+        assertEquals(Order.Direction.ASC, queryParams.getOrderList().get(1).getDirection());
+        assertFalse(queryParams.isKeysetSet());
 
-        // null order
+        // null order, only the id is used
 
         requestParams.remove("sort");
         requestParams.remove("order");
 
         queryParams = ParamParser.buildQueryParams(requestParams);
 
-        assertTrue(queryParams.getOrderList().isEmpty());
+        assertEquals(1, queryParams.getOrderList().size());
+        assertEquals("id", queryParams.getOrderList().get(0).getField());
 
         // default order direction
 
@@ -47,9 +55,59 @@ public class ParamParserTest {
         queryParams = ParamParser.buildQueryParams(requestParams);
 
         assertNotNull(queryParams.getOrderList());
-        assertEquals(1, queryParams.getOrderList().size());
+        assertEquals(2, queryParams.getOrderList().size());
         assertEquals("anotherColumn", queryParams.getOrderList().get(0).getField());
         assertEquals(Order.Direction.ASC, queryParams.getOrderList().get(0).getDirection());
+
+        // ordering by id only
+
+        requestParams.put("sort", "id");
+        requestParams.put("order", "desc");
+
+        queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertEquals(1, queryParams.getOrderList().size());
+        assertEquals(Order.Direction.DESC, queryParams.getOrderList().get(0).getDirection());
+    }
+
+    @Test
+    public void shouldBuildQueryParamsWithCursor() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("pageSize", "50");
+        requestParams.put("sort", "someColumn");
+        requestParams.put("cursor", RestCursor.encode(asList("value", "15")));
+
+        QueryParams queryParams = ParamParser.buildQueryParams(requestParams);
+
+        assertTrue(queryParams.isKeysetSet());
+        assertEquals(asList((Object) "value", "15"), queryParams.getKeyset());
+        assertEquals(Integer.valueOf(50), queryParams.getPageSize());
+        assertEquals(2, queryParams.getOrderList().size());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void shouldRejectCursorNotMatchingOrder() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("cursor", RestCursor.encode(asList("value", "15")));
+
+        ParamParser.buildQueryParams(requestParams);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void shouldRejectInvalidCursor() {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("cursor", "not a cursor");
+
+        ParamParser.buildQueryParams(requestParams);
+    }
+
+    @Test
+    public void shouldGetIncludeTotal() {
+        Map<String, String> requestParams = new HashMap<>();
+        assertNull(ParamParser.getIncludeTotal(requestParams));
+
+        requestParams.put("includeTotal", "false");
+        assertEquals(Boolean.FALSE, ParamParser.getIncludeTotal(requestParams));
     }
 
     @Test
@@ -52,6 +52,8 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.BLOB_DES
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_BODY_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_ID_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CURSOR_DESC_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CURSOR_PARAM;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.DELETE_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.DELETE_ID_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.DELETE_ID_PARAM_KEY;
@@ -59,6 +61,8 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.HTTP;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ID_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ID_PATHVAR;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INCLUDE_BLOB_PARAM;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INCLUDE_TOTAL_DESC_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INCLUDE_TOTAL_PARAM;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT32_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT64_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INTEGER_TYPE;
@@ -350,6 +354,8 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         parameters.add(pageSizeParameter(locale));
         parameters.add(sortParameter(restExposedFields, locale));
         parameters.add(orderParameter(locale));
+        parameters.add(cursorParameter(locale));
+        parameters.add(includeTotalParameter(locale));
         if (hasBlobField(restExposedFields)) {
             parameters.add(includeBlobParameter(locale));
         }
@@ -407,6 +413,17 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         return orderParameter;
     }
 
+    private Parameter cursorParameter(Locale locale) {
+        return queryParameter(CURSOR_PARAM, msg(locale, CURSOR_DESC_KEY), STRING_TYPE);
+    }
+
+    private Parameter includeTotalParameter(Locale locale) {
+        Parameter includeTotalParameter = queryParameter(INCLUDE_TOTAL_PARAM, msg(locale, INCLUDE_TOTAL_DESC_KEY),
+                STRING_TYPE);
+        includeTotalParameter.setEnumValues(Arrays.asList("true", "false"));
+        return includeTotalParameter;
+    }
+
     private Parameter includeBlobParameter(Locale locale) {
         Parameter includeBlobParameter = queryParameter(INCLUDE_BLOB_PARAM, msg(locale, BLOB_DESC_KEY), STRING_TYPE);
         includeBlobParameter.setEnumValues(Arrays.asList("true", "false"));
@@ -563,6 +580,7 @@ public class SwaggerGenerator implements RestDocumentationGenerator {
         properties.put("totalCount", new Property(INTEGER_TYPE, INT64_FORMAT));
         properties.put("page", new Property(INTEGER_TYPE, INT32_FORMAT));
         properties.put("pageSize", new Property(INTEGER_TYPE, INT32_FORMAT));
+        properties.put("nextCursor", new Property(STRING_TYPE));
 
         final List<String> required = new ArrayList<>();
         required.add("totalCount");
@@ -27,12 +27,30 @@ public class ExportWriter {
     }
 
     public void export() throws IOException {
-        jsonWriter.beginArray();
+        beginExport();
         for (ImportExportBlueprint.Record record : exportContext.getBlueprint()) {
-            EntryWriter entryWriter = beginEntry(record);
-            entryWriter.write();
-            endEntry();
+            exportEntry(record);
         }
+        endExport();
+    }
+
+    public void beginExport() throws IOException {
+        jsonWriter.beginArray();
+    }
+
+    /**
+     * Writes a single entry of the export, so that callers can scope the schema reads of every entity separately.
+     *
+     * @param record the blueprint record of the exported entity
+     * @throws IOException if the entry could not be written
+     */
+    public void exportEntry(ImportExportBlueprint.Record record) throws IOException {
+        EntryWriter entryWriter = beginEntry(record);
+        entryWriter.write();
+        endEntry();
+    }
+
+    public void endExport() throws IOException {
         jsonWriter.endArray();
     }
 
@@ -12,8 +12,8 @@ import org.motechproject.mds.repository.internal.AllTypes;
 import org.motechproject.mds.service.MotechDataService;
 import org.osgi.framework.BundleContext;
 
+import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -22,11 +22,12 @@ import java.util.Set;
 
 /**
  * The <code>ImportContext</code> class holds all data needed in import process. It also provides methods
- * that must be executed in a proper context.
+ * that must be executed in a proper context. The context must be closed once the import ends, which releases the
+ * files holding the ids of the imported instances.
  *
  * @see org.motechproject.mds.domain.ImportExportBlueprint
  */
-public class ImportContext {
+public class ImportContext implements Closeable {
 
     private ImportExportBlueprint blueprint;
     private BundleContext bundleContext;
@@ -36,7 +37,7 @@ public class ImportContext {
     private List<Entity> resolvedEntities;
     private List<Entity> unresolvedEntities;
     private Set<String> affectedModules;
-    private Map<String, Map<Long, Object>> importedInstances;
+    private Map<String, ReferenceIdMap> importedInstanceIds;
 
     public ImportContext(ImportExportBlueprint blueprint, BundleContext bundleContext,
                          AllEntities allEntities, AllTypes allTypes, RelationshipResolver relationshipResolver) {
@@ -48,7 +49,7 @@ public class ImportContext {
         this.resolvedEntities = new ArrayList<>();
         this.unresolvedEntities = new ArrayList<>();
         this.affectedModules = new HashSet<>();
-        this.importedInstances = new HashMap<>();
+        this.importedInstanceIds = new HashMap<>();
     }
 
     public Entity setupNewEntity(String entityName) {
@@ -117,33 +118,37 @@ public class ImportContext {
         return affectedModules.toArray(new String[affectedModules.size()]);
     }
 
-    public Object getInstanceOfEntity(String entityClassName, Long refId) {
-        Map<Long, Object> entityInstances = importedInstances.get(entityClassName);
-        if (null != entityInstances) {
-            return entityInstances.get(refId);
+    /**
+     * Returns the database id of an instance imported before.
+     *
+     * @param entityClassName the class name of the instance entity
+     * @param refId the reference id of the instance, used in the import file
+     * @return the id of the instance, or null if no such instance was imported
+     */
+    public Long getInstanceId(String entityClassName, Long refId) {
+        ReferenceIdMap entityInstanceIds = importedInstanceIds.get(entityClassName);
+        if (null != entityInstanceIds && null != refId) {
+            return entityInstanceIds.get(refId);
         } else {
             return null;
         }
     }
 
-    public Collection<Object> getInstancesOfEntity(String entityClassName, List<Long> refIds) {
-        List<Object> instances = new ArrayList<>(refIds.size());
-        for (Long refId : refIds) {
-            Object instance = getInstanceOfEntity(entityClassName, refId);
-            if (null != instance) {
-                instances.add(instance);
-            }
-        }
-        return instances;
-    }
-
-    public void putInstanceOfEntity(String entityClassName, long refId, Object instance) {
-        Map<Long, Object> importedEntityInstances = importedInstances.get(entityClassName);
-        if (null == importedEntityInstances) {
-            importedEntityInstances = new HashMap<>();
-            importedInstances.put(entityClassName, importedEntityInstances);
+    /**
+     * Stores the database id of an imported instance, so that the instances imported later can refer to it.
+     * Only the ids are kept, the instances themselves can be retrieved again when needed.
+     *
+     * @param entityClassName the class name of the instance entity
+     * @param refId the reference id of the instance, used in the import file
+     * @param id the id of the instance in the database
+     */
+    public void putInstanceId(String entityClassName, long refId, long id) {
+        ReferenceIdMap entityInstanceIds = importedInstanceIds.get(entityClassName);
+        if (null == entityInstanceIds) {
+            entityInstanceIds = new ReferenceIdMap();
+            importedInstanceIds.put(entityClassName, entityInstanceIds);
         }
-        importedEntityInstances.put(refId, instance);
+        entityInstanceIds.put(refId, id);
     }
 
     public void removeExistingInstances() {
@@ -151,4 +156,15 @@ public class ImportContext {
             getDataService(entity.getClassName()).deleteAll();
         }
     }
+
+    /**
+     * Releases the ids of the imported instances.
+     */
+    @Override
+    public void close() {
+        for (ReferenceIdMap entityInstanceIds : importedInstanceIds.values()) {
+            entityInstanceIds.close();
+        }
+        importedInstanceIds.clear();
+    }
 }
@@ -78,9 +78,7 @@ public class ImportReader {
             if (entryReader.isDataIncluded(importContext.getBlueprint()) && entryReader.isImportable() && entryReader.isResolved()) {
                 entryReader.skipSchema();
                 InstancesReader instancesReader = entryReader.beginInstances();
-                while (instancesReader.hasNext()) {
-                    instancesReader.importInstance();
-                }
+                instancesReader.importInstances();
                 entryReader.endInstances();
             } else {
                 entryReader.skip();
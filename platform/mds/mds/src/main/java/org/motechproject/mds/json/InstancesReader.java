@@ -7,19 +7,26 @@ import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.RelationshipHolder;
 import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.crypto.codec.Base64;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The <code>InstancesReader</code> class is a wrapper for JsonReader that provides methods to deserialize entity
- * instances from underlying reader that were previously written by InstancesWriter.
+ * instances from underlying reader that were previously written by InstancesWriter. Instances are created in chunks,
+ * each with a single bulk operation. Related instances are retrieved for the whole chunk at once, using the ids
+ * of the instances imported before, which are held by the {@link ImportContext}.
  *
  * @see org.motechproject.mds.domain.Entity
  * @see org.motechproject.mds.domain.Field
@@ -30,50 +37,149 @@ import java.util.Map;
 public class InstancesReader {
     private static final Logger LOGGER = LoggerFactory.getLogger(InstancesReader.class);
 
+    private static final int IMPORT_CHUNK_SIZE = 500;
+
     private JsonReader jsonReader;
     private Entity entity;
     private ImportContext importContext;
     private ObjectReader objectReader;
     private MotechDataService dataService;
+    private int chunkSize;
+
+    private List<PendingInstance> chunk = new ArrayList<>();
+    private Set<Long> chunkRefIds = new HashSet<>();
 
     public InstancesReader(JsonReader jsonReader, Entity entity, ImportContext importContext) {
+        this(jsonReader, entity, importContext, IMPORT_CHUNK_SIZE);
+    }
+
+    InstancesReader(JsonReader jsonReader, Entity entity, ImportContext importContext, int chunkSize) {
         this.jsonReader = jsonReader;
         this.entity = entity;
         this.importContext = importContext;
         this.dataService = importContext.getDataService(entity.getClassName());
         this.objectReader = new ObjectReader(jsonReader);
+        this.chunkSize = chunkSize;
     }
 
     public boolean hasNext() throws IOException {
         return jsonReader.hasNext();
     }
 
+    /**
+     * Imports all the remaining instances from the underlying reader.
+     */
+    public void importInstances() throws IOException {
+        while (hasNext()) {
+            importInstance();
+        }
+        flush();
+    }
+
+    /**
+     * Reads the next instance. It is created together with the rest of its chunk, once the chunk is full or
+     * {@link #flush()} is called.
+     */
     public void importInstance() throws IOException {
         try {
-            Object instance = dataService.getClassType().newInstance();
-            Long refId = null;
+            PendingInstance pending = new PendingInstance(dataService.getClassType().newInstance());
             jsonReader.beginObject();
             while (jsonReader.hasNext()) {
                 String fieldName = objectReader.readName();
                 if ("refId".equals(fieldName)) {
-                    refId = jsonReader.nextLong();
+                    pending.refId = jsonReader.nextLong();
                 } else {
                     Field field = entity.getField(fieldName);
-                    readProperty(instance, field);
+                    readProperty(pending, field);
                 }
             }
             jsonReader.endObject();
-            if (null != refId) {
-                importContext.putInstanceOfEntity(entity.getClassName(), refId, dataService.create(instance));
+            if (null != pending.refId) {
+                chunk.add(pending);
+                chunkRefIds.add(pending.refId);
+            }
+            if (chunk.size() >= chunkSize) {
+                flush();
             }
         } catch (InstantiationException | IllegalAccessException e) {
             LOGGER.error("Exception occurred during importing instances", e);
         }
     }
 
-    private void readProperty(Object instance, Field field) throws IOException {
+    /**
+     * Creates the instances read so far.
+     */
+    public void flush() {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        setRelatedInstances();
+
+        List<Object> instances = new ArrayList<>(chunk.size());
+        for (PendingInstance pending : chunk) {
+            instances.add(pending.instance);
+        }
+
+        List<?> created = dataService.createAll(instances);
+        for (int i = 0; i < chunk.size(); ++i) {
+            Long id = (Long) PropertyUtil.safeGetProperty(created.get(i), Constants.Util.ID_FIELD_NAME);
+            importContext.putInstanceId(entity.getClassName(), chunk.get(i).refId, id);
+        }
+
+        chunk.clear();
+        chunkRefIds.clear();
+    }
+
+    private void setRelatedInstances() {
+        Map<String, Set<Long>> idsByClass = new HashMap<>();
+        for (PendingInstance pending : chunk) {
+            for (PendingRelationship relationship : pending.relationships) {
+                if (relationship.ids.isEmpty()) {
+                    continue;
+                }
+                String relatedClass = relationship.holder.getRelatedClass();
+                if (!idsByClass.containsKey(relatedClass)) {
+                    idsByClass.put(relatedClass, new HashSet<Long>());
+                }
+                idsByClass.get(relatedClass).addAll(relationship.ids);
+            }
+        }
+
+        Map<String, Map<Long, Object>> relatedInstances = new HashMap<>();
+        for (Map.Entry<String, Set<Long>> entry : idsByClass.entrySet()) {
+            Map<Long, Object> instancesById = new HashMap<>();
+            List<?> found = importContext.getDataService(entry.getKey()).findByIds(entry.getValue());
+            for (Object instance : found) {
+                instancesById.put((Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME), instance);
+            }
+            relatedInstances.put(entry.getKey(), instancesById);
+        }
+
+        for (PendingInstance pending : chunk) {
+            for (PendingRelationship relationship : pending.relationships) {
+                Map<Long, Object> instancesById = relatedInstances.get(relationship.holder.getRelatedClass());
+                List<Object> related = new ArrayList<>(relationship.ids.size());
+                for (Long id : relationship.ids) {
+                    Object relatedInstance = null != instancesById ? instancesById.get(id) : null;
+                    if (null != relatedInstance) {
+                        related.add(relatedInstance);
+                    }
+                }
+
+                if (relationship.holder.isManyToMany() || relationship.holder.isOneToMany()) {
+                    PropertyUtil.safeSetCollectionProperty(pending.instance, relationship.field.getName(), related);
+                } else if (!related.isEmpty()) {
+                    PropertyUtil.safeSetProperty(pending.instance, relationship.field.getName(), related.get(0));
+                }
+            }
+        }
+    }
+
+    private void readProperty(PendingInstance pending, Field field) throws IOException {
+        Object instance = pending.instance;
         if (field.getType().isRelationship()) {
-            readRelationshipProperty(field, instance);
+            readRelationshipProperty(field, pending);
         } else if (field.getType().isCombobox()) {
             readComboboxProperty(field, instance);
         } else if (field.getType().isMap()) {
@@ -127,20 +233,62 @@ public class InstancesReader {
         }
     }
 
-    private void readRelationshipProperty(Field field, Object instance) throws IOException {
+    private void readRelationshipProperty(Field field, PendingInstance pending) throws IOException {
         RelationshipHolder relationshipHolder = new RelationshipHolder(field);
+        List<Long> refIds = null;
         if (relationshipHolder.isManyToOne() || relationshipHolder.isOneToOne()) {
             Long refId = objectReader.readLong();
             if (null != refId) {
-                Object relatedInstance = importContext.getInstanceOfEntity(relationshipHolder.getRelatedClass(), refId);
-                PropertyUtil.safeSetProperty(instance, field.getName(), relatedInstance);
+                refIds = new ArrayList<>();
+                refIds.add(refId);
             }
         } else if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
-            List<Long> refIds = objectReader.readLongArray();
-            if (null != refIds) {
-                Collection<Object> relatedInstances = importContext.getInstancesOfEntity(relationshipHolder.getRelatedClass(), refIds);
-                PropertyUtil.safeSetCollectionProperty(instance, field.getName(), relatedInstances);
+            refIds = objectReader.readLongArray();
+        }
+
+        if (null != refIds) {
+            String relatedClass = relationshipHolder.getRelatedClass();
+            if (entity.getClassName().equals(relatedClass) && !Collections.disjoint(refIds, chunkRefIds)) {
+                // the instance refers to an instance from its own chunk, which must be created first
+                flush();
             }
+
+            List<Long> ids = new ArrayList<>(refIds.size());
+            for (Long refId : refIds) {
+                Long id = importContext.getInstanceId(relatedClass, refId);
+                if (null != id) {
+                    ids.add(id);
+                }
+            }
+            pending.relationships.add(new PendingRelationship(field, relationshipHolder, ids));
+        }
+    }
+
+    /**
+     * An instance read from the file, but not created yet, together with its relationships.
+     */
+    private static class PendingInstance {
+        private final Object instance;
+        private final List<PendingRelationship> relationships = new ArrayList<>();
+        private Long refId;
+
+        PendingInstance(Object instance) {
+            this.instance = instance;
+        }
+    }
+
+    /**
+     * The ids of the instances related through a single relationship field.
+     */
+    private static class PendingRelationship {
+        private final Field field;
+        private final RelationshipHolder holder;
+        private final List<Long> ids;
+
+        PendingRelationship(Field field, RelationshipHolder holder, List<Long> ids) {
+            this.field = field;
+            this.holder = holder;
+            this.ids = ids;
         }
     }
 }
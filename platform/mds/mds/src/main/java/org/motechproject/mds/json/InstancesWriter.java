@@ -6,10 +6,15 @@ import org.motechproject.mds.domain.ComboboxHolder;
 import org.motechproject.mds.domain.Entity;
 import org.motechproject.mds.domain.Field;
 import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.exception.importexport.ImportExportException;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.service.impl.csv.ExportChunkReader;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.mds.util.PropertyUtil;
 import org.springframework.security.crypto.codec.Base64;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -23,6 +28,9 @@ import java.util.Map;
  * instances. Generated json contains array of instances objects definition where properties corresponds to entity
  * fields names and their values are appropriate formatted. It also contains one additional property: refId.
  * It is used to identify instance in the scope of generated file and it is required for relationships handling.
+ * Instances are retrieved in chunks, ordered by their ids, and every chunk is read and written in its own transaction
+ * of the entity data service, so only a single chunk is kept in memory at once. The written instances are therefore
+ * not a snapshot of a single transaction, see {@link ExportChunkReader}.
  *
  * @see org.motechproject.mds.domain.Entity
  * @see org.motechproject.mds.domain.Field
@@ -32,26 +40,55 @@ import java.util.Map;
  */
 public class InstancesWriter {
 
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
     private JsonWriter jsonWriter;
     private Entity entity;
     private MotechDataService dataService;
     private ObjectWriter objectWriter;
+    private int chunkSize;
 
     public InstancesWriter(JsonWriter jsonWriter, Entity entity, ExportContext exportContext) {
+        this(jsonWriter, entity, exportContext, EXPORT_CHUNK_SIZE);
+    }
+
+    InstancesWriter(JsonWriter jsonWriter, Entity entity, ExportContext exportContext, int chunkSize) {
         this.jsonWriter = jsonWriter;
         this.entity = entity;
         this.dataService = exportContext.getDataService(entity.getClassName());
         this.objectWriter = new ObjectWriter(jsonWriter);
+        this.chunkSize = chunkSize;
     }
 
     public void writeInstances() throws IOException {
+        ExportChunkReader chunkReader = new ExportChunkReader(dataService, null, entity.getClassName(), null, null,
+                QueryParams.ORDER_ID_ASC, chunkSize);
+
         jsonWriter.beginArray();
-        for (Object instance : dataService.retrieveAll()) {
-            writeInstance(instance);
+        while (writeChunk(chunkReader) > 0) {
+            // nothing from the chunk is kept once it was written
+            jsonWriter.flush();
         }
         jsonWriter.endArray();
     }
 
+    private int writeChunk(final ExportChunkReader chunkReader) {
+        return (Integer) dataService.doInTransaction(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                List<Object> chunk = chunkReader.nextChunk();
+                try {
+                    for (Object instance : chunk) {
+                        writeInstance(instance);
+                    }
+                } catch (IOException e) {
+                    throw new ImportExportException("An IO error occurred during export.", e);
+                }
+                return chunk.size();
+            }
+        });
+    }
+
     public void writeInstance(Object instance) throws IOException {
         jsonWriter.beginObject();
         writeInstanceReferenceId(instance);
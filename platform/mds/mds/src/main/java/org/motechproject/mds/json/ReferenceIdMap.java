@@ -0,0 +1,179 @@
+package org.motechproject.mds.json;
+
+import org.motechproject.mds.exception.importexport.ImportExportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The <code>ReferenceIdMap</code> class maps the reference ids of imported instances, used in the import file, to
+ * the ids of the instances created in the database. The entries are kept in an open addressing hash table stored in
+ * a memory mapped temporary file and take 16 bytes each, so that importing millions of instances requires neither
+ * keeping the instances, nor their boxed ids on the heap. The operating system pages the table in and out as needed.
+ * When the table grows, the mapping of the old table is released right away. The mapping of the current table is
+ * released when the map is closed. Neither waits for the garbage collector.
+ *
+ * @see org.motechproject.mds.json.ImportContext
+ */
+class ReferenceIdMap implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceIdMap.class);
+
+    private static final String FILE_PREFIX = "mds_import_ids_";
+    private static final String FILE_SUFFIX = ".tmp";
+
+    // keys are stored xor-ed with this value, so that the zeroes of a new file mark empty slots
+    private static final long KEY_MASK = Long.MIN_VALUE;
+    private static final int ENTRY_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+
+    ReferenceIdMap() {
+        this.capacity = INITIAL_CAPACITY;
+        this.table = allocate(capacity);
+    }
+
+    public void put(long refId, long id) {
+        checkOpen();
+        if (refId == KEY_MASK) {
+            throw new IllegalArgumentException("Invalid reference id: " + refId);
+        }
+        // keep the load factor below 0.75
+        if ((size + 1) * 4L > capacity * 3L) {
+            grow();
+        }
+        if (insert(table, capacity, refId ^ KEY_MASK, id)) {
+            size++;
+        }
+    }
+
+    public Long get(long refId) {
+        checkOpen();
+        long storedKey = refId ^ KEY_MASK;
+        int mask = capacity - 1;
+        for (int slot = hash(refId) & mask; ; slot = (slot + 1) & mask) {
+            long key = table.getLong(slot * ENTRY_SIZE);
+            if (key == 0) {
+                return null;
+            } else if (key == storedKey) {
+                return table.getLong(slot * ENTRY_SIZE + 8);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Releases the memory mapping of the table. The map cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (table != null) {
+            release(table);
+            table = null;
+        }
+    }
+
+    private void checkOpen() {
+        if (table == null) {
+            throw new IllegalStateException("The map of imported instance ids has already been closed");
+        }
+    }
+
+    private void grow() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Unable to keep track of more than " + size + " imported instances");
+        }
+
+        int newCapacity = capacity * 2;
+        ByteBuffer newTable = allocate(newCapacity);
+        for (int slot = 0; slot < capacity; ++slot) {
+            long key = table.getLong(slot * ENTRY_SIZE);
+            if (key != 0) {
+                insert(newTable, newCapacity, key, table.getLong(slot * ENTRY_SIZE + 8));
+            }
+        }
+
+        ByteBuffer oldTable = table;
+        table = newTable;
+        capacity = newCapacity;
+        release(oldTable);
+    }
+
+    private static boolean insert(ByteBuffer table, int capacity, long storedKey, long id) {
+        int mask = capacity - 1;
+        for (int slot = hash(storedKey ^ KEY_MASK) & mask; ; slot = (slot + 1) & mask) {
+            long key = table.getLong(slot * ENTRY_SIZE);
+            if (key == 0 || key == storedKey) {
+                table.putLong(slot * ENTRY_SIZE, storedKey);
+                table.putLong(slot * ENTRY_SIZE + 8, id);
+                return key == 0;
+            }
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        try {
+            File file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX);
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                // the mapping stays valid after the file is closed and removed
+                return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                        (long) capacity * ENTRY_SIZE);
+            } finally {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new ImportExportException("Unable to create the file for the ids of imported instances", e);
+        }
+    }
+
+    private static void release(ByteBuffer buffer) {
+        // there is no public API for unmapping a buffer, Java 8 exposes the cleaner of the buffer, later versions
+        // clean it through Unsafe
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            Method cleanMethod = cleaner.getClass().getMethod("clean");
+            cleanMethod.setAccessible(true);
+            cleanMethod.invoke(cleaner);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafeField.get(null), buffer);
+            } catch (ReflectiveOperationException | RuntimeException unsafeException) {
+                LOGGER.debug("Unable to release the mapping of imported instance ids, it will be released by the "
+                        + "garbage collector", unsafeException);
+            }
+        }
+    }
+
+    private static int hash(long refId) {
+        // the finalizer of MurmurHash3, spreads the sequential ids over the whole table
+        long hash = refId;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+}
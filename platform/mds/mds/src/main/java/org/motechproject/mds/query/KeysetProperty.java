@@ -0,0 +1,83 @@
+package org.motechproject.mds.query;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The <code>KeysetProperty</code> class represents a property that will be used in JDO query
+ * and restricts the results to instances ordered after the instance with the given values of
+ * the ordered fields. For the ordering {@code a ASC, id ASC} the filter has the form
+ * {@code (a > param0k0 || (a == param0k0 && id > param0k1))}.
+ *
+ * @see org.motechproject.mds.query.QueryParams#getKeyset()
+ */
+public class KeysetProperty extends Property<List<Object>> {
+
+    private final List<Order> orderList;
+
+    public KeysetProperty(List<Order> orderList, List<Object> keyset) {
+        super(fieldNames(orderList), keyset, null);
+        this.orderList = orderList;
+    }
+
+    public List<Order> getOrderList() {
+        return orderList;
+    }
+
+    @Override
+    protected CharSequence generateFilter(int idx) {
+        List<String> alternatives = new ArrayList<>(orderList.size());
+
+        for (int i = 0; i < orderList.size(); ++i) {
+            StringBuilder sb = new StringBuilder();
+
+            // {field} == param{idx}k{j} for the preceding fields
+            for (int j = 0; j < i; ++j) {
+                sb.append(orderList.get(j).getField()).append(" == param").append(idx).append('k').append(j)
+                        .append(" && ");
+            }
+
+            Order order = orderList.get(i);
+            String operator = order.getDirection() == Order.Direction.DESC ? " < " : " > ";
+            sb.append(order.getField()).append(operator).append("param").append(idx).append('k').append(i);
+
+            alternatives.add(i == 0 ? sb.toString() : "(" + sb + ")");
+        }
+
+        return "(" + StringUtils.join(alternatives, " || ") + ")";
+    }
+
+    @Override
+    protected CharSequence generateDeclareParameter(int idx) {
+        List<String> parameters = new ArrayList<>(getValue().size());
+
+        for (int i = 0; i < getValue().size(); ++i) {
+            // {type} param{idx}k{i}
+            parameters.add(String.format("%s param%dk%d", getValue().get(i).getClass().getName(), idx, i));
+        }
+
+        return StringUtils.join(parameters, ", ");
+    }
+
+    @Override
+    public Collection unwrap() {
+        return shouldIgnoreThisProperty() ? null : new ArrayList<>(getValue());
+    }
+
+    @Override
+    protected boolean shouldIgnoreThisProperty() {
+        return getValue() == null || getValue().isEmpty();
+    }
+
+    private static String fieldNames(List<Order> orderList) {
+        List<String> names = new ArrayList<>(orderList.size());
+        for (Order order : orderList) {
+            names.add(order.getField());
+        }
+        return StringUtils.join(names, ",");
+    }
+}
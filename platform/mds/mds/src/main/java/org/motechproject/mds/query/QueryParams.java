@@ -13,6 +13,12 @@ import java.util.List;
 /**
  * Utility class containing parameters which control order and size of query results.
  * Used mainly for paging/ordering queries from the UI.
+ * <p/>
+ * Besides page numbers, the results can be paged using a keyset - the values of the ordered fields of the last
+ * instance of the previous page. The next page then consists of the instances ordered after that instance, which
+ * the database finds using an index, instead of reading and skipping all the instances of the previous pages.
+ * The cost of retrieving a page using a keyset does not depend on how deep the page is. The ordering used with
+ * a keyset should end with a unique field, like the id, otherwise instances with equal values would be skipped.
  */
 public class QueryParams implements Serializable {
     private static final long serialVersionUID = 8635166802886633897L;
@@ -20,6 +26,7 @@ public class QueryParams implements Serializable {
     private final Integer page;
     private final Integer pageSize;
     private final List<Order> orderList;
+    private final List<Object> keyset;
 
     /**
      * Constant query parameter, that orders records ascending by ID.
@@ -78,9 +85,34 @@ public class QueryParams implements Serializable {
      * @param orderList the list of order instructions that will be applied to the query
      */
     public QueryParams(Integer page, Integer pageSize, List<Order> orderList) {
+        this(page, pageSize, orderList, null);
+    }
+
+    /**
+     * Creates query parameters for retrieving the page of instances that follows the instance with the given
+     * values of the ordered fields. If the keyset is given, the page number is ignored.
+     *
+     * @param page number of page
+     * @param pageSize amount of entries to include, per page
+     * @param orderList the list of order instructions that will be applied to the query
+     * @param keyset the values of the ordered fields of the last instance of the previous page, in the same order
+     *               as the order instructions, null for the first page
+     * @throws IllegalArgumentException if the keyset does not contain a non-null value for every order instruction
+     */
+    public QueryParams(Integer page, Integer pageSize, List<Order> orderList, List<Object> keyset) {
         this.page = page;
         this.pageSize = pageSize;
         this.orderList = (orderList == null) ? new ArrayList<Order>() : orderList;
+        this.keyset = keyset;
+
+        if (keyset != null) {
+            if (keyset.isEmpty() || keyset.size() != this.orderList.size()) {
+                throw new IllegalArgumentException("The keyset must contain a value for every ordered field");
+            }
+            if (keyset.contains(null)) {
+                throw new IllegalArgumentException("The keyset cannot contain null values");
+            }
+        }
     }
 
     public Integer getPage() {
@@ -95,6 +127,10 @@ public class QueryParams implements Serializable {
         return orderList;
     }
 
+    public List<Object> getKeyset() {
+        return keyset;
+    }
+
     public boolean isOrderSet() {
         return !orderList.isEmpty();
     }
@@ -103,6 +139,10 @@ public class QueryParams implements Serializable {
         return page != null && pageSize != null;
     }
 
+    public boolean isKeysetSet() {
+        return keyset != null;
+    }
+
     public void addOrder(Order order) {
         orderList.add(order);
     }
@@ -147,7 +187,8 @@ public class QueryParams implements Serializable {
 
             return ObjectUtils.equals(page, other.page)
                     && ObjectUtils.equals(pageSize, other.pageSize)
-                    && ObjectUtils.equals(orderList, other.orderList);
+                    && ObjectUtils.equals(orderList, other.orderList)
+                    && ObjectUtils.equals(keyset, other.keyset);
         }
 
         return false;
@@ -159,6 +200,7 @@ public class QueryParams implements Serializable {
                 .append(page)
                 .append(pageSize)
                 .append(orderList)
+                .append(keyset)
                 .toHashCode();
     }
 }
@@ -26,13 +26,25 @@ public final class QueryUtil {
     private QueryUtil() {
     }
 
+    /**
+     * Sets the ordering and the range of the query. If the keyset is set, the range starts at the first result,
+     * the instances of the previous pages have to be filtered out with the property created by
+     * {@link #withKeyset(java.util.List, QueryParams)}.
+     *
+     * @param query the query to set the parameters for
+     * @param queryParams the ordering and paging, may be null
+     */
     public static void setQueryParams(Query query, QueryParams queryParams) {
         if (query == null) {
             throw new IllegalArgumentException("Cannot set parameters for a null query");
         }
 
         if (queryParams != null) {
-            if (queryParams.isPagingSet()) {
+            if (queryParams.isKeysetSet()) {
+                if (queryParams.getPageSize() != null) {
+                    query.setRange(0, queryParams.getPageSize());
+                }
+            } else if (queryParams.isPagingSet()) {
                 long page = queryParams.getPage();
                 long pageSize = queryParams.getPageSize();
 
@@ -66,6 +78,11 @@ public final class QueryUtil {
 
     public static void useFilter(Query query, String[] properties, Object[] values, Map<String, String> fieldTypeMap,
                                  InstanceSecurityRestriction restriction) {
+        useFilter(query, createProperties(properties, values, fieldTypeMap), restriction);
+    }
+
+    public static List<Property> createProperties(String[] properties, Object[] values,
+                                                  Map<String, String> fieldTypeMap) {
         if (properties.length != values.length) {
             throw new IllegalArgumentException("properties length must equal to values length");
         }
@@ -84,7 +101,26 @@ public final class QueryUtil {
             }
         }
 
-        useFilter(query, list, restriction);
+        return list;
+    }
+
+    /**
+     * Returns the given properties with the property restricting the results to the instances following the
+     * keyset from the query parameters added, or the given properties if the keyset is not set.
+     *
+     * @param properties the properties used in the query
+     * @param queryParams the ordering and paging, may be null
+     * @return the properties to use in the query
+     */
+    public static List<Property> withKeyset(List<Property> properties, QueryParams queryParams) {
+        if (queryParams == null || !queryParams.isKeysetSet()) {
+            return properties;
+        }
+
+        List<Property> list = new ArrayList<>(properties);
+        list.add(new KeysetProperty(queryParams.getOrderList(), queryParams.getKeyset()));
+
+        return list;
     }
 
     public static void useFilter(Query query, List<Property> properties) {
@@ -93,6 +93,10 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public List<T> createAll(Collection<T> objects) {
+        return new ArrayList<>(getPersistenceManager().makePersistentAll(objects));
+    }
+
     public List<T> retrieveAll() {
         return retrieveAll(new String[0], new Object[0], null);
     }
@@ -118,6 +122,11 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
 
     public List<T> retrieveAll(String[] properties, Object[] values, QueryParams queryParams,
                                InstanceSecurityRestriction restriction) {
+        if (queryParams != null && queryParams.isKeysetSet()) {
+            return retrieveAfterKeyset(QueryUtil.createProperties(properties, values, fieldTypeMap), queryParams,
+                    restriction);
+        }
+
         Query query = createQuery(properties, values, restriction);
         QueryUtil.setQueryParams(query, queryParams);
 
@@ -127,6 +136,10 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     }
 
     public List<T> retrieveAll(QueryParams queryParams, InstanceSecurityRestriction restriction) {
+        if (queryParams != null && queryParams.isKeysetSet()) {
+            return retrieveAfterKeyset(new ArrayList<Property>(), queryParams, restriction);
+        }
+
         Query query = createQuery(new String[0], new Object[0], restriction);
         QueryUtil.setQueryParams(query, queryParams);
         Collection collection = (Collection) QueryExecutor.execute(query, restriction);
@@ -143,6 +156,10 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     }
 
     public List<T> retrieveAll(List<Property> properties, QueryParams queryParams, InstanceSecurityRestriction restriction) {
+        if (queryParams != null && queryParams.isKeysetSet()) {
+            return retrieveAfterKeyset(properties, queryParams, restriction);
+        }
+
         Query query = createQuery(properties, restriction);
         QueryUtil.setQueryParams(query, queryParams);
 
@@ -189,10 +206,18 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return getPersistenceManager().makePersistent(object);
     }
 
+    public List<T> updateAll(Collection<T> objects) {
+        return new ArrayList<>(getPersistenceManager().makePersistentAll(objects));
+    }
+
     public void delete(T object) {
         getPersistenceManager().deletePersistent(object);
     }
 
+    public void deleteAll(Collection<T> objects) {
+        getPersistenceManager().deletePersistentAll(objects);
+    }
+
     public long delete(String property, Object value) {
         return delete(new String[]{property}, new Object[]{value}, null);
     }
@@ -222,6 +247,10 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
     }
 
     public List<T> filter(Filters filters, QueryParams queryParams, InstanceSecurityRestriction restriction) {
+        if (queryParams != null && queryParams.isKeysetSet()) {
+            throw new IllegalArgumentException("Keyset paging is not supported for filtered queries");
+        }
+
         Query query = queryForFilters(filters, queryParams, restriction);
 
         Collection collection = (Collection) QueryExecutor.executeWithFilters(query, filters, restriction);
@@ -243,6 +272,19 @@ public abstract class MotechDataRepository<T> extends AbstractRepository {
         return (long) QueryExecutor.executeWithArray(query, properties);
     }
 
+    private List<T> retrieveAfterKeyset(List<Property> properties, QueryParams queryParams,
+                                        InstanceSecurityRestriction restriction) {
+        List<Property> withKeyset = QueryUtil.withKeyset(properties, queryParams);
+
+        Query query = createQuery(withKeyset, restriction);
+        QueryUtil.setQueryParams(query, queryParams);
+
+        // the properties are unwrapped into their values, the user name is added for the restriction
+        Collection collection = (Collection) QueryExecutor.executeWithArray(query, withKeyset.toArray(), restriction);
+
+        return new ArrayList<>(collection);
+    }
+
     private Query createQuery(String[] properties, Object[] values, InstanceSecurityRestriction restriction) {
         Query query = getPersistenceManager().newQuery(classType);
         QueryUtil.useFilter(query, properties, values, fieldTypeMap, restriction);
@@ -27,6 +27,23 @@ public interface MdsRestFacade<T> {
      */
     RestResponse get(QueryParams queryParams, boolean includeBlob);
 
+    /**
+     * Retrieves entity instances for REST. This will only include fields that are visible for REST.
+     * If the keyset of the query parameters is set, its values are the string representations of the values of the
+     * ordered fields, as encoded in the cursor returned in the metadata of the previous page. Counting all the
+     * instances takes time proportional to their number, so it can be skipped for large entities.
+     * It throws {@link org.motechproject.mds.exception.rest.RestOperationNotSupportedException} if the entity settings
+     * do not permit READ access via REST.
+     *
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param includeTotalCount set to false, if you do not need the total count of instances in the metadata
+     * @return a response that contains metadata and list of instances, in form of a map with field names and their
+     * respective values
+     * @see org.motechproject.mds.rest.RestCursor
+     */
+    RestResponse get(QueryParams queryParams, boolean includeBlob, boolean includeTotalCount);
+
     /**
      * Retrieves a single instance for REST. This will only include fields that are visible for REST.
      * It throws {@link org.motechproject.mds.exception.rest.RestOperationNotSupportedException} if the entity settings
@@ -84,4 +101,21 @@ public interface MdsRestFacade<T> {
      * @return lookup result, that can be either a single instance or a collection of instances. Response contains also metadata.
      */
     Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob);
+
+    /**
+     * Executes a lookup for REST, given the lookup name, lookup parameters and query parameters. Works like
+     * {@link #executeLookup(String, java.util.Map, org.motechproject.mds.query.QueryParams, boolean)}, but allows
+     * skipping the count of the instances returned by the lookup. The keyset of the query parameters is handled like
+     * in {@link #get(org.motechproject.mds.query.QueryParams, boolean, boolean)}.
+     *
+     * @param lookupName name of the lookup
+     * @param lookupMap map containing field names and their respective values
+     * @param queryParams query parameters to use retrieving instances
+     * @param includeBlob set to true, if you wish to retrieve value for binary object fields
+     * @param includeTotalCount set to false, if you do not need the total count of instances in the metadata
+     * @return lookup result, that can be either a single instance or a collection of instances. Response contains
+     * also metadata.
+     */
+    Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob,
+                         boolean includeTotalCount);
 }
@@ -24,7 +24,9 @@ import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.BlobDeserializer;
 import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
 import org.motechproject.mds.util.PropertyUtil;
+import org.motechproject.mds.util.TypeHelper;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
@@ -61,6 +63,7 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
     private Map<String, LookupExecutor> lookupExecutors = new HashMap<>();
     private Set<String> forbiddenLookupMethodNames = new HashSet<>();
 
+    private Map<String, FieldDto> fieldsByName;
     private List<String> restFields;
     private List<String> blobFields;
 
@@ -83,28 +86,40 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
 
         readRestOptions(entity);
 
-        Map<String, FieldDto> fieldMap = DtoHelper.asFieldMapByName(entity.getFieldDtos());
+        fieldsByName = DtoHelper.asFieldMapByName(entity.getFieldDtos());
 
         readLookups(entity);
-        readFieldsExposedByRest(fieldMap);
-        readBlobFieldsExposedByRest(fieldMap);
+        readFieldsExposedByRest(fieldsByName);
+        readBlobFieldsExposedByRest(fieldsByName);
     }
 
     @Override
     @Transactional
     public RestResponse get(QueryParams queryParams, boolean includeBlob) {
+        return get(queryParams, includeBlob, true);
+    }
+
+    @Override
+    @Transactional
+    public RestResponse get(QueryParams queryParams, boolean includeBlob, boolean includeTotalCount) {
         if (!restOptions.isRead()) {
             throw operationNotSupportedEx("READ");
         }
-        List<T> values = dataService.retrieveAll(queryParams);
+        QueryParams params = parseKeyset(queryParams);
+        List<T> values = dataService.retrieveAll(params);
         if (includeBlob) {
             for (T value : values) {
                 getBlobs(value);
             }
         }
 
-        return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, dataService.count(), queryParams,
-                RestProjection.createProjectionCollection(values, restFields, blobFields));
+        long totalCount = includeTotalCount ? dataService.count() : RestMetadata.UNKNOWN_TOTAL_COUNT;
+
+        RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace, totalCount,
+                params, RestProjection.createProjectionCollection(values, restFields, blobFields));
+        response.getMetadata().setNextCursor(nextCursor(values, params));
+
+        return response;
     }
 
     @Override
@@ -179,17 +194,33 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
     @Override
     @Transactional
     public Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams, boolean includeBlob) {
+        return executeLookup(lookupName, lookupMap, queryParams, includeBlob, true);
+    }
+
+    @Override
+    @Transactional
+    public Object executeLookup(String lookupName, Map<String, String> lookupMap, QueryParams queryParams,
+                                boolean includeBlob, boolean includeTotalCount) {
         if (lookupExecutors.containsKey(lookupName)) {
             LookupExecutor executor = lookupExecutors.get(lookupName);
-            Object result = executor.execute(lookupMap, queryParams);
+            QueryParams params = parseKeyset(queryParams);
+            Object result = executor.execute(lookupMap, params);
             if (result instanceof Collection) {
                 if (includeBlob) {
                     for (T value : ((Collection<T>) result)) {
                         getBlobs(value);
                     }
                 }
-                return new RestResponse(entityName, entityClass.getName(), moduleName, namespace, executor.executeCount(lookupMap),
-                        queryParams, RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+
+                long totalCount = includeTotalCount ? executor.executeCount(lookupMap)
+                        : RestMetadata.UNKNOWN_TOTAL_COUNT;
+
+                RestResponse response = new RestResponse(entityName, entityClass.getName(), moduleName, namespace,
+                        totalCount, params,
+                        RestProjection.createProjectionCollection((Collection) result, restFields, blobFields));
+                response.getMetadata().setNextCursor(nextCursor((Collection) result, params));
+
+                return response;
             } else {
                 if (result == null) {
                     throw new RestNoLookupResultException("No result for lookup:" + lookupName);
@@ -207,6 +238,68 @@ public class MdsRestFacadeImpl<T> implements MdsRestFacade<T> {
         }
     }
 
+    private QueryParams parseKeyset(QueryParams queryParams) {
+        if (queryParams == null || !queryParams.isKeysetSet()) {
+            return queryParams;
+        }
+
+        // the keyset comes from the cursor, as the string representations of the values of the ordered fields
+        List<Order> orderList = queryParams.getOrderList();
+        List<Object> keyset = new ArrayList<>(orderList.size());
+
+        for (int i = 0; i < orderList.size(); ++i) {
+            FieldDto field = fieldsByName.get(orderList.get(i).getField());
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field: " + orderList.get(i).getField());
+            }
+
+            keyset.add(TypeHelper.parse(queryParams.getKeyset().get(i), field.getType().getTypeClass(),
+                    entityClass.getClassLoader()));
+        }
+
+        return new QueryParams(queryParams.getPage(), queryParams.getPageSize(), orderList, keyset);
+    }
+
+    private String nextCursor(Collection<?> values, QueryParams queryParams) {
+        // only a full page, ordered by a unique field, can be followed by another one using a cursor
+        if (values.isEmpty() || queryParams == null || queryParams.getPageSize() == null
+                || values.size() < queryParams.getPageSize()
+                || !queryParams.containsOrderOnField(Constants.Util.ID_FIELD_NAME)
+                || isOrderedByNullableField(queryParams)) {
+            return null;
+        }
+
+        Object last = null;
+        for (Object value : values) {
+            last = value;
+        }
+
+        List<String> keyset = new ArrayList<>(queryParams.getOrderList().size());
+        for (Order order : queryParams.getOrderList()) {
+            Object value = PropertyUtil.safeGetProperty(last, order.getField());
+            if (value == null) {
+                // empty values cannot be compared, the next page has to be retrieved by its number
+                return null;
+            }
+            keyset.add(TypeHelper.format(value));
+        }
+
+        return RestCursor.encode(keyset);
+    }
+
+    private boolean isOrderedByNullableField(QueryParams queryParams) {
+        // the keyset cannot follow the instances with empty values, which are ordered first or last
+        // depending on the database, so only the pages ordered by required fields are followed by cursors
+        for (Order order : queryParams.getOrderList()) {
+            FieldDto field = fieldsByName.get(order.getField());
+            if (!Constants.Util.ID_FIELD_NAME.equals(order.getField())
+                    && (field == null || !field.getBasic().isRequired())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void getBlobs(T value) {
         for (String field : blobFields) {
             PropertyUtil.safeSetProperty(value, field, dataService.getDetachedField(value, field));
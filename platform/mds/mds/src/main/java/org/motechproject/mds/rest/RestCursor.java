@@ -0,0 +1,67 @@
+package org.motechproject.mds.rest;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The <code>RestCursor</code> class encodes the keyset of a page of instances retrieved over REST,
+ * the values of the ordered fields of its last instance, into an opaque token. The token returned
+ * in the metadata of a response can be passed back in order to retrieve the next page, which takes
+ * the same time no matter how many instances precede it.
+ *
+ * @see org.motechproject.mds.rest.RestMetadata#getNextCursor()
+ * @see org.motechproject.mds.query.QueryParams#getKeyset()
+ */
+public final class RestCursor {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Encodes the given values of the ordered fields into a URL safe token.
+     *
+     * @param values the string representations of the values of the ordered fields
+     * @return the token
+     */
+    public static String encode(List<String> values) {
+        try {
+            return Base64.encodeBase64URLSafeString(OBJECT_MAPPER.writeValueAsBytes(values));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to encode the cursor", e);
+        }
+    }
+
+    /**
+     * Decodes the values of the ordered fields from the given token.
+     *
+     * @param cursor the token, created by {@link #encode(java.util.List)}
+     * @return the string representations of the values of the ordered fields
+     * @throws IllegalArgumentException if the token is not a valid cursor
+     */
+    public static List<String> decode(String cursor) {
+        if (StringUtils.isBlank(cursor)) {
+            throw new IllegalArgumentException("The cursor cannot be empty");
+        }
+
+        try {
+            String json = new String(Base64.decodeBase64(cursor), StandardCharsets.UTF_8);
+            List<String> values = OBJECT_MAPPER.readValue(json, new TypeReference<List<String>>() { });
+
+            if (values == null || values.isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+
+            return values;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    private RestCursor() {
+    }
+}
@@ -12,6 +12,11 @@ import org.motechproject.mds.query.QueryParams;
  */
 public class RestMetadata {
 
+    /**
+     * The total count reported, if the instances were not counted.
+     */
+    public static final long UNKNOWN_TOTAL_COUNT = -1;
+
     private String entity;
 
     private String className;
@@ -26,6 +31,8 @@ public class RestMetadata {
 
     private int pageSize;
 
+    private String nextCursor;
+
     /**
      * Default constructor.
      */
@@ -109,7 +116,8 @@ public class RestMetadata {
     }
 
     /**
-     * @return the total count of instances that match the search conditions
+     * @return the total count of instances that match the search conditions, {@link #UNKNOWN_TOTAL_COUNT}
+     * if the instances were not counted
      */
     public long getTotalCount() {
         return totalCount;
@@ -149,4 +157,19 @@ public class RestMetadata {
     public void setPageSize(int pageSize) {
         this.pageSize = pageSize;
     }
+
+    /**
+     * @return the cursor that retrieves the page following this one, null if there are no more instances
+     * or the page cannot be followed by a cursor, which is the case if it is sorted by a field that is not required
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor the cursor that retrieves the page following this one
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
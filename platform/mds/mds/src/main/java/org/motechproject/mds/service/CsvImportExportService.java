@@ -91,6 +91,21 @@ public interface CsvImportExportService {
     long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
                    Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer);
 
+    /**
+     * Exports entity instances to a CSV file, reporting the progress of the export.
+     * @param entityId id of the entity for which the instances will be exported
+     * @param writer the writer that will be used for output
+     * @param lookupName the name of lookup
+     * @param params query parameters to be used retrieving instances
+     * @param headers the headers of exported file
+     * @param lookupFields the lookupFields used in the lookup
+     * @param exportCustomizer customizer, that allows to adjust CSV file output
+     * @param progress the progress of the export, updated after every chunk of instances, also used for cancelling it
+     * @return number of exported instances
+     */
+    long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
+                   Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer, ExportProgress progress);
+
     /**
      * Exports entity instances to a CSV file.
      * @param entityClassName class name of the entity for which the instances will be exported
@@ -179,6 +194,21 @@ public interface CsvImportExportService {
     long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params, List<String> headers,
                    Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer);
 
+    /**
+     * Exports entity instances to a PDF file, reporting the progress of the export.
+     * @param entityId id of the entity for which the instances will be exported
+     * @param outputStream the stream to write the PDF to
+     * @param lookupName the name of lookup
+     * @param params query parameters to be used retrieving instances
+     * @param headers the headers of exported file
+     * @param lookupFields the lookupFields used in the lookup
+     * @param exportCustomizer customizer, that allows to adjust PDF file output
+     * @param progress the progress of the export, updated after every chunk of instances, also used for cancelling it
+     * @return number of exported instances
+     */
+    long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params, List<String> headers,
+                   Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer, ExportProgress progress);
+
     /**
      * Exports entity instances to a PDF file.
      * @param entityClassName class name of the entity for which the instances will be exported
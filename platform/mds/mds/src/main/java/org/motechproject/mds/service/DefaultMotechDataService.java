@@ -3,6 +3,10 @@ package org.motechproject.mds.service;
 import org.apache.commons.lang.StringUtils;
 import org.motechproject.commons.date.util.DateUtil;
 import org.motechproject.mds.domain.EntityType;
+import org.motechproject.mds.domain.RelationshipHolder;
+import org.motechproject.mds.dto.FieldDto;
+import org.motechproject.mds.dto.LookupDto;
+import org.motechproject.mds.dto.LookupFieldDto;
 import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.entityinfo.EntityInfoReader;
 import org.motechproject.mds.entityinfo.FieldInfo;
@@ -10,10 +14,12 @@ import org.motechproject.mds.event.CrudEventType;
 import org.motechproject.mds.exception.audit.HistoryInstanceNotFoundException;
 import org.motechproject.mds.exception.object.SchemaVersionException;
 import org.motechproject.mds.exception.audit.TrashInstanceNotFoundException;
+import org.motechproject.mds.exception.lookup.LookupNotFoundException;
 import org.motechproject.mds.exception.object.ObjectNotFoundException;
 import org.motechproject.mds.exception.object.ObjectUpdateException;
 import org.motechproject.mds.exception.object.SecurityException;
 import org.motechproject.mds.filter.Filters;
+import org.motechproject.mds.lookup.LookupExecutor;
 import org.motechproject.mds.query.Property;
 import org.motechproject.mds.query.QueryExecution;
 import org.motechproject.mds.query.QueryParams;
@@ -45,7 +51,9 @@ import javax.jdo.ObjectState;
 import javax.jdo.Query;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -76,6 +84,11 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
     private static final Logger MDS_LOGGER = LoggerFactory.getLogger(DefaultMotechDataService.class);
 
+    /**
+     * The maximum number of ids passed to a single query when instances are retrieved in bulk.
+     */
+    private static final int IDS_PER_QUERY = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private MotechDataRepository<T> repository;
@@ -146,6 +159,24 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return createdInstance;
     }
 
+    @Override
+    @Transactional
+    public List<T> createAll(Collection<T> objects) {
+        validateCredentials();
+
+        if (objects == null || objects.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<T> createdInstances = repository.createAll(objects);
+
+        if (allowCreateEvent) {
+            sendEventsAfterCommit(createdInstances, CREATE);
+        }
+
+        return createdInstances;
+    }
+
     @Override
     @Transactional
     public T retrieve(String primaryKeyName, Object value) {
@@ -246,6 +277,80 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         return result;
     }
 
+    @Override
+    @Transactional
+    public List<T> updateAll(Collection<T> objects) {
+        InstanceSecurityRestriction restriction = validateCredentials();
+
+        if (objects == null || objects.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // the stored instances are needed both for the security check and for the transient objects
+        List<Long> ids = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            Long id = (Long) getId(object);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+
+        Map<Long, T> fromDbInstances = retrieveByIds(ids);
+        checkInstancesAccess(fromDbInstances.values(), restriction);
+
+        List<T> result = new ArrayList<>(objects.size());
+        List<Integer> attachPositions = new ArrayList<>();
+        List<T> toAttach = new ArrayList<>();
+        List<T> updatedInstances = new ArrayList<>();
+        List<T> newInstances = new ArrayList<>();
+
+        for (T object : objects) {
+            T fromDbInstance = fromDbInstances.get(getId(object));
+
+            if (JDOHelper.getObjectState(object) != ObjectState.TRANSIENT) {
+                updateModificationData(object);
+                attachPositions.add(result.size());
+                toAttach.add(object);
+                result.add(object);
+            } else if (fromDbInstance != null) {
+                PropertyUtil.copyProperties(fromDbInstance, object);
+
+                if (versionFieldName != null) {
+                    StateManagerUtil.setTransactionVersion(fromDbInstance, versionFieldName);
+                }
+
+                updateModificationData(fromDbInstance);
+                updatedInstances.add(fromDbInstance);
+                result.add(fromDbInstance);
+            } else {
+                // makePersistent returns transient instances as they are
+                newInstances.add(object);
+                result.add(object);
+            }
+        }
+
+        if (!toAttach.isEmpty()) {
+            List<T> attachedInstances = repository.updateAll(toAttach);
+            for (int i = 0; i < attachedInstances.size(); ++i) {
+                result.set(attachPositions.get(i), attachedInstances.get(i));
+            }
+            updatedInstances.addAll(attachedInstances);
+        }
+
+        if (!newInstances.isEmpty()) {
+            repository.createAll(newInstances);
+            if (allowCreateEvent) {
+                sendEventsAfterCommit(newInstances, CREATE);
+            }
+        }
+
+        if (allowUpdateEvent && !updatedInstances.isEmpty()) {
+            sendEventsAfterCommit(updatedInstances, UPDATE);
+        }
+
+        return result;
+    }
+
     private void updateModificationData(Object obj) {
         safeSetProperty(obj, MODIFICATION_DATE_FIELD_NAME, DateUtil.now());
         safeSetProperty(obj, MODIFIED_BY_FIELD_NAME, defaultIfBlank(getUsername(), ""));
@@ -296,6 +401,111 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
         }
     }
 
+    @Override
+    @Transactional
+    public long deleteAll(Collection<Long> ids) {
+        InstanceSecurityRestriction restriction = validateCredentials();
+
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+
+        return deleteInstances(retrieveByIds(ids).values(), restriction);
+    }
+
+    @Override
+    @Transactional
+    public long deleteByLookup(String lookupName, Map<String, ?> lookupParams) {
+        InstanceSecurityRestriction restriction = validateCredentials();
+
+        EntityInfo entityInfo = entityInfoReader.getEntityInfo(getClassType().getName());
+        LookupDto lookup = getLookup(entityInfo, lookupName);
+
+        LookupExecutor lookupExecutor = new LookupExecutor(this, lookup, getLookupFieldsMapping(entityInfo, lookup));
+        Object result = lookupExecutor.execute(lookupParams);
+
+        Collection<T> instances;
+        if (result == null) {
+            instances = Collections.emptyList();
+        } else if (result instanceof Collection) {
+            instances = (Collection<T>) result;
+        } else {
+            instances = Collections.singletonList((T) result);
+        }
+
+        return deleteInstances(instances, restriction);
+    }
+
+    private long deleteInstances(Collection<T> instances, InstanceSecurityRestriction restriction) {
+        if (instances.isEmpty()) {
+            return 0;
+        }
+
+        checkInstancesAccess(instances, restriction);
+
+        final List<Long> ids = new ArrayList<>(instances.size());
+        for (T instance : instances) {
+            ids.add((Long) getId(instance));
+        }
+
+        // the trash and history listeners are still invoked for every deleted instance
+        repository.deleteAll(instances);
+
+        if (allowDeleteEvent) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    for (Long id : ids) {
+                        sendEvent(id, DELETE);
+                    }
+                }
+            });
+        }
+
+        return ids.size();
+    }
+
+    private Map<Long, T> retrieveByIds(Collection<Long> ids) {
+        Map<Long, T> instances = new LinkedHashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+
+        for (int from = 0; from < idList.size(); from += IDS_PER_QUERY) {
+            List<Long> chunk = idList.subList(from, Math.min(from + IDS_PER_QUERY, idList.size()));
+            for (T instance : repository.retrieveAll(chunk)) {
+                instances.put((Long) getId(instance), instance);
+            }
+        }
+
+        return instances;
+    }
+
+    private LookupDto getLookup(EntityInfo entityInfo, String lookupName) {
+        for (LookupDto lookup : entityInfo.getLookups()) {
+            if (StringUtils.equals(lookupName, lookup.getLookupName())
+                    || StringUtils.equals(lookupName, lookup.getMethodName())) {
+                return lookup;
+            }
+        }
+        throw new LookupNotFoundException(entityInfo.getEntityName(), lookupName);
+    }
+
+    private Map<String, FieldDto> getLookupFieldsMapping(EntityInfo entityInfo, LookupDto lookup) {
+        Map<String, FieldDto> fieldMap = new HashMap<>();
+        for (LookupFieldDto lookupField : lookup.getLookupFields()) {
+            FieldDto field;
+            if (StringUtils.isNotBlank(lookupField.getRelatedName())) {
+                FieldDto relationshipField = entityInfo.getField(lookupField.getName()).getField();
+                RelationshipHolder relHolder = new RelationshipHolder(relationshipField);
+                EntityInfo relatedEntity = entityInfoReader.getEntityInfo(relHolder.getRelatedClass());
+                field = relatedEntity.getField(lookupField.getRelatedName()).getField();
+            } else {
+                field = entityInfo.getField(lookupField.getName()).getField();
+            }
+            fieldMap.put(lookupField.getLookupFieldName(), field);
+        }
+        return fieldMap;
+    }
+
     @Override
     @Transactional
     public Object findTrashInstanceById(Long trashId) {
@@ -511,25 +721,46 @@ public abstract class DefaultMotechDataService<T> implements MotechDataService<T
 
     private InstanceSecurityRestriction checkInstanceAccess(T instance, InstanceSecurityRestriction restriction) {
         T fromDb = repository.retrieve(getId(instance));
+        checkInstancesAccess(Collections.singletonList(fromDb), restriction);
+
+        return restriction;
+    }
 
-        String creator = (String) PropertyUtil.safeGetProperty(fromDb, CREATOR_FIELD_NAME);
-        String owner = (String) PropertyUtil.safeGetProperty(fromDb, OWNER_FIELD_NAME);
+    private void checkInstancesAccess(Collection<T> fromDbInstances, InstanceSecurityRestriction restriction) {
+        if (restriction.isEmpty()) {
+            return;
+        }
 
         String username = getUsername();
 
-        boolean authorized = false;
+        for (T fromDb : fromDbInstances) {
+            String creator = (String) PropertyUtil.safeGetProperty(fromDb, CREATOR_FIELD_NAME);
+            String owner = (String) PropertyUtil.safeGetProperty(fromDb, OWNER_FIELD_NAME);
 
-        if (restriction.isByOwner()) {
-            authorized = StringUtils.equals(username, owner);
-        } else if (restriction.isByCreator()) {
-            authorized = StringUtils.equals(username, creator);
-        }
+            boolean authorized = false;
+
+            if (restriction.isByOwner()) {
+                authorized = StringUtils.equals(username, owner);
+            } else if (restriction.isByCreator()) {
+                authorized = StringUtils.equals(username, creator);
+            }
 
-        if (!authorized) {
-            throw new SecurityException();
+            if (!authorized) {
+                throw new SecurityException();
+            }
         }
+    }
 
-        return restriction;
+    private void sendEventsAfterCommit(final Collection<T> instances, final CrudEventType action) {
+        // the ids of the created instances are known only once they are flushed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (T instance : instances) {
+                    sendEvent((Long) getId(instance), action);
+                }
+            }
+        });
     }
 
     private void sendEvent(Long id, CrudEventType action) {
@@ -0,0 +1,61 @@
+package org.motechproject.mds.service;
+
+/**
+ * Tracks the progress of a single export of MDS data. The exporter updates it after every chunk of instances
+ * written, while other threads of the module that started the export can read the progress or request the export
+ * to be cancelled. A cancelled export stops before writing its next chunk.
+ */
+public class ExportProgress {
+
+    private volatile long rowsExported;
+    private volatile long totalRows = -1;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    /**
+     * @return the number of rows written so far
+     */
+    public long getRowsExported() {
+        return rowsExported;
+    }
+
+    public void setRowsExported(long rowsExported) {
+        this.rowsExported = rowsExported;
+    }
+
+    /**
+     * @return the number of rows that will be exported, or -1 if it is not known yet
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    /**
+     * @return true if the cancellation of the export was requested
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Requests the export to be cancelled. It will stop before writing its next chunk of rows.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the export was finished, either successfully, with an error or due to a cancellation
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.transaction.support.TransactionCallback;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -30,6 +31,15 @@ public interface MotechDataService<T> {
      */
     T create(T object);
 
+    /**
+     * Creates the given instances in MDS, within a single transaction. The credentials are checked once for
+     * the whole collection and the CRUD events are sent after the transaction is committed.
+     *
+     * @param objects instances to create
+     * @return created instances, in the order of the given collection
+     */
+    List<T> createAll(Collection<T> objects);
+
     /**
      * Retrieves instance from MDS based on the value of the given primary key.
      *
@@ -48,7 +58,9 @@ public interface MotechDataService<T> {
 
     /**
      * Retrieves all instances of the {@param <T>} type, that match the provided
-     * parameters.
+     * parameters. If the keyset of the parameters is set, the instances ordered after
+     * the last instance of the previous page are retrieved, which takes the same time
+     * for every page, no matter how many instances precede it.
      *
      * @param queryParams query parameters to be used retrieving instances
      * @return all isntances matching query parameters
@@ -92,6 +104,17 @@ public interface MotechDataService<T> {
      */
     T updateFromTransient(T transientObject, Set<String> fieldsToUpdate);
 
+    /**
+     * Updates the given instances in MDS, within a single transaction. Transient instances are matched with
+     * their persistent counterparts using a single query, as in {@link #updateFromTransient(Object)}, and
+     * the ones that do not exist in the database are created. The CRUD events are sent after the transaction
+     * is committed.
+     *
+     * @param objects instances to update, persistent or transient
+     * @return persistent instances, updated with the given values, in the order of the given collection
+     */
+    List<T> updateAll(Collection<T> objects);
+
     /**
      * Deletes given instance from MDS.
      *
@@ -114,6 +137,26 @@ public interface MotechDataService<T> {
      */
     void delete(String primaryKeyName, Object value);
 
+    /**
+     * Deletes the instances with the given ids from MDS, within a single transaction. Ids for which no instance
+     * exists are ignored. The CRUD events are sent after the transaction is committed.
+     *
+     * @param ids ids of the instances to delete
+     * @return number of deleted instances
+     */
+    long deleteAll(Collection<Long> ids);
+
+    /**
+     * Deletes all instances returned by the given lookup from MDS, within a single transaction. The CRUD events
+     * are sent after the transaction is committed.
+     *
+     * @param lookupName name of the lookup, or the name of its method
+     * @param lookupParams values of the lookup fields, keyed by their names
+     * @return number of deleted instances
+     * @throws org.motechproject.mds.exception.lookup.LookupNotFoundException if the entity has no such lookup
+     */
+    long deleteByLookup(String lookupName, Map<String, ?> lookupParams);
+
     /**
      * Finds a trash instance for the entity by ID.
      * @param trashId the id of the trash instance
@@ -157,11 +200,12 @@ public interface MotechDataService<T> {
 
     /**
      * Retrieves all instances of type {@param <T>} from MDS, filtered using specified filters
-     * and query params.
+     * and query params. The query params cannot contain a keyset.
      *
      * @param filters filters to use filtering instances
      * @param queryParams query parameters to use filtering instances
      * @return a list of instances, filtered using specified parameters
+     * @throws IllegalArgumentException if the keyset of the query params is set
      */
     List<T> filter(Filters filters, QueryParams queryParams);
 
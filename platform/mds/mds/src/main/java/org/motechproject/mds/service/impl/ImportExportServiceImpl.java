@@ -27,13 +27,13 @@ import org.springframework.orm.jdo.JdoTransactionManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -66,13 +66,34 @@ public class ImportExportServiceImpl implements ImportExportService {
     private MdsBundleRegenerationService mdsBundleRegenerationService;
 
     @Override
-    @Transactional
-    public void exportEntities(ImportExportBlueprint blueprint, Writer writer) {
+    public void exportEntities(final ImportExportBlueprint blueprint, Writer writer) {
         try (JsonWriter jsonWriter = new JsonWriter(writer)) {
             jsonWriter.setIndent("  ");
-            ExportContext exportContext = new ExportContext(sortBlueprintRecords(blueprint), bundleContext, allEntities);
-            ExportWriter exportWriter = new ExportWriter(jsonWriter, exportContext);
-            exportWriter.export();
+            ImportExportBlueprint sortedBlueprint = doInTransaction(new TransactionCallback<ImportExportBlueprint>() {
+                @Override
+                public ImportExportBlueprint doInTransaction(TransactionStatus status) {
+                    return sortBlueprintRecords(blueprint);
+                }
+            });
+            ExportContext exportContext = new ExportContext(sortedBlueprint, bundleContext, allEntities);
+            final ExportWriter exportWriter = new ExportWriter(jsonWriter, exportContext);
+
+            exportWriter.beginExport();
+            for (final ImportExportBlueprint.Record record : sortedBlueprint) {
+                // the schema of every entity is read in its own transaction, the instances are read in chunks,
+                // each in a separate transaction of the entity data service
+                doInTransaction(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus status) {
+                        try {
+                            exportWriter.exportEntry(record);
+                        } catch (IOException e) {
+                            throw new ImportExportException("An IO error occurred during export.", e);
+                        }
+                    }
+                });
+            }
+            exportWriter.endExport();
         } catch (IOException e) {
             throw new ImportExportException("An IO error occurred during export.", e);
         }
@@ -90,10 +111,16 @@ public class ImportExportServiceImpl implements ImportExportService {
         }
     }
 
-    private void importEntities(File file, ImportExportBlueprint blueprint) throws FileNotFoundException {
-        ImportContext importContext = new ImportContext(blueprint, bundleContext, allEntities, allTypes, relationshipResolver);
-        importSchema(importContext, new JsonReader(new BufferedReader(new FileReader(file))));
-        importInstances(importContext, new JsonReader(new BufferedReader(new FileReader(file))));
+    private void importEntities(File file, ImportExportBlueprint blueprint) throws IOException {
+        try (ImportContext importContext = new ImportContext(blueprint, bundleContext, allEntities, allTypes,
+                relationshipResolver)) {
+            try (JsonReader jsonReader = new JsonReader(new BufferedReader(new FileReader(file)))) {
+                importSchema(importContext, jsonReader);
+            }
+            try (JsonReader jsonReader = new JsonReader(new BufferedReader(new FileReader(file)))) {
+                importInstances(importContext, jsonReader);
+            }
+        }
     }
 
     private void importSchema(final ImportContext importContext, final JsonReader jsonReader) {
@@ -185,9 +212,9 @@ public class ImportExportServiceImpl implements ImportExportService {
         return sortedBlueprint;
     }
 
-    private void doInTransaction(TransactionCallbackWithoutResult callback) {
+    private <T> T doInTransaction(TransactionCallback<T> callback) {
         TransactionTemplate template = new TransactionTemplate(transactionManager);
-        template.execute(callback);
+        return template.execute(callback);
     }
 
     @Autowired
@@ -11,12 +11,15 @@ import org.motechproject.mds.helper.DataServiceHelper;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
+import org.motechproject.mds.service.ExportProgress;
 import org.motechproject.mds.service.MDSLookupService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.TableWriter;
 import org.motechproject.mds.util.PropertyUtil;
 import org.osgi.framework.BundleContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -31,9 +34,19 @@ import java.util.TreeSet;
 /**
  * Base class used by classes responsible for exporting MDS Data in a tabular CSV-like form.
  * Using the {@link TableWriter} class, implementing classes can provide their own ouput format.
+ * The instances are read and written in chunks, and every chunk is read and written in its own short transaction.
+ * The instances of a chunk are detached when its transaction commits, and released together with the persistence
+ * manager of the transaction, so the memory used does not depend on the number of exported instances. The export
+ * is therefore not a snapshot of a single transaction, see {@link ExportChunkReader} for the consistency of the
+ * exported chunks. The export methods must not be called within a transaction, since the chunks would then join it.
  */
 public abstract class AbstractMdsExporter {
 
+    /**
+     * The number of instances read from the database at once.
+     */
+    protected static final int EXPORT_CHUNK_SIZE = 1000;
+
     @Autowired
     private BundleContext bundleContext;
 
@@ -53,6 +66,12 @@ public abstract class AbstractMdsExporter {
 
     protected long exportData(EntityInfo entityInfo, TableWriter writer, String lookupName, QueryParams params, List<String> headers,
                            Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
+        return exportData(entityInfo, writer, lookupName, params, headers, lookupFields, exportCustomizer, null);
+    }
+
+    protected long exportData(EntityInfo entityInfo, TableWriter writer, String lookupName, QueryParams params, List<String> headers,
+                              Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer,
+                              ExportProgress progress) {
         final MotechDataService dataService = DataServiceHelper.getDataService(bundleContext, entityInfo.getClassName());
 
         final Map<String, FieldDto> fieldMap = new HashMap<>();
@@ -68,21 +87,73 @@ public abstract class AbstractMdsExporter {
             writer.writeHeader(orderedHeaders);
 
             long rowsExported = 0;
-            Map<String, String> row = new HashMap<>();
-
-            List<Object> instances = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(params) :
-                    mdsLookupService.findMany(entityInfo.getClassName(), lookupName, lookupFields, params);
 
-            for (Object instance : instances) {
-                buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
-                writer.writeRow(row, orderedHeaders);
-                rowsExported++;
+            if (progress != null) {
+                progress.setTotalRows(countRows(dataService, entityInfo, lookupName, params, lookupFields));
             }
 
+            ExportChunkReader chunkReader = new ExportChunkReader(dataService, mdsLookupService,
+                    entityInfo.getClassName(), lookupName, lookupFields, params, EXPORT_CHUNK_SIZE);
+
+            int chunkSize;
+            do {
+                if (progress != null && progress.isCancelled()) {
+                    throw new DataExportException("The export of " + entityInfo.getClassName() + " was cancelled");
+                }
+
+                chunkSize = writeChunk(dataService, chunkReader, writer, fieldMap, orderedHeaders, exportCustomizer);
+                rowsExported += chunkSize;
+
+                if (progress != null) {
+                    progress.setRowsExported(rowsExported);
+                }
+            } while (chunkSize > 0);
+
             return rowsExported;
         } catch (IOException e) {
             throw new DataExportException("IO Error when writing data", e);
+        } finally {
+            if (progress != null) {
+                progress.setFinished(true);
+            }
+        }
+    }
+
+    private long countRows(MotechDataService dataService, EntityInfo entityInfo, String lookupName, QueryParams params,
+                           Map<String, Object> lookupFields) {
+        long count = StringUtils.isBlank(lookupName) ? dataService.count() :
+                mdsLookupService.count(entityInfo.getClassName(), lookupName, lookupFields);
+
+        if (params != null && params.isPagingSet()) {
+            long skipped = (long) (params.getPage() - 1) * params.getPageSize();
+            count = Math.max(0, Math.min(count - skipped, params.getPageSize()));
         }
+
+        return count;
+    }
+
+    private int writeChunk(MotechDataService dataService, final ExportChunkReader chunkReader,
+                           final TableWriter writer, final Map<String, FieldDto> fieldMap,
+                           final String[] orderedHeaders, final CsvExportCustomizer exportCustomizer) {
+        // nothing from the chunk is referenced once its transaction ends
+        return (Integer) dataService.doInTransaction(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                List<Object> instances = chunkReader.nextChunk();
+                Map<String, String> row = new HashMap<>();
+
+                try {
+                    for (Object instance : instances) {
+                        buildCsvRow(row, fieldMap, instance, orderedHeaders, exportCustomizer);
+                        writer.writeRow(row, orderedHeaders);
+                    }
+                } catch (IOException e) {
+                    throw new DataExportException("IO Error when writing data", e);
+                }
+
+                return instances.size();
+            }
+        });
     }
 
     protected EntityInfo getEntity(long entityId) {
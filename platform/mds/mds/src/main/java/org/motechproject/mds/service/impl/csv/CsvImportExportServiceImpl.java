@@ -9,6 +9,7 @@ import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.CsvImportCustomizer;
 import org.motechproject.mds.service.CsvImportExportService;
 import org.motechproject.mds.service.DefaultCsvImportCustomizer;
+import org.motechproject.mds.service.ExportProgress;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.util.Constants;
 import org.motechproject.server.osgi.event.OsgiEventProxy;
@@ -74,6 +75,15 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
         return csvImporterExporter.exportCsv(entityId, writer, lookupName, params, headers, lookupFields, exportCustomizer);
     }
 
+    @Override
+    public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
+                          Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer,
+                          ExportProgress progress) {
+        logCsvExport(entityId);
+        return csvImporterExporter.exportCsv(entityId, writer, lookupName, params, headers, lookupFields, exportCustomizer,
+                progress);
+    }
+
     @Override
     public long exportCsv(String entityClassName, Writer writer) {
         logCsvExport(entityClassName);
@@ -144,6 +154,15 @@ public class CsvImportExportServiceImpl implements CsvImportExportService {
                 exportCustomizer);
     }
 
+    @Override
+    public long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params,
+                          List<String> headers, Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer,
+                          ExportProgress progress) {
+        logPdfExport(entityId);
+        return pdfCsvExporter.exportPdf(entityId, outputStream, lookupName, params, headers, lookupFields,
+                exportCustomizer, progress);
+    }
+
     @Override
     public long exportPdf(String entityClassName, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
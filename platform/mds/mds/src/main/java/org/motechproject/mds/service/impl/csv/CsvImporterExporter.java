@@ -16,6 +16,7 @@ import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.CsvImportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvImportCustomizer;
+import org.motechproject.mds.service.ExportProgress;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.service.impl.csv.writer.CsvTableWriter;
 import org.motechproject.mds.util.Constants;
@@ -23,7 +24,8 @@ import org.motechproject.mds.util.PropertyUtil;
 import org.motechproject.mds.util.TypeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
 import org.supercsv.io.CsvMapReader;
 import org.supercsv.prefs.CsvPreference;
 
@@ -33,9 +35,19 @@ import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_KEY_TYPE;
 import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
@@ -44,20 +56,25 @@ import static org.motechproject.mds.util.Constants.MetadataKeys.MAP_VALUE_TYPE;
  * Component used for importing CSV records to the database.
  * The reason for separating import logic is keeping the db transaction and sending the MOTECH event at completion separate.
  * This bean lives in the context of the generated MDS entities bundle.
+ * Imports read the file in chunks. The rows of a chunk are parsed on a small pool of threads while the previous
+ * chunk is written, and every chunk is written in its own transaction.
  */
 public class CsvImporterExporter extends AbstractMdsExporter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvImporterExporter.class);
 
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    private static final int PARSER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     /**
      * Imports instances of the given entity to the database.
      * @param entityId the ID of the entity for which instances will be imported
      * @param reader reader from which the csv file will be read
      * @param continueOnError if true, import will continue with next row if exception was encountered,
-     *                        if false, import process will stop and rethrow the exception
+     *                        if false, import process will stop and rethrow the exception, the chunks of rows
+     *                        written before remain imported
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, boolean continueOnError) {
         EntityInfo entityInfo = getEntity(entityId);
         return importCsv(entityInfo, reader, continueOnError);
@@ -69,10 +86,10 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param reader reader from which the csv file will be read
      * @param importCustomizer the customizer that will be used during instance import from rows
      * @param continueOnError if true, import will continue with next row if exception was encountered,
-     *                        if false, import process will stop and rethrow the exception
+     *                        if false, import process will stop and rethrow the exception, the chunks of rows
+     *                        written before remain imported
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final long entityId, final Reader reader, CsvImportCustomizer importCustomizer, boolean continueOnError) {
         EntityInfo entityInfo = getEntity(entityId);
         return importCsv(entityInfo, reader, importCustomizer, continueOnError);
@@ -83,10 +100,10 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param entityClassName the class name of the entity for which instances will be imported
      * @param reader reader from which the csv file will be read
      * @param continueOnError if true, import will continue with next row if exception was encountered,
-     *                        if false, import process will stop and rethrow the exception
+     *                        if false, import process will stop and rethrow the exception, the chunks of rows
+     *                        written before remain imported
      * @return IDs of instances updated/added during import
      */
-    @Transactional
     public CsvImportResults importCsv(final String entityClassName, final Reader reader, boolean continueOnError) {
         EntityInfo entityInfo = getEntity(entityClassName);
         return importCsv(entityInfo, reader, continueOnError);
@@ -98,7 +115,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param writer the writer that will be used for output
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final long entityId, final Writer writer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -112,7 +128,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param writer the writer that will be used for output
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final String entityClassName, final Writer writer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -127,7 +142,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final long entityId, final Writer writer, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -142,7 +156,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(final String entityClassName, final Writer writer, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (CsvTableWriter tableWriter = new CsvTableWriter(writer)) {
@@ -160,7 +173,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields) {
         return exportCsv(entityId, writer, lookupName, params, headers, lookupFields,
@@ -177,7 +189,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(String entityClassName, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields) {
         return exportCsv(entityClassName, writer, lookupName, params, headers, lookupFields,
@@ -195,7 +206,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
@@ -205,6 +215,28 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
+    /**
+     * Exports entity instances to a CSV file, reporting the progress of the export.
+     * @param entityId id of the entity for which the instances will be exported
+     * @param writer the writer that will be used for output
+     * @param lookupName the name of lookup
+     * @param params query parameters to be used retrieving instances
+     * @param headers the headers of exported file
+     * @param lookupFields the lookupFields used in the lookup
+     * @param exportCustomizer the customizer that will be used during export
+     * @param progress the progress of the export, updated after every chunk of instances
+     * @return number of exported instances
+     */
+    public long exportCsv(long entityId, Writer writer, String lookupName, QueryParams params, List<String> headers,
+                          Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer,
+                          ExportProgress progress) {
+        EntityInfo entityInfo = getEntity(entityId);
+        try (CsvTableWriter tableWriter = new CsvTableWriter(writer)){
+            return exportData(entityInfo, tableWriter, lookupName, params, headers, lookupFields,
+                    exportCustomizer, progress);
+        }
+    }
+
     /**
      * Exports entity instances to a CSV file.
      * @param entityClassName the class name of the entity for which instances will be exported
@@ -216,7 +248,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportCsv(String entityClassName, Writer writer, String lookupName, QueryParams params, List<String> headers,
                           Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
@@ -234,109 +265,62 @@ public class CsvImporterExporter extends AbstractMdsExporter {
                                        boolean continueOnError) {
         final MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityInfo.getClassName());
 
-        Map<String, FieldDto> fieldCacheMap = new HashMap<>();
+        ExecutorService parsers = Executors.newFixedThreadPool(PARSER_THREADS,
+                parserThreadFactory(dataService.getClassType().getClassLoader()));
 
         try (CsvMapReader csvMapReader = new CsvMapReader(reader, CsvPreference.STANDARD_PREFERENCE)) {
+            final String headers[] = csvMapReader.getHeader(true);
 
-            List<Long> newInstanceIDs = new ArrayList<>();
-            List<Long> updatedInstanceIDs = new ArrayList<>();
-
-            Map <Integer, String> exceptions = new HashMap<>();
+            ChunkedImport chunkedImport = new ChunkedImport(entityInfo, dataService, headers, importCustomizer,
+                    continueOnError);
 
-            Map<String, String> row;
             int rowNum = 0;
+            List<Map<String, String>> rows = readChunk(csvMapReader, headers);
+            List<Future<List<ParsedRow>>> parsedChunk = chunkedImport.parse(parsers, rows, rowNum);
 
-            final String headers[] = csvMapReader.getHeader(true);
+            while (!rows.isEmpty()) {
+                rowNum += rows.size();
+                List<ParsedRow> parsedRows = await(parsedChunk);
 
-            while ((row = csvMapReader.read(headers)) != null) {
-                rowNum++;
-                try {
-                    // import a row
-                    RowImportResult rowImportResult = importInstanceFromRow(entityInfo.getEntity(), row, headers, fieldCacheMap, entityInfo.getFieldDtos(), dataService, importCustomizer);
-                    Long id = rowImportResult.getId();
+                // the next chunk is parsed while the current one is being written
+                rows = readChunk(csvMapReader, headers);
+                parsedChunk = chunkedImport.parse(parsers, rows, rowNum);
 
-                    // put its ID in the correct list
-                    if (rowImportResult.isNewInstance()) {
-                        newInstanceIDs.add(id);
-                    } else {
-                        updatedInstanceIDs.add(id);
-                    }
-                } catch (RuntimeException e){
-                    if (continueOnError) {
-                        exceptions.put(rowNum, e.getMessage());
-                    } else {
-                        throw e;
-                    }
-                }
+                chunkedImport.importChunk(parsedRows);
             }
 
-            return new CsvImportResults(entityInfo.getEntity(), newInstanceIDs, updatedInstanceIDs, exceptions);
+            return chunkedImport.getResults();
         } catch (IOException e) {
             throw new CsvImportException("IO Error when importing CSV", e);
+        } finally {
+            parsers.shutdownNow();
         }
     }
 
-    private RowImportResult importInstanceFromRow(EntityDto entityDto, Map<String, String> row, String[] headers, Map<String, FieldDto> fieldMap, List<FieldDto> fields,
-                                                  MotechDataService dataService, CsvImportCustomizer importCustomizer) {
-        Class entityClass = dataService.getClassType();
-
-        boolean isNewInstance = true;
-        Object instance;
-        try {
-            instance = importCustomizer.findExistingInstance(row, dataService);
-            if (instance == null) {
-                LOGGER.debug("Creating new {}", entityClass.getName());
-                instance = entityClass.newInstance();
-            } else {
-                isNewInstance = false;
-                LOGGER.debug("Updating {} with id {}", entityClass.getName(), row.get(Constants.Util.ID_FIELD_NAME));
-            }
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
-        }
-
-        for (String fieldName : headers) {
-            FieldDto field = findField(fieldName, fields, fieldMap, importCustomizer);
-
-            if (field == null) {
-                LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
-                        fieldName, entityClass.getName());
-                continue;
-            }
-
-            if (row.containsKey(fieldName)) {
-                String csvValue = row.get(fieldName);
-
-                Object parsedValue = parseValue(entityDto, csvValue, field, entityClass.getClassLoader());
-
-                try {
-                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(field.getBasic().getName()), parsedValue);
-                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
-                            fieldName, csvValue);
-                    throw new CsvImportException(msg, e);
-                }
-            }
-        }
+    private List<Map<String, String>> readChunk(CsvMapReader csvMapReader, String[] headers) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>(IMPORT_CHUNK_SIZE);
 
-        Object importedInstance;
-        if (isNewInstance) {
-            importedInstance = importCustomizer.doCreate(instance, dataService);
-        } else {
-            importedInstance = importCustomizer.doUpdate(instance, dataService);
+        Map<String, String> row;
+        while (rows.size() < IMPORT_CHUNK_SIZE && (row = csvMapReader.read(headers)) != null) {
+            rows.add(row);
         }
 
-        Long importedId = (Long) PropertyUtil.safeGetProperty(importedInstance, Constants.Util.ID_FIELD_NAME);
-
-        return new RowImportResult(importedId, isNewInstance);
+        return rows;
     }
 
-    private FieldDto findField(String fieldName, List<FieldDto> fields, Map<String, FieldDto> fieldMap, CsvImportCustomizer importCustomizer) {
-        if (!fieldMap.containsKey(fieldName)) {
-            FieldDto field = importCustomizer.findField(fieldName, fields);
-            fieldMap.put(fieldName, field);
+    private List<ParsedRow> await(List<Future<List<ParsedRow>>> futures) {
+        List<ParsedRow> parsedRows = new ArrayList<>();
+        try {
+            for (Future<List<ParsedRow>> future : futures) {
+                parsedRows.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvImportException("Interrupted while parsing the CSV file", e);
+        } catch (ExecutionException e) {
+            throw new CsvImportException("Unable to parse the CSV file", e.getCause());
         }
-        return fieldMap.get(fieldName);
+        return parsedRows;
     }
 
     private Object parseValue(EntityDto entityDto, String csvValue, FieldDto field, ClassLoader entityCl) {
@@ -345,8 +329,6 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         Object value;
         if (type.isCombobox()) {
             value = parseComboboxValue(entityDto, csvValue, field, entityCl);
-        } else if (type.isRelationship()) {
-            value = parseRelationshipValue(csvValue, field);
         } else if (type.isMap()) {
             MetadataDto keyMetadata = field.getMetadata(MAP_KEY_TYPE);
             MetadataDto valueMetadata = field.getMetadata(MAP_VALUE_TYPE);
@@ -376,24 +358,14 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private Object parseRelationshipValue(String csvValue, FieldDto field) {
+    private List<Long> parseRelatedIds(String csvValue, FieldDto field) {
         RelationshipHolder relationshipHolder = new RelationshipHolder(field);
         if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
             List<Long> ids = (List<Long>) TypeHelper.parse(csvValue, List.class.getName(), Long.class.getName());
-
-            Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
-            if (ids != null) {
-                for (Long id : ids) {
-                    Object relatedObj = getRelatedObject(id, relationshipHolder.getRelatedClass());
-                    if (relatedObj != null) {
-                        relatedObjects.add(relatedObj);
-                    }
-                }
-            }
-            return relatedObjects;
+            return ids == null ? new ArrayList<Long>() : ids;
         } else {
             Long id = (Long) TypeHelper.parse(csvValue, Long.class);
-            return getRelatedObject(id, relationshipHolder.getRelatedClass());
+            return id == null ? Collections.<Long>emptyList() : Collections.singletonList(id);
         }
     }
 
@@ -411,38 +383,363 @@ public class CsvImporterExporter extends AbstractMdsExporter {
         }
     }
 
-    private Object getRelatedObject(Long id, String entityClass) {
-        MotechDataService dataService = DataServiceHelper.getDataService(getBundleContext(), entityClass);
-        Object obj = dataService.findById(id);
-
-        if (obj == null) {
-            LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
-                    entityClass, id);
+    private static Map<Long, Object> mapById(Collection<?> instances) {
+        Map<Long, Object> instancesById = new HashMap<>();
+        if (instances != null) {
+            for (Object instance : instances) {
+                instancesById.put((Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME), instance);
+            }
         }
+        return instancesById;
+    }
 
-        return obj;
+    private static ThreadFactory parserThreadFactory(final ClassLoader classLoader) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mds-csv-import-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                // the enums and other types of the entity are only visible through its class loader
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            }
+        };
     }
 
     /**
-     * This class represents a result of a single row import.
-     * It contains the ID of the created instance, it also contains information about whether it is a
-     * new instance.
+     * A single import of a CSV file. The rows are parsed on the parser threads, without accessing the database,
+     * and then written chunk by chunk, each chunk in its own transaction. When the default import customizer is
+     * used, the instances of a chunk that are to be updated are retrieved with a single query and the chunk is
+     * written using the bulk operations of the data service. Custom customizers are called for every row.
      */
-    private class RowImportResult {
-        private final Long id;
-        private final boolean newInstance;
+    private class ChunkedImport {
+
+        private final EntityDto entityDto;
+        private final MotechDataService dataService;
+        private final Class entityClass;
+        private final String[] headers;
+        private final Map<String, FieldDto> fieldsByHeader = new HashMap<>();
+        private final CsvImportCustomizer importCustomizer;
+        private final boolean continueOnError;
+        private final boolean bulk;
+
+        private final List<Long> newInstanceIDs = new ArrayList<>();
+        private final List<Long> updatedInstanceIDs = new ArrayList<>();
+        private final Map<Integer, String> exceptions = new HashMap<>();
+
+        ChunkedImport(EntityInfo entityInfo, MotechDataService dataService, String[] headers,
+                      CsvImportCustomizer importCustomizer, boolean continueOnError) {
+            this.entityDto = entityInfo.getEntity();
+            this.dataService = dataService;
+            this.entityClass = dataService.getClassType();
+            this.headers = headers;
+            this.importCustomizer = importCustomizer;
+            this.continueOnError = continueOnError;
+            this.bulk = importCustomizer.getClass() == DefaultCsvImportCustomizer.class;
+
+            for (String header : headers) {
+                FieldDto field = importCustomizer.findField(header, entityInfo.getFieldDtos());
+                if (field == null) {
+                    LOGGER.warn("No field with name {} in entity {}, however such row exists in CSV. Ignoring.",
+                            header, entityClass.getName());
+                } else {
+                    fieldsByHeader.put(header, field);
+                }
+            }
+        }
 
-        public RowImportResult(Long id, boolean newInstance) {
-            this.id = id;
-            this.newInstance = newInstance;
+        List<Future<List<ParsedRow>>> parse(ExecutorService parsers, List<Map<String, String>> rows,
+                                            final int rowsBefore) {
+            List<Future<List<ParsedRow>>> futures = new ArrayList<>();
+            int partSize = Math.max(1, (rows.size() + PARSER_THREADS - 1) / PARSER_THREADS);
+
+            for (int from = 0; from < rows.size(); from += partSize) {
+                final int partStart = rowsBefore + from;
+                final List<Map<String, String>> part = rows.subList(from, Math.min(from + partSize, rows.size()));
+
+                futures.add(parsers.submit(new Callable<List<ParsedRow>>() {
+                    @Override
+                    public List<ParsedRow> call() {
+                        List<ParsedRow> parsedRows = new ArrayList<>(part.size());
+                        for (int i = 0; i < part.size(); ++i) {
+                            parsedRows.add(parseRow(part.get(i), partStart + i + 1));
+                        }
+                        return parsedRows;
+                    }
+                }));
+            }
+
+            return futures;
         }
 
-        public Long getId() {
-            return id;
+        void importChunk(final List<ParsedRow> rows) {
+            ChunkResult result;
+            try {
+                result = writeInTransaction(rows);
+            } catch (RuntimeException e) {
+                if (!continueOnError) {
+                    throw e;
+                }
+
+                LOGGER.warn("Unable to import rows {} to {} at once, importing them one by one",
+                        rows.get(0).rowNum, rows.get(rows.size() - 1).rowNum, e);
+
+                for (ParsedRow row : rows) {
+                    try {
+                        addResult(writeInTransaction(Collections.singletonList(row)));
+                    } catch (RuntimeException rowException) {
+                        exceptions.put(row.rowNum, rowException.getMessage());
+                    }
+                }
+                return;
+            }
+
+            addResult(result);
         }
 
-        public boolean isNewInstance() {
-            return newInstance;
+        CsvImportResults getResults() {
+            return new CsvImportResults(entityDto, newInstanceIDs, updatedInstanceIDs, exceptions);
         }
+
+        private ParsedRow parseRow(Map<String, String> row, int rowNum) {
+            ParsedRow parsedRow = new ParsedRow(row, rowNum);
+            try {
+                if (bulk) {
+                    String id = row.get(Constants.Util.ID_FIELD_DISPLAY_NAME);
+                    if (StringUtils.isNotBlank(id)) {
+                        parsedRow.existingId = Long.valueOf(id);
+                    }
+                }
+
+                for (String header : headers) {
+                    FieldDto field = fieldsByHeader.get(header);
+                    if (field != null && row.containsKey(header)) {
+                        String csvValue = row.get(header);
+
+                        // related instances are retrieved when the chunk is written
+                        if (field.getType().isRelationship()) {
+                            parsedRow.fields.add(new ParsedField(header, field, csvValue, null,
+                                    parseRelatedIds(csvValue, field)));
+                        } else {
+                            parsedRow.fields.add(new ParsedField(header, field, csvValue,
+                                    parseValue(entityDto, csvValue, field, entityClass.getClassLoader()), null));
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                parsedRow.error = e;
+            }
+            return parsedRow;
+        }
+
+        private ChunkResult writeInTransaction(final List<ParsedRow> rows) {
+            return (ChunkResult) dataService.doInTransaction(new TransactionCallback<ChunkResult>() {
+                @Override
+                public ChunkResult doInTransaction(TransactionStatus status) {
+                    return writeRows(rows);
+                }
+            });
+        }
+
+        private ChunkResult writeRows(List<ParsedRow> rows) {
+            ChunkResult result = new ChunkResult();
+
+            Map<Long, Object> existingInstances = bulk ? findExistingInstances(rows)
+                    : Collections.<Long, Object>emptyMap();
+            Map<String, Map<Long, Object>> relatedInstances = findRelatedInstances(rows);
+
+            List<Object> newInstances = new ArrayList<>();
+            List<Object> updatedInstances = new ArrayList<>();
+
+            for (ParsedRow row : rows) {
+                try {
+                    if (row.error != null) {
+                        throw row.error;
+                    }
+
+                    Object instance = bulk ? getExistingInstance(row, existingInstances)
+                            : importCustomizer.findExistingInstance(row.row, dataService);
+
+                    boolean isNewInstance = instance == null;
+                    if (isNewInstance) {
+                        LOGGER.debug("Creating new {}", entityClass.getName());
+                        instance = newInstance();
+                    } else {
+                        LOGGER.debug("Updating {} with id {}", entityClass.getName(),
+                                row.row.get(Constants.Util.ID_FIELD_NAME));
+                    }
+
+                    setFields(instance, row, relatedInstances);
+
+                    if (bulk) {
+                        (isNewInstance ? newInstances : updatedInstances).add(instance);
+                    } else if (isNewInstance) {
+                        result.created.add(importCustomizer.doCreate(instance, dataService));
+                    } else {
+                        result.updated.add(importCustomizer.doUpdate(instance, dataService));
+                    }
+                } catch (RuntimeException e) {
+                    if (continueOnError) {
+                        result.exceptions.put(row.rowNum, e.getMessage());
+                    } else {
+                        throw e;
+                    }
+                }
+            }
+
+            if (bulk) {
+                result.created.addAll(dataService.createAll(newInstances));
+                result.updated.addAll(dataService.updateAll(updatedInstances));
+            }
+
+            return result;
+        }
+
+        private Map<Long, Object> findExistingInstances(List<ParsedRow> rows) {
+            Set<Long> ids = new HashSet<>();
+            for (ParsedRow row : rows) {
+                if (row.existingId != null) {
+                    ids.add(row.existingId);
+                }
+            }
+            return ids.isEmpty() ? Collections.<Long, Object>emptyMap() : mapById(dataService.findByIds(ids));
+        }
+
+        private Object getExistingInstance(ParsedRow row, Map<Long, Object> existingInstances) {
+            if (row.existingId == null) {
+                return null;
+            }
+
+            Object instance = existingInstances.get(row.existingId);
+            if (instance == null) {
+                throw new CsvImportException("Unable to update, no instance with id = " + row.existingId);
+            }
+            return instance;
+        }
+
+        private Map<String, Map<Long, Object>> findRelatedInstances(List<ParsedRow> rows) {
+            Map<String, Set<Long>> idsByClass = new HashMap<>();
+            for (ParsedRow row : rows) {
+                for (ParsedField parsedField : row.fields) {
+                    if (parsedField.relatedIds != null && !parsedField.relatedIds.isEmpty()) {
+                        String relatedClass = new RelationshipHolder(parsedField.field).getRelatedClass();
+                        if (!idsByClass.containsKey(relatedClass)) {
+                            idsByClass.put(relatedClass, new HashSet<Long>());
+                        }
+                        idsByClass.get(relatedClass).addAll(parsedField.relatedIds);
+                    }
+                }
+            }
+
+            Map<String, Map<Long, Object>> relatedInstances = new HashMap<>();
+            for (Map.Entry<String, Set<Long>> entry : idsByClass.entrySet()) {
+                MotechDataService relatedDataService = DataServiceHelper.getDataService(getBundleContext(),
+                        entry.getKey());
+                relatedInstances.put(entry.getKey(), mapById(relatedDataService.findByIds(entry.getValue())));
+            }
+            return relatedInstances;
+        }
+
+        private Object newInstance() {
+            try {
+                return entityClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new CsvImportException("Unable to create instance of " + entityClass.getName(), e);
+            }
+        }
+
+        private void setFields(Object instance, ParsedRow row, Map<String, Map<Long, Object>> relatedInstances) {
+            for (ParsedField parsedField : row.fields) {
+                Object value = parsedField.relatedIds == null ? parsedField.value
+                        : getRelatedValue(parsedField, relatedInstances);
+                try {
+                    PropertyUtil.setProperty(instance, StringUtils.uncapitalize(parsedField.field.getBasic().getName()),
+                            value);
+                } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+                    String msg = String.format("Error when processing field: %s, value in CSV file is %s",
+                            parsedField.header, parsedField.csvValue);
+                    throw new CsvImportException(msg, e);
+                }
+            }
+        }
+
+        private Object getRelatedValue(ParsedField parsedField, Map<String, Map<Long, Object>> relatedInstances) {
+            RelationshipHolder relationshipHolder = new RelationshipHolder(parsedField.field);
+            Map<Long, Object> instancesById = relatedInstances.get(relationshipHolder.getRelatedClass());
+
+            List<Object> related = new ArrayList<>();
+            for (Long id : parsedField.relatedIds) {
+                Object relatedObj = instancesById == null ? null : instancesById.get(id);
+                if (relatedObj == null) {
+                    LOGGER.warn("Unable to find {} instance with id {}. Ignoring, you will have to create this relationship manually",
+                            relationshipHolder.getRelatedClass(), id);
+                } else {
+                    related.add(relatedObj);
+                }
+            }
+
+            if (relationshipHolder.isManyToMany() || relationshipHolder.isOneToMany()) {
+                Collection<Object> relatedObjects = buildRelationshipCollection(relationshipHolder);
+                relatedObjects.addAll(related);
+                return relatedObjects;
+            } else {
+                return related.isEmpty() ? null : related.get(0);
+            }
+        }
+
+        private void addResult(ChunkResult result) {
+            // the ids are read after the commit, when they are assigned for sure
+            for (Object instance : result.created) {
+                newInstanceIDs.add((Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME));
+            }
+            for (Object instance : result.updated) {
+                updatedInstanceIDs.add((Long) PropertyUtil.safeGetProperty(instance, Constants.Util.ID_FIELD_NAME));
+            }
+            exceptions.putAll(result.exceptions);
+        }
+    }
+
+    /**
+     * A single row of the CSV file, parsed without accessing the database. Relationship fields hold only the ids
+     * of the related instances.
+     */
+    private static class ParsedRow {
+        private final Map<String, String> row;
+        private final int rowNum;
+        private final List<ParsedField> fields = new ArrayList<>();
+        private Long existingId;
+        private RuntimeException error;
+
+        ParsedRow(Map<String, String> row, int rowNum) {
+            this.row = row;
+            this.rowNum = rowNum;
+        }
+    }
+
+    private static class ParsedField {
+        private final String header;
+        private final FieldDto field;
+        private final String csvValue;
+        private final Object value;
+        private final List<Long> relatedIds;
+
+        ParsedField(String header, FieldDto field, String csvValue, Object value, List<Long> relatedIds) {
+            this.header = header;
+            this.field = field;
+            this.csvValue = csvValue;
+            this.value = value;
+            this.relatedIds = relatedIds;
+        }
+    }
+
+    /**
+     * The instances created and updated in a single transaction, together with the errors of its rows.
+     */
+    private static class ChunkResult {
+        private final List<Object> created = new ArrayList<>();
+        private final List<Object> updated = new ArrayList<>();
+        private final Map<Integer, String> exceptions = new HashMap<>();
     }
 }
@@ -0,0 +1,135 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.apache.commons.lang.StringUtils;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.service.MDSLookupService;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
+import org.motechproject.mds.util.PropertyUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the instances to export in chunks, so that only a single chunk has to be kept in memory. Exports ordered
+ * by the ids of the instances, both of all instances and of lookup results, use keyset paging: every chunk starts
+ * after the id of the last instance read, which the database finds with an index range scan. Instances created or
+ * deleted while the export runs therefore never cause other instances to be skipped or exported twice. Custom
+ * orderings use offset paging instead, with the id appended to the ordering, so that the consecutive pages do not
+ * overlap. The exports read every chunk in its own short transaction, so that the instances of a chunk are released
+ * once it was written, and an export is not a snapshot of a single transaction. Every chunk sees the changes committed
+ * before it was read, so instances created or deleted during an export with a custom ordering can shift the pages,
+ * and an instance can be skipped or exported twice. Besides the CSV and PDF exports, it is also used by the JSON
+ * export of entity instances.
+ */
+public class ExportChunkReader {
+
+    private final MotechDataService dataService;
+    private final MDSLookupService lookupService;
+    private final String entityClassName;
+    private final String lookupName;
+    private final Map<String, Object> lookupFields;
+    private final List<Order> orderList;
+    private final boolean keyset;
+    private final int chunkSize;
+    private final int firstPage;
+
+    private long limit;
+    private long rowsRead;
+    private Long lastId;
+
+    /**
+     * Constructor.
+     *
+     * @param dataService the data service of the exported entity
+     * @param lookupService the service used for executing the lookup, if one is given
+     * @param entityClassName the class name of the exported entity
+     * @param lookupName the name of the lookup, blank for exporting all instances
+     * @param lookupFields the values of the lookup fields
+     * @param params the ordering and paging of the exported instances, may be null
+     * @param chunkSize the maximal number of instances read at once
+     */
+    public ExportChunkReader(MotechDataService dataService, MDSLookupService lookupService, String entityClassName,
+                             String lookupName, Map<String, Object> lookupFields, QueryParams params, int chunkSize) {
+        this.dataService = dataService;
+        this.lookupService = lookupService;
+        this.entityClassName = entityClassName;
+        this.lookupName = lookupName;
+        this.lookupFields = lookupFields;
+
+        boolean paged = params != null && params.isPagingSet();
+
+        this.limit = paged ? params.getPageSize() : Long.MAX_VALUE;
+        // pages beyond the first are read at once, they are only as large as requested
+        this.firstPage = paged ? params.getPage() : 1;
+        this.chunkSize = firstPage > 1 ? params.getPageSize() : chunkSize;
+
+        List<Order> orders = params == null || !params.isOrderSet()
+                ? new ArrayList<Order>()
+                : new ArrayList<>(params.getOrderList());
+
+        this.keyset = firstPage == 1 && isOrderedById(orders);
+
+        if (!containsId(orders)) {
+            orders.add(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.ASC));
+        }
+        this.orderList = orders;
+    }
+
+    /**
+     * Reads the next chunk of instances.
+     *
+     * @return the instances, an empty list if all the instances were read
+     */
+    public List<Object> nextChunk() {
+        if (rowsRead >= limit) {
+            return Collections.emptyList();
+        }
+
+        // offset paging needs pages of the same size, the surplus of the last one is dropped
+        int size = keyset ? (int) Math.min(chunkSize, limit - rowsRead) : chunkSize;
+
+        QueryParams queryParams;
+        if (keyset) {
+            queryParams = new QueryParams(1, size, orderList,
+                    lastId == null ? null : Collections.<Object>singletonList(lastId));
+        } else {
+            int page = firstPage + (int) (rowsRead / chunkSize);
+            queryParams = new QueryParams(page, chunkSize, orderList);
+        }
+
+        List<Object> chunk = StringUtils.isBlank(lookupName) ? dataService.retrieveAll(queryParams) :
+                lookupService.<Object>findMany(entityClassName, lookupName, lookupFields, queryParams);
+
+        if (chunk.size() < size) {
+            // this is the last chunk
+            limit = rowsRead + chunk.size();
+        }
+        if (chunk.size() > limit - rowsRead) {
+            chunk = chunk.subList(0, (int) (limit - rowsRead));
+        }
+
+        rowsRead += chunk.size();
+        if (keyset && !chunk.isEmpty()) {
+            lastId = (Long) PropertyUtil.safeGetProperty(chunk.get(chunk.size() - 1), Constants.Util.ID_FIELD_NAME);
+        }
+
+        return chunk;
+    }
+
+    private static boolean isOrderedById(List<Order> orders) {
+        return orders.isEmpty() || (orders.size() == 1 && containsId(orders));
+    }
+
+    private static boolean containsId(List<Order> orders) {
+        for (Order order : orders) {
+            if (Constants.Util.ID_FIELD_NAME.equals(order.getField())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
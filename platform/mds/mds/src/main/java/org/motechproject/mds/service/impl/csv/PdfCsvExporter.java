@@ -4,8 +4,8 @@ import org.motechproject.mds.entityinfo.EntityInfo;
 import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.CsvExportCustomizer;
 import org.motechproject.mds.service.DefaultCsvExportCustomizer;
+import org.motechproject.mds.service.ExportProgress;
 import org.motechproject.mds.service.impl.csv.writer.PdfTableWriter;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.io.OutputStream;
 import java.util.List;
@@ -22,7 +22,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param outputStream the output stream that will be used for writing the file
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final long entityId, final OutputStream outputStream) {
         return exportPdf(entityId, outputStream, new DefaultCsvExportCustomizer());
     }
@@ -33,7 +32,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param outputStream the output stream that will be used for writing the file
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final String entityClassName, final OutputStream outputStream) {
         return exportPdf(entityClassName, outputStream, new DefaultCsvExportCustomizer());
     }
@@ -45,7 +43,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final long entityId, OutputStream outputStream, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
         try (PdfTableWriter tableWriter = new PdfTableWriter(outputStream)) {
@@ -60,7 +57,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(final String entityClassName, OutputStream outputStream, final CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
         try (PdfTableWriter tableWriter = new PdfTableWriter(outputStream)) {
@@ -78,7 +74,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields) {
         return exportPdf(entityId, outputStream, lookupName, params, headers, lookupFields,
@@ -95,7 +90,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param lookupFields the lookupFields used in the lookup
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(String entityClassName, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields) {
         return exportPdf(entityClassName, outputStream, lookupName, params, headers, lookupFields,
@@ -113,7 +107,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityId);
@@ -123,6 +116,28 @@ public class PdfCsvExporter extends AbstractMdsExporter {
         }
     }
 
+    /**
+     * Exports entity instances to a PDF file, reporting the progress of the export.
+     * @param entityId id of the entity for which the instances will be exported
+     * @param outputStream the output stream that will be used for writing the file
+     * @param lookupName the name of lookup
+     * @param params query parameters to be used retrieving instances
+     * @param headers the headers of exported file
+     * @param lookupFields the lookupFields used in the lookup
+     * @param exportCustomizer the customizer that will be used during export
+     * @param progress the progress of the export, updated after every chunk of instances
+     * @return number of exported instances
+     */
+    public long exportPdf(long entityId, OutputStream outputStream, String lookupName, QueryParams params,
+                          List<String> headers, Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer,
+                          ExportProgress progress) {
+        EntityInfo entityInfo = getEntity(entityId);
+        try (PdfTableWriter tableWriter = new PdfTableWriter(outputStream)){
+            return exportData(entityInfo, tableWriter, lookupName, params, headers, lookupFields,
+                    exportCustomizer, progress);
+        }
+    }
+
     /**
      * Exports entity instances to a PDF file.
      * @param entityClassName the class name of the entity for which instances will be exported
@@ -134,7 +149,6 @@ public class PdfCsvExporter extends AbstractMdsExporter {
      * @param exportCustomizer the customizer that will be used during export
      * @return number of exported instances
      */
-    @Transactional
     public long exportPdf(String entityClassName, OutputStream outputStream, String lookupName, QueryParams params,
                           List<String> headers, Map<String, Object> lookupFields, CsvExportCustomizer exportCustomizer) {
         EntityInfo entityInfo = getEntity(entityClassName);
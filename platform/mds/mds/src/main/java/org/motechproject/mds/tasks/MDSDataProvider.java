@@ -15,9 +15,9 @@ import org.motechproject.mds.lookup.LookupExecutor;
 import org.motechproject.mds.service.EntityService;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.util.Constants;
-import org.motechproject.osgi.web.util.OSGiServiceUtils;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
@@ -28,6 +28,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class responsible for all actions connected with registering MDS data provider in Task module.
@@ -44,6 +46,10 @@ public class MDSDataProvider extends AbstractDataProvider {
     private ServiceRegistration serviceRegistration;
     private EntityService entityService;
 
+    private final Map<String, ResolvedLookup> resolvedLookups = new ConcurrentHashMap<>();
+    private final AtomicLong lookupsGeneration = new AtomicLong();
+    private volatile Bundle entitiesBundle;
+
     @Autowired
     public MDSDataProvider(ResourceLoader resourceLoader) {
         this.resourceLoader = resourceLoader;
@@ -91,6 +97,7 @@ public class MDSDataProvider extends AbstractDataProvider {
     }
 
     public void updateDataProvider(SchemaHolder schemaHolder) {
+        clearResolvedLookups();
         setBody(mdsDataProviderBuilder.generateDataProvider(schemaHolder));
         // we unregister the service, then register again
         if (serviceRegistration != null) {
@@ -103,35 +110,31 @@ public class MDSDataProvider extends AbstractDataProvider {
         }
     }
 
+    private void clearResolvedLookups() {
+        lookupsGeneration.incrementAndGet();
+        resolvedLookups.clear();
+        entitiesBundle = null;
+    }
+
     @Override
     protected Class<?> getClassForType(String type) throws ClassNotFoundException {
-        Bundle entitiesBundle = OsgiBundleUtils.findBundleBySymbolicName(bundleContext,
-                Constants.BundleNames.MDS_ENTITIES_SYMBOLIC_NAME);
-        return (entitiesBundle != null) ? entitiesBundle.loadClass(type) : null;
+        Bundle bundle = entitiesBundle;
+
+        if (bundle == null || bundle.getState() == Bundle.UNINSTALLED) {
+            bundle = OsgiBundleUtils.findBundleBySymbolicName(bundleContext,
+                    Constants.BundleNames.MDS_ENTITIES_SYMBOLIC_NAME);
+            entitiesBundle = bundle;
+        }
+
+        return (bundle != null) ? bundle.loadClass(type) : null;
     }
 
     private Object findUsingLookup(String type, String lookupName, Map<String, String> lookupMap) {
         Object obj = null;
 
-        LookupDto lookup = null;
-        EntityDto entity = entityService.getEntityByClassName(type);
-        if (entity != null) {
-            lookup = entityService.getLookupByName(entity.getId(), lookupName);
-        }
-
-        if (entity != null && lookup != null) {
-            String serviceName = MotechClassPool.getInterfaceName(type);
-            MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
-
-            if (service != null) {
-                Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
-
-                LookupExecutor executor = new LookupExecutor(service, lookup, fieldsByName);
-
-                obj = executor.execute(lookupMap);
-            } else {
-                getLogger().error("Service %s not found", serviceName);
-            }
+        ResolvedLookup resolved = resolveLookup(type, lookupName);
+        if (resolved != null) {
+            obj = resolved.executor.execute(lookupMap);
         }
 
         // we allow executing lookups that return multiple objects
@@ -155,14 +158,66 @@ public class MDSDataProvider extends AbstractDataProvider {
 
     private Object findById(String type, String idParam) {
         Long id = parseId(idParam);
+        ResolvedLookup resolved = resolveLookup(type, FIND_BY_ID_LOOKUP);
+        return resolved == null ? null : resolved.service.findById(id);
+    }
+
+    /**
+     * Returns the lookup of the given type with the given name, bound to the data service of the type. Resolved
+     * lookups are cached until the data provider is updated, or until the data service is unregistered.
+     */
+    private ResolvedLookup resolveLookup(String type, String lookupName) {
+        String key = type + '#' + lookupName;
+        ResolvedLookup resolved = resolvedLookups.get(key);
+
+        if (resolved != null && resolved.isValid()) {
+            return resolved;
+        }
+
+        long generation = lookupsGeneration.get();
+        resolved = FIND_BY_ID_LOOKUP.equals(lookupName) ? resolveFindById(type) : resolveUsingLookup(type, lookupName);
+
+        if (resolved == null) {
+            resolvedLookups.remove(key);
+        } else if (generation == lookupsGeneration.get()) {
+            // lookups resolved while the provider was being updated could already be stale
+            resolvedLookups.put(key, resolved);
+        }
+
+        return resolved;
+    }
+
+    private ResolvedLookup resolveFindById(String type) {
         String serviceName = MotechClassPool.getInterfaceName(type);
-        MotechDataService service = OSGiServiceUtils.findService(bundleContext, serviceName);
-        if (null != service) {
-            return service.findById(id);
-        } else {
+        ServiceReference reference = bundleContext.getServiceReference(serviceName);
+        MotechDataService service = reference == null ? null : (MotechDataService) bundleContext.getService(reference);
+
+        if (service == null) {
             getLogger().error("Service %s not found", serviceName);
             return null;
         }
+
+        return new ResolvedLookup(reference, service, null);
+    }
+
+    private ResolvedLookup resolveUsingLookup(String type, String lookupName) {
+        EntityDto entity = entityService.getEntityByClassName(type);
+        LookupDto lookup = entity == null ? null : entityService.getLookupByName(entity.getId(), lookupName);
+
+        if (lookup == null) {
+            return null;
+        }
+
+        ResolvedLookup resolved = resolveFindById(type);
+
+        if (resolved == null) {
+            return null;
+        }
+
+        Map<String, FieldDto> fieldsByName = entityService.getLookupFieldsMapping(entity.getId(), lookupName);
+
+        return new ResolvedLookup(resolved.reference, resolved.service,
+                new LookupExecutor(resolved.service, lookup, fieldsByName));
     }
 
     private Long parseId(String idParam) {
@@ -194,4 +249,25 @@ public class MDSDataProvider extends AbstractDataProvider {
     public void setEntityService(EntityService entityService) {
         this.entityService = entityService;
     }
+
+    /**
+     * A lookup bound to the data service of its entity. The executor is null for the find by ID lookup.
+     */
+    private static final class ResolvedLookup {
+
+        private final ServiceReference reference;
+        private final MotechDataService service;
+        private final LookupExecutor executor;
+
+        private ResolvedLookup(ServiceReference reference, MotechDataService service, LookupExecutor executor) {
+            this.reference = reference;
+            this.service = service;
+            this.executor = executor;
+        }
+
+        private boolean isValid() {
+            // the bundle of a reference is null once the service is unregistered
+            return reference.getBundle() != null;
+        }
+    }
 }
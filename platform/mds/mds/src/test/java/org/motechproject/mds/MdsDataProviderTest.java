@@ -15,6 +15,7 @@ import org.motechproject.mds.service.DefaultMotechDataService;
 import org.motechproject.mds.tasks.MDSDataProvider;
 import org.motechproject.mds.testutil.FieldTestHelper;
 import org.motechproject.mds.testutil.records.Record;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.springframework.core.io.ResourceLoader;
@@ -27,6 +28,8 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -51,6 +54,9 @@ public class MdsDataProviderTest {
     @Mock
     private ResourceLoader resourceLoader;
 
+    @Mock
+    private Bundle bundle;
+
     @Mock
     private EntityDto entity;
 
@@ -148,6 +154,34 @@ public class MdsDataProviderTest {
         assertEquals("found by related field", record.getValue());
     }
 
+    @Test
+    public void shouldResolveLookupOnlyOnce() {
+        when(serviceReference.getBundle()).thenReturn(bundle);
+
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put("field", PARAM_VALUE);
+
+        dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+        Object result = dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+
+        assertEquals("single", ((Record) result).getValue());
+        verify(entityService, times(1)).getLookupByName(ENTITY_ID, "singleLookup");
+        verify(bundleContext, times(1)).getServiceReference(LookupService.class.getName());
+    }
+
+    @Test
+    public void shouldResolveLookupAgainAfterServiceIsUnregistered() {
+        when(serviceReference.getBundle()).thenReturn(null);
+
+        Map<String, String> lookupMap = new HashMap<>();
+        lookupMap.put("field", PARAM_VALUE);
+
+        dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+        dataProvider.lookup(Record.class.getName(), "singleLookup", lookupMap);
+
+        verify(bundleContext, times(2)).getServiceReference(LookupService.class.getName());
+    }
+
     public static class LookupService extends DefaultMotechDataService<Record> {
 
         public Record singleLookup(String field) {
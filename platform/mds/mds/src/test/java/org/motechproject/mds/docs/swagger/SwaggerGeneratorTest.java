@@ -61,10 +61,12 @@ import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ARRAY_TY
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_BODY_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CREATE_ID_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.CURSOR_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.DELETE_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.DELETE_ID_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.DELETE_ID_PARAM_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.ID_DESC_KEY;
+import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INCLUDE_TOTAL_DESC_KEY;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INT64_FORMAT;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.INTEGER_TYPE;
 import static org.motechproject.mds.docs.swagger.model.SwaggerConstants.LICENSE_NAME_KEY;
@@ -299,11 +301,11 @@ public class SwaggerGeneratorTest {
         List<Parameter> parameters = pathEntry.getParameters();
 
         assertNotNull(parameters);
-        assertEquals(5, parameters.size());
+        assertEquals(7, parameters.size());
         verifyQueryParameters(pathEntry.getParameters(),
                 asList("str", "integerField", "longField", "timeField", "owner", "creator",
                         "modifiedBy", "modificationDate", "creationDate"), 0);
-        verifyQueryParameter(parameters.get(4), "id", ID_DESC_KEY, "integer", "int64");
+        verifyQueryParameter(parameters.get(6), "id", ID_DESC_KEY, "integer", "int64");
 
         Map<Integer, Response> responses = pathEntry.getResponses();
 
@@ -402,7 +404,7 @@ public class SwaggerGeneratorTest {
         assertNull(longParam.getSchema());
 
         assertNotNull(parameters);
-        assertEquals(6, parameters.size());
+        assertEquals(8, parameters.size());
         verifyQueryParameters(pathEntry.getParameters(),
                 asList("str", "integerField", "longField", "timeField", "owner", "creator",
                         "modifiedBy", "modificationDate", "creationDate"), 2);
@@ -578,7 +580,7 @@ public class SwaggerGeneratorTest {
         assertNull(localeParamItems.getItems());
 
         assertNotNull(parameters);
-        assertEquals(6, parameters.size());
+        assertEquals(8, parameters.size());
         verifyQueryParameters(pathEntry.getParameters(),
                 asList("doubleField", "dateField", "dtField", "ldField", "localeField", "listField",
                         "owner", "creator", "modifiedBy", "modificationDate", "creationDate"), 2);
@@ -752,7 +754,9 @@ public class SwaggerGeneratorTest {
         verifyQueryParameter(parameters.get(i++), "page", PAGE_DESC_KEY, "integer", "int32");
         verifyQueryParameter(parameters.get(i++), "pageSize", PAGESIZE_DESC_KEY, "integer", "int32");
         verifyQueryParameter(parameters.get(i++), "sort", SORT_DESC_KEY, "string", null);
-        verifyQueryParameter(parameters.get(i), "order", ORDER_DESC_KEY, "string", null);
+        verifyQueryParameter(parameters.get(i++), "order", ORDER_DESC_KEY, "string", null);
+        verifyQueryParameter(parameters.get(i++), "cursor", CURSOR_DESC_KEY, "string", null);
+        verifyQueryParameter(parameters.get(i), "includeTotal", INCLUDE_TOTAL_DESC_KEY, "string", null);
 
         // verify values in the sort parameter
         assertEquals(expectedSortFields, parameters.get(startIndex + 2).getEnumValues());
@@ -8,10 +8,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.motechproject.mds.domain.Entity;
+import org.motechproject.mds.query.QueryParams;
 import org.motechproject.mds.service.MotechDataService;
 import org.motechproject.mds.testutil.EntitySchemaBuilder;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.IOException;
 import java.io.StringWriter;
@@ -21,7 +25,11 @@ import java.util.List;
 import java.util.Map;
 
 import static java.util.Arrays.asList;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.motechproject.mds.util.Constants.MetadataKeys.ENUM_CLASS_NAME;
 import static org.motechproject.mds.util.Constants.MetadataKeys.RELATED_CLASS;
@@ -46,6 +54,12 @@ public class InstancesWriterTest {
     @Before
     public void setUp() throws Exception {
         when(exportContext.getDataService(eq(ENTITY))).thenReturn(dataService);
+        when(dataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
     }
 
     @Test
@@ -208,6 +222,32 @@ public class InstancesWriterTest {
         assertInstanceWrittenCorrectly(entity, instance, NULL_PROPERTY_JSON);
     }
 
+    @Test
+    public void shouldWriteAllInstancesInChunks() throws Exception {
+        Entity entity = EntitySchemaBuilder.eude(ENTITY).field(PROPERTY, "mds.field.integer").done().build();
+        when(dataService.retrieveAll(any(QueryParams.class))).thenReturn(
+                asList(new EntityWithProperty<>(1L, 10), new EntityWithProperty<>(2L, 20)),
+                asList(new EntityWithProperty<>(3L, 30)));
+
+        StringWriter stringWriter = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(stringWriter);
+        InstancesWriter instancesWriter = new InstancesWriter(jsonWriter, entity, exportContext, 2);
+
+        instancesWriter.writeInstances();
+        jsonWriter.flush();
+
+        JsonParser parser = new JsonParser();
+        JsonElement expected = parser.parse("[{\"refId\":1,\"property\":10},{\"refId\":2,\"property\":20}," +
+                "{\"refId\":3,\"property\":30}]");
+        Assert.assertEquals(expected, parser.parse(stringWriter.toString()));
+
+        // the last chunk was not full, so there was no need for another query
+        verify(dataService, times(2)).retrieveAll(any(QueryParams.class));
+        // every chunk is read in its own transaction
+        verify(dataService, times(3)).doInTransaction(any(TransactionCallback.class));
+        verify(dataService, never()).retrieveAll();
+    }
+
     private void assertInstanceWrittenCorrectly(Entity entity, Object instance, String expectedString) throws IOException {
 
         StringWriter stringWriter = new StringWriter();
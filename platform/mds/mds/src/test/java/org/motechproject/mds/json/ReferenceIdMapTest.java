@@ -0,0 +1,53 @@
+package org.motechproject.mds.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ReferenceIdMapTest {
+
+    @Test
+    public void shouldMapReferenceIdsToIds() {
+        ReferenceIdMap map = new ReferenceIdMap();
+
+        // enough entries for the table to grow a few times
+        for (long refId = -1; refId < 10000; ++refId) {
+            map.put(refId, refId + 100000);
+        }
+
+        assertEquals(10001, map.size());
+        for (long refId = -1; refId < 10000; ++refId) {
+            assertEquals(Long.valueOf(refId + 100000), map.get(refId));
+        }
+        assertNull(map.get(10000));
+        assertNull(map.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldReplaceIdOfExistingReferenceId() {
+        ReferenceIdMap map = new ReferenceIdMap();
+
+        map.put(5, 10);
+        map.put(5, 20);
+
+        assertEquals(1, map.size());
+        assertEquals(Long.valueOf(20), map.get(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectReservedReferenceId() {
+        new ReferenceIdMap().put(Long.MIN_VALUE, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotBeUsedAfterClose() {
+        ReferenceIdMap map = new ReferenceIdMap();
+        map.put(5, 10);
+
+        map.close();
+        map.close();
+
+        map.get(5);
+    }
+}
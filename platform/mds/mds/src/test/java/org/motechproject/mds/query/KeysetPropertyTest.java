@@ -0,0 +1,40 @@
+package org.motechproject.mds.query;
+
+import org.motechproject.mds.util.Order;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+public class KeysetPropertyTest extends PropertyTest {
+
+    @Override
+    protected Property getProperty() {
+        return new KeysetProperty(Arrays.asList(new Order("name", Order.Direction.DESC), new Order("id")),
+                Arrays.<Object>asList("Bob", 15L));
+    }
+
+    @Override
+    protected int getIdx() {
+        return 2;
+    }
+
+    @Override
+    protected String expectedFilter() {
+        return "(name < param2k0 || (name == param2k0 && id > param2k1))";
+    }
+
+    @Override
+    protected String expectedDeclareParameter() {
+        return "java.lang.String param2k0, java.lang.Long param2k1";
+    }
+
+    @Override
+    protected Collection expectedUnwrap() {
+        return Arrays.asList("Bob", 15L);
+    }
+
+    @Override
+    protected boolean isRelationSupported() {
+        return false;
+    }
+}
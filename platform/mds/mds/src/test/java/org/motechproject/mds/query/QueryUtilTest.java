@@ -95,6 +95,38 @@ public class QueryUtilTest {
         verify(query).setFilter("strProp == param0 && (textField.matches(param1) || textField2.matches(param2))");
         verify(query).declareParameters("java.lang.String param0, java.lang.String param1, java.lang.String param2");
     }
+    @Test
+    public void shouldSetRangeForKeyset() {
+        QueryParams queryParams = new QueryParams(7, 10, asList(new Order("field", Order.Direction.ASC),
+                new Order("id", Order.Direction.ASC)), asList((Object) "value", 5L));
+
+        QueryUtil.setQueryParams(query, queryParams);
+
+        // the page number is ignored, the previous pages are filtered out using the keyset
+        verify(query).setRange(0, 10);
+        verify(query).setOrdering("field ascending, id ascending");
+    }
+
+    @Test
+    public void shouldAddKeysetProperty() {
+        List<Property> properties = singletonList((Property) new EqualProperty<>("prop1", true, Boolean.class.getName()));
+        QueryParams queryParams = new QueryParams(1, 10, singletonList(new Order("id", Order.Direction.ASC)),
+                singletonList((Object) 5L));
+
+        assertEquals(properties, QueryUtil.withKeyset(properties, null));
+        assertEquals(properties, QueryUtil.withKeyset(properties, new QueryParams(1, 10)));
+
+        QueryUtil.useFilter(query, QueryUtil.withKeyset(properties, queryParams));
+
+        verify(query).setFilter("prop1 == param0 && (id > param1k0)");
+        verify(query).declareParameters("java.lang.Boolean param0, java.lang.Long param1k0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectKeysetNotMatchingOrder() {
+        new QueryParams(1, 10, singletonList(new Order("id", Order.Direction.ASC)), asList((Object) 5L, 6L));
+    }
+
     @Test
     public void shouldReturnSearchPatterns() {
         assertEquals(".*something.*", QueryUtil.asMatchesPattern("something"));
@@ -53,6 +53,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -66,6 +67,7 @@ public class MdsRestFacadeTest {
     private static final String VALUE_FIELD = "value";
     private static final String DATE_FIELD = "date";
     private static final String BLOB_FIELD = "blob";
+    private static final String ID_FIELD = "id";
     private static final String TEST_MODULE = "test_module";
     private static final String ENTITY_NAME = "Record";
     private static final String NAMESPACE = "test_namespace";
@@ -112,6 +114,7 @@ public class MdsRestFacadeTest {
 
         // set up rest fields
         FieldDto valueField = FieldTestHelper.fieldDto(3L, VALUE_FIELD, String.class.getName(), VALUE_FIELD, null);
+        valueField.getBasic().setRequired(true);
         FieldDto dateField = FieldTestHelper.fieldDto(4L, DATE_FIELD, Date.class.getName(), DATE_FIELD, null);
         FieldDto blobField = FieldTestHelper.fieldDto(5L, BLOB_FIELD, Byte[].class.getName(), BLOB_FIELD, null);
         blobField.setType(new TypeDto("mds.field.blob", StringUtils.EMPTY, BLOB_FIELD, Byte[].class.getName()));
@@ -120,7 +123,8 @@ public class MdsRestFacadeTest {
         // set up lookups
         FieldDto strField = FieldTestHelper.fieldDto(1L, STR_FIELD, String.class.getName(), STR_FIELD, null);
         FieldDto intField = FieldTestHelper.fieldDto(2L, INT_FIELD, Integer.class.getName(), INT_FIELD, null);
-        when(entity.getFieldDtos()).thenReturn(asList(intField, strField, valueField, dateField, blobField));
+        FieldDto idField = FieldTestHelper.fieldDto(6L, ID_FIELD, Long.class.getName(), ID_FIELD, null);
+        when(entity.getFieldDtos()).thenReturn(asList(intField, strField, valueField, dateField, blobField, idField));
         when(entity.getField(STR_FIELD)).thenReturn(FieldTestHelper.fieldInfo(STR_FIELD, String.class, false, true));
         when(entity.getField(INT_FIELD)).thenReturn(FieldTestHelper.fieldInfo(INT_FIELD, Integer.class, false, true));
 
@@ -201,6 +205,48 @@ public class MdsRestFacadeTest {
         assertEquals(81l, result.getMetadata().getTotalCount());
     }
 
+    @Test
+    public void shouldRetrieveNextPageUsingCursor() {
+        setUpCrudAccess(false, true, false, false);
+        List<Order> orderList = asList(new Order(VALUE_FIELD, Order.Direction.DESC), new Order(ID_FIELD));
+
+        // the keyset from the cursor contains strings
+        QueryParams queryParams = new QueryParams(1, 1, orderList, asList((Object) "previous", "8"));
+
+        RestResponse result = mdsRestFacade.get(queryParams, false, false);
+
+        verify(dataService).retrieveAll(new QueryParams(1, 1, orderList, asList((Object) "previous", 8L)));
+        verify(dataService, never()).count();
+
+        assertEquals(1, result.getData().size());
+        assertEquals(RestMetadata.UNKNOWN_TOTAL_COUNT, result.getMetadata().getTotalCount());
+        // the page is full, so the cursor points at its last instance
+        assertEquals(asList("restTest", "1"), RestCursor.decode(result.getMetadata().getNextCursor()));
+    }
+
+    @Test
+    public void shouldNotReturnCursorWhenOrderedByNullableField() {
+        setUpCrudAccess(false, true, false, false);
+        QueryParams queryParams = new QueryParams(1, 1, asList(new Order(DATE_FIELD), new Order(ID_FIELD)));
+
+        RestResponse result = mdsRestFacade.get(queryParams, false, false);
+
+        // instances with empty dates could not be reached from the cursor
+        assertEquals(1, result.getData().size());
+        assertNull(result.getMetadata().getNextCursor());
+    }
+
+    @Test
+    public void shouldNotReturnCursorForLastPage() {
+        setUpCrudAccess(false, true, false, false);
+        QueryParams queryParams = new QueryParams(1, 20, asList(new Order(ID_FIELD)));
+
+        RestResponse result = mdsRestFacade.get(queryParams, false, true);
+
+        verify(dataService).count();
+        assertNull(result.getMetadata().getNextCursor());
+    }
+
     @Test
     public void shouldAppendMetadataWhenIdParamWasSpecified() {
         setUpCrudAccess(false, true, false, false);
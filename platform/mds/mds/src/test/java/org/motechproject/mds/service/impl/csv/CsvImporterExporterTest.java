@@ -29,11 +29,14 @@ import org.motechproject.mds.testutil.records.RecordEnum;
 import org.motechproject.mds.testutil.records.RelatedClass;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
+import org.springframework.transaction.support.TransactionCallback;
 
 import java.io.StringReader;
+import java.lang.ref.WeakReference;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -41,7 +44,9 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -121,8 +126,15 @@ public class CsvImporterExporterTest {
         when(bundleContext.getService(relatedServiceRef)).thenReturn(relatedDataService);
         when(relatedDataService.getClassType()).thenReturn(RelatedClass.class);
 
-        when(relatedDataService.findById(0L)).thenReturn(new RelatedClass(0L));
-        when(relatedDataService.findById(1L)).thenReturn(new RelatedClass(1L));
+        when(relatedDataService.findByIds(anyCollection())).thenReturn(Arrays.asList(new RelatedClass(0L),
+                new RelatedClass(1L)));
+
+        when(motechDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+            }
+        });
 
         when(entityInfoReader.getEntityInfo(ENTITY_CLASSNAME)).thenReturn(entityInfo);
         when(entityInfoReader.getEntityInfo(ENTITY_ID)).thenReturn(entityInfo);
@@ -176,6 +188,49 @@ public class CsvImporterExporterTest {
         assertEquals(getTestEntityRecordsAsCsv(IdMode.INCLUDE_ID), writer.toString());
     }
 
+    @Test
+    public void shouldReleaseExportedChunks() {
+        final List<WeakReference<Record2>> firstChunk = new ArrayList<>();
+        final boolean[] inTransaction = new boolean[1];
+
+        when(motechDataService.doInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                inTransaction[0] = true;
+                try {
+                    return ((TransactionCallback) invocation.getArguments()[0]).doInTransaction(null);
+                } finally {
+                    inTransaction[0] = false;
+                }
+            }
+        });
+        when(motechDataService.retrieveAll(any(QueryParams.class))).thenAnswer(new Answer<List<Record2>>() {
+            private int calls;
+
+            @Override
+            public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+                assertTrue("Chunks must be read in their own transactions", inTransaction[0]);
+
+                if (calls++ == 0) {
+                    List<Record2> chunk = chunkInstances(0, AbstractMdsExporter.EXPORT_CHUNK_SIZE);
+                    for (Record2 instance : chunk) {
+                        firstChunk.add(new WeakReference<>(instance));
+                    }
+                    return chunk;
+                }
+
+                // the transaction of the first chunk has ended, so nothing may reference its instances anymore
+                assertTrue("The instances of the first chunk were not released", isCollected(firstChunk));
+                return chunkInstances(AbstractMdsExporter.EXPORT_CHUNK_SIZE, 1);
+            }
+        });
+
+        long result = csvImporterExporter.exportCsv(ENTITY_ID, new StringWriter());
+
+        assertEquals(AbstractMdsExporter.EXPORT_CHUNK_SIZE + 1, result);
+        verify(motechDataService, times(2)).retrieveAll(any(QueryParams.class));
+    }
+
     @Test
     public void shouldImportEntitiesWithIdFromCsv() {
         testImport(IdMode.INCLUDE_ID);
@@ -216,13 +271,16 @@ public class CsvImporterExporterTest {
         // This will provide csv import with 3 rows with invalid enum fields
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.INVALID));
 
+        when(motechDataService.createAll(anyCollection())).thenAnswer(new CreateAllAnswer());
+
         // First import call with continueOnError flag on
         results = csvImporterExporter.importCsv(ENTITY_ID, reader, true);
 
-        // Check how many times create was called, how many objects were created and how many errors were caught
+        // Check how many objects were created and how many errors were caught
         // Expecting 17 creates and 3 errors since we got 3 invalid rows in a set of 20 passed as import input
-        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
-        verify(motechDataService, times(17)).create(captor.capture());
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(motechDataService).createAll(captor.capture());
+        assertEquals(17, captor.getValue().size());
         assertNotNull(results);
         assertEquals(17, results.totalNumberOfImportedInstances());
         assertEquals(3, results.getRowErrors().size());
@@ -239,35 +297,69 @@ public class CsvImporterExporterTest {
         assertTrue(thrown);
     }
 
+    @Test
+    public void shouldImportRowsOneByOneIfChunkCannotBeWritten() {
+        StringReader reader = new StringReader(getTestEntityRecordsAsCsv(IdMode.EMPTY_ID_COLUMN));
+
+        // the instance from the sixth row violates a database constraint
+        when(motechDataService.createAll(anyCollection())).thenAnswer(new CreateAllAnswer() {
+            @Override
+            public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+                for (Object instance : (Collection) invocation.getArguments()[0]) {
+                    if ("value 5".equals(((Record2) instance).getValue())) {
+                        throw new IllegalStateException("constraint violated");
+                    }
+                }
+                return super.answer(invocation);
+            }
+        });
+
+        CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, true);
+
+        // the whole chunk first, then every row in its own transaction
+        verify(motechDataService, times(INSTANCE_COUNT + 1)).doInTransaction(any(TransactionCallback.class));
+
+        assertEquals(INSTANCE_COUNT - 1, results.newInstanceCount());
+        assertEquals(1, results.getRowErrors().size());
+        assertEquals("constraint violated", results.getRowErrors().get(6));
+    }
+
     private void testImport(IdMode idMode) {
         StringReader reader = new StringReader(getTestEntityRecordsAsCsv(idMode));
         // if id provided, prepare entities that will be updated
         if (idMode == IdMode.INCLUDE_ID) {
-            when(motechDataService.update(any(Record2.class))).thenAnswer(new Answer<Record2>() {
+            when(motechDataService.updateAll(anyCollection())).thenAnswer(new Answer<List<Record2>>() {
                 @Override
-                public Record2 answer(InvocationOnMock invocation) throws Throwable {
-                    return (Record2) invocation.getArguments()[0];
+                public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+                    return new ArrayList<>((Collection<Record2>) invocation.getArguments()[0]);
                 }
             });
+            List<Record2> existingInstances = new ArrayList<>();
             for (long i = 0; i < INSTANCE_COUNT; i++) {
-                when(motechDataService.findById(i)).thenReturn(new Record2());
+                Record2 existing = new Record2();
+                existing.setId(i);
+                existingInstances.add(existing);
             }
+            when(motechDataService.findByIds(anyCollection())).thenReturn(existingInstances);
         } else {
-            when(motechDataService.create(any(Record2.class))).thenAnswer(new CreateAnswer());
+            when(motechDataService.createAll(anyCollection())).thenAnswer(new CreateAllAnswer());
         }
 
         CsvImportResults results = csvImporterExporter.importCsv(ENTITY_ID, reader, CONTINUE_ON_ERROR);
 
-        ArgumentCaptor<Record2> captor = ArgumentCaptor.forClass(Record2.class);
+        // all rows fit into a single chunk
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
         if (idMode == IdMode.INCLUDE_ID) {
-            verify(motechDataService, times(INSTANCE_COUNT)).update(captor.capture());
+            verify(motechDataService).updateAll(captor.capture());
+            verify(motechDataService, never()).findById(anyLong());
         } else {
-            verify(motechDataService, times(INSTANCE_COUNT)).create(captor.capture());
+            verify(motechDataService).createAll(captor.capture());
         }
+        verify(relatedDataService, never()).findById(anyLong());
 
         assertNotNull(results);
         assertEquals(INSTANCE_COUNT, results.totalNumberOfImportedInstances());
-        assertEquals(testInstances(idMode), captor.getAllValues());
+        assertEquals(testInstances(idMode), new ArrayList<>(captor.getValue()));
 
         assertEquals(ENTITY_CLASSNAME, results.getEntityClassName());
         assertEquals(ENTITY_NAME, results.getEntityName());
@@ -288,6 +380,31 @@ public class CsvImporterExporterTest {
         }
     }
 
+    private List<Record2> chunkInstances(int firstId, int count) {
+        List<Record2> instances = new ArrayList<>();
+        for (int i = firstId; i < firstId + count; i++) {
+            Record2 record = new Record2();
+            record.setId((long) i);
+            record.setValue("value " + i);
+            instances.add(record);
+        }
+        return instances;
+    }
+
+    private boolean isCollected(List<WeakReference<Record2>> references) {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            System.gc();
+            boolean collected = true;
+            for (WeakReference<Record2> reference : references) {
+                collected &= reference.get() == null;
+            }
+            if (collected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private List<Record2> testInstances(IdMode idMode) {
         List<Record2> instances = new ArrayList<>();
 
@@ -398,6 +515,22 @@ public class CsvImporterExporterTest {
         }
     }
 
+    private class CreateAllAnswer implements Answer<List<Record2>> {
+
+        private long idCounter = 0;
+
+        @Override
+        public List<Record2> answer(InvocationOnMock invocation) throws Throwable {
+            List<Record2> created = new ArrayList<>();
+            for (int i = 0; i < ((Collection) invocation.getArguments()[0]).size(); i++) {
+                Record2 record = new Record2();
+                record.setId(idCounter++);
+                created.add(record);
+            }
+            return created;
+        }
+    }
+
     private enum IdMode {
         INCLUDE_ID, EMPTY_ID_COLUMN, NO_ID_COLUMN, INVALID
     }
@@ -0,0 +1,131 @@
+package org.motechproject.mds.service.impl.csv;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.motechproject.mds.query.QueryParams;
+import org.motechproject.mds.service.MDSLookupService;
+import org.motechproject.mds.service.MotechDataService;
+import org.motechproject.mds.testutil.records.Record;
+import org.motechproject.mds.util.Constants;
+import org.motechproject.mds.util.Order;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExportChunkReaderTest {
+
+    private static final String ENTITY_CLASS_NAME = Record.class.getName();
+
+    @Mock
+    private MotechDataService<Record> dataService;
+
+    @Mock
+    private MDSLookupService lookupService;
+
+    @Test
+    public void shouldReadAllInstancesUsingKeysetPaging() {
+        List<Record> records = records(5);
+        when(dataService.retrieveAll(any(QueryParams.class))).thenReturn(records.subList(0, 2),
+                records.subList(2, 4), records.subList(4, 5));
+
+        ExportChunkReader reader = new ExportChunkReader(dataService, null, ENTITY_CLASS_NAME, null, null,
+                QueryParams.ORDER_ID_ASC, 2);
+
+        assertEquals(records.subList(0, 2), reader.nextChunk());
+        assertEquals(records.subList(2, 4), reader.nextChunk());
+        assertEquals(records.subList(4, 5), reader.nextChunk());
+        assertTrue(reader.nextChunk().isEmpty());
+
+        // the last chunk was not full, so there was no need for another query
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(dataService, times(3)).retrieveAll(captor.capture());
+
+        assertNull(captor.getAllValues().get(0).getKeyset());
+        assertEquals(asList((Object) 2L), captor.getAllValues().get(1).getKeyset());
+        assertEquals(asList((Object) 4L), captor.getAllValues().get(2).getKeyset());
+        for (QueryParams queryParams : captor.getAllValues()) {
+            assertEquals(Integer.valueOf(2), queryParams.getPageSize());
+        }
+    }
+
+    @Test
+    public void shouldReadLookupResultsOrderedByIdUsingKeysetPaging() {
+        List<Record> records = records(3);
+        Map<String, Object> lookupFields = new HashMap<>();
+        when(lookupService.findMany(eq(ENTITY_CLASS_NAME), eq("lookup"), eq(lookupFields), any(QueryParams.class)))
+                .thenReturn(new ArrayList<Object>(records.subList(0, 2)), new ArrayList<Object>(records.subList(2, 3)));
+
+        QueryParams params = new QueryParams(new Order(Constants.Util.ID_FIELD_NAME, Order.Direction.DESC));
+        ExportChunkReader reader = new ExportChunkReader(dataService, lookupService, ENTITY_CLASS_NAME, "lookup",
+                lookupFields, params, 2);
+
+        assertEquals(records.subList(0, 2), reader.nextChunk());
+        assertEquals(records.subList(2, 3), reader.nextChunk());
+        assertTrue(reader.nextChunk().isEmpty());
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(lookupService, times(2)).findMany(eq(ENTITY_CLASS_NAME), eq("lookup"), eq(lookupFields),
+                captor.capture());
+
+        assertNull(captor.getAllValues().get(0).getKeyset());
+        assertEquals(asList((Object) 2L), captor.getAllValues().get(1).getKeyset());
+        assertEquals(Order.Direction.DESC, captor.getAllValues().get(1).getOrderList().get(0).getDirection());
+        verify(dataService, never()).retrieveAll(any(QueryParams.class));
+    }
+
+    @Test
+    public void shouldReadLookupResultsUsingOffsetPaging() {
+        List<Record> records = records(4);
+        Map<String, Object> lookupFields = new HashMap<>();
+        when(lookupService.findMany(eq(ENTITY_CLASS_NAME), eq("lookup"), eq(lookupFields), any(QueryParams.class)))
+                .thenReturn(new ArrayList<Object>(records.subList(0, 2)), new ArrayList<Object>(records.subList(2, 4)));
+
+        QueryParams params = new QueryParams(1, 3, new Order("value", Order.Direction.DESC));
+        ExportChunkReader reader = new ExportChunkReader(dataService, lookupService, ENTITY_CLASS_NAME, "lookup",
+                lookupFields, params, 2);
+
+        assertEquals(records.subList(0, 2), reader.nextChunk());
+        // the page size requested limits the export to three instances
+        assertEquals(records.subList(2, 3), reader.nextChunk());
+        assertTrue(reader.nextChunk().isEmpty());
+
+        ArgumentCaptor<QueryParams> captor = ArgumentCaptor.forClass(QueryParams.class);
+        verify(lookupService, times(2)).findMany(eq(ENTITY_CLASS_NAME), eq("lookup"), eq(lookupFields),
+                captor.capture());
+
+        for (int i = 0; i < 2; ++i) {
+            QueryParams queryParams = captor.getAllValues().get(i);
+            assertEquals(Integer.valueOf(i + 1), queryParams.getPage());
+            assertEquals(Integer.valueOf(2), queryParams.getPageSize());
+            assertEquals(asList("value", Constants.Util.ID_FIELD_NAME),
+                    asList(queryParams.getOrderList().get(0).getField(), queryParams.getOrderList().get(1).getField()));
+        }
+    }
+
+    private List<Record> records(int count) {
+        List<Record> records = new ArrayList<>();
+        for (long i = 1; i <= count; ++i) {
+            Record record = new Record();
+            record.setId(i);
+            records.add(record);
+        }
+        return records;
+    }
+}